@@ -0,0 +1,97 @@
+package bixo.datum;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.io.BytesWritable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cascading.tuple.Fields;
+import cascading.tuple.Tuple;
+
+/**
+ * Converting datums to tuples and back, which happens for every record that
+ * moves between pipes.
+ *
+ */
+@SuppressWarnings("unchecked")
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DatumBenchmark {
+    private static final Fields META_DATA_FIELDS = new Fields("meta-crawl-depth", "meta-source");
+
+    private ScoredUrlDatum _scoredDatum;
+    private Tuple _scoredTuple;
+
+    private FetchedDatum _fetchedDatum;
+    private Tuple _fetchedTuple;
+
+    @Setup
+    public void setup() {
+        Map<String, Comparable> metaData = new HashMap<String, Comparable>();
+        metaData.put("meta-crawl-depth", "3");
+        metaData.put("meta-source", "http://www.source.com/index.html");
+
+        _scoredDatum = new ScoredUrlDatum("http://www.domain.com/some/path/page.html?id=12345", 0, 0,
+                        UrlStatus.UNFETCHED, "domain.com-30000", 0.75, metaData);
+        _scoredTuple = _scoredDatum.toTuple();
+
+        // 20K of random content, which is about the size of a typical page.
+        byte[] content = new byte[20 * 1024];
+        new Random(1L).nextBytes(content);
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.add("Content-Type", "text/html; charset=UTF-8");
+        headers.add("Content-Length", Integer.toString(content.length));
+        headers.add("Server", "Apache/2.2.3 (CentOS)");
+
+        _fetchedDatum = new FetchedDatum("http://www.domain.com/some/path/page.html", "http://www.domain.com/some/path/page.html",
+                        System.currentTimeMillis(), headers, new BytesWritable(content), "text/html", 20000, metaData);
+        _fetchedTuple = _fetchedDatum.toTuple();
+    }
+
+    @Benchmark
+    public Tuple scoredUrlToTuple() {
+        return _scoredDatum.toTuple();
+    }
+
+    @Benchmark
+    public ScoredUrlDatum scoredUrlFromTuple() {
+        return new ScoredUrlDatum(_scoredTuple, META_DATA_FIELDS);
+    }
+
+    @Benchmark
+    public ScoredUrlDatum scoredUrlRoundTrip() {
+        return new ScoredUrlDatum(_scoredDatum.toTuple(), META_DATA_FIELDS);
+    }
+
+    @Benchmark
+    public Tuple fetchedToTuple() {
+        return _fetchedDatum.toTuple();
+    }
+
+    @Benchmark
+    public FetchedDatum fetchedFromTuple() {
+        return new FetchedDatum(_fetchedTuple, META_DATA_FIELDS);
+    }
+
+    @Benchmark
+    public FetchedDatum fetchedRoundTrip() {
+        return new FetchedDatum(_fetchedDatum.toTuple(), META_DATA_FIELDS);
+    }
+}
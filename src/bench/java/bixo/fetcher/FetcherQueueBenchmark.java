@@ -0,0 +1,80 @@
+package bixo.fetcher;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import bixo.config.FetcherPolicy;
+import bixo.datum.ScoredUrlDatum;
+import bixo.datum.UrlStatus;
+
+/**
+ * Cost of filling a FetcherQueue and draining it via poll(), with the number
+ * of URLs per queue above and below the in-memory limit (so the second case
+ * includes spilling to disk).
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FetcherQueueBenchmark {
+    private static final int MAX_URLS_IN_MEMORY = 100;
+
+    @Param({"50", "500"})
+    public int _numUrls;
+
+    private FetcherPolicy _policy;
+    private List<ScoredUrlDatum> _urls;
+
+    @Setup
+    public void setup() {
+        // No crawl delay, so one poll() returns everything in the queue.
+        _policy = new FetcherPolicy();
+        _policy.setCrawlDelay(0);
+
+        _urls = new ArrayList<ScoredUrlDatum>(_numUrls);
+        for (int i = 0; i < _numUrls; i++) {
+            String url = "http://www.domain.com/page-" + i + ".html";
+            _urls.add(new ScoredUrlDatum(url, 0, 0, UrlStatus.UNFETCHED, "domain.com-30000", 1.0 - (i / (double)_numUrls), null));
+        }
+    }
+
+    @Benchmark
+    public FetcherQueue offer() {
+        FetcherQueue queue = new FetcherQueue("domain.com", _policy, MAX_URLS_IN_MEMORY, null);
+        for (ScoredUrlDatum url : _urls) {
+            queue.offer(url);
+        }
+
+        return queue;
+    }
+
+    @Benchmark
+    public int offerAndPoll() {
+        FetcherQueue queue = offer();
+
+        int numPolled = 0;
+        List<ScoredUrlDatum> urls;
+        while ((urls = queue.poll()) != null) {
+            numPolled += urls.size();
+            queue.release(urls);
+        }
+
+        return numPolled;
+    }
+}
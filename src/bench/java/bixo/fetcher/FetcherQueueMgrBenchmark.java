@@ -0,0 +1,101 @@
+package bixo.fetcher;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import bixo.cascading.BixoFlowProcess;
+import bixo.config.FetcherPolicy;
+import bixo.config.QueuePolicy;
+import bixo.datum.ScoredUrlDatum;
+import bixo.datum.UrlStatus;
+
+/**
+ * Contention in FetcherQueueMgr when many fetcher threads call poll() and
+ * finished() at the same time, as happens with short fetch times.
+ *
+ * Each thread re-offers the URLs it polled before calling finished(), so the
+ * manager stays in a steady state with the same number of queues.
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FetcherQueueMgrBenchmark {
+
+    @Param({"16", "1000"})
+    public int _numQueues;
+
+    private static final int URLS_PER_QUEUE = 10;
+
+    private FetcherQueueMgr _queueMgr;
+    private ConcurrentHashMap<String, FetcherQueue> _queues;
+
+    @Setup(Level.Iteration)
+    public void setup() {
+        BixoFlowProcess process = new BixoFlowProcess();
+        FetcherPolicy fetcherPolicy = new FetcherPolicy();
+        fetcherPolicy.setCrawlDelay(0);
+        QueuePolicy queuePolicy = new QueuePolicy(_numQueues * URLS_PER_QUEUE, URLS_PER_QUEUE);
+        _queueMgr = new FetcherQueueMgr(process, fetcherPolicy, queuePolicy);
+        _queues = new ConcurrentHashMap<String, FetcherQueue>();
+
+        for (int i = 0; i < _numQueues; i++) {
+            String domain = "domain-" + i + ".com";
+            FetcherQueue queue = _queueMgr.createQueue(domain, null, 0);
+            for (int j = 0; j < URLS_PER_QUEUE; j++) {
+                queue.offer(new ScoredUrlDatum("http://" + domain + "/page-" + j + ".html", 0, 0, UrlStatus.UNFETCHED, null, 1.0, null));
+            }
+
+            if (!_queueMgr.offer(queue)) {
+                throw new IllegalStateException("Queue manager rejected queue " + domain);
+            }
+
+            _queues.put(domain, queue);
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public boolean pollAndFinishOneThread() {
+        return pollAndFinish();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public boolean pollAndFinishEightThreads() {
+        return pollAndFinish();
+    }
+
+    private boolean pollAndFinish() {
+        FetchList fetchList = _queueMgr.poll();
+        if (fetchList == null) {
+            return false;
+        }
+
+        // Put the URLs back, as if they were new ones for the same domain.
+        FetcherQueue queue = _queues.get(fetchList.getDomain());
+        for (ScoredUrlDatum url : fetchList.getUrls()) {
+            queue.offer(url);
+        }
+
+        fetchList.finished();
+        return true;
+    }
+}
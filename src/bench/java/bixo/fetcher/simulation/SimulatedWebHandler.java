@@ -0,0 +1,196 @@
+package bixo.fetcher.simulation;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.http.HttpStatus;
+import org.mortbay.http.HttpException;
+import org.mortbay.http.HttpRequest;
+import org.mortbay.http.HttpResponse;
+import org.mortbay.http.handler.AbstractHttpHandler;
+
+import bixo.utils.LatencyHistogram;
+
+/**
+ * Jetty handler that simulates a web of <numHosts> hosts, all served from one
+ * local port. URLs look like http://localhost:<port>/host-<n>/page-<m>.html
+ *
+ * Each host has its own response latency (log-normally distributed around the
+ * median), and every response is sent at a fixed bandwidth. Some fraction of
+ * requests fail with a 500 error. Everything is derived from <seed>, so two
+ * runs with the same settings simulate the same web.
+ *
+ * We also track when each request arrives, relative to the first one, so the
+ * benchmark can report how long URLs waited before being fetched.
+ *
+ */
+@SuppressWarnings("serial")
+public class SimulatedWebHandler extends AbstractHttpHandler {
+    private static final String HOST_PREFIX = "/host-";
+
+    // Per-request latency varies a bit around each host's median.
+    private static final double REQUEST_LATENCY_SIGMA = 0.25;
+
+    private static final int WRITE_CHUNK_SIZE = 1024;
+
+    private int _pageSize;
+    private int _bandwidth;
+    private double _errorRate;
+    private long[] _hostLatencies;
+    private byte[] _content;
+    private long _seed;
+
+    private AtomicLong _firstRequestTime;
+    private AtomicLong _lastResponseTime;
+    private AtomicInteger _numPages;
+    private AtomicInteger _numErrors;
+    private LatencyHistogram _requestArrival;
+
+    /**
+     * @param numHosts - number of simulated hosts
+     * @param pageSize - bytes per page
+     * @param medianLatency - median time (ms) before a host starts responding
+     * @param latencySigma - spread of host latencies (sigma of the log-normal distribution)
+     * @param bandwidth - bytes/second for each response, or 0 for unlimited
+     * @param errorRate - fraction of requests that get a 500 response
+     * @param seed - seed for all random values
+     */
+    public SimulatedWebHandler(int numHosts, int pageSize, long medianLatency, double latencySigma, int bandwidth, double errorRate, long seed) {
+        _pageSize = pageSize;
+        _bandwidth = bandwidth;
+        _errorRate = errorRate;
+        _seed = seed;
+
+        Random rand = new Random(seed);
+        _hostLatencies = new long[numHosts];
+        for (int i = 0; i < numHosts; i++) {
+            _hostLatencies[i] = Math.round(medianLatency * Math.exp(latencySigma * rand.nextGaussian()));
+        }
+
+        _content = new byte[pageSize];
+        for (int i = 0; i < pageSize; i++) {
+            _content[i] = (byte)('a' + rand.nextInt(26));
+        }
+
+        _firstRequestTime = new AtomicLong(0);
+        _lastResponseTime = new AtomicLong(0);
+        _numPages = new AtomicInteger(0);
+        _numErrors = new AtomicInteger(0);
+        _requestArrival = new LatencyHistogram();
+    }
+
+    public static String makeUrl(int port, int hostIndex, int pageIndex) {
+        return String.format("http://localhost:%d%s%d/page-%d.html", port, HOST_PREFIX, hostIndex, pageIndex);
+    }
+
+    @Override
+    public void handle(String pathInContext, String pathParams, HttpRequest request, HttpResponse response) throws HttpException, IOException {
+        long startTime = System.currentTimeMillis();
+        _firstRequestTime.compareAndSet(0, startTime);
+        _requestArrival.record(startTime - _firstRequestTime.get());
+
+        int hostIndex = getHostIndex(pathInContext);
+        if (hostIndex == -1) {
+            throw new HttpException(HttpStatus.SC_NOT_FOUND, "Unknown host for " + pathInContext);
+        }
+
+        // Every request gets the same random values, no matter what order they come in.
+        Random rand = new Random(_seed ^ pathInContext.hashCode());
+        long latency = Math.round(_hostLatencies[hostIndex] * Math.exp(REQUEST_LATENCY_SIGMA * rand.nextGaussian()));
+        sleep(latency);
+
+        if (rand.nextDouble() < _errorRate) {
+            _numErrors.incrementAndGet();
+            updateLastResponseTime();
+            throw new HttpException(HttpStatus.SC_INTERNAL_SERVER_ERROR, "Simulated error for " + pathInContext);
+        }
+
+        response.setContentLength(_pageSize);
+        response.setContentType("text/html");
+        response.setStatus(HttpStatus.SC_OK);
+
+        OutputStream os = response.getOutputStream();
+        long writeStartTime = System.currentTimeMillis();
+        for (int offset = 0; offset < _pageSize; offset += WRITE_CHUNK_SIZE) {
+            int length = Math.min(WRITE_CHUNK_SIZE, _pageSize - offset);
+            os.write(_content, offset, length);
+
+            if (_bandwidth > 0) {
+                long targetTime = ((offset + length) * 1000L) / _bandwidth;
+                sleep(targetTime - (System.currentTimeMillis() - writeStartTime));
+            }
+        }
+
+        os.flush();
+        request.setHandled(true);
+        _numPages.incrementAndGet();
+        updateLastResponseTime();
+    }
+
+    public int getNumPages() {
+        return _numPages.get();
+    }
+
+    public int getNumErrors() {
+        return _numErrors.get();
+    }
+
+    /**
+     * @return time (ms) from the first request to the end of the last response,
+     *         or 0 if there haven't been any requests.
+     */
+    public long getActiveTime() {
+        long firstRequestTime = _firstRequestTime.get();
+        return firstRequestTime == 0 ? 0 : _lastResponseTime.get() - firstRequestTime;
+    }
+
+    /**
+     * @return histogram of when requests arrived (ms), relative to the first request.
+     */
+    public LatencyHistogram getRequestArrival() {
+        return _requestArrival;
+    }
+
+    private int getHostIndex(String path) {
+        if (!path.startsWith(HOST_PREFIX)) {
+            return -1;
+        }
+
+        int end = path.indexOf('/', HOST_PREFIX.length());
+        if (end == -1) {
+            return -1;
+        }
+
+        try {
+            int result = Integer.parseInt(path.substring(HOST_PREFIX.length(), end));
+            return ((result >= 0) && (result < _hostLatencies.length)) ? result : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private void updateLastResponseTime() {
+        long now = System.currentTimeMillis();
+        long curTime;
+        while (now > (curTime = _lastResponseTime.get())) {
+            if (_lastResponseTime.compareAndSet(curTime, now)) {
+                break;
+            }
+        }
+    }
+
+    private static void sleep(long millis) throws HttpException {
+        if (millis <= 0) {
+            return;
+        }
+
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            throw new HttpException(HttpStatus.SC_INTERNAL_SERVER_ERROR, "Response handler interrupted");
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package bixo.indexing;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.hadoop.io.BytesWritable;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.Field.Index;
+import org.apache.lucene.document.Field.Store;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriter.MaxFieldLength;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import bixo.datum.BaseDatum;
+import bixo.datum.FetchedDatum;
+import bixo.datum.HttpHeaders;
+import bixo.datum.ParsedDatum;
+import bixo.fetcher.http.IHttpHeaders;
+import bixo.parser.BenchmarkPages;
+import bixo.parser.SimpleParser;
+import cascading.tuple.Fields;
+import cascading.tuple.Tuple;
+
+/**
+ * Indexing parsed pages (url, title and parsed text) the way IndexScheme
+ * does, one document per operation. The newDocument benchmark creates a
+ * Document and Fields for every tuple, which is what IndexScheme used to do,
+ * for comparison with the reused documents from DocumentBuilder. Run with
+ * "-prof gc" to compare allocation.
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IndexingBenchmark {
+    private static final Fields SINK_FIELDS = new Fields("url", "title", "text");
+    private static final Store[] STORE_SETTINGS = new Store[] { Store.YES, Store.YES, Store.NO };
+    private static final Index[] INDEX_SETTINGS = new Index[] { Index.NOT_ANALYZED, Index.ANALYZED, Index.ANALYZED };
+
+    private List<Tuple> _tuples;
+    private int _index;
+
+    private DocumentBuilder _builder;
+    private File _indexDir;
+    private IndexWriter _writer;
+
+    @Setup
+    public void setup() throws Exception {
+        SimpleParser parser = new SimpleParser();
+        List<byte[]> pages = BenchmarkPages.getPages();
+
+        _tuples = new ArrayList<Tuple>();
+        for (int i = 0; i < pages.size(); i++) {
+            String url = "http://domain.com/page-" + i + ".html";
+            String contentType = "text/html; charset=utf-8";
+            HttpHeaders headers = new HttpHeaders();
+            headers.add(IHttpHeaders.CONTENT_TYPE, contentType);
+            FetchedDatum fetchedDatum = new FetchedDatum(url, url, System.currentTimeMillis(), headers,
+                            new BytesWritable(pages.get(i)), contentType, 0, BaseDatum.EMPTY_METADATA_MAP);
+
+            ParsedDatum parsedDatum = parser.parse(fetchedDatum);
+            String title = parsedDatum.getTitle() == null ? "" : parsedDatum.getTitle();
+            _tuples.add(new Tuple(url, title, parsedDatum.getParsedText()));
+        }
+
+        _builder = new DocumentBuilder(SINK_FIELDS, STORE_SETTINGS, INDEX_SETTINGS, false);
+    }
+
+    // New index for each iteration, so it doesn't grow without limit.
+    @Setup(Level.Iteration)
+    public void openIndex() throws Exception {
+        _indexDir = new File(System.getProperty("java.io.tmpdir"), "IndexingBenchmark-" + System.nanoTime());
+        _writer = new IndexWriter(_indexDir, new StandardAnalyzer(), MaxFieldLength.UNLIMITED);
+    }
+
+    @TearDown(Level.Iteration)
+    public void closeIndex() throws Exception {
+        _writer.close();
+        FileUtils.deleteDirectory(_indexDir);
+    }
+
+    private Tuple nextTuple() {
+        Tuple result = _tuples.get(_index);
+        _index = (_index + 1) % _tuples.size();
+        return result;
+    }
+
+    @Benchmark
+    public Document reusedDocument() throws Exception {
+        Document doc = _builder.makeDocument(nextTuple());
+        _writer.addDocument(doc);
+        return doc;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Benchmark
+    public Document newDocument() throws Exception {
+        Tuple value = nextTuple();
+        Document doc = new Document();
+        for (int i = 0; i < SINK_FIELDS.size(); i++) {
+            Comparable comparable = value.get(i);
+            doc.add(new Field((String)SINK_FIELDS.get(i), "" + comparable.toString(), STORE_SETTINGS[i], INDEX_SETTINGS[i]));
+        }
+
+        _writer.addDocument(doc);
+        return doc;
+    }
+}
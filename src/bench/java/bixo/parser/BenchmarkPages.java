@@ -0,0 +1,71 @@
+package bixo.parser;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+
+/**
+ * HTML pages for the parser benchmarks. By default these are the pages that
+ * the parser tests use, but a directory of other pages can be used by setting
+ * the PAGES_DIR_PROPERTY system property.
+ *
+ */
+public class BenchmarkPages {
+    public static final String PAGES_DIR_PROPERTY = "bixo.bench.pages.dir";
+
+    private static final String[] DEFAULT_PAGES = {
+        "src/test/resources/karlie.html",
+        "src/test/resources/simple-page.html",
+        "src/test/resources/parser-files/base-url.html",
+        "src/test/resources/parser-files/lang-dc.html",
+        "src/test/resources/parser-files/lang-http-equiv.html",
+        "src/test/resources/parser-files/relative-urls.html",
+        "src/test/resources/parser-files/simple-content.html"
+    };
+
+    private BenchmarkPages() {
+        // Static methods only
+    }
+
+    public static List<File> getFiles() throws IOException {
+        List<File> result = new ArrayList<File>();
+
+        String pagesDir = System.getProperty(PAGES_DIR_PROPERTY);
+        if (pagesDir == null) {
+            for (String path : DEFAULT_PAGES) {
+                result.add(new File(path));
+            }
+        } else {
+            File[] files = new File(pagesDir).listFiles();
+            if (files == null) {
+                throw new IOException("Can't list pages directory: " + pagesDir);
+            }
+
+            Arrays.sort(files);
+            for (File file : files) {
+                if (file.isFile()) {
+                    result.add(file);
+                }
+            }
+        }
+
+        if (result.isEmpty()) {
+            throw new IOException("No benchmark pages found");
+        }
+
+        return result;
+    }
+
+    public static List<byte[]> getPages() throws IOException {
+        List<byte[]> result = new ArrayList<byte[]>();
+        for (File file : getFiles()) {
+            result.add(FileUtils.readFileToByteArray(file));
+        }
+
+        return result;
+    }
+}
@@ -0,0 +1,157 @@
+package bixo.parser;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.hadoop.io.BytesWritable;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.parser.AutoDetectParser;
+import org.apache.tika.parser.ParseContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xml.sax.helpers.DefaultHandler;
+
+import bixo.config.ParserPolicy;
+import bixo.datum.BaseDatum;
+import bixo.datum.FetchedDatum;
+import bixo.datum.HttpHeaders;
+import bixo.datum.Outlink;
+import bixo.datum.ParsedDatum;
+import bixo.fetcher.http.IHttpHeaders;
+import cascading.tuple.Fields;
+import cascading.tuple.Tuple;
+
+/**
+ * Allocation along the parse path, one document per operation, cycling
+ * through the benchmark pages. Run with the GC profiler to get bytes/doc for
+ * each stage (the gc.alloc.rate.norm result):
+ *
+ *   ant bench -Dbench.args="ParserAllocation -prof gc"
+ *
+ * Stages are Tika by itself, Tika with our content handler (TikaCallable),
+ * the full SimpleParser (which adds a thread per document), and converting
+ * the resulting ParsedDatum to and from a tuple. The outlinkObjects
+ * benchmarks do the tuple conversion with an Outlink object per link, the
+ * way ParsedDatum used to, for comparison.
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParserAllocationBenchmark {
+    private static final String CONTENT_TYPE = "text/html; charset=utf-8";
+
+    private List<byte[]> _pages;
+    private List<FetchedDatum> _fetchedDatums;
+    private List<ParsedDatum> _parsedDatums;
+    private List<Tuple> _parsedTuples;
+    private int _index;
+
+    private AutoDetectParser _tikaParser;
+    private SimpleParser _simpleParser;
+    private ParserPolicy _policy;
+
+    @Setup
+    public void setup() throws Exception {
+        _pages = BenchmarkPages.getPages();
+        _tikaParser = new AutoDetectParser();
+        _simpleParser = new SimpleParser();
+        _policy = new ParserPolicy();
+
+        _fetchedDatums = new ArrayList<FetchedDatum>();
+        _parsedDatums = new ArrayList<ParsedDatum>();
+        _parsedTuples = new ArrayList<Tuple>();
+        for (int i = 0; i < _pages.size(); i++) {
+            String url = "http://domain.com/page-" + i + ".html";
+            HttpHeaders headers = new HttpHeaders();
+            headers.add(IHttpHeaders.CONTENT_TYPE, CONTENT_TYPE);
+            FetchedDatum fetchedDatum = new FetchedDatum(url, url, System.currentTimeMillis(), headers,
+                            new BytesWritable(_pages.get(i)), CONTENT_TYPE, 0, BaseDatum.EMPTY_METADATA_MAP);
+            _fetchedDatums.add(fetchedDatum);
+
+            ParsedDatum parsedDatum = _simpleParser.parse(fetchedDatum);
+            _parsedDatums.add(parsedDatum);
+            _parsedTuples.add(parsedDatum.toTuple());
+        }
+    }
+
+    private int nextIndex() {
+        int result = _index;
+        _index = (_index + 1) % _pages.size();
+        return result;
+    }
+
+    private Metadata makeMetadata(int index) {
+        Metadata metadata = new Metadata();
+        metadata.add(Metadata.RESOURCE_NAME_KEY, _fetchedDatums.get(index).getBaseUrl());
+        metadata.add(Metadata.CONTENT_TYPE, CONTENT_TYPE);
+        metadata.add(Metadata.CONTENT_LOCATION, _fetchedDatums.get(index).getBaseUrl());
+        return metadata;
+    }
+
+    @Benchmark
+    public Metadata tikaOnly() throws Exception {
+        int index = nextIndex();
+        Metadata metadata = makeMetadata(index);
+        _tikaParser.parse(new ByteArrayInputStream(_pages.get(index)), new DefaultHandler(), metadata, new ParseContext());
+        return metadata;
+    }
+
+    @Benchmark
+    public ParsedDatum tikaCallable() throws Exception {
+        int index = nextIndex();
+        return new TikaCallable(_tikaParser, new ByteArrayInputStream(_pages.get(index)), makeMetadata(index), _policy).call();
+    }
+
+    @Benchmark
+    public ParsedDatum simpleParser() throws Exception {
+        return _simpleParser.parse(_fetchedDatums.get(nextIndex()));
+    }
+
+    @Benchmark
+    public Tuple parsedToTuple() {
+        return _parsedDatums.get(nextIndex()).toTuple();
+    }
+
+    @Benchmark
+    public ParsedDatum parsedFromTuple() {
+        return new ParsedDatum(_parsedTuples.get(nextIndex()), new Fields());
+    }
+
+    @Benchmark
+    public Tuple outlinkObjectsToTuple() {
+        ParsedDatum datum = _parsedDatums.get(nextIndex());
+        Tuple result = new Tuple();
+        for (Outlink outlink : datum.getOutLinks()) {
+            result.add(outlink.getToUrl());
+            result.add(outlink.getAnchor());
+        }
+
+        return result;
+    }
+
+    @Benchmark
+    public Outlink[] outlinkObjectsFromTuple() {
+        Tuple tuple = (Tuple)_parsedTuples.get(nextIndex()).get(ParsedDatum.FIELDS.getPos(ParsedDatum.OUTLINKS_FIELD));
+        int numOutlinks = tuple.size() / 2;
+        Outlink[] result = new Outlink[numOutlinks];
+        for (int i = 0; i < numOutlinks; i++) {
+            result[i] = new Outlink(tuple.getString(i * 2), tuple.getString((i * 2) + 1));
+        }
+
+        return result;
+    }
+}
@@ -0,0 +1,301 @@
+package bixo.pipes;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.net.URL;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.log4j.Logger;
+import org.kohsuke.args4j.CmdLineException;
+import org.kohsuke.args4j.CmdLineParser;
+import org.mortbay.http.HttpServer;
+
+import bixo.config.FetcherPolicy;
+import bixo.config.QueuePolicy;
+import bixo.datum.ScoredUrlDatum;
+import bixo.datum.StatusDatum;
+import bixo.datum.UrlStatus;
+import bixo.fetcher.FetcherQueueMgr;
+import bixo.fetcher.FetcherStatusServer;
+import bixo.fetcher.http.SimpleHttpFetcher;
+import bixo.fetcher.simulation.SimulatedWebHandler;
+import bixo.fetcher.simulation.SimulationWebServer;
+import bixo.operations.FetcherBuffer;
+import bixo.utils.ConfigUtils;
+import bixo.utils.GroupingKey;
+import bixo.utils.LatencyHistogram;
+import cascading.flow.Flow;
+import cascading.flow.FlowConnector;
+import cascading.pipe.Pipe;
+import cascading.scheme.SequenceFile;
+import cascading.tap.Lfs;
+import cascading.tap.Tap;
+import cascading.tuple.Fields;
+import cascading.tuple.TupleEntryCollector;
+import cascading.tuple.TupleEntryIterator;
+
+/**
+ * End-to-end fetch throughput, running the real FetchPipe (FetcherBuffer,
+ * FetcherManager, SimpleHttpFetcher) as a local Cascading flow against a
+ * simulated web of many hosts served by a local Jetty server.
+ *
+ * URLs are fed in already scored and grouped (one group per simulated host),
+ * so robots.txt processing and DNS aren't part of what's measured.
+ *
+ * Reports pages/sec, fetcher thread utilization and pending queues (sampled
+ * from the fetcher status endpoint), when requests arrived at the simulated
+ * hosts relative to the first request, and GC activity during the flow.
+ *
+ */
+public class CrawlBenchmark {
+    private static final Logger LOGGER = Logger.getLogger(CrawlBenchmark.class);
+
+    private static final long SAMPLE_INTERVAL = 500;
+
+    private static final Pattern THREADS_PATTERN = Pattern.compile("\"threads\":\\{\"active\":(\\d+),\"max\":(\\d+)");
+    private static final Pattern PENDING_QUEUES_PATTERN = Pattern.compile("\"pendingQueueCount\":(\\d+)");
+
+    /**
+     * Poll the fetcher status endpoint, and keep track of thread utilization
+     * and the number of pending queues. The status server picks its own port,
+     * which it writes to a file in <statusPortDir>.
+     */
+    private static class StatusSampler extends Thread {
+        private File _statusPortDir;
+        private URL _statusUrl;
+        private long _totalActive;
+        private long _totalMax;
+        private long _totalPendingQueues;
+        private int _numSamples;
+
+        public StatusSampler(File statusPortDir) {
+            super("Status sampler");
+            setDaemon(true);
+            _statusPortDir = statusPortDir;
+        }
+
+        @Override
+        public void run() {
+            while (!isInterrupted()) {
+                try {
+                    Thread.sleep(SAMPLE_INTERVAL);
+                    sample();
+                } catch (InterruptedException e) {
+                    return;
+                } catch (IOException e) {
+                    // Fetcher isn't running yet, or has finished.
+                }
+            }
+        }
+
+        private void sample() throws IOException {
+            if (_statusUrl == null) {
+                File[] portFiles = _statusPortDir.listFiles();
+                if ((portFiles == null) || (portFiles.length == 0)) {
+                    // Fetcher hasn't started yet.
+                    return;
+                }
+
+                int statusPort = Integer.parseInt(FileUtils.readFileToString(portFiles[0], "UTF-8").trim());
+                _statusUrl = new URL("http://127.0.0.1:" + statusPort + FetcherStatusServer.STATUS_PATH);
+            }
+
+            InputStream in = _statusUrl.openStream();
+            String json;
+            try {
+                json = IOUtils.toString(in, "UTF-8");
+            } finally {
+                IOUtils.closeQuietly(in);
+            }
+
+            Matcher threads = THREADS_PATTERN.matcher(json);
+            Matcher pending = PENDING_QUEUES_PATTERN.matcher(json);
+            if (threads.find() && pending.find()) {
+                synchronized (this) {
+                    _totalActive += Long.parseLong(threads.group(1));
+                    _totalMax += Long.parseLong(threads.group(2));
+                    _totalPendingQueues += Long.parseLong(pending.group(1));
+                    _numSamples += 1;
+                }
+            }
+        }
+
+        public synchronized double getUtilization() {
+            return _totalMax == 0 ? 0.0 : (double)_totalActive / _totalMax;
+        }
+
+        public synchronized double getAvgPendingQueues() {
+            return _numSamples == 0 ? 0.0 : (double)_totalPendingQueues / _numSamples;
+        }
+
+        public synchronized int getNumSamples() {
+            return _numSamples;
+        }
+    }
+
+    private static void printUsageAndExit(CmdLineParser parser) {
+        parser.printUsage(System.err);
+        System.exit(-1);
+    }
+
+    public static void main(String[] args) {
+        CrawlBenchmarkOptions options = new CrawlBenchmarkOptions();
+        CmdLineParser parser = new CmdLineParser(options);
+
+        try {
+            parser.parseArgument(args);
+        } catch (CmdLineException e) {
+            System.err.println(e.getMessage());
+            printUsageAndExit(parser);
+        }
+
+        HttpServer server = null;
+
+        try {
+            SimulatedWebHandler handler = new SimulatedWebHandler(options.getNumHosts(), options.getPageSize(), options.getMedianLatency(),
+                            options.getLatencySigma(), options.getBandwidth(), options.getErrorRate(), options.getSeed());
+            server = new SimulationWebServer() { }.startServer(handler, options.getPort());
+
+            Lfs in = makeInputData(options);
+
+            // Every simulated host is on localhost, so we can't limit connections per host
+            // in HttpClient. The FetcherQueue still only has one request per host at a time.
+            FetcherPolicy fetcherPolicy = new FetcherPolicy();
+            fetcherPolicy.setMaxConnectionsPerHost(options.getMaxThreads());
+            SimpleHttpFetcher fetcher = new SimpleHttpFetcher(options.getMaxThreads(), fetcherPolicy, ConfigUtils.BIXO_TEST_AGENT);
+            QueuePolicy queuePolicy = new QueuePolicy(FetcherQueueMgr.DEFAULT_MAX_URLS_IN_MEMORY, fetcherPolicy);
+            FetchPipe fetchPipe = new FetchPipe(new Pipe("urlSource"), fetcher, queuePolicy, new Fields());
+
+            Tap status = new Lfs(new SequenceFile(StatusDatum.FIELDS), options.getOutputDir() + "/status", true);
+
+            // Let the status server pick any free port, and tell us which one it's using.
+            File statusPortDir = new File(options.getOutputDir(), "status-port");
+            FileUtils.deleteDirectory(statusPortDir);
+            statusPortDir.mkdirs();
+
+            Properties properties = new Properties();
+            properties.setProperty(FetcherBuffer.STATUS_PORT_PROPERTY, "0");
+            properties.setProperty(FetcherBuffer.STATUS_PORT_DIR_PROPERTY, statusPortDir.getAbsolutePath());
+            properties.setProperty(FetcherBuffer.TIMING_DIR_PROPERTY, options.getOutputDir() + "/timings");
+
+            FlowConnector flowConnector = new FlowConnector(properties);
+            Flow flow = flowConnector.connect(in, FetchPipe.makeSinkMap(status, null), fetchPipe);
+
+            StatusSampler sampler = new StatusSampler(statusPortDir);
+            sampler.start();
+
+            long gcCount = getGcCount();
+            long gcTime = getGcTime();
+            long startTime = System.currentTimeMillis();
+            flow.complete();
+            long flowTime = System.currentTimeMillis() - startTime;
+            gcCount = getGcCount() - gcCount;
+            gcTime = getGcTime() - gcTime;
+            sampler.interrupt();
+
+            Map<UrlStatus, Integer> statusCounts = countStatus(options.getOutputDir() + "/status");
+            printReport(options, handler, sampler, statusCounts, flowTime, gcCount, gcTime);
+        } catch (Throwable t) {
+            System.err.println("Exception running crawl benchmark: " + t.getMessage());
+            t.printStackTrace(System.err);
+            System.exit(-1);
+        } finally {
+            try {
+                if (server != null) {
+                    server.stop();
+                }
+            } catch (InterruptedException e) {
+                // Ignore
+            }
+        }
+    }
+
+    private static Lfs makeInputData(CrawlBenchmarkOptions options) throws IOException {
+        Lfs in = new Lfs(new SequenceFile(ScoredUrlDatum.FIELDS), options.getOutputDir() + "/in", true);
+        TupleEntryCollector write = in.openForWrite(new JobConf());
+
+        int pagesPerHost = options.getPagesPerHost();
+        for (int host = 0; host < options.getNumHosts(); host++) {
+            String groupingKey = GroupingKey.makeGroupingKey(pagesPerHost, "host-" + host, options.getCrawlDelay());
+            for (int page = 0; page < pagesPerHost; page++) {
+                String url = SimulatedWebHandler.makeUrl(options.getPort(), host, page);
+                double score = 1.0 - ((double)page / pagesPerHost);
+                write.add(new ScoredUrlDatum(url, 0, 0, UrlStatus.UNFETCHED, groupingKey, score, null).toTuple());
+            }
+        }
+
+        write.close();
+        return in;
+    }
+
+    private static Map<UrlStatus, Integer> countStatus(String statusPath) throws IOException {
+        Map<UrlStatus, Integer> result = new EnumMap<UrlStatus, Integer>(UrlStatus.class);
+        Lfs validate = new Lfs(new SequenceFile(StatusDatum.FIELDS), statusPath);
+        TupleEntryIterator iter = validate.openForRead(new JobConf());
+
+        try {
+            while (iter.hasNext()) {
+                UrlStatus status = new StatusDatum(iter.next(), new Fields()).getStatus();
+                Integer count = result.get(status);
+                result.put(status, count == null ? 1 : count + 1);
+            }
+        } finally {
+            iter.close();
+        }
+
+        return result;
+    }
+
+    private static void printReport(CrawlBenchmarkOptions options, SimulatedWebHandler handler, StatusSampler sampler,
+                    Map<UrlStatus, Integer> statusCounts, long flowTime, long gcCount, long gcTime) {
+        long activeTime = handler.getActiveTime();
+        int numFetched = handler.getNumPages();
+        LatencyHistogram arrival = handler.getRequestArrival();
+
+        StringBuilder report = new StringBuilder();
+        report.append("Crawl benchmark settings: " + options + "\n");
+        report.append(String.format("Flow time: %dms, fetching time: %dms\n", flowTime, activeTime));
+        report.append(String.format("Pages fetched: %d, server errors: %d\n", numFetched, handler.getNumErrors()));
+        report.append(String.format("Pages/sec: %.1f (while fetching), %.1f (whole flow)\n",
+                        activeTime == 0 ? 0.0 : (numFetched * 1000.0) / activeTime,
+                        flowTime == 0 ? 0.0 : (numFetched * 1000.0) / flowTime));
+        report.append(String.format("Thread utilization: %.1f%%, avg pending queues: %.1f (%d samples)\n",
+                        sampler.getUtilization() * 100.0, sampler.getAvgPendingQueues(), sampler.getNumSamples()));
+        report.append(String.format("Request arrival (ms after first request): %s\n", arrival));
+        report.append(String.format("GC: %d collections, %dms (%.1f%% of flow time)\n", gcCount, gcTime,
+                        flowTime == 0 ? 0.0 : (gcTime * 100.0) / flowTime));
+        report.append("Status counts: " + statusCounts + "\n");
+        report.append("Per-phase fetch timings are in " + options.getOutputDir() + "/timings\n");
+
+        LOGGER.info(report);
+        System.out.print(report);
+    }
+
+    private static long getGcCount() {
+        long result = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            result += Math.max(0, gc.getCollectionCount());
+        }
+
+        return result;
+    }
+
+    private static long getGcTime() {
+        long result = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            result += Math.max(0, gc.getCollectionTime());
+        }
+
+        return result;
+    }
+}
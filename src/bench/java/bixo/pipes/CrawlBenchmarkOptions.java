@@ -0,0 +1,133 @@
+package bixo.pipes;
+
+import org.apache.commons.lang.builder.ReflectionToStringBuilder;
+import org.apache.commons.lang.builder.ToStringStyle;
+import org.kohsuke.args4j.Option;
+
+public class CrawlBenchmarkOptions {
+    private int _numHosts = 100;
+    private int _pagesPerHost = 20;
+    private int _pageSize = 20 * 1024;
+    private long _medianLatency = 100;
+    private double _latencySigma = 0.5;
+    private int _bandwidth = 200 * 1024;
+    private double _errorRate = 0.02;
+    private long _crawlDelay = 0;
+    private int _maxThreads = 50;
+    private int _port = 8089;
+    private long _seed = 1L;
+    private String _outputDir = "build/bench/CrawlBenchmark";
+
+    @Option(name = "-numhosts", usage = "number of simulated hosts", required = false)
+    public void setNumHosts(int numHosts) {
+        _numHosts = numHosts;
+    }
+
+    @Option(name = "-pagesperhost", usage = "number of pages to fetch from each host", required = false)
+    public void setPagesPerHost(int pagesPerHost) {
+        _pagesPerHost = pagesPerHost;
+    }
+
+    @Option(name = "-pagesize", usage = "size of each page in bytes", required = false)
+    public void setPageSize(int pageSize) {
+        _pageSize = pageSize;
+    }
+
+    @Option(name = "-latency", usage = "median host response latency in milliseconds", required = false)
+    public void setMedianLatency(long medianLatency) {
+        _medianLatency = medianLatency;
+    }
+
+    @Option(name = "-latencysigma", usage = "spread of host latencies (log-normal sigma)", required = false)
+    public void setLatencySigma(double latencySigma) {
+        _latencySigma = latencySigma;
+    }
+
+    @Option(name = "-bandwidth", usage = "bytes/second per response, or 0 for unlimited", required = false)
+    public void setBandwidth(int bandwidth) {
+        _bandwidth = bandwidth;
+    }
+
+    @Option(name = "-errorrate", usage = "fraction of requests that fail with a server error", required = false)
+    public void setErrorRate(double errorRate) {
+        _errorRate = errorRate;
+    }
+
+    @Option(name = "-crawldelay", usage = "crawl delay in milliseconds for every host", required = false)
+    public void setCrawlDelay(long crawlDelay) {
+        _crawlDelay = crawlDelay;
+    }
+
+    @Option(name = "-maxthreads", usage = "maximum number of fetcher threads to use", required = false)
+    public void setMaxThreads(int maxThreads) {
+        _maxThreads = maxThreads;
+    }
+
+    @Option(name = "-port", usage = "port for the simulated web server", required = false)
+    public void setPort(int port) {
+        _port = port;
+    }
+
+    @Option(name = "-seed", usage = "seed for simulated latencies and errors", required = false)
+    public void setSeed(long seed) {
+        _seed = seed;
+    }
+
+    @Option(name = "-outputdir", usage = "working directory for input and status output", required = false)
+    public void setOutputDir(String outputDir) {
+        _outputDir = outputDir;
+    }
+
+    public int getNumHosts() {
+        return _numHosts;
+    }
+
+    public int getPagesPerHost() {
+        return _pagesPerHost;
+    }
+
+    public int getPageSize() {
+        return _pageSize;
+    }
+
+    public long getMedianLatency() {
+        return _medianLatency;
+    }
+
+    public double getLatencySigma() {
+        return _latencySigma;
+    }
+
+    public int getBandwidth() {
+        return _bandwidth;
+    }
+
+    public double getErrorRate() {
+        return _errorRate;
+    }
+
+    public long getCrawlDelay() {
+        return _crawlDelay;
+    }
+
+    public int getMaxThreads() {
+        return _maxThreads;
+    }
+
+    public int getPort() {
+        return _port;
+    }
+
+    public long getSeed() {
+        return _seed;
+    }
+
+    public String getOutputDir() {
+        return _outputDir;
+    }
+
+    @Override
+    public String toString() {
+        return ReflectionToStringBuilder.toString(this, ToStringStyle.MULTI_LINE_STYLE);
+    }
+}
@@ -0,0 +1,58 @@
+package bixo.urldb;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import bixo.utils.BenchmarkUrls;
+
+/**
+ * SimpleUrlNormalizer versus the original implementation (kept in the test
+ * tree as ReferenceUrlNormalizer), over the sample URLs.
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SimpleUrlNormalizerBenchmark {
+
+    private String[] _urls;
+    private IUrlNormalizer _simple;
+    private IUrlNormalizer _reference;
+    private int _index;
+
+    @Setup
+    public void setup() throws IOException {
+        List<String> urls = BenchmarkUrls.getUrls();
+        _urls = urls.toArray(new String[urls.size()]);
+        _simple = new SimpleUrlNormalizer();
+        _reference = new ReferenceUrlNormalizer(false);
+        _index = 0;
+    }
+
+    @Benchmark
+    public String simple() {
+        _index = (_index + 1) % _urls.length;
+        return _simple.normalize(_urls[_index]);
+    }
+
+    @Benchmark
+    public String reference() {
+        _index = (_index + 1) % _urls.length;
+        return _reference.normalize(_urls[_index]);
+    }
+}
@@ -0,0 +1,46 @@
+package bixo.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+
+/**
+ * Shared test data for the benchmarks. Everything is loaded from files in the
+ * source tree, so results are comparable between runs and machines.
+ *
+ */
+public class BenchmarkUrls {
+    public static final String SAMPLE_URLS_FILE = "src/test/resources/sample-urls.txt";
+
+    private BenchmarkUrls() {
+        // Static methods only
+    }
+
+    @SuppressWarnings("unchecked")
+    public static List<String> getUrls() throws IOException {
+        List<String> result = new ArrayList<String>();
+        for (String line : (List<String>)FileUtils.readLines(new File(SAMPLE_URLS_FILE), "UTF-8")) {
+            line = line.trim();
+            if (line.length() > 0) {
+                result.add(line);
+            }
+        }
+
+        return result;
+    }
+
+    public static List<String> getHosts() throws IOException {
+        List<String> result = new ArrayList<String>();
+        for (String url : getUrls()) {
+            String host = DomainNames.safeGetHost(url);
+            if (host.length() > 0) {
+                result.add(host);
+            }
+        }
+
+        return result;
+    }
+}
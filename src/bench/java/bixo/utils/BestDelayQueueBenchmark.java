@@ -0,0 +1,87 @@
+package bixo.utils;
+
+import java.util.Random;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * BestDelayQueue.poll() with a queue full of available elements, versus the
+ * plain DelayQueue.poll() it's built on. Each polled element is put back, so
+ * the queue size stays constant.
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BestDelayQueueBenchmark {
+
+    private static class ReadyElement implements Delayed {
+        private long _readyTime;
+
+        public ReadyElement(long readyTime) {
+            _readyTime = readyTime;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(_readyTime - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            long otherTime = ((ReadyElement)other)._readyTime;
+            return (_readyTime < otherTime) ? -1 : ((_readyTime > otherTime) ? 1 : 0);
+        }
+    }
+
+    @Param({"100", "10000"})
+    public int _queueSize;
+
+    private BestDelayQueue<ReadyElement> _bestQueue;
+    private DelayQueue<ReadyElement> _plainQueue;
+
+    @Setup
+    public void setup() {
+        _bestQueue = new BestDelayQueue<ReadyElement>();
+        _plainQueue = new DelayQueue<ReadyElement>();
+
+        // All elements are already available, at random times in the past hour.
+        Random rand = new Random(1L);
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < _queueSize; i++) {
+            long readyTime = now - rand.nextInt(60 * 60 * 1000);
+            _bestQueue.offer(new ReadyElement(readyTime));
+            _plainQueue.offer(new ReadyElement(readyTime));
+        }
+    }
+
+    @Benchmark
+    public ReadyElement bestPoll() {
+        ReadyElement result = _bestQueue.poll();
+        _bestQueue.offer(result);
+        return result;
+    }
+
+    @Benchmark
+    public ReadyElement plainPoll() {
+        ReadyElement result = _plainQueue.poll();
+        _plainQueue.offer(result);
+        return result;
+    }
+}
@@ -0,0 +1,64 @@
+package bixo.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import bixo.datum.ScoredUrlDatum;
+import bixo.datum.UrlStatus;
+
+/**
+ * Fill a DiskQueue and then drain it, with the in-memory limit either above
+ * the number of elements (no spill) or well below it.
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DiskQueueBenchmark {
+    private static final int NUM_ELEMENTS = 1000;
+
+    @Param({"2000", "100"})
+    public int _maxInMemory;
+
+    private List<ScoredUrlDatum> _elements;
+
+    @Setup
+    public void setup() {
+        _elements = new ArrayList<ScoredUrlDatum>(NUM_ELEMENTS);
+        for (int i = 0; i < NUM_ELEMENTS; i++) {
+            _elements.add(new ScoredUrlDatum("http://www.domain-" + (i % 10) + ".com/page-" + i + ".html", 0, 0,
+                            UrlStatus.UNFETCHED, null, 1.0, null));
+        }
+    }
+
+    @Benchmark
+    public int spillAndDrain() {
+        DiskQueue<ScoredUrlDatum> queue = new DiskQueue<ScoredUrlDatum>(_maxInMemory);
+        for (ScoredUrlDatum element : _elements) {
+            queue.offer(element);
+        }
+
+        int numDrained = 0;
+        while (queue.poll() != null) {
+            numDrained += 1;
+        }
+
+        return numDrained;
+    }
+}
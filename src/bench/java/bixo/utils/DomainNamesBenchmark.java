@@ -0,0 +1,62 @@
+package bixo.utils;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * PLD extraction versus the original implementation (kept in the test tree as
+ * ReferenceDomainNames), and host name extraction, over the hosts in the sample URLs.
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DomainNamesBenchmark {
+
+    private String[] _urls;
+    private String[] _hosts;
+    private int _index;
+
+    @Setup
+    public void setup() throws IOException {
+        List<String> urls = BenchmarkUrls.getUrls();
+        _urls = urls.toArray(new String[urls.size()]);
+
+        List<String> hosts = BenchmarkUrls.getHosts();
+        _hosts = hosts.toArray(new String[hosts.size()]);
+        _index = 0;
+    }
+
+    @Benchmark
+    public String getPLD() {
+        _index = (_index + 1) % _hosts.length;
+        return DomainNames.getPLD(_hosts[_index]);
+    }
+
+    @Benchmark
+    public String referenceGetPLD() {
+        _index = (_index + 1) % _hosts.length;
+        return ReferenceDomainNames.getPLD(_hosts[_index]);
+    }
+
+    @Benchmark
+    public String safeGetHost() {
+        _index = (_index + 1) % _urls.length;
+        return DomainNames.safeGetHost(_urls[_index]);
+    }
+}
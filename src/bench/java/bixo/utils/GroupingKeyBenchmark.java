@@ -0,0 +1,64 @@
+package bixo.utils;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Making and parsing grouping keys, using the hosts from the sample URLs.
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GroupingKeyBenchmark {
+
+    private String[] _hosts;
+    private String[] _keys;
+    private int _index;
+
+    @Setup
+    public void setup() throws IOException {
+        List<String> hosts = BenchmarkUrls.getHosts();
+        _hosts = hosts.toArray(new String[hosts.size()]);
+        _keys = new String[_hosts.length];
+        for (int i = 0; i < _hosts.length; i++) {
+            _keys[i] = GroupingKey.makeGroupingKey(i, _hosts[i], 30000L);
+        }
+
+        _index = 0;
+    }
+
+    @Benchmark
+    public String makeKey() {
+        int i = nextIndex();
+        return GroupingKey.makeGroupingKey(i, _hosts[i], 30000L);
+    }
+
+    @Benchmark
+    public void parseKey(Blackhole bh) {
+        String key = _keys[nextIndex()];
+        bh.consume(GroupingKey.getDomainFromKey(key));
+        bh.consume(GroupingKey.getCrawlDelayFromKey(key));
+    }
+
+    private int nextIndex() {
+        _index = (_index + 1) % _hosts.length;
+        return _index;
+    }
+}
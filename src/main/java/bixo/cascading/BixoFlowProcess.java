@@ -2,16 +2,17 @@ package bixo.cascading;
 
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.hadoop.mapred.Reporter;
-import org.apache.hadoop.mapred.Counters.Counter;
 import org.apache.log4j.Level;
 import org.apache.log4j.Logger;
 
+import bixo.hadoop.FetchCounters;
 import cascading.flow.FlowProcess;
 import cascading.flow.hadoop.HadoopFlowProcess;
 import cascading.tap.Tap;
@@ -22,6 +23,9 @@ import cascading.tuple.TupleEntryIterator;
 public class BixoFlowProcess extends FlowProcess {
     private static final Logger LOGGER = Logger.getLogger(BixoFlowProcess.class);
 
+    // How often we push counter changes to the base (e.g. Hadoop) process.
+    private static final long FLUSH_INTERVAL = 1000L;
+
     // TODO KKr - extend HadoopFlowProces, use Reporter.NULL for reporter, etc.
     // would
     // be safer than relying on never casting this to a HadoopFlowProcess when
@@ -83,10 +87,26 @@ public class BixoFlowProcess extends FlowProcess {
         }
     }
 
+    /**
+     * Local value of one counter, plus how much of it we've already reported
+     * to the base process.
+     */
+    private static class LocalCounter {
+        private StripedCounter _value = new StripedCounter();
+        private long _reported = 0;
+    }
+
     private FlowProcess _baseProcess;
     private boolean _isLocal;
     private List<IFlowReporter> _reporters;
-    private Map<Enum, AtomicInteger> _localCounters;
+    
+    // FetchCounters are updated for every URL by every fetch thread, so they get a
+    // pre-populated (and thus read-only) EnumMap. Anything else goes into a concurrent map.
+    private Map<FetchCounters, LocalCounter> _fetchCounters;
+    private ConcurrentHashMap<Enum, LocalCounter> _localCounters;
+    
+    private ReentrantLock _flushLock;
+    private volatile long _nextFlushTime;
 
     public BixoFlowProcess(FlowProcess baseProcess, IFlowReporter reporter) {
         init(baseProcess, reporter);
@@ -111,7 +131,15 @@ public class BixoFlowProcess extends FlowProcess {
                         || ((HadoopFlowProcess) baseProcess).getJobConf().get("mapred.job.tracker")
                                         .equalsIgnoreCase("local");
 
-        _localCounters = new HashMap<Enum, AtomicInteger>();
+        _fetchCounters = new EnumMap<FetchCounters, LocalCounter>(FetchCounters.class);
+        for (FetchCounters counter : FetchCounters.values()) {
+            _fetchCounters.put(counter, new LocalCounter());
+        }
+        
+        _localCounters = new ConcurrentHashMap<Enum, LocalCounter>();
+        _flushLock = new ReentrantLock();
+        _nextFlushTime = System.currentTimeMillis() + FLUSH_INTERVAL;
+        
         _reporters = new ArrayList<IFlowReporter>();
         addReporter(reporter);
     }
@@ -138,22 +166,20 @@ public class BixoFlowProcess extends FlowProcess {
 
     @Override
     public void increment(Enum counter, int amount) {
-        _baseProcess.increment(counter, amount);
+        getLocalCounter(counter)._value.add(amount);
 
-        // TODO KKr - decide if I really want to track stuff locally
-        if (true || _isLocal) {
-            synchronized (_localCounters) {
-                if (_localCounters.get(counter) == null) {
-                    _localCounters.put(counter, new AtomicInteger());
-                }
-            }
-
-            AtomicInteger curCount = _localCounters.get(counter);
-            int newValue = curCount.addAndGet(amount);
-
-            if (LOGGER.isTraceEnabled()) {
-                LOGGER.trace("Cascading counter: " + counter + (amount > 0 ? " + " : " - ")
-                                + Math.abs(amount) + " = " + newValue);
+        if (LOGGER.isTraceEnabled()) {
+            LOGGER.trace("Cascading counter: " + counter + (amount > 0 ? " + " : " - ")
+                            + Math.abs(amount) + " = " + getCounter(counter));
+        }
+        
+        // Rather than calling the base process on every increment, one thread
+        // periodically pushes the changes for all counters.
+        if ((System.currentTimeMillis() >= _nextFlushTime) && _flushLock.tryLock()) {
+            try {
+                flush();
+            } finally {
+                _flushLock.unlock();
             }
         }
     }
@@ -163,47 +189,85 @@ public class BixoFlowProcess extends FlowProcess {
     }
 
     public int getCounter(Enum counter) {
-        // TODO KKr - figure out if I want to use my local counter here
-        if (true || _isLocal) {
-            AtomicInteger count = _localCounters.get(counter);
-            if (count != null) {
-                return count.get();
-            } else {
-                return 0;
-            }
+        LocalCounter localCounter = (counter instanceof FetchCounters) ? _fetchCounters.get(counter) : _localCounters.get(counter);
+        if (localCounter != null) {
+            return (int)localCounter._value.sum();
         } else {
-            // TODO KKr - verify that this is the right way to get a counter
-            // value, especially the part of
-            // mapping from the Enum to the group/name pair needed for
-            // reporter.getCounter().
-            Reporter reporter = ((HadoopFlowProcess) _baseProcess).getReporter();
-
-            // TODO KKr - on EC2, it looks like counter.getDeclaringClass()
-            // returns null, as I get a NPE here
-            // and I've verified that reporter is not null. But looking at the
-            // Enum source, I don't see how
-            // that could be unless counter.getClass().getSuperclass() returns
-            // null.
-            Counter hadoopCounter = null; // TODO KKr - getCounter() doesn't
-                                          // exist with Bixo 0.18.3
-                                          // reporter.getCounter(counter.getDeclaringClass().getName(),
-                                          // counter.toString());
-            if (hadoopCounter != null) {
-                return (int)hadoopCounter.getCounter();
-            } else {
-                return 0;
+            return 0;
+        }
+    }
+    
+    /**
+     * Push all counter changes since the last flush to the base process (e.g.
+     * Hadoop counters). This happens automatically as counters are updated,
+     * but should be called once at the end so the final values are reported.
+     */
+    public void flushCounters() {
+        _flushLock.lock();
+        try {
+            flush();
+        } finally {
+            _flushLock.unlock();
+        }
+    }
+    
+    // Must be called while holding _flushLock.
+    private void flush() {
+        _nextFlushTime = System.currentTimeMillis() + FLUSH_INTERVAL;
+        
+        for (Map.Entry<FetchCounters, LocalCounter> entry : _fetchCounters.entrySet()) {
+            flush(entry.getKey(), entry.getValue());
+        }
+        
+        for (Map.Entry<Enum, LocalCounter> entry : _localCounters.entrySet()) {
+            flush(entry.getKey(), entry.getValue());
+        }
+    }
+    
+    private void flush(Enum counter, LocalCounter localCounter) {
+        long curValue = localCounter._value.sum();
+        long delta = curValue - localCounter._reported;
+        while (delta != 0) {
+            int amount = (int)Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, delta));
+            _baseProcess.increment(counter, amount);
+            delta -= amount;
+        }
+        
+        localCounter._reported = curValue;
+    }
+    
+    private LocalCounter getLocalCounter(Enum counter) {
+        if (counter instanceof FetchCounters) {
+            return _fetchCounters.get(counter);
+        }
+        
+        LocalCounter result = _localCounters.get(counter);
+        if (result == null) {
+            LocalCounter newCounter = new LocalCounter();
+            result = _localCounters.putIfAbsent(counter, newCounter);
+            if (result == null) {
+                result = newCounter;
             }
         }
+        
+        return result;
     }
 
     /**
      * If we're running in local mode, log current counter values.
      */
     public void dumpCounters() {
+        flushCounters();
+        
         if (_isLocal) {
+            for (Enum theEnum : _fetchCounters.keySet()) {
+                if (getCounter(theEnum) != 0) {
+                    LOGGER.info(String.format("Cascading counter: %s = %d", theEnum, getCounter(theEnum)));
+                }
+            }
+            
             for (Enum theEnum : _localCounters.keySet()) {
-                LOGGER.info(String.format("Cascading counter: %s = %d", theEnum, _localCounters
-                                .get(theEnum).get()));
+                LOGGER.info(String.format("Cascading counter: %s = %d", theEnum, getCounter(theEnum)));
             }
         }
 
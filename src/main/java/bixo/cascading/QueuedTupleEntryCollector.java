@@ -0,0 +1,255 @@
+package bixo.cascading;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Logger;
+
+import cascading.tuple.Tuple;
+import cascading.tuple.TupleEntryCollector;
+
+/**
+ * A TupleEntryCollector that many threads can add to, which hands tuples off
+ * via a bounded queue to a single writer thread that owns the real collector.
+ *
+ * This keeps the (potentially slow) serialization and spilling done by the
+ * real collector out of the fetch threads, and means they only contend on the
+ * queue, not on a lock that's held while writing.
+ *
+ * The finish() method must be called before the real collector is closed, so
+ * that all queued tuples get written.
+ *
+ * A tuple can be added with a callback that's run once the tuple has been
+ * written, e.g. to release memory that's being reserved for queued content.
+ *
+ */
+public class QueuedTupleEntryCollector extends TupleEntryCollector {
+    private static final Logger LOGGER = Logger.getLogger(QueuedTupleEntryCollector.class);
+
+    public static final int DEFAULT_CAPACITY = 1000;
+
+    // Max number of tuples to take off the queue at once.
+    private static final int MAX_BATCH_SIZE = 100;
+
+    // How often the writer thread checks if it's been told to finish.
+    private static final long POLL_TIMEOUT = 100;
+
+    private static class QueuedTuple {
+        private Tuple _tuple;
+        private Runnable _onWritten;
+
+        public QueuedTuple(Tuple tuple, Runnable onWritten) {
+            _tuple = tuple;
+            _onWritten = onWritten;
+        }
+
+        public Tuple getTuple() {
+            return _tuple;
+        }
+
+        public void written() {
+            if (_onWritten != null) {
+                try {
+                    _onWritten.run();
+                } catch (Throwable t) {
+                    LOGGER.error("Exception in collector write callback", t);
+                }
+            }
+        }
+    }
+
+    private class WriterRunnable implements Runnable {
+
+        @Override
+        public void run() {
+            List<QueuedTuple> batch = new ArrayList<QueuedTuple>(MAX_BATCH_SIZE);
+            int batchPos = 0;
+
+            try {
+                while (true) {
+                    QueuedTuple tuple = _queue.poll(POLL_TIMEOUT, TimeUnit.MILLISECONDS);
+                    if (tuple == null) {
+                        if (_finishing) {
+                            // Nothing left, and nobody should be adding more.
+                            break;
+                        } else {
+                            continue;
+                        }
+                    }
+
+                    batch.add(tuple);
+                    _queue.drainTo(batch, MAX_BATCH_SIZE - 1);
+
+                    for (batchPos = 0; batchPos < batch.size(); batchPos++) {
+                        QueuedTuple curTuple = batch.get(batchPos);
+                        _collector.add(curTuple.getTuple());
+                        curTuple.written();
+                    }
+
+                    _numWritten += batch.size();
+                    batch.clear();
+                    batchPos = 0;
+                }
+            } catch (InterruptedException e) {
+                LOGGER.warn("Collector writer thread interrupted, with " + _queue.size() + " tuples not written");
+            } catch (Throwable t) {
+                LOGGER.error("Exception writing to collector", t);
+                _writerException = t;
+
+                // Unblock anybody waiting to add to the queue. The tuples won't ever be
+                // written, but callbacks still need to run so reserved resources get released.
+                for (int i = batchPos; i < batch.size(); i++) {
+                    batch.get(i).written();
+                }
+
+                batch.clear();
+                _queue.drainTo(batch);
+                for (QueuedTuple curTuple : batch) {
+                    curTuple.written();
+                }
+            }
+        }
+    }
+
+    private TupleEntryCollector _collector;
+    private BlockingQueue<QueuedTuple> _queue;
+    private Thread _writerThread;
+
+    private volatile boolean _finishing;
+    private volatile Throwable _writerException;
+    private volatile long _numWritten;
+
+    public QueuedTupleEntryCollector(TupleEntryCollector collector) {
+        this(collector, DEFAULT_CAPACITY);
+    }
+
+    public QueuedTupleEntryCollector(TupleEntryCollector collector, int capacity) {
+        _collector = collector;
+        _queue = new ArrayBlockingQueue<QueuedTuple>(capacity);
+        _finishing = false;
+        _writerException = null;
+        _numWritten = 0;
+
+        _writerThread = new Thread(new WriterRunnable());
+        _writerThread.setName("Collector writer");
+        _writerThread.setDaemon(true);
+        _writerThread.start();
+    }
+
+    /**
+     * Return the collector that tuples are written to.
+     *
+     * @return wrapped collector
+     */
+    public TupleEntryCollector getCollector() {
+        return _collector;
+    }
+
+    public long getNumWritten() {
+        return _numWritten;
+    }
+
+    /**
+     * Add <tuple> to <collector>, which might be shared by many threads.
+     * Regular collectors aren't thread-safe, so we have to lock them. A
+     * QueuedTupleEntryCollector is, and locking it would serialize all of the
+     * producers (including while they're blocked on a full queue), so we don't.
+     *
+     * Callers should build the tuple before calling this, so that isn't done
+     * while holding the lock either.
+     *
+     * @param collector - collector to add to
+     * @param tuple - tuple to add
+     */
+    public static void safeAdd(TupleEntryCollector collector, Tuple tuple) {
+        safeAdd(collector, tuple, null);
+    }
+
+    /**
+     * Like safeAdd(collector, tuple), but <onWritten> is run once the tuple has
+     * actually been written to the real collector (which for a regular collector
+     * is before this returns).
+     *
+     * @param collector - collector to add to
+     * @param tuple - tuple to add
+     * @param onWritten - callback to run once the tuple has been written, or null
+     */
+    public static void safeAdd(TupleEntryCollector collector, Tuple tuple, Runnable onWritten) {
+        if (collector instanceof QueuedTupleEntryCollector) {
+            ((QueuedTupleEntryCollector)collector).add(tuple, onWritten);
+        } else {
+            synchronized (collector) {
+                collector.add(tuple);
+            }
+
+            if (onWritten != null) {
+                onWritten.run();
+            }
+        }
+    }
+
+    /**
+     * Queue <tuple> to be written, and then run <onWritten> (if not null)
+     * from the writer thread once that's been done.
+     *
+     * @param tuple - tuple to add
+     * @param onWritten - callback to run once the tuple has been written, or null
+     */
+    public void add(Tuple tuple, Runnable onWritten) {
+        enqueue(new QueuedTuple(tuple, onWritten));
+    }
+
+    @Override
+    protected void collect(Tuple tuple) {
+        enqueue(new QueuedTuple(tuple, null));
+    }
+
+    private void enqueue(QueuedTuple tuple) {
+        if (_finishing) {
+            throw new IllegalStateException("Can't add tuples after finish() has been called");
+        }
+
+        checkWriter();
+
+        // If we get interrupted (e.g. the thread pool is being shut down) we still
+        // don't want to lose the tuple, so keep trying and then reset the interrupt.
+        boolean interrupted = false;
+        while (true) {
+            try {
+                if (_queue.offer(tuple, POLL_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                    break;
+                }
+
+                checkWriter();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Wait for all queued tuples to be written, and then stop the writer thread.
+     *
+     * @throws InterruptedException
+     */
+    public void finish() throws InterruptedException {
+        _finishing = true;
+        _writerThread.join();
+        checkWriter();
+    }
+
+    private void checkWriter() {
+        if (_writerException != null) {
+            throw new RuntimeException("Collector writer thread failed", _writerException);
+        } else if (!_writerThread.isAlive() && !_finishing) {
+            throw new IllegalStateException("Collector writer thread has terminated");
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package bixo.cascading;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A counter that many threads can update without contending on a single
+ * memory location. Each thread adds to one of several stripes (picked by
+ * thread id), and reads sum up all of the stripes.
+ *
+ * Reads are more expensive than writes, and aren't an atomic snapshot if
+ * other threads are updating the counter at the same time.
+ *
+ */
+public class StripedCounter {
+
+    // Space stripes out so that each one is on its own (64 byte) cache line.
+    private static final int PADDING = 8;
+
+    private static final int MAX_STRIPES = 64;
+
+    private final AtomicLongArray _cells;
+    private final int _mask;
+
+    public StripedCounter() {
+        int numStripes = 1;
+        int targetStripes = Math.min(MAX_STRIPES, 2 * Runtime.getRuntime().availableProcessors());
+        while (numStripes < targetStripes) {
+            numStripes *= 2;
+        }
+
+        _mask = numStripes - 1;
+        _cells = new AtomicLongArray(numStripes * PADDING);
+    }
+
+    public void add(long amount) {
+        int stripe = (int)Thread.currentThread().getId() & _mask;
+        _cells.addAndGet(stripe * PADDING, amount);
+    }
+
+    public long sum() {
+        long result = 0;
+        for (int i = 0; i <= _mask; i++) {
+            result += _cells.get(i * PADDING);
+        }
+
+        return result;
+    }
+}
@@ -0,0 +1,146 @@
+package bixo.config;
+
+import java.io.Serializable;
+import java.security.InvalidParameterException;
+
+/**
+ * Policy used by FetcherQueue to scale the delay between fetch requests, based
+ * on the response times and error rate we've seen for that host.
+ *
+ * A host that responds faster than the target response time (and isn't returning
+ * errors) gets a shorter delay, down to the min crawl delay. A host that's slow
+ * or erroring gets a longer delay, up to the max backoff factor.
+ *
+ */
+@SuppressWarnings("serial")
+public class AdaptiveDelayPolicy implements Serializable {
+    public static final long DEFAULT_MIN_CRAWL_DELAY = 1 * 1000L;
+    public static final long DEFAULT_TARGET_RESPONSE_TIME = 1 * 1000L;
+    public static final double DEFAULT_MIN_SPEEDUP_FACTOR = 0.25;
+    public static final double DEFAULT_MAX_BACKOFF_FACTOR = 4.0;
+    public static final double DEFAULT_SMOOTHING_WEIGHT = 0.3;
+
+    private long _minCrawlDelay;
+    private long _targetResponseTime;
+    private double _minSpeedupFactor;
+    private double _maxBackoffFactor;
+    private double _smoothingWeight;
+
+    public AdaptiveDelayPolicy() {
+        this(DEFAULT_MIN_CRAWL_DELAY, DEFAULT_TARGET_RESPONSE_TIME);
+    }
+
+    public AdaptiveDelayPolicy(long minCrawlDelay, long targetResponseTime) {
+        this(minCrawlDelay, targetResponseTime, DEFAULT_MIN_SPEEDUP_FACTOR, DEFAULT_MAX_BACKOFF_FACTOR, DEFAULT_SMOOTHING_WEIGHT);
+    }
+
+    public AdaptiveDelayPolicy(long minCrawlDelay, long targetResponseTime, double minSpeedupFactor, double maxBackoffFactor, double smoothingWeight) {
+        if (minCrawlDelay < 0) {
+            throw new InvalidParameterException("minCrawlDelay must be >= 0: " + minCrawlDelay);
+        }
+
+        if (targetResponseTime <= 0) {
+            throw new InvalidParameterException("targetResponseTime must be > 0: " + targetResponseTime);
+        }
+
+        if ((minSpeedupFactor <= 0.0) || (minSpeedupFactor > 1.0)) {
+            throw new InvalidParameterException("minSpeedupFactor must be > 0 and <= 1: " + minSpeedupFactor);
+        }
+
+        if (maxBackoffFactor < 1.0) {
+            throw new InvalidParameterException("maxBackoffFactor must be >= 1: " + maxBackoffFactor);
+        }
+
+        if ((smoothingWeight <= 0.0) || (smoothingWeight > 1.0)) {
+            throw new InvalidParameterException("smoothingWeight must be > 0 and <= 1: " + smoothingWeight);
+        }
+
+        _minCrawlDelay = minCrawlDelay;
+        _targetResponseTime = targetResponseTime;
+        _minSpeedupFactor = minSpeedupFactor;
+        _maxBackoffFactor = maxBackoffFactor;
+        _smoothingWeight = smoothingWeight;
+    }
+
+    public long getMinCrawlDelay() {
+        return _minCrawlDelay;
+    }
+
+    public long getTargetResponseTime() {
+        return _targetResponseTime;
+    }
+
+    public double getMinSpeedupFactor() {
+        return _minSpeedupFactor;
+    }
+
+    public double getMaxBackoffFactor() {
+        return _maxBackoffFactor;
+    }
+
+    public double getSmoothingWeight() {
+        return _smoothingWeight;
+    }
+
+    /**
+     * Update an exponentially weighted moving average with the average of
+     * <numSamples> new samples. This is (close to) the same as updating the
+     * average once per sample.
+     *
+     * @param curAverage - current average, or a negative value if we have no samples yet
+     * @param sampleAverage - average of the new samples
+     * @param numSamples - number of new samples
+     * @return updated average
+     */
+    public double updateAverage(double curAverage, double sampleAverage, int numSamples) {
+        if (numSamples <= 0) {
+            return curAverage;
+        } else if (curAverage < 0.0) {
+            return sampleAverage;
+        }
+
+        double weight = 1.0 - Math.pow(1.0 - _smoothingWeight, numSamples);
+        return curAverage + (weight * (sampleAverage - curAverage));
+    }
+
+    /**
+     * Calculate how much to scale the crawl delay by, given the host's average
+     * response time and error rate.
+     *
+     * @param avgResponseTime - average response time in milliseconds
+     * @param errorRate - fraction (0...1) of recent requests that failed
+     * @return factor to multiply crawl delay by
+     */
+    public double getDelayFactor(double avgResponseTime, double errorRate) {
+        double latencyFactor = avgResponseTime / _targetResponseTime;
+        double errorFactor = 1.0 + (errorRate * (_maxBackoffFactor - 1.0));
+        return Math.max(_minSpeedupFactor, Math.min(_maxBackoffFactor, latencyFactor * errorFactor));
+    }
+
+    /**
+     * Scale the interval until the next fetch request for a host.
+     *
+     * We never shorten the interval to less than <numUrls> times the floor delay,
+     * where the floor is the larger of our min crawl delay and the host's own
+     * (robots.txt) crawl delay. But if the interval is already shorter than that,
+     * we don't lengthen it unless the host needs to be backed off.
+     *
+     * @param interval - interval in milliseconds, from the FetcherPolicy
+     * @param numUrls - number of URLs being fetched in this request
+     * @param avgResponseTime - average response time in milliseconds
+     * @param errorRate - fraction of recent requests that failed
+     * @param hostCrawlDelay - crawl delay required by the host, or 0
+     * @return adjusted interval in milliseconds
+     */
+    public long adjustInterval(long interval, int numUrls, double avgResponseTime, double errorRate, long hostCrawlDelay) {
+        double factor = getDelayFactor(avgResponseTime, errorRate);
+        long result = (long)(interval * factor);
+
+        if (factor < 1.0) {
+            long floor = Math.max(_minCrawlDelay, hostCrawlDelay) * numUrls;
+            result = Math.max(result, Math.min(interval, floor));
+        }
+
+        return result;
+    }
+}
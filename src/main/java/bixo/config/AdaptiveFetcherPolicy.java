@@ -19,7 +19,9 @@ public class AdaptiveFetcherPolicy extends FetcherPolicy {
     
     @Override
     public FetcherPolicy makeNewPolicy(long crawlDelay) {
-        return new AdaptiveFetcherPolicy(getCrawlEndTime(), crawlDelay);
+        FetcherPolicy result = new AdaptiveFetcherPolicy(getCrawlEndTime(), crawlDelay);
+        result.setClock(getClock());
+        return result;
     }
     
     @Override
@@ -32,14 +34,15 @@ public class AdaptiveFetcherPolicy extends FetcherPolicy {
         // we want to fetch maxUrls in the remaining time, but the min delay might constrain us.
         
         if ((getCrawlDelay() == 0) || (maxUrls == 0)) {
-            return new FetchRequest(maxUrls, System.currentTimeMillis());
+            return new FetchRequest(maxUrls, getClock().currentTimeMillis());
         }
 
         // Even if we're at the end of the crawl, we still want to do our calculation using our
         // default fetch interval, to avoid not crawling anything if we run over. We rely on
         // an external mechanism to do any pruning of remaining URLs, so that they get properly
         // aborted.
-        long fetchInterval = Math.max(DEFAULT_FETCH_INTERVAL, getCrawlEndTime() - System.currentTimeMillis());
+        long now = getClock().currentTimeMillis();
+        long fetchInterval = Math.max(DEFAULT_FETCH_INTERVAL, getCrawlEndTime() - now);
         
         // Crawl delay must be between _minCrawlDelay and default crawl delay.
         long crawlDelay = Math.max(getCrawlDelay(), Math.min(DEFAULT_CRAWL_DELAY, fetchInterval / maxUrls));
@@ -47,7 +50,7 @@ public class AdaptiveFetcherPolicy extends FetcherPolicy {
         // Figure out how many URLs we can get in 5 minutes,or the remaining time (whatever is less).
         int numUrls = Math.min(1 + (int)(Math.min(DEFAULT_FETCH_INTERVAL, fetchInterval) / crawlDelay), maxUrls);
         
-        long nextFetchTime = System.currentTimeMillis() + ((numUrls - 1) * crawlDelay);
+        long nextFetchTime = now + ((numUrls - 1) * crawlDelay);
         return new FetchRequest(numUrls, nextFetchTime);
     }
 
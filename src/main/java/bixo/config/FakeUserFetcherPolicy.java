@@ -20,7 +20,9 @@ public class FakeUserFetcherPolicy extends FetcherPolicy {
       
     @Override
     public FetcherPolicy makeNewPolicy(long crawlDelay) {
-        return new FakeUserFetcherPolicy(crawlDelay);
+        FetcherPolicy result = new FakeUserFetcherPolicy(crawlDelay);
+        result.setClock(getClock());
+        return result;
     }
     
     @Override
@@ -28,7 +30,7 @@ public class FakeUserFetcherPolicy extends FetcherPolicy {
         // Set up the next request to have random variance.
         double baseDelay = _crawlDelay;
         double delayVariance = (Math.random() * baseDelay) - (baseDelay/2.0);
-        long nextRequestTime = System.currentTimeMillis() + Math.round(baseDelay + delayVariance);
+        long nextRequestTime = getClock().currentTimeMillis() + Math.round(baseDelay + delayVariance);
         FetchRequest result = new FetchRequest(Math.min(maxUrls, 1), nextRequestTime);
         return result;
     }
@@ -27,6 +27,8 @@ import java.security.InvalidParameterException;
 import java.util.Set;
 
 import bixo.fetcher.FetchRequest;
+import bixo.utils.IClock;
+import bixo.utils.SystemClock;
 
 /**
  * Definition of policy for fetches.
@@ -62,6 +64,7 @@ public class FetcherPolicy implements Serializable {
     private int _maxConnectionsPerHost; // 
     private String _acceptLanguage;    // What to pass for the Accept-Language request header
     private Set<String> _validMimeTypes;    // Set of mime-types that we'll accept, or null
+    private transient IClock _clock;        // Source of current time, or null for system time
     
     public FetcherPolicy() {
         this(DEFAULT_MIN_RESPONSE_RATE, DEFAULT_MAX_CONTENT_SIZE, DEFAULT_CRAWL_END_TIME, DEFAULT_CRAWL_DELAY, DEFAULT_MAX_REDIRECTS);
@@ -102,6 +105,7 @@ public class FetcherPolicy implements Serializable {
         result.setAcceptLanguage(getAcceptLanguage());
         result.setValidMimeTypes(getValidMimeTypes());
         result.setMaxConnectionsPerHost(getMaxConnectionsPerHost());
+        result.setClock(getClock());
         
         return result;
     }
@@ -140,7 +144,7 @@ public class FetcherPolicy implements Serializable {
         if (_crawlDelay == 0) {
             return Integer.MAX_VALUE;
         } else {
-            long crawlDuration = getCrawlEndTime() - System.currentTimeMillis();
+            long crawlDuration = getCrawlEndTime() - getClock().currentTimeMillis();
             
             if (crawlDuration <= 0) {
                 return 0;
@@ -219,6 +223,30 @@ public class FetcherPolicy implements Serializable {
         _validMimeTypes = validMimeTypes;
     }
     
+    /**
+     * Return the clock used for all scheduling decisions made with this policy,
+     * by the policy itself and by the FetcherQueues that use it.
+     * 
+     * The clock isn't serialized, so a policy sent to a remote task always uses
+     * the system clock.
+     * 
+     * @return clock
+     */
+    public final IClock getClock() {
+        return _clock == null ? SystemClock.INSTANCE : _clock;
+    }
+    
+    /**
+     * Set the clock used for scheduling, e.g. a SimulatedClock to replay a crawl
+     * schedule without waiting. This needs to be set before any queues are created
+     * with the policy, as policies created by makeNewPolicy() copy the clock.
+     * 
+     * @param clock - clock to use, or null for the system clock
+     */
+    public void setClock(IClock clock) {
+        _clock = clock;
+    }
+    
     public FetchRequest getFetchRequest(int maxUrls) {
         int numUrls;
         
@@ -228,7 +256,7 @@ public class FetcherPolicy implements Serializable {
             numUrls = maxUrls;
         }
         
-        long nextFetchTime = System.currentTimeMillis() + (numUrls * _crawlDelay);
+        long nextFetchTime = getClock().currentTimeMillis() + (numUrls * _crawlDelay);
         return new FetchRequest(numUrls, nextFetchTime);
     }
     
@@ -0,0 +1,53 @@
+package bixo.config;
+
+import java.io.Serializable;
+import java.security.InvalidParameterException;
+
+/**
+ * Policy used by SimpleParser to decide how much work goes into parsing
+ * a single document.
+ *
+ */
+@SuppressWarnings("serial")
+public class ParserPolicy implements Serializable {
+
+    // Max number of characters of text we feed to the language profiler.
+    public static final int DEFAULT_MAX_LANGUAGE_SAMPLE = 16 * 1024;
+
+    private int _maxLanguageSample;
+
+    public ParserPolicy() {
+        this(DEFAULT_MAX_LANGUAGE_SAMPLE);
+    }
+
+    public ParserPolicy(int maxLanguageSample) {
+        if (maxLanguageSample < 0) {
+            throw new InvalidParameterException("maxLanguageSample must be >= 0: " + maxLanguageSample);
+        }
+
+        _maxLanguageSample = maxLanguageSample;
+    }
+
+    /**
+     * Return the max number of characters of extracted text that will be used
+     * to guess the language of a document, when the document itself doesn't
+     * declare it. A value of 0 disables language profiling.
+     *
+     * @return number of characters
+     */
+    public int getMaxLanguageSample() {
+        return _maxLanguageSample;
+    }
+
+    public void setMaxLanguageSample(int maxLanguageSample) {
+        _maxLanguageSample = maxLanguageSample;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder();
+        result.append("Max language sample: " + getMaxLanguageSample());
+
+        return result.toString();
+    }
+}
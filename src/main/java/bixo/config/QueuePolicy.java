@@ -11,9 +11,15 @@ import bixo.fetcher.FetcherQueueMgr;
  */
 @SuppressWarnings("serial")
 public class QueuePolicy implements Serializable {
+    // Use a fraction of the fetching task's max heap size as the byte limit.
+    public static final long HEAP_BASED_MAX_BYTES = -1;
+    
+    public static final double DEFAULT_HEAP_FRACTION = 0.25;
 
     private int _maxUrlsInMemory;
     private int _maxUrlsInMemoryPerQueue;
+    private AdaptiveDelayPolicy _adaptiveDelayPolicy;
+    private long _maxBytesInMemory = HEAP_BASED_MAX_BYTES;
     
     /**
      * Default constructor useful for testing when we don't care about exact values.
@@ -54,6 +60,41 @@ public class QueuePolicy implements Serializable {
         return _maxUrlsInMemoryPerQueue;
     }
     
+    /**
+     * Set the policy used to adjust each queue's crawl delay from observed
+     * response times and errors, or null (the default) to use the FetcherPolicy
+     * delay as-is.
+     * 
+     * @param adaptiveDelayPolicy
+     */
+    public void setAdaptiveDelayPolicy(AdaptiveDelayPolicy adaptiveDelayPolicy) {
+        _adaptiveDelayPolicy = adaptiveDelayPolicy;
+    }
+    
+    public AdaptiveDelayPolicy getAdaptiveDelayPolicy() {
+        return _adaptiveDelayPolicy;
+    }
+    
+    /**
+     * Set the max (estimated) bytes of queued URLs and fetched content that
+     * FetcherQueueMgr will hold before it stops accepting new queues. The
+     * default is HEAP_BASED_MAX_BYTES, which means use DEFAULT_HEAP_FRACTION
+     * of the max heap size of the task doing the fetching.
+     * 
+     * @param maxBytesInMemory
+     */
+    public void setMaxBytesInMemory(long maxBytesInMemory) {
+        if ((maxBytesInMemory <= 0) && (maxBytesInMemory != HEAP_BASED_MAX_BYTES)) {
+            throw new InvalidParameterException("maxBytesInMemory must be > 0");
+        }
+        
+        _maxBytesInMemory = maxBytesInMemory;
+    }
+    
+    public long getMaxBytesInMemory() {
+        return _maxBytesInMemory;
+    }
+    
     public int getMaxQueues() {
         return getMaxUrlsInMemory() / getMaxUrlsInMemoryPerQueue();
     }
@@ -11,18 +11,28 @@ import cascading.tuple.TupleEntry;
 
 @SuppressWarnings("serial")
 public class ParsedDatum extends BaseDatum {
+    private static final String[] NO_OUTLINKS = new String[0];
+    
     private String _url;
     private String _parsedText;
     private String _language;
     private String _title;
-    private Outlink[] _outLinks;
     private Map<String, String> _parsedMeta;
     
+    // Outlinks are kept as parallel arrays, versus an array of Outlink objects, since
+    // that's what the parser generates and the tuple holds, and most consumers just
+    // need the URLs.
+    private String[] _outlinkUrls;
+    private String[] _outlinkAnchors;
+    
     /**
      * No argument constructor for use with FutureTask
      */
     public ParsedDatum() {
         super(BaseDatum.EMPTY_METADATA_MAP);
+        
+        _outlinkUrls = NO_OUTLINKS;
+        _outlinkAnchors = NO_OUTLINKS;
     }
     
     @SuppressWarnings("unchecked")
@@ -33,7 +43,26 @@ public class ParsedDatum extends BaseDatum {
         _parsedText = parsedText;
         _language = language;
         _title = title;
-        _outLinks = outLinks;
+        setOutLinks(outLinks);
+        _parsedMeta = parsedMeta;
+    }
+
+    /**
+     * Create a ParsedDatum with outlinks as parallel arrays of URLs and anchor
+     * text, which avoids creating an Outlink object per link.
+     * 
+     * @param outlinkUrls - URLs of the outlinks
+     * @param outlinkAnchors - anchor text for each URL (null entries are treated as empty)
+     */
+    @SuppressWarnings("unchecked")
+    public ParsedDatum(String url, String parsedText, String language, String title, String[] outlinkUrls, String[] outlinkAnchors, Map<String, String> parsedMeta, Map<String, Comparable> metaData) {
+        super(metaData);
+        
+        _url = url;
+        _parsedText = parsedText;
+        _language = language;
+        _title = title;
+        setOutlinks(outlinkUrls, outlinkAnchors);
         _parsedMeta = parsedMeta;
     }
 
@@ -69,12 +98,61 @@ public class ParsedDatum extends BaseDatum {
         _title = title;
     }
 
+    /**
+     * Return the outlinks as Outlink objects. This creates a new array (and
+     * objects) on every call, so use getOutlinkUrls() and getOutlinkAnchors()
+     * when processing many datums.
+     * 
+     * @return array of outlinks
+     */
     public Outlink[] getOutLinks() {
-        return _outLinks;
+        Outlink[] result = new Outlink[_outlinkUrls.length];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = new Outlink(_outlinkUrls[i], _outlinkAnchors[i]);
+        }
+        
+        return result;
     }
 
     public void setOutLinks(Outlink[] outLinks) {
-        _outLinks = outLinks;
+        if (outLinks == null) {
+            outLinks = new Outlink[0];
+        }
+        
+        _outlinkUrls = new String[outLinks.length];
+        _outlinkAnchors = new String[outLinks.length];
+        for (int i = 0; i < outLinks.length; i++) {
+            _outlinkUrls[i] = outLinks[i].getToUrl();
+            _outlinkAnchors[i] = outLinks[i].getAnchor();
+        }
+    }
+    
+    public int getNumOutlinks() {
+        return _outlinkUrls.length;
+    }
+    
+    public String[] getOutlinkUrls() {
+        return _outlinkUrls;
+    }
+    
+    public String[] getOutlinkAnchors() {
+        return _outlinkAnchors;
+    }
+    
+    public void setOutlinks(String[] outlinkUrls, String[] outlinkAnchors) {
+        if (outlinkUrls.length != outlinkAnchors.length) {
+            throw new IllegalArgumentException("Number of outlink URLs and anchors must be the same");
+        }
+        
+        // Match Outlink, which never has a null anchor. We copy the anchors versus
+        // modifying the caller's array.
+        String[] anchors = new String[outlinkAnchors.length];
+        for (int i = 0; i < outlinkAnchors.length; i++) {
+            anchors[i] = (outlinkAnchors[i] == null) ? "" : outlinkAnchors[i];
+        }
+        
+        _outlinkUrls = outlinkUrls;
+        _outlinkAnchors = anchors;
     }
 
     public Map<String, String> getParsedMeta() {
@@ -107,7 +185,7 @@ public class ParsedDatum extends BaseDatum {
         _parsedText = entry.getString(PARSED_TEXT_FIELD);
         _language = entry.getString(LANGUAGE_FIELD);
         _title = entry.getString(TITLE_FIELD);
-        _outLinks = convertTupleToOutlinks((Tuple)entry.get(OUTLINKS_FIELD));
+        setOutlinksFromTuple((Tuple)entry.get(OUTLINKS_FIELD));
         _parsedMeta = convertTupleToMap((Tuple)entry.get(PARSED_META_FIELD));
     }
 
@@ -119,27 +197,32 @@ public class ParsedDatum extends BaseDatum {
     @SuppressWarnings("unchecked")
     @Override
     protected Comparable[] getStandardValues() {
-        return new Comparable[] { _url, _parsedText, _language, _title, convertOutlinksToTuple(_outLinks), convertMapToTuple(_parsedMeta) };
+        return new Comparable[] { _url, _parsedText, _language, _title, convertOutlinksToTuple(), convertMapToTuple(_parsedMeta) };
     }
 
-    private Tuple convertOutlinksToTuple(Outlink[] outLinks) {
-        Tuple tuple = new Tuple();
-        for (Outlink outlink : outLinks) {
-            tuple.add(outlink.getToUrl());
-            tuple.add(outlink.getAnchor());
+    // Outlinks are stored as a flat tuple of alternating URL and anchor text.
+    @SuppressWarnings("unchecked")
+    private Tuple convertOutlinksToTuple() {
+        Comparable[] values = new Comparable[_outlinkUrls.length * 2];
+        for (int i = 0; i < _outlinkUrls.length; i++) {
+            values[i * 2] = _outlinkUrls[i];
+            values[(i * 2) + 1] = _outlinkAnchors[i];
         }
-        return tuple;
+        
+        return new Tuple(values);
     }
 
-    private Outlink[] convertTupleToOutlinks(Tuple tuple) {
+    private void setOutlinksFromTuple(Tuple tuple) {
         int numOutlinks = tuple.size() / 2;
-        Outlink[] result = new Outlink[numOutlinks];
+        _outlinkUrls = new String[numOutlinks];
+        _outlinkAnchors = new String[numOutlinks];
         
         for (int i = 0; i < numOutlinks; i++) {
             int tupleOffset = i * 2;
-            result[i] = new Outlink(tuple.getString(tupleOffset), tuple.getString(tupleOffset + 1));
+            _outlinkUrls[i] = tuple.getString(tupleOffset);
+            String anchor = tuple.getString(tupleOffset + 1);
+            _outlinkAnchors[i] = (anchor == null) ? "" : anchor;
         }
-        return result;
     }
     
     private Tuple convertMapToTuple(Map<String, String> map) {
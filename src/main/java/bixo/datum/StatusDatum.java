@@ -100,6 +100,14 @@ public class StatusDatum extends BaseDatum {
         
     public static final Fields FIELDS = new Fields(URL_FIELD, STATUS_FIELD, HEADERS_FIELD, EXCEPTION_FIELD, STATUS_TIME_FIELD);
     
+    // Compact form of the status (no headers or exception, and the status as an ordinal), for
+    // output that's only used for reporting. The url, status and time are always the first three
+    // values in the tuple.
+    public static final String STATUS_ORDINAL_FIELD = fieldName(StatusDatum.class, "statusOrdinal");
+    public static final Fields COMPACT_FIELDS = new Fields(URL_FIELD, STATUS_ORDINAL_FIELD, STATUS_TIME_FIELD);
+    
+    private static final UrlStatus[] STATUS_VALUES = UrlStatus.values();
+    
     public StatusDatum(Tuple tuple, Fields metaDataFields) {
         super(tuple, metaDataFields);
         initFromTupleEntry(new TupleEntry(getStandardFields(), tuple));
@@ -118,6 +126,22 @@ public class StatusDatum extends BaseDatum {
         _statusTime = entry.getLong(STATUS_TIME_FIELD);
     }
     
+    /**
+     * @return tuple with values for COMPACT_FIELDS plus the meta-data fields.
+     */
+    public Tuple toCompactTuple() {
+        Tuple result = new Tuple(_url, _status.ordinal(), _statusTime);
+        for (Comparable value : getMetaDataValues()) {
+            result.add(value);
+        }
+        
+        return result;
+    }
+    
+    public static UrlStatus getStatusFromCompactTuple(Tuple tuple) {
+        return STATUS_VALUES[tuple.getInteger(1)];
+    }
+    
     @Override
     public Fields getStandardFields() {
         return FIELDS;
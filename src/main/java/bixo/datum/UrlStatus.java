@@ -34,6 +34,8 @@ public enum UrlStatus {
     ERROR_INVALID_URL,
     ERROR_IOEXCEPTION,
     
-    FETCHED;    // Successfully fetched
+    FETCHED,    // Successfully fetched
+    
+    DUPLICATE;  // Fetched, but content is a near-duplicate of another page
 
 }
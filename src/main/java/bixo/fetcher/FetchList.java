@@ -14,6 +14,14 @@ public class FetchList {
     private String _domain;
     private List<ScoredUrlDatum> _urls;
     
+    private long _createTime;
+    
+    // Stats on how the host responded, used by FetcherQueue to adjust the crawl delay.
+    // These are only updated by the fetching thread, but can be read by others for status.
+    private volatile int _numResponses;
+    private volatile int _numErrors;
+    private volatile long _totalResponseTime;
+    
     
     public FetchList(BixoFlowProcess process, TupleEntryCollector collector, FetcherQueueMgr queueMgr, String domain, List<ScoredUrlDatum> urls) {
         _process = process;
@@ -21,6 +29,7 @@ public class FetchList {
         _queueMgr = queueMgr;
         _domain = domain;
         _urls = urls;
+        _createTime = queueMgr.getClock().currentTimeMillis();
     }
 
     public List<ScoredUrlDatum> getUrls() {
@@ -43,6 +52,46 @@ public class FetchList {
         return _urls.size();
     }
 
+    /**
+     * Record the result of one fetch attempt from this list.
+     * 
+     * @param responseTime - time (in milliseconds) the fetch took
+     * @param hostError - true if the failure reflects on the host (e.g. server error or timeout)
+     */
+    public void recordResponse(long responseTime, boolean hostError) {
+        _numResponses += 1;
+        _totalResponseTime += responseTime;
+        if (hostError) {
+            _numErrors += 1;
+        }
+    }
+    
+    public int getNumResponses() {
+        return _numResponses;
+    }
+    
+    public int getNumErrors() {
+        return _numErrors;
+    }
+    
+    public long getTotalResponseTime() {
+        return _totalResponseTime;
+    }
+    
+    /**
+     * Account for fetched content that we're holding in memory until it's
+     * been written to the collector.
+     * 
+     * @param numBytes - size of the content
+     */
+    public void reserveContentBytes(long numBytes) {
+        _queueMgr.reserveContentBytes(numBytes);
+    }
+    
+    public void releaseContentBytes(long numBytes) {
+        _queueMgr.releaseContentBytes(numBytes);
+    }
+    
     public void finished() {
         _queueMgr.finished(this);
     }
@@ -51,6 +100,10 @@ public class FetchList {
         return _domain;
     }
 
+    public long getCreateTime() {
+        return _createTime;
+    }
+
     public BixoFlowProcess getProcess() {
         return _process;
     }
@@ -0,0 +1,501 @@
+package bixo.fetcher;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+import org.apache.log4j.Logger;
+
+import bixo.cascading.BixoFlowProcess;
+import bixo.config.FetcherPolicy;
+import bixo.config.QueuePolicy;
+import bixo.datum.FetchedDatum;
+import bixo.datum.ScoredUrlDatum;
+import bixo.datum.UrlStatus;
+import bixo.fetcher.http.IRobotRules;
+import bixo.utils.DomainNames;
+import bixo.utils.SimulatedClock;
+import cascading.tuple.Tuple;
+import cascading.tuple.TupleEntryCollector;
+
+/**
+ * Discrete-event simulation of a fetch, which runs the real FetcherQueueMgr,
+ * FetcherQueue and FetcherPolicy scheduling code against a SimulatedClock.
+ * Fetches aren't made - each URL just takes a simulated response time - so
+ * a crawl schedule of many hours can be replayed in seconds, e.g. to tune
+ * the QueuePolicy and crawl delays.
+ *
+ * Queues are fed to the FetcherQueueMgr the same way FetcherBuffer does it,
+ * one domain at a time, and fetch lists are polled whenever a simulated
+ * fetcher thread is free. At the crawl end time, everything still queued is
+ * skipped, the same as FetcherBuffer.cleanup().
+ *
+ */
+public class FetchScheduleSimulator {
+    private static final Logger LOGGER = Logger.getLogger(FetchScheduleSimulator.class);
+
+    public static final double DEFAULT_RESPONSE_TIME_SIGMA = 0.25;
+
+    /**
+     * One simulated domain (or IP address), with the URLs to fetch from it in
+     * score order.
+     */
+    public static class SimulatedDomain {
+        private String _domain;
+        private List<String> _urls;
+        private long _crawlDelay;
+        private long _responseTime;
+
+        /**
+         * @param domain - name of the domain
+         * @param urls - URLs to fetch, from highest to lowest score
+         * @param crawlDelay - crawl delay for the domain, or IRobotRules.UNSET_CRAWL_DELAY to use the policy's delay
+         * @param responseTime - typical time (ms) it takes to fetch a URL from the domain
+         */
+        public SimulatedDomain(String domain, List<String> urls, long crawlDelay, long responseTime) {
+            _domain = domain;
+            _urls = urls;
+            _crawlDelay = crawlDelay;
+            _responseTime = responseTime;
+        }
+
+        public String getDomain() {
+            return _domain;
+        }
+
+        public List<String> getUrls() {
+            return _urls;
+        }
+
+        public long getCrawlDelay() {
+            return _crawlDelay;
+        }
+
+        public long getResponseTime() {
+            return _responseTime;
+        }
+    }
+
+    /**
+     * Outcome of a simulation - when URLs were fetched, and how many were skipped (by status).
+     */
+    public static class Result {
+        private long _startTime;
+        private long _endTime;
+        private long _crawlEndTime;
+        private int _numUrls;
+        private long[] _fetchTimes;
+        private Map<UrlStatus, Integer> _skipped;
+        private long _runTime;
+
+        private Result(long startTime, long endTime, long crawlEndTime, int numUrls, long[] fetchTimes, Map<UrlStatus, Integer> skipped, long runTime) {
+            _startTime = startTime;
+            _endTime = endTime;
+            _crawlEndTime = crawlEndTime;
+            _numUrls = numUrls;
+            _fetchTimes = fetchTimes;
+            _skipped = skipped;
+            _runTime = runTime;
+        }
+
+        public int getNumUrls() {
+            return _numUrls;
+        }
+
+        public int getNumFetched() {
+            return _fetchTimes.length;
+        }
+
+        /**
+         * @param elapsedTime - milliseconds from the start of the simulated crawl
+         * @return number of URLs that had been fetched by <elapsedTime>
+         */
+        public int getNumFetched(long elapsedTime) {
+            // Binary search for the first fetch time after <elapsedTime>.
+            int low = 0;
+            int high = _fetchTimes.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (_fetchTimes[mid] <= elapsedTime) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+
+            return low;
+        }
+
+        /**
+         * @return milliseconds from the start of the simulated crawl until each URL was fetched, in order.
+         */
+        public long[] getFetchTimes() {
+            return _fetchTimes;
+        }
+
+        public int getNumSkipped(UrlStatus status) {
+            Integer result = _skipped.get(status);
+            return result == null ? 0 : result;
+        }
+
+        public Map<UrlStatus, Integer> getSkipped() {
+            return _skipped;
+        }
+
+        /**
+         * @return simulated time (ms) from the start of the crawl until the last fetch finished
+         */
+        public long getDuration() {
+            return _endTime - _startTime;
+        }
+
+        /**
+         * @return real time (ms) it took to run the simulation
+         */
+        public long getRunTime() {
+            return _runTime;
+        }
+
+        /**
+         * Write out a summary, plus the completion curve as a tab-separated table
+         * of (minutes, URLs fetched, percent of all URLs) for every <interval> ms.
+         *
+         * @param out - where to write the report
+         * @param interval - time between rows of the completion curve, in milliseconds
+         * @throws IOException
+         */
+        public void write(Writer out, long interval) throws IOException {
+            out.write(String.format("URLs: %d, fetched: %d, simulated duration: %dms, run time: %dms\n", _numUrls,
+                            getNumFetched(), getDuration(), _runTime));
+            for (Map.Entry<UrlStatus, Integer> entry : _skipped.entrySet()) {
+                out.write(String.format("Skipped %s: %d\n", entry.getKey(), entry.getValue()));
+            }
+
+            out.write("minutes\tfetched\tpercent\n");
+            long lastTime = Math.max(getDuration(), _crawlEndTime == FetcherPolicy.NO_CRAWL_END_TIME ? 0 : _crawlEndTime - _startTime);
+            for (long time = 0; ; time += interval) {
+                time = Math.min(time, lastTime);
+                int numFetched = getNumFetched(time);
+                out.write(String.format("%.1f\t%d\t%.2f\n", time / 60000.0, numFetched, _numUrls == 0 ? 0.0 : (numFetched * 100.0) / _numUrls));
+                if (time == lastTime) {
+                    break;
+                }
+            }
+
+            out.flush();
+        }
+    }
+
+    // A fetch list being fetched by a simulated thread, which finishes at <time>.
+    private static class FetchCompletion implements Comparable<FetchCompletion> {
+        private long _time;
+        private FetchList _fetchList;
+
+        public FetchCompletion(long time, FetchList fetchList) {
+            _time = time;
+            _fetchList = fetchList;
+        }
+
+        @Override
+        public int compareTo(FetchCompletion o) {
+            if (_time < o._time) {
+                return -1;
+            } else if (_time > o._time) {
+                return 1;
+            } else {
+                return 0;
+            }
+        }
+    }
+
+    // Count URLs that the queues skip, by status.
+    private static class SkipCollector extends TupleEntryCollector {
+        private Map<UrlStatus, Integer> _counts = new EnumMap<UrlStatus, Integer>(UrlStatus.class);
+
+        @Override
+        protected void collect(Tuple tuple) {
+            UrlStatus status = UrlStatus.valueOf((String)tuple.get(FetchedDatum.FIELDS.size()));
+            Integer count = _counts.get(status);
+            _counts.put(status, count == null ? 1 : count + 1);
+        }
+
+        public Map<UrlStatus, Integer> getCounts() {
+            return _counts;
+        }
+    }
+
+    private SimulatedClock _clock;
+    private FetcherPolicy _fetcherPolicy;
+    private QueuePolicy _queuePolicy;
+    private int _maxThreads;
+    private Random _rand;
+    private double _responseTimeSigma;
+
+    /**
+     * Create a simulator. The <fetcherPolicy> is switched over to use <clock>,
+     * so its crawl end time (if any) should be relative to the clock's time.
+     *
+     * @param clock - clock set to the start time of the simulated crawl
+     * @param fetcherPolicy - policy for fetching
+     * @param queuePolicy - policy for the FetcherQueueMgr
+     * @param maxThreads - number of simulated fetcher threads
+     * @param seed - seed for the variation in response times
+     */
+    public FetchScheduleSimulator(SimulatedClock clock, FetcherPolicy fetcherPolicy, QueuePolicy queuePolicy, int maxThreads, long seed) {
+        _clock = clock;
+        _fetcherPolicy = fetcherPolicy;
+        _fetcherPolicy.setClock(clock);
+        _queuePolicy = queuePolicy;
+        _maxThreads = maxThreads;
+        _rand = new Random(seed);
+        _responseTimeSigma = DEFAULT_RESPONSE_TIME_SIGMA;
+    }
+
+    /**
+     * Set how much the response time of each URL varies from its domain's
+     * response time (sigma of a log-normal distribution), or 0 for none.
+     *
+     * @param responseTimeSigma
+     */
+    public void setResponseTimeSigma(double responseTimeSigma) {
+        _responseTimeSigma = responseTimeSigma;
+    }
+
+    /**
+     * Run a simulated fetch of <domains>, which are fed to the FetcherQueueMgr in order.
+     *
+     * @param domains - domains to fetch
+     * @return result of the simulation
+     */
+    public Result run(List<SimulatedDomain> domains) {
+        long runStartTime = System.currentTimeMillis();
+        long startTime = _clock.currentTimeMillis();
+        long crawlEndTime = _fetcherPolicy.getCrawlEndTime();
+
+        BixoFlowProcess process = new BixoFlowProcess();
+        FetcherQueueMgr queueMgr = new FetcherQueueMgr(process, _fetcherPolicy, _queuePolicy);
+        SkipCollector collector = new SkipCollector();
+        PriorityQueue<FetchCompletion> completions = new PriorityQueue<FetchCompletion>();
+        Map<String, SimulatedDomain> domainMap = new HashMap<String, SimulatedDomain>();
+        for (SimulatedDomain domain : domains) {
+            domainMap.put(domain.getDomain(), domain);
+        }
+
+        long[] fetchTimes = new long[1024];
+        int numFetched = 0;
+        int numUrls = 0;
+
+        int domainIndex = 0;
+        FetcherQueue nextQueue = null;
+        boolean skippedAll = (crawlEndTime == FetcherPolicy.NO_CRAWL_END_TIME);
+        long endTime = startTime;
+
+        while (true) {
+            long now = _clock.currentTimeMillis();
+
+            if (!skippedAll && (now >= crawlEndTime)) {
+                queueMgr.skipAll(UrlStatus.SKIPPED_TIME_LIMIT);
+                skippedAll = true;
+            }
+
+            // Finish up fetch lists that are done by now.
+            while (!completions.isEmpty() && (completions.peek()._time <= now)) {
+                FetchList fetchList = completions.poll()._fetchList;
+                fetchList.finished();
+            }
+
+            // Feed the queue manager as many new queues as it will take.
+            while (true) {
+                if ((nextQueue == null) && (domainIndex < domains.size())) {
+                    SimulatedDomain domain = domains.get(domainIndex++);
+                    nextQueue = makeQueue(queueMgr, domain, collector);
+                    numUrls += domain.getUrls().size();
+
+                    // If every URL was skipped there's nothing to fetch, and the
+                    // queue manager expects every queue to have URLs.
+                    if (nextQueue.size() == 0) {
+                        nextQueue = null;
+                        continue;
+                    }
+                }
+
+                if ((nextQueue != null) && queueMgr.offer(nextQueue)) {
+                    nextQueue = null;
+                } else {
+                    break;
+                }
+            }
+
+            // Hand out fetch lists to idle threads.
+            while (completions.size() < _maxThreads) {
+                FetchList fetchList = queueMgr.poll();
+                if (fetchList == null) {
+                    break;
+                }
+
+                SimulatedDomain domain = domainMap.get(fetchList.getDomain());
+                long fetchTime = now;
+                for (int i = 0; i < fetchList.size(); i++) {
+                    long responseTime = getResponseTime(domain);
+                    fetchList.recordResponse(responseTime, false);
+                    fetchTime += responseTime;
+
+                    if (numFetched == fetchTimes.length) {
+                        fetchTimes = Arrays.copyOf(fetchTimes, numFetched * 2);
+                    }
+
+                    fetchTimes[numFetched++] = fetchTime - startTime;
+                }
+
+                endTime = Math.max(endTime, fetchTime);
+                completions.add(new FetchCompletion(fetchTime, fetchList));
+            }
+
+            // Figure out when the next thing will happen.
+            long nextTime = Long.MAX_VALUE;
+            if (!completions.isEmpty()) {
+                nextTime = completions.peek()._time;
+            }
+
+            if (completions.size() < _maxThreads) {
+                FetcherQueue queue = queueMgr.getNextQueue();
+                if (queue != null) {
+                    nextTime = Math.min(nextTime, queue.getNextFetchTime());
+                }
+            }
+
+            if (!skippedAll) {
+                nextTime = Math.min(nextTime, crawlEndTime);
+            }
+
+            if (nextTime == Long.MAX_VALUE) {
+                if ((nextQueue != null) || (domainIndex < domains.size()) || !queueMgr.isEmpty()) {
+                    LOGGER.warn("Simulation stalled with URLs remaining");
+                }
+
+                break;
+            }
+
+            _clock.setTime(Math.max(now + 1, nextTime));
+        }
+
+        long[] result = Arrays.copyOf(fetchTimes, numFetched);
+        Arrays.sort(result);
+        return new Result(startTime, endTime, crawlEndTime, numUrls, result, collector.getCounts(), System.currentTimeMillis() - runStartTime);
+    }
+
+    private FetcherQueue makeQueue(FetcherQueueMgr queueMgr, SimulatedDomain domain, TupleEntryCollector collector) {
+        FetcherQueue result = queueMgr.createQueue(domain.getDomain(), collector, domain.getCrawlDelay());
+        List<String> urls = domain.getUrls();
+        int numUrls = urls.size();
+        for (int i = 0; i < numUrls; i++) {
+            double score = 1.0 - ((double)i / numUrls);
+            result.offer(new ScoredUrlDatum(urls.get(i), 0, 0, UrlStatus.UNFETCHED, domain.getDomain(), score, null));
+        }
+
+        return result;
+    }
+
+    private long getResponseTime(SimulatedDomain domain) {
+        double variation = (_responseTimeSigma == 0.0) ? 1.0 : Math.exp(_responseTimeSigma * _rand.nextGaussian());
+        return Math.max(1, Math.round(domain.getResponseTime() * variation));
+    }
+
+    /**
+     * Make domains with a Zipf distribution of URLs per domain, which is roughly
+     * what a broad crawl sees, in random order. Each domain's response time is
+     * log-normally distributed around <medianResponseTime>.
+     *
+     * @param numDomains - number of domains
+     * @param numUrls - total number of URLs (approximately, since every domain gets at least one)
+     * @param exponent - Zipf exponent, where bigger values mean more URLs in the top domains
+     * @param medianResponseTime - median response time (ms)
+     * @param responseTimeSigma - spread of domain response times (log-normal sigma)
+     * @param rand - source of randomness
+     * @return list of domains
+     */
+    public static List<SimulatedDomain> makeZipfDomains(int numDomains, int numUrls, double exponent, long medianResponseTime,
+                    double responseTimeSigma, Random rand) {
+        double totalWeight = 0.0;
+        for (int i = 1; i <= numDomains; i++) {
+            totalWeight += 1.0 / Math.pow(i, exponent);
+        }
+
+        List<SimulatedDomain> result = new ArrayList<SimulatedDomain>(numDomains);
+        for (int i = 1; i <= numDomains; i++) {
+            int domainUrls = (int)Math.max(1, Math.round((numUrls / Math.pow(i, exponent)) / totalWeight));
+            String domain = "domain-" + i + ".com";
+            List<String> urls = new ArrayList<String>(domainUrls);
+            for (int j = 0; j < domainUrls; j++) {
+                urls.add("http://www." + domain + "/page-" + j + ".html");
+            }
+
+            result.add(new SimulatedDomain(domain, urls, IRobotRules.UNSET_CRAWL_DELAY,
+                            makeResponseTime(medianResponseTime, responseTimeSigma, rand)));
+        }
+
+        Collections.shuffle(result, rand);
+        return result;
+    }
+
+    /**
+     * Make domains from a list of URLs (one per line, in score order), grouped
+     * by paid-level domain. Invalid URLs are ignored.
+     *
+     * @param reader - source of URLs
+     * @param medianResponseTime - median response time (ms)
+     * @param responseTimeSigma - spread of domain response times (log-normal sigma)
+     * @param rand - source of randomness
+     * @return list of domains, in random order
+     * @throws IOException
+     */
+    public static List<SimulatedDomain> makeDomains(BufferedReader reader, long medianResponseTime, double responseTimeSigma,
+                    Random rand) throws IOException {
+        Map<String, List<String>> domainUrls = new LinkedHashMap<String, List<String>>();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            String url = line.trim();
+            if ((url.length() == 0) || url.startsWith("#")) {
+                continue;
+            }
+
+            try {
+                String domain = DomainNames.getPLD(new URL(url));
+                List<String> urls = domainUrls.get(domain);
+                if (urls == null) {
+                    urls = new ArrayList<String>();
+                    domainUrls.put(domain, urls);
+                }
+
+                urls.add(url);
+            } catch (MalformedURLException e) {
+                LOGGER.debug("Ignoring invalid URL: " + url);
+            }
+        }
+
+        List<SimulatedDomain> result = new ArrayList<SimulatedDomain>(domainUrls.size());
+        for (Map.Entry<String, List<String>> entry : domainUrls.entrySet()) {
+            result.add(new SimulatedDomain(entry.getKey(), entry.getValue(), IRobotRules.UNSET_CRAWL_DELAY,
+                            makeResponseTime(medianResponseTime, responseTimeSigma, rand)));
+        }
+
+        Collections.shuffle(result, rand);
+        return result;
+    }
+
+    private static long makeResponseTime(long medianResponseTime, double responseTimeSigma, Random rand) {
+        return Math.max(1, Math.round(medianResponseTime * Math.exp(responseTimeSigma * rand.nextGaussian())));
+    }
+}
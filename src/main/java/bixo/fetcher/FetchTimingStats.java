@@ -0,0 +1,137 @@
+package bixo.fetcher;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import bixo.fetcher.http.FetchTimings;
+import bixo.fetcher.http.FetchTimings.Phase;
+import bixo.utils.LatencyHistogram;
+
+/**
+ * Latency histograms for each phase of fetching (DNS, connect, etc), overall
+ * and by fetch status. We also keep a histogram of total fetch time per host,
+ * for up to MAX_HOSTS hosts, so we can see which servers are slowing us down.
+ *
+ */
+public class FetchTimingStats {
+    public static final int MAX_HOSTS = 500;
+
+    // Hosts beyond MAX_HOSTS get lumped together.
+    public static final String OTHER_HOSTS = "<other>";
+
+    private static final Phase[] PHASES = Phase.values();
+
+    private LatencyHistogram[] _byPhase;
+    private ConcurrentHashMap<String, LatencyHistogram[]> _byStatus;
+    private ConcurrentHashMap<String, LatencyHistogram> _byHost;
+
+    public FetchTimingStats() {
+        _byPhase = makeHistograms();
+        _byStatus = new ConcurrentHashMap<String, LatencyHistogram[]>();
+        _byHost = new ConcurrentHashMap<String, LatencyHistogram>();
+    }
+
+    /**
+     * Record the phase timings from one fetch.
+     *
+     * @param host - host that was fetched from
+     * @param status - result of the fetch (e.g. FETCHED, HTTP_NOT_FOUND)
+     * @param timings - phase times, where phases that didn't happen are NOT_TIMED
+     */
+    public void record(String host, String status, FetchTimings timings) {
+        LatencyHistogram[] statusHistograms = _byStatus.get(status);
+        if (statusHistograms == null) {
+            LatencyHistogram[] newHistograms = makeHistograms();
+            statusHistograms = _byStatus.putIfAbsent(status, newHistograms);
+            if (statusHistograms == null) {
+                statusHistograms = newHistograms;
+            }
+        }
+
+        for (Phase phase : PHASES) {
+            long time = timings.get(phase);
+            if (time != FetchTimings.NOT_TIMED) {
+                _byPhase[phase.ordinal()].record(time);
+                statusHistograms[phase.ordinal()].record(time);
+            }
+        }
+
+        long totalTime = timings.get(Phase.TOTAL);
+        if (totalTime != FetchTimings.NOT_TIMED) {
+            getHostHistogram(host).record(totalTime);
+        }
+    }
+
+    public LatencyHistogram getHistogram(Phase phase) {
+        return _byPhase[phase.ordinal()];
+    }
+
+    public LatencyHistogram getHistogram(String status, Phase phase) {
+        LatencyHistogram[] histograms = _byStatus.get(status);
+        return histograms == null ? null : histograms[phase.ordinal()];
+    }
+
+    public LatencyHistogram getHostHistogram(String host) {
+        LatencyHistogram result = _byHost.get(host);
+        if (result == null) {
+            if (_byHost.size() >= MAX_HOSTS) {
+                host = OTHER_HOSTS;
+            }
+
+            LatencyHistogram newHistogram = new LatencyHistogram();
+            result = _byHost.putIfAbsent(host, newHistogram);
+            if (result == null) {
+                result = newHistogram;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Write out a tab-separated summary of all histograms, one per line, as
+     * <phase> <scope> <count> <mean> <p50> <p90> <p99> <max>
+     *
+     * @param out
+     * @throws IOException
+     */
+    public void write(Writer out) throws IOException {
+        out.write("phase\tscope\tcount\tmean\tp50\tp90\tp99\tmax\n");
+
+        for (Phase phase : PHASES) {
+            writeLine(out, phase, "all", _byPhase[phase.ordinal()]);
+        }
+
+        for (Map.Entry<String, LatencyHistogram[]> entry : new TreeMap<String, LatencyHistogram[]>(_byStatus).entrySet()) {
+            for (Phase phase : PHASES) {
+                writeLine(out, phase, "status:" + entry.getKey(), entry.getValue()[phase.ordinal()]);
+            }
+        }
+
+        for (Map.Entry<String, LatencyHistogram> entry : new TreeMap<String, LatencyHistogram>(_byHost).entrySet()) {
+            writeLine(out, Phase.TOTAL, "host:" + entry.getKey(), entry.getValue());
+        }
+    }
+
+    private static void writeLine(Writer out, Phase phase, String scope, LatencyHistogram histogram) throws IOException {
+        if (histogram.getCount() == 0) {
+            return;
+        }
+
+        out.write(String.format("%s\t%s\t%d\t%.1f\t%d\t%d\t%d\t%d\n", phase, scope, histogram.getCount(), histogram.getMean(),
+                        histogram.getValueAtPercentile(50), histogram.getValueAtPercentile(90),
+                        histogram.getValueAtPercentile(99), histogram.getMax()));
+    }
+
+    private static LatencyHistogram[] makeHistograms() {
+        LatencyHistogram[] result = new LatencyHistogram[PHASES.length];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = new LatencyHistogram();
+        }
+
+        return result;
+    }
+}
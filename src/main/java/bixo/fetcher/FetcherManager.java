@@ -30,6 +30,7 @@ import bixo.cascading.BixoFlowProcess;
 import bixo.fetcher.http.IHttpFetcher;
 import bixo.hadoop.FetchCounters;
 import bixo.utils.DomainNames;
+import bixo.utils.IClock;
 import bixo.utils.ThreadedExecutor;
 
 /**
@@ -48,16 +49,26 @@ public class FetcherManager implements Runnable {
 
     private static final long QUEUE_LOG_INTERVAL = 5 * 60 * 1000;
     private static final int NUM_QUEUES_TO_LOG = 100;
+    
+    // How often to update the status snapshot, if enabled, and how many pending queues it includes.
+    private static final long SNAPSHOT_INTERVAL = 1000;
+    private static final int NUM_QUEUES_IN_SNAPSHOT = 100;
 
     private FetcherQueueMgr _provider;
+    private IClock _clock;
     private IHttpFetcher _fetcher;
     private ThreadedExecutor _executor;
     private BixoFlowProcess _process;
+    private FetchTimingStats _timingStats;
+    private volatile boolean _snapshotsEnabled;
+    private volatile FetcherStatusSnapshot _statusSnapshot;
     
     public FetcherManager(FetcherQueueMgr provider, IHttpFetcher fetcher, BixoFlowProcess process) {
         _provider = provider;
+        _clock = provider.getClock();
         _fetcher = fetcher;
         _process = process;
+        _timingStats = new FetchTimingStats();
         _executor = new ThreadedExecutor(_fetcher.getMaxThreads(), COMMAND_TIMEOUT);
     }
     
@@ -73,6 +84,7 @@ public class FetcherManager implements Runnable {
 	    try {
 	        long nextQueueLogTime = 0;
 	        long nextStatusTime = 0;
+	        long nextSnapshotTime = 0;
 	        int urlsFetching = -1;
 	        int domainsFetching = -1;
 	        
@@ -80,7 +92,7 @@ public class FetcherManager implements Runnable {
 	            // See if we should update our status
 	            int curUrlsFetching = _process.getCounter(FetchCounters.URLS_FETCHING);
 	            int curDomainsFetching = _process.getCounter(FetchCounters.DOMAINS_PROCESSING);
-	            long curTime = System.currentTimeMillis();
+	            long curTime = _clock.currentTimeMillis();
 
 	            if ((curUrlsFetching != urlsFetching) || (curDomainsFetching != domainsFetching) || (curTime >= nextStatusTime)) {
 	                urlsFetching = curUrlsFetching;
@@ -91,7 +103,7 @@ public class FetcherManager implements Runnable {
 	                    FetcherQueue nextQueue = _provider.getNextQueue();
 	                    if ((nextQueue != null) && (nextQueue.size() > 0)) {
 	                        String host = nextQueue.getHost();
-	                        long deltaSeconds = (nextQueue.getNextFetchTime() - System.currentTimeMillis()) / 1000L;
+	                        long deltaSeconds = (nextQueue.getNextFetchTime() - _clock.currentTimeMillis()) / 1000L;
 	                        _process.setStatus(String.format("Nothing to fetch (%d URLs remaining, next host is %s with %d URLs in %d seconds)",
 	                                        urlsRemaining, host, nextQueue.size(), deltaSeconds));
 	                    } else {
@@ -102,13 +114,19 @@ public class FetcherManager implements Runnable {
 	                                    urlsFetching, domainsFetching, urlsRemaining));
 	                }
 	                
-	                nextStatusTime = System.currentTimeMillis() + STATUS_UPDATE_INTERVAL;
+	                nextStatusTime = _clock.currentTimeMillis() + STATUS_UPDATE_INTERVAL;
 	            }
 
 	            // See if it's time to log the top N entries in the queue.
 	            if (curTime >= nextQueueLogTime) {
 	                _provider.logPendingQueues(LOGGER, NUM_QUEUES_TO_LOG);
-	                nextQueueLogTime = System.currentTimeMillis() + QUEUE_LOG_INTERVAL;
+	                nextQueueLogTime = _clock.currentTimeMillis() + QUEUE_LOG_INTERVAL;
+	            }
+	            
+	            if (_snapshotsEnabled && (curTime >= nextSnapshotTime)) {
+	                _statusSnapshot = new FetcherStatusSnapshot(_provider, _process, _executor.getActiveCount(),
+	                                _fetcher.getMaxThreads(), NUM_QUEUES_IN_SNAPSHOT, _statusSnapshot, curTime);
+	                nextSnapshotTime = _clock.currentTimeMillis() + SNAPSHOT_INTERVAL;
 	            }
 	            
 	            // See if we should set up the next thing to fetch
@@ -122,7 +140,7 @@ public class FetcherManager implements Runnable {
 	                }
 	                
 	                try {
-	                    _executor.execute(new FetcherRunnable(_fetcher, items));
+	                    _executor.execute(new FetcherRunnable(_fetcher, items, _timingStats));
 	                } catch (RejectedExecutionException e) {
 	                    // This would only happen if all of the threads were tied up for longer than our
 	                    // command timeout value, or if the attempt to enqueue the URL was interrupted.
@@ -171,4 +189,29 @@ public class FetcherManager implements Runnable {
 	public int getActiveThreadCount() {
 	    return _executor.getActiveCount();
 	}
+	
+	
+	public FetchTimingStats getTimingStats() {
+	    return _timingStats;
+	}
+	
+	
+	/**
+	 * Start building a status snapshot every SNAPSHOT_INTERVAL milliseconds,
+	 * for use by getStatusSnapshot().
+	 */
+	public void enableStatusSnapshots() {
+	    _snapshotsEnabled = true;
+	}
+	
+	
+	/**
+	 * Return the most recent status snapshot. This never blocks, so it's safe to
+	 * call from a thread that's reporting on a stalled fetch.
+	 * 
+	 * @return - snapshot, or null if snapshots aren't enabled or none has been built yet.
+	 */
+	public FetcherStatusSnapshot getStatusSnapshot() {
+	    return _statusSnapshot;
+	}
 }
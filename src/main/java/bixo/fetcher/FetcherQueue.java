@@ -25,9 +25,12 @@ package bixo.fetcher;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Delayed;
 import java.util.concurrent.TimeUnit;
 
+import bixo.cascading.QueuedTupleEntryCollector;
+import bixo.config.AdaptiveDelayPolicy;
 import bixo.config.FetcherPolicy;
 import bixo.datum.FetchedDatum;
 import bixo.datum.ScoredUrlDatum;
@@ -41,6 +44,10 @@ import cascading.tuple.TupleEntryCollector;
 public class FetcherQueue implements Delayed {
     
     private static int DEFAULT_MAX_URLS_IN_MEMORY = 100;
+    
+    // Rough per-object heap overhead, used when estimating memory use of queued URLs.
+    private static final int DATUM_OVERHEAD_BYTES = 200;
+    private static final int META_DATA_ENTRY_OVERHEAD_BYTES = 64;
 
     private String _domain;
     private DiskQueue<ScoredUrlDatum> _queue;
@@ -48,6 +55,18 @@ public class FetcherQueue implements Delayed {
     private TupleEntryCollector _collector;
     private int _numActiveFetchers;
     private long _nextFetchTime;
+    private double _totalScore;
+    
+    // Estimated heap size of all queued URLs, and how much of it FetcherQueueMgr has reserved.
+    private int _maxUrlsInMemory;
+    private long _totalBytes;
+    private long _reservedBytes;
+    
+    // Per-host response stats, only used when we have an adaptive delay policy.
+    private AdaptiveDelayPolicy _delayPolicy;
+    private long _hostCrawlDelay;
+    private double _avgResponseTime;
+    private double _errorRate;
 
     public FetcherQueue(String domain, FetcherPolicy policy, TupleEntryCollector collector) {
         this(domain, policy, DEFAULT_MAX_URLS_IN_MEMORY, collector);
@@ -60,8 +79,26 @@ public class FetcherQueue implements Delayed {
         _collector = collector;
 
         _numActiveFetchers = 0;
-        _nextFetchTime = System.currentTimeMillis();
+        _nextFetchTime = _policy.getClock().currentTimeMillis();
+        _maxUrlsInMemory = maxUrlsInMemory;
         _queue = new DiskQueue<ScoredUrlDatum>(maxUrlsInMemory);
+        
+        _delayPolicy = null;
+        _avgResponseTime = -1.0;
+        _errorRate = -1.0;
+    }
+
+    /**
+     * Scale the delay between requests using the response times and errors we
+     * see from this host.
+     * 
+     * @param delayPolicy - policy used to adjust the delay
+     * @param hostCrawlDelay - crawl delay required by the host (e.g. from robots.txt),
+     *        which we'll never go below, or 0 if none.
+     */
+    public synchronized void setAdaptiveDelayPolicy(AdaptiveDelayPolicy delayPolicy, long hostCrawlDelay) {
+        _delayPolicy = delayPolicy;
+        _hostCrawlDelay = Math.max(0, hostCrawlDelay);
     }
 
 
@@ -90,6 +127,8 @@ public class FetcherQueue implements Delayed {
 
         if (_queue.size() < maxSize) {
             _queue.add(scoredUrlDatum);
+            _totalScore += Math.max(0.0, score);
+            _totalBytes += estimateSize(scoredUrlDatum);
             return true;
         } else {
             // URLs come in sorted order (by score, high to low) so we can just skip
@@ -120,17 +159,30 @@ public class FetcherQueue implements Delayed {
             // Nothing to return
         } else if (_numActiveFetchers > 0) {
             // Only one active thread per domain/server at a time.
-        } else if (System.currentTimeMillis() >= _nextFetchTime) {
+        } else if (_policy.getClock().currentTimeMillis() >= _nextFetchTime) {
             _numActiveFetchers += 1;
             
             FetchRequest fetchRequest = _policy.getFetchRequest(_queue.size());
             int numUrls = fetchRequest.getNumUrls();
             result = new ArrayList<ScoredUrlDatum>();
             for (int i = 0; i < numUrls; i++) {
-                result.add(_queue.remove());
+                ScoredUrlDatum datum = _queue.remove();
+                _totalScore -= Math.max(0.0, datum.getScore());
+                _totalBytes -= estimateSize(datum);
+                result.add(datum);
+            }
+            
+            if (_queue.size() == 0) {
+                _totalScore = 0.0;
+                _totalBytes = 0;
             }
             
             _nextFetchTime = fetchRequest.getNextRequestTime();
+            if ((_delayPolicy != null) && (_avgResponseTime >= 0.0)) {
+                long now = _policy.getClock().currentTimeMillis();
+                long interval = _delayPolicy.adjustInterval(_nextFetchTime - now, numUrls, _avgResponseTime, _errorRate, _hostCrawlDelay);
+                _nextFetchTime = now + interval;
+            }
         }
         
         return result;
@@ -141,6 +193,114 @@ public class FetcherQueue implements Delayed {
         return _queue.size();
     }
     
+    /**
+     * Return the sum of the scores of the URLs that are still queued.
+     * 
+     * @return total score
+     */
+    public synchronized double getTotalScore() {
+        return _totalScore;
+    }
+    
+    /**
+     * Return the estimated heap used by queued URLs. Only the first <maxUrlsInMemory>
+     * URLs are kept in memory, as the rest get spilled to disk by the DiskQueue.
+     * 
+     * @return estimated size in bytes
+     */
+    public synchronized long getBytesInMemory() {
+        int numItems = _queue.size();
+        if (numItems == 0) {
+            return 0;
+        } else {
+            return (_totalBytes / numItems) * Math.min(numItems, _maxUrlsInMemory);
+        }
+    }
+    
+    long getReservedBytes() {
+        return _reservedBytes;
+    }
+    
+    void setReservedBytes(long reservedBytes) {
+        _reservedBytes = reservedBytes;
+    }
+    
+    /**
+     * Return a rough estimate of the heap used by <datum>, based on the length
+     * of its strings. This only needs to be good enough for admission control.
+     * 
+     * @param datum - URL to estimate
+     * @return estimated size in bytes
+     */
+    public static long estimateSize(ScoredUrlDatum datum) {
+        long result = DATUM_OVERHEAD_BYTES + (2L * datum.getUrl().length());
+        String groupKey = datum.getGroupKey();
+        if (groupKey != null) {
+            result += 2L * groupKey.length();
+        }
+        
+        Map<String, Comparable> metaData = datum.getMetaDataMap();
+        if (metaData != null) {
+            for (Map.Entry<String, Comparable> entry : metaData.entrySet()) {
+                result += META_DATA_ENTRY_OVERHEAD_BYTES + (2L * entry.getKey().length());
+                Comparable value = entry.getValue();
+                if (value instanceof String) {
+                    result += 2L * ((String)value).length();
+                }
+            }
+        }
+        
+        return result;
+    }
+    
+    /**
+     * Return how valuable it is to fetch from this queue now, versus other
+     * queues, given the time left in the crawl.
+     * 
+     * This is the total score of the URLs we expect to still be able to fetch
+     * before the crawl ends, per second of remaining crawl time. A queue that
+     * has more URLs than it can get through is capped at what it can fetch,
+     * so many low-scoring URLs don't beat a few high-scoring ones.
+     * 
+     * @param now - current time in milliseconds
+     * @return priority (higher is better), or 0 if there's no crawl end time.
+     */
+    public synchronized double getPriority(long now) {
+        long crawlEndTime = _policy.getCrawlEndTime();
+        if (crawlEndTime == FetcherPolicy.NO_CRAWL_END_TIME) {
+            return 0.0;
+        }
+        
+        long remainingTime = Math.max(1L, crawlEndTime - now);
+        return (getExpectedScore(now) * 1000.0) / remainingTime;
+    }
+    
+    /**
+     * Return the total score of the URLs we expect to still be able to fetch
+     * before the crawl ends. This is getPriority() without the division by the
+     * remaining crawl time, so values calculated at different times can be
+     * compared, as long as the queue hasn't changed.
+     * 
+     * @param now - current time in milliseconds
+     * @return expected score, or 0 if there's no crawl end time.
+     */
+    public synchronized double getExpectedScore(long now) {
+        long crawlEndTime = _policy.getCrawlEndTime();
+        int numItems = _queue.size();
+        if ((crawlEndTime == FetcherPolicy.NO_CRAWL_END_TIME) || (numItems == 0)) {
+            return 0.0;
+        }
+        
+        long remainingTime = Math.max(1L, crawlEndTime - now);
+        long timeNeeded = getFinishTime() - now;
+        double fraction = 1.0;
+        if (timeNeeded > remainingTime) {
+            fraction = (double)remainingTime / (double)timeNeeded;
+        }
+        
+        return _totalScore * fraction;
+    }
+    
     public String getDomain() {
         return _domain;
     }
@@ -149,6 +309,14 @@ public class FetcherQueue implements Delayed {
         return _nextFetchTime;
     }
     
+    public synchronized int getNumActiveFetchers() {
+        return _numActiveFetchers;
+    }
+    
+    public long getCrawlDelay() {
+        return _policy.getCrawlDelay();
+    }
+    
     public TupleEntryCollector getCollector() {
         return _collector;
     }
@@ -180,6 +348,32 @@ public class FetcherQueue implements Delayed {
         _numActiveFetchers -= 1;
     }
 
+    /**
+     * We're done trying to fetch the URLs in <fetchList>, so update our response
+     * stats for the host before releasing the list.
+     * 
+     * @param fetchList - list previously created from a call to poll()
+     */
+    public synchronized void release(FetchList fetchList) {
+        int numResponses = fetchList.getNumResponses();
+        if ((_delayPolicy != null) && (numResponses > 0)) {
+            double avgResponseTime = (double)fetchList.getTotalResponseTime() / numResponses;
+            double errorRate = (double)fetchList.getNumErrors() / numResponses;
+            _avgResponseTime = _delayPolicy.updateAverage(_avgResponseTime, avgResponseTime, numResponses);
+            _errorRate = _delayPolicy.updateAverage(_errorRate, errorRate, numResponses);
+        }
+        
+        release(fetchList.getUrls());
+    }
+    
+    public double getAvgResponseTime() {
+        return _avgResponseTime;
+    }
+    
+    public double getErrorRate() {
+        return _errorRate;
+    }
+
 
 
     /**
@@ -190,6 +384,9 @@ public class FetcherQueue implements Delayed {
         while ((datum = _queue.poll()) != null) {
             skip(datum, status);
         }
+        
+        _totalScore = 0.0;
+        _totalBytes = 0;
     }
     
     
@@ -197,15 +394,13 @@ public class FetcherQueue implements Delayed {
         String url = datum.getUrl();
         Tuple result = new FetchedDatum(url, datum.getMetaDataMap()).toTuple();
         result.add(status.toString());
-        synchronized (_collector) {
-            _collector.add(result);
-        }
+        QueuedTupleEntryCollector.safeAdd(_collector, result);
     }
 
 
     @Override
     public long getDelay(TimeUnit timeUnit) {
-        long delayInMS = _nextFetchTime - System.currentTimeMillis();
+        long delayInMS = _nextFetchTime - _policy.getClock().currentTimeMillis();
         return timeUnit.convert(delayInMS, TimeUnit.MILLISECONDS);
     }
 
@@ -230,7 +425,7 @@ public class FetcherQueue implements Delayed {
 
     @Override
     public String toString() {
-        long now = System.currentTimeMillis();
+        long now = _policy.getClock().currentTimeMillis();
         return String.format("%s: %d URLs remaining, next fetch at %s (in %dms), delay is %dms (%d active threads)", 
                         getDomain(), _queue.size(), new Date(_nextFetchTime).toString(), _nextFetchTime - now,
                         _policy.getCrawlDelay(), _numActiveFetchers);
@@ -246,7 +441,7 @@ public class FetcherQueue implements Delayed {
      */
     public long getFinishTime() {
         int numItems = _queue.size();
-        long now = System.currentTimeMillis();
+        long now = _policy.getClock().currentTimeMillis();
         if (numItems == 0) {
             // TODO KKr - this is only an OK result if num fetchers == 0, otherwise
             // finish time is # of URLs being fetched currently from this queue * some
@@ -22,11 +22,11 @@
  */
 package bixo.fetcher;
 
-import java.util.Iterator;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.DelayQueue;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.log4j.Logger;
 
@@ -37,6 +37,7 @@ import bixo.datum.ScoredUrlDatum;
 import bixo.datum.UrlStatus;
 import bixo.fetcher.http.IRobotRules;
 import bixo.hadoop.FetchCounters;
+import bixo.utils.IClock;
 import cascading.tuple.TupleEntryCollector;
 
 /**
@@ -46,7 +47,7 @@ import cascading.tuple.TupleEntryCollector;
 public class FetcherQueueMgr implements IFetchListProvider {
     public static final int DEFAULT_MAX_URLS_IN_MEMORY = 100000;
     
-	private DelayQueue<FetcherQueue> _pendingQueues;	
+	private FetcherQueueScheduler _pendingQueues;	
     private Map<FetchList, FetcherQueue> _activeQueues;
     private Object _queueLock;
 
@@ -61,6 +62,11 @@ public class FetcherQueueMgr implements IFetchListProvider {
 	private boolean _needDomains;
 	private int _maxQueues;
 	
+	// Estimated bytes held by admitted queues and in-flight fetched content.
+	private long _maxBytesInMemory;
+	private AtomicLong _bytesInMemory;
+	private volatile int _numWaiting;
+	
     public FetcherQueueMgr(BixoFlowProcess process) {
         FetcherPolicy fetcherPolicy = new FetcherPolicy();
         QueuePolicy queuePolicy = new QueuePolicy(DEFAULT_MAX_URLS_IN_MEMORY, fetcherPolicy.getDefaultUrlsPerRequest());
@@ -75,16 +81,33 @@ public class FetcherQueueMgr implements IFetchListProvider {
         _process = process;
         _fetcherPolicy = fetcherPolicy;
         _queuePolicy = queuePolicy;
-        _pendingQueues = new DelayQueue<FetcherQueue>();
+        _pendingQueues = new FetcherQueueScheduler();
         _needDomains = true;
         
         _activeQueues = new ConcurrentHashMap<FetchList, FetcherQueue>();
         _maxQueues = queuePolicy.getMaxUrlsInMemory() / queuePolicy.getMaxUrlsInMemoryPerQueue();
         _queueLock = new Object();
         
+        _maxBytesInMemory = queuePolicy.getMaxBytesInMemory();
+        if (_maxBytesInMemory == QueuePolicy.HEAP_BASED_MAX_BYTES) {
+            _maxBytesInMemory = (long)(Runtime.getRuntime().maxMemory() * QueuePolicy.DEFAULT_HEAP_FRACTION);
+        }
+        
+        _bytesInMemory = new AtomicLong(0);
+        _numWaiting = 0;
+        
         _skipAll = false;
     }
     
+	/**
+	 * Return the clock used to schedule fetches, which comes from the FetcherPolicy.
+	 * 
+	 * @return clock
+	 */
+	public IClock getClock() {
+	    return _fetcherPolicy.getClock();
+	}
+	
 	public FetcherQueue createQueue(String domain, TupleEntryCollector collector, long crawlDelay) {
 	    // If the URLs we're going to be queueing don't have a specific crawl delay, or are the same
 	    // as our default policy, then we can just re-use the default policy.
@@ -99,7 +122,13 @@ public class FetcherQueueMgr implements IFetchListProvider {
 	        }
 	    }
 	    
-        return new FetcherQueue(domain, policy, _queuePolicy.getMaxUrlsInMemoryPerQueue(), collector);
+        FetcherQueue result = new FetcherQueue(domain, policy, _queuePolicy.getMaxUrlsInMemoryPerQueue(), collector);
+        if (_queuePolicy.getAdaptiveDelayPolicy() != null) {
+            long hostCrawlDelay = (crawlDelay == IRobotRules.UNSET_CRAWL_DELAY) ? 0 : crawlDelay;
+            result.setAdaptiveDelayPolicy(_queuePolicy.getAdaptiveDelayPolicy(), hostCrawlDelay);
+        }
+        
+        return result;
 	}
 	
 	/**
@@ -109,22 +138,99 @@ public class FetcherQueueMgr implements IFetchListProvider {
 	 * @return - true if we were able to add it, false if at capacity
 	 */
 	public boolean offer(FetcherQueue newQueue) {
-	    // FUTURE KKr - also limit by max # of URLs in memory?
+	    // The scheduler isn't thread-safe, so all access is synchronized on _queueLock.
+	    synchronized (_queueLock) {
+	        return addQueue(newQueue);
+	    }
+	} // offer
+	
+	/**
+	 * Add a new queue, waiting up to <timeout> milliseconds for there to be
+	 * capacity (in terms of queues and bytes) if we can't add it right away.
+	 * 
+	 * @param newQueue - queue to add
+	 * @param timeout - max time to wait, in milliseconds
+	 * @return - true if we were able to add it, false if still at capacity
+	 * @throws InterruptedException
+	 */
+	public boolean offer(FetcherQueue newQueue, long timeout) throws InterruptedException {
+	    synchronized (_queueLock) {
+	        if (addQueue(newQueue)) {
+	            return true;
+	        }
+	        
+	        _numWaiting += 1;
+	        try {
+	            _queueLock.wait(timeout);
+	        } finally {
+	            _numWaiting -= 1;
+	        }
+	        
+	        return addQueue(newQueue);
+	    }
+	}
+	
+	private boolean addQueue(FetcherQueue newQueue) {
 	    if (!_needDomains || (_pendingQueues.size() >= _maxQueues)) {
 	        return false;
 	    }
-
-	    // We synchronize on _queues so that we can iterate in getNextQueue without
-	    // worrying about getting a ConcurrentModificationException
-	    synchronized (_queueLock) {
-	        _pendingQueues.add(newQueue);
+	    
+	    // We always let in one queue, even if it's bigger than the limit, so
+	    // that a single huge queue can't stall the fetch.
+	    long queueBytes = newQueue.getBytesInMemory();
+	    if ((_bytesInMemory.get() + queueBytes > _maxBytesInMemory) && !isEmpty()) {
+	        return false;
 	    }
 	    
+	    newQueue.setReservedBytes(queueBytes);
+	    _bytesInMemory.addAndGet(queueBytes);
+	    _pendingQueues.add(newQueue);
+	    
 	    _process.increment(FetchCounters.DOMAINS_QUEUED, 1);
 	    _process.increment(FetchCounters.DOMAINS_REMAINING, 1);
-
 	    return true;
-	} // offer
+	}
+	
+	/**
+	 * Account for fetched content that's being held in memory, e.g. from when
+	 * a fetch completes until it's been handed off to the output collector.
+	 * 
+	 * @param numBytes - size of the content
+	 */
+	public void reserveContentBytes(long numBytes) {
+	    _bytesInMemory.addAndGet(numBytes);
+	}
+	
+	public void releaseContentBytes(long numBytes) {
+	    _bytesInMemory.addAndGet(-numBytes);
+	    if (_numWaiting > 0) {
+	        synchronized (_queueLock) {
+	            _queueLock.notifyAll();
+	        }
+	    }
+	}
+	
+	public long getBytesInMemory() {
+	    return _bytesInMemory.get();
+	}
+	
+	public long getMaxBytesInMemory() {
+	    return _maxBytesInMemory;
+	}
+	
+	// Must be called while holding _queueLock.
+	private void releaseQueueBytes(FetcherQueue queue) {
+	    _bytesInMemory.addAndGet(-queue.getReservedBytes());
+	    queue.setReservedBytes(0);
+	    signalCapacity();
+	}
+	
+	// Must be called while holding _queueLock.
+	private void signalCapacity() {
+	    if (_numWaiting > 0) {
+	        _queueLock.notifyAll();
+	    }
+	}
 	
 	
 	/* (non-Javadoc)
@@ -149,7 +255,7 @@ public class FetcherQueueMgr implements IFetchListProvider {
 	public FetchList poll() {
 
 	    synchronized (_queueLock) {
-	        FetcherQueue queue = _pendingQueues.poll();
+	        FetcherQueue queue = _pendingQueues.poll(getClock().currentTimeMillis());
 	        if (queue != null) {
 	            _needDomains = false;
 
@@ -163,6 +269,7 @@ public class FetcherQueueMgr implements IFetchListProvider {
 	            return result;
 	        } else {
 	            _needDomains = true;
+	            signalCapacity();
 	            return null;
 	        }
 	    }
@@ -171,11 +278,9 @@ public class FetcherQueueMgr implements IFetchListProvider {
 	
     public void skipAll(UrlStatus status) {
         synchronized (_queueLock) {
-            Iterator<FetcherQueue> iter = _pendingQueues.iterator();
-            while (iter.hasNext()) {
-                FetcherQueue queue = iter.next();
+            for (FetcherQueue queue : _pendingQueues.removeAll()) {
                 queue.skipAll(status);
-                iter.remove();
+                releaseQueueBytes(queue);
             }
             
             _skipAll = true;
@@ -198,19 +303,27 @@ public class FetcherQueueMgr implements IFetchListProvider {
 	        }
 
 	        _activeQueues.remove(fetchList);
-	        queue.release(fetchList.getUrls());
+	        queue.release(fetchList);
 
 	        // As fetches are finished, if we're skipping everything that's left then
 	        // don't re-queue it.
 	        if (_skipAll) {
 	            queue.skipAll(_skipStatus);
+	            releaseQueueBytes(queue);
                 _process.increment(FetchCounters.DOMAINS_FINISHED, 1);
                 _process.decrement(FetchCounters.DOMAINS_REMAINING, 1);
 	        } else if (!queue.isEmpty()) {
+	            // Update our reservation, now that some URLs have been fetched.
+	            long queueBytes = queue.getBytesInMemory();
+	            _bytesInMemory.addAndGet(queueBytes - queue.getReservedBytes());
+	            queue.setReservedBytes(queueBytes);
+	            signalCapacity();
+	            
 	            _pendingQueues.add(queue);
 	            // TODO KKr - decrement active domains? Or still do this down lower?
 	            // Feels better to do it at the same level as DOMAINS_FINISHED.
 	        } else {
+	            releaseQueueBytes(queue);
                 _process.increment(FetchCounters.DOMAINS_FINISHED, 1);
                 _process.decrement(FetchCounters.DOMAINS_REMAINING, 1);
 	        }
@@ -219,33 +332,61 @@ public class FetcherQueueMgr implements IFetchListProvider {
 	
 	
 	/**
-	 * Return the next entry from the priority queue.
+	 * Return the next entry from the scheduler.
 	 * 
-	 * @return next fetcher queue, based on target time to fetch.
+	 * @return next fetcher queue, based on priority and target time to fetch.
 	 */
 	public FetcherQueue getNextQueue() {
 	    synchronized (_queueLock) {
-	        Iterator<FetcherQueue> iter = _pendingQueues.iterator();
-	        if (iter.hasNext()) {
-	            return iter.next();
-	        } else {
-	            return null;
-	        }
+	        return _pendingQueues.peek();
 	    }
 	}
 	
+	/**
+	 * Add the status of up to <maxQueues> pending queues (in scheduling order) to <result>.
+	 * 
+	 * @param result - list to fill in
+	 * @param maxQueues - max number of queues to add
+	 * @param now - current time
+	 * @return - total number of pending queues
+	 */
+	public int getPendingQueueStatus(List<FetcherStatusSnapshot.QueueStatus> result, int maxQueues, long now) {
+	    // Only copy the queues while holding the lock, since fetch threads need it. Sorting
+	    // and getting the status of each queue is done without it.
+	    FetcherQueueScheduler.Snapshot snapshot;
+	    synchronized (_queueLock) {
+	        snapshot = _pendingQueues.snapshot();
+	    }
+	    
+	    for (FetcherQueue queue : snapshot.getQueues(maxQueues)) {
+	        result.add(new FetcherStatusSnapshot.QueueStatus(queue, now));
+	    }
+	    
+	    return snapshot.size();
+	}
+	
+	public List<FetcherStatusSnapshot.FetchListStatus> getActiveFetchListStatus(long now) {
+	    // _activeQueues is a ConcurrentHashMap, so we don't need the lock to iterate.
+	    List<FetcherStatusSnapshot.FetchListStatus> result = new ArrayList<FetcherStatusSnapshot.FetchListStatus>();
+	    for (FetchList fetchList : _activeQueues.keySet()) {
+	        result.add(new FetcherStatusSnapshot.FetchListStatus(fetchList, now));
+	    }
+	    
+	    return result;
+	}
+	
 	public void logPendingQueues(Logger logger) {
 	    logPendingQueues(logger, Integer.MAX_VALUE);
 	}
 	
 	public void logPendingQueues(Logger logger, int numToLog) {
+	    FetcherQueueScheduler.Snapshot snapshot;
 	    synchronized (_queueLock) {
-	        Iterator<FetcherQueue> iter = _pendingQueues.iterator();
-	        int curLogged = 0;
-	        while ((curLogged < numToLog) && iter.hasNext()) {
-	            logger.info(iter.next());
-	            curLogged += 1;
-	        }
+	        snapshot = _pendingQueues.snapshot();
+	    }
+	    
+	    for (FetcherQueue queue : snapshot.getQueues(numToLog)) {
+	        logger.info(queue);
 	    }
 	}
 
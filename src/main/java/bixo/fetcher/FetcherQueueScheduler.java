@@ -0,0 +1,184 @@
+package bixo.fetcher;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Set of pending FetcherQueues, which hands out the most valuable queue that's
+ * ready to be fetched from.
+ *
+ * Queues that aren't ready yet wait in a priority queue ordered by next fetch
+ * time. Once a queue is ready, it's moved to a second priority queue ordered
+ * by FetcherQueue.getExpectedScore() (with the earliest fetch time breaking ties),
+ * so each poll is O(log n) versus inspecting a fixed number of elements.
+ *
+ * The ready order is calculated once, when the queue is promoted, so we don't use
+ * getPriority() for it. That divides by the remaining crawl time, which would give
+ * queues promoted later a higher value than equally good queues promoted earlier.
+ *
+ * Without a crawl end time every priority is 0, so this acts like a DelayQueue.
+ *
+ * This class isn't thread-safe - FetcherQueueMgr synchronizes access.
+ *
+ */
+public class FetcherQueueScheduler {
+    private static final int INITIAL_CAPACITY = 100;
+
+    // The next fetch time of a queue doesn't change while it's in the scheduler, but we
+    // save it here so that ReadyQueues can be sorted without any locks being held.
+    private static class ReadyQueue {
+        private final FetcherQueue _queue;
+        private final double _priority;
+        private final long _nextFetchTime;
+
+        public ReadyQueue(FetcherQueue queue, double priority) {
+            _queue = queue;
+            _priority = priority;
+            _nextFetchTime = queue.getNextFetchTime();
+        }
+    }
+
+    private static class ReadyComparator implements Comparator<ReadyQueue> {
+        @Override
+        public int compare(ReadyQueue o1, ReadyQueue o2) {
+            if (o1._priority > o2._priority) {
+                return -1;
+            } else if (o1._priority < o2._priority) {
+                return 1;
+            } else if (o1._nextFetchTime < o2._nextFetchTime) {
+                return -1;
+            } else if (o1._nextFetchTime > o2._nextFetchTime) {
+                return 1;
+            } else {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Unsorted copy of the scheduler's queues. Making the copy is cheap enough to
+     * do while holding the lock that protects the scheduler, and sorting it can
+     * then be done without the lock.
+     */
+    public static class Snapshot {
+        private ReadyQueue[] _ready;
+        private FetcherQueue[] _waiting;
+
+        private Snapshot(ReadyQueue[] ready, FetcherQueue[] waiting) {
+            _ready = ready;
+            _waiting = waiting;
+        }
+
+        public int size() {
+            return _ready.length + _waiting.length;
+        }
+
+        /**
+         * Return up to <maxQueues> queues, in the same order as FetcherQueueScheduler.getQueues().
+         *
+         * @param maxQueues - max number of queues to return
+         * @return list of queues
+         */
+        public List<FetcherQueue> getQueues(int maxQueues) {
+            Arrays.sort(_ready, new ReadyComparator());
+
+            List<FetcherQueue> result = new ArrayList<FetcherQueue>(Math.min(maxQueues, size()));
+            for (int i = 0; (i < _ready.length) && (result.size() < maxQueues); i++) {
+                result.add(_ready[i]._queue);
+            }
+
+            for (int i = 0; (i < _waiting.length) && (result.size() < maxQueues); i++) {
+                result.add(_waiting[i]);
+            }
+
+            return result;
+        }
+    }
+
+    private PriorityQueue<FetcherQueue> _waiting;
+    private PriorityQueue<ReadyQueue> _ready;
+
+    public FetcherQueueScheduler() {
+        _waiting = new PriorityQueue<FetcherQueue>();
+        _ready = new PriorityQueue<ReadyQueue>(INITIAL_CAPACITY, new ReadyComparator());
+    }
+
+    public void add(FetcherQueue queue) {
+        _waiting.add(queue);
+    }
+
+    /**
+     * Return the highest priority queue that's ready to be fetched from, or null
+     * if no queue is ready yet.
+     *
+     * @param now - current time in milliseconds
+     * @return queue to fetch from, which is removed from the scheduler
+     */
+    public FetcherQueue poll(long now) {
+        promoteReadyQueues(now);
+
+        ReadyQueue result = _ready.poll();
+        return result == null ? null : result._queue;
+    }
+
+    /**
+     * Return the queue we'd fetch from next (ready or not), without removing it.
+     *
+     * @return next queue, or null if empty
+     */
+    public FetcherQueue peek() {
+        ReadyQueue ready = _ready.peek();
+        if (ready != null) {
+            return ready._queue;
+        } else {
+            return _waiting.peek();
+        }
+    }
+
+    public int size() {
+        return _ready.size() + _waiting.size();
+    }
+
+    /**
+     * Return all of the queues, with ready queues (in priority order) first,
+     * and then the waiting queues (in no particular order).
+     *
+     * @return list of queues
+     */
+    public List<FetcherQueue> getQueues() {
+        return snapshot().getQueues(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Return an unsorted copy of the queues, which can be used after the scheduler
+     * has been modified.
+     *
+     * @return snapshot of the queues
+     */
+    public Snapshot snapshot() {
+        return new Snapshot(_ready.toArray(new ReadyQueue[_ready.size()]), _waiting.toArray(new FetcherQueue[_waiting.size()]));
+    }
+
+    /**
+     * Remove and return all of the queues.
+     *
+     * @return list of queues that were in the scheduler
+     */
+    public List<FetcherQueue> removeAll() {
+        List<FetcherQueue> result = getQueues();
+        _ready.clear();
+        _waiting.clear();
+        return result;
+    }
+
+    private void promoteReadyQueues(long now) {
+        FetcherQueue queue;
+        while (((queue = _waiting.peek()) != null) && (queue.getNextFetchTime() <= now)) {
+            _waiting.poll();
+            _ready.add(new ReadyQueue(queue, queue.getExpectedScore(now)));
+        }
+    }
+}
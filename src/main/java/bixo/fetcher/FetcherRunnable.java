@@ -29,25 +29,52 @@ import org.apache.log4j.Level;
 import org.apache.log4j.Logger;
 
 import bixo.cascading.BixoFlowProcess;
+import bixo.cascading.QueuedTupleEntryCollector;
 import bixo.datum.FetchedDatum;
 import bixo.datum.ScoredUrlDatum;
 import bixo.datum.UrlStatus;
 import bixo.exceptions.BaseFetchException;
 import bixo.exceptions.IOFetchException;
+import bixo.fetcher.http.FetchTimings;
+import bixo.fetcher.http.FetchTimings.Phase;
 import bixo.fetcher.http.IHttpFetcher;
 import bixo.hadoop.FetchCounters;
+import bixo.utils.DomainNames;
 import cascading.tuple.Tuple;
 import cascading.tuple.TupleEntryCollector;
 
 public class FetcherRunnable implements Runnable {
     private static final Logger LOGGER = Logger.getLogger(FetcherRunnable.class);
     
+    // Releases the memory reserved for fetched content, once the output
+    // collector has written it.
+    private static class ReleaseContentBytes implements Runnable {
+        private FetchList _items;
+        private int _numBytes;
+        
+        public ReleaseContentBytes(FetchList items, int numBytes) {
+            _items = items;
+            _numBytes = numBytes;
+        }
+        
+        @Override
+        public void run() {
+            _items.releaseContentBytes(_numBytes);
+        }
+    }
+    
     private IHttpFetcher _httpFetcher;
     private FetchList _items;
+    private FetchTimingStats _timingStats;
 
     public FetcherRunnable(IHttpFetcher httpFetcher, FetchList items) {
+        this(httpFetcher, items, null);
+    }
+
+    public FetcherRunnable(IHttpFetcher httpFetcher, FetchList items, FetchTimingStats timingStats) {
         _httpFetcher = httpFetcher;
         _items = items;
+        _timingStats = timingStats;
     }
 
     @SuppressWarnings("unchecked")
@@ -65,12 +92,19 @@ public class FetcherRunnable implements Runnable {
                 ScoredUrlDatum item = iter.next();
                 FetchedDatum result = new FetchedDatum(item);
                 Comparable status = null;
+                long startTime = System.currentTimeMillis();
+                int contentBytes = 0;
+                FetchTimings timings = FetchTimings.getCurrent();
+                timings.reset();
 
                 try {
                     process.increment(FetchCounters.URLS_FETCHING, 1);
-                    long startTime = System.currentTimeMillis();
                     result = _httpFetcher.get(item);
                     long deltaTime = System.currentTimeMillis() - startTime;
+                    _items.recordResponse(deltaTime, false);
+                    
+                    contentBytes = result.getContentLength();
+                    _items.reserveContentBytes(contentBytes);
 
                     process.increment(FetchCounters.FETCHED_TIME, (int)deltaTime);
                     process.increment(FetchCounters.URLS_FETCHED, 1);
@@ -80,6 +114,7 @@ public class FetcherRunnable implements Runnable {
                     status = UrlStatus.FETCHED.toString();
                 } catch (BaseFetchException e) {
                     process.increment(FetchCounters.URLS_FAILED, 1);
+                    _items.recordResponse(System.currentTimeMillis() - startTime, isHostError(e.mapToUrlStatus()));
 
                     // We can do this because each of the concrete subclasses of BaseFetchException implements
                     // WritableComparable
@@ -88,16 +123,30 @@ public class FetcherRunnable implements Runnable {
                     LOGGER.warn("Unexpected exception while fetching " + item.getUrl(), e);
 
                     process.increment(FetchCounters.URLS_FAILED, 1);
+                    _items.recordResponse(System.currentTimeMillis() - startTime, true);
                     status = new IOFetchException(item.getUrl(), new IOException(e));
                 } finally {
                     process.decrement(FetchCounters.URLS_FETCHING, 1);
                     process.decrement(FetchCounters.URLS_REMAINING, 1);
+                    
+                    timings.set(Phase.TOTAL, System.currentTimeMillis() - startTime);
+                    recordTimings(process, item.getUrl(), status, timings);
 
-                    // Cascading _collectors aren't thread-safe.
-                    synchronized (collector) {
-                        Tuple tuple = result.toTuple();
-                        tuple.add(status);
-                        collector.add(tuple);
+                    Tuple tuple = result.toTuple();
+                    tuple.add(status);
+                    
+                    // The content stays reserved until the tuple has actually been written,
+                    // not just queued up for the writer thread.
+                    Runnable releaseBytes = (contentBytes > 0) ? new ReleaseContentBytes(_items, contentBytes) : null;
+                    boolean added = false;
+                    
+                    try {
+                        QueuedTupleEntryCollector.safeAdd(collector, tuple, releaseBytes);
+                        added = true;
+                    } finally {
+                        if (!added && (releaseBytes != null)) {
+                            releaseBytes.run();
+                        }
                     }
                 }
             }
@@ -107,4 +156,44 @@ public class FetcherRunnable implements Runnable {
         }
     }
 
+    private void recordTimings(BixoFlowProcess process, String url, Comparable status, FetchTimings timings) {
+        incrementTime(process, FetchCounters.DNS_TIME, timings.get(Phase.DNS));
+        incrementTime(process, FetchCounters.CONNECT_TIME, timings.get(Phase.CONNECT));
+        incrementTime(process, FetchCounters.TLS_CONNECT_TIME, timings.get(Phase.TLS_CONNECT));
+        incrementTime(process, FetchCounters.FIRST_BYTE_TIME, timings.get(Phase.FIRST_BYTE));
+        incrementTime(process, FetchCounters.TRANSFER_TIME, timings.get(Phase.TRANSFER));
+
+        if (_timingStats != null) {
+            String statusName;
+            if (status instanceof BaseFetchException) {
+                statusName = ((BaseFetchException)status).mapToUrlStatus().toString();
+            } else if (status != null) {
+                statusName = status.toString();
+            } else {
+                statusName = UrlStatus.ERROR_IOEXCEPTION.toString();
+            }
+            
+            _timingStats.record(DomainNames.safeGetHost(url), statusName, timings);
+        }
+    }
+    
+    private static void incrementTime(BixoFlowProcess process, FetchCounters counter, long time) {
+        if (time != FetchTimings.NOT_TIMED) {
+            process.increment(counter, (int)time);
+        }
+    }
+    
+    /**
+     * Decide whether a failed fetch says something about the health of the host,
+     * versus the URL (e.g. a 404 or content we don't want).
+     * 
+     * @param status - status from the fetch exception
+     * @return true if the host should be backed off
+     */
+    private static boolean isHostError(UrlStatus status) {
+        return (status == UrlStatus.ERROR_IOEXCEPTION)
+            || (status == UrlStatus.HTTP_SERVER_ERROR)
+            || (status == UrlStatus.ABORTED_SLOW_RESPONSE);
+    }
+
 }
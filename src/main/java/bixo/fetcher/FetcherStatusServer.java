@@ -0,0 +1,102 @@
+package bixo.fetcher;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.BindException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+
+import org.apache.log4j.Logger;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Minimal HTTP server that returns the FetcherManager's latest status snapshot
+ * as JSON, so you can see what a running fetch task is doing without waiting
+ * for the next log dump.
+ *
+ * The server only listens on the loopback interface. Requests never block on
+ * the fetcher, since they just read the most recent snapshot.
+ *
+ */
+public class FetcherStatusServer {
+    private static final Logger LOGGER = Logger.getLogger(FetcherStatusServer.class);
+
+    public static final String STATUS_PATH = "/status";
+
+    private FetcherManager _fetcherMgr;
+    private HttpServer _server;
+
+    public FetcherStatusServer(FetcherManager fetcherMgr) {
+        _fetcherMgr = fetcherMgr;
+    }
+
+    /**
+     * Start the server on <port>. If the port is in use (e.g. by another task
+     * running on the same slave) we fall back to any free port, so use
+     * getPort() to find out where we wound up.
+     *
+     * @param port - port to listen on, or 0 for any free port
+     * @throws IOException
+     */
+    public void start(int port) throws IOException {
+        InetAddress localhost = InetAddress.getByName("127.0.0.1");
+
+        try {
+            _server = HttpServer.create(new InetSocketAddress(localhost, port), 0);
+        } catch (BindException e) {
+            LOGGER.warn("Status port " + port + " is in use, picking a free port");
+            _server = HttpServer.create(new InetSocketAddress(localhost, 0), 0);
+        }
+
+        _server.createContext(STATUS_PATH, new HttpHandler() {
+
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                byte[] body = getStatusJson().getBytes("UTF-8");
+                exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+                exchange.sendResponseHeaders(200, body.length);
+
+                OutputStream out = exchange.getResponseBody();
+                try {
+                    out.write(body);
+                } finally {
+                    out.close();
+                }
+            }
+        });
+
+        _fetcherMgr.enableStatusSnapshots();
+        _server.start();
+        LOGGER.info("Fetcher status available at http://127.0.0.1:" + getPort() + STATUS_PATH);
+    }
+
+    public void stop() {
+        if (_server != null) {
+            _server.stop(0);
+            _server = null;
+        }
+    }
+
+    public int getPort() {
+        return _server.getAddress().getPort();
+    }
+
+    /**
+     * Return the current status. We include the age of the snapshot, since if the
+     * FetcherManager thread is stuck, the snapshot won't be updated.
+     *
+     * @return JSON status
+     */
+    public String getStatusJson() {
+        FetcherStatusSnapshot snapshot = _fetcherMgr.getStatusSnapshot();
+        if (snapshot == null) {
+            return "{\"snapshotAge\":null,\"fetcher\":null}";
+        } else {
+            long age = System.currentTimeMillis() - snapshot.getTime();
+            return "{\"snapshotAge\":" + age + ",\"fetcher\":" + snapshot.toJson() + "}";
+        }
+    }
+}
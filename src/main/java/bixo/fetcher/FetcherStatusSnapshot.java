@@ -0,0 +1,314 @@
+package bixo.fetcher;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import bixo.cascading.BixoFlowProcess;
+import bixo.hadoop.FetchCounters;
+import bixo.utils.DomainNames;
+
+/**
+ * Point-in-time view of what a FetcherManager is doing, for status reporting.
+ *
+ * Snapshots are built by the FetcherManager thread and never modified, so other
+ * threads (e.g. FetcherStatusServer) can read them without any locking.
+ *
+ */
+public class FetcherStatusSnapshot {
+
+    public static class QueueStatus {
+        private String _domain;
+        private String _host;
+        private int _numUrls;
+        private int _numActiveFetchers;
+        private long _nextFetchDelay;
+        private long _crawlDelay;
+        private double _priority;
+        private double _avgResponseTime;
+        private double _errorRate;
+
+        QueueStatus(FetcherQueue queue, long now) {
+            _domain = queue.getDomain();
+            _host = queue.getHost();
+            _numUrls = queue.size();
+            _numActiveFetchers = queue.getNumActiveFetchers();
+            _nextFetchDelay = queue.getNextFetchTime() - now;
+            _crawlDelay = queue.getCrawlDelay();
+            _priority = queue.getPriority(now);
+            _avgResponseTime = queue.getAvgResponseTime();
+            _errorRate = queue.getErrorRate();
+        }
+
+        public String getDomain() {
+            return _domain;
+        }
+
+        public int getNumUrls() {
+            return _numUrls;
+        }
+
+        public long getNextFetchDelay() {
+            return _nextFetchDelay;
+        }
+
+        private void toJson(StringBuilder json) {
+            json.append('{');
+            appendField(json, "domain", _domain).append(',');
+            appendField(json, "host", _host).append(',');
+            appendField(json, "urls", _numUrls).append(',');
+            appendField(json, "activeFetchers", _numActiveFetchers).append(',');
+            appendField(json, "nextFetchDelay", _nextFetchDelay).append(',');
+            appendField(json, "crawlDelay", _crawlDelay).append(',');
+            appendField(json, "priority", _priority).append(',');
+            appendField(json, "avgResponseTime", _avgResponseTime).append(',');
+            appendField(json, "errorRate", _errorRate);
+            json.append('}');
+        }
+    }
+
+    public static class FetchListStatus {
+        private String _domain;
+        private String _host;
+        private int _numUrls;
+        private int _numResponses;
+        private int _numErrors;
+        private long _age;
+
+        FetchListStatus(FetchList fetchList, long now) {
+            _domain = fetchList.getDomain();
+            _numUrls = fetchList.size();
+            _host = (_numUrls == 0) ? "" : DomainNames.safeGetHost(fetchList.get(0).getUrl());
+            _numResponses = fetchList.getNumResponses();
+            _numErrors = fetchList.getNumErrors();
+            _age = now - fetchList.getCreateTime();
+        }
+
+        public String getDomain() {
+            return _domain;
+        }
+
+        public int getNumUrls() {
+            return _numUrls;
+        }
+
+        public int getNumResponses() {
+            return _numResponses;
+        }
+
+        private void toJson(StringBuilder json) {
+            json.append('{');
+            appendField(json, "domain", _domain).append(',');
+            appendField(json, "host", _host).append(',');
+            appendField(json, "urls", _numUrls).append(',');
+            appendField(json, "responses", _numResponses).append(',');
+            appendField(json, "errors", _numErrors).append(',');
+            appendField(json, "age", _age);
+            json.append('}');
+        }
+    }
+
+    private long _time;
+    private int _activeThreads;
+    private int _maxThreads;
+
+    private int _urlsFetching;
+    private int _urlsRemaining;
+    private int _domainsRemaining;
+    private long _bytesInMemory;
+    private long _maxBytesInMemory;
+
+    // Totals, and rates since the previous snapshot.
+    private long _urlsFetched;
+    private long _urlsFailed;
+    private long _bytesFetched;
+    private double _urlsPerSecond;
+    private double _bytesPerSecond;
+    private double _errorRate;
+
+    private int _numPendingQueues;
+    private List<QueueStatus> _pendingQueues;
+    private List<FetchListStatus> _activeFetchLists;
+
+    /**
+     * Build a snapshot of the current fetch state.
+     *
+     * @param queueMgr - source of queues and active fetch lists
+     * @param process - source of counters
+     * @param activeThreads - number of threads currently fetching
+     * @param maxThreads - size of the fetch thread pool
+     * @param maxQueues - max number of pending queues to include
+     * @param previous - previous snapshot, used to calculate rates, or null
+     * @param now - current time, from the fetcher's clock
+     */
+    public FetcherStatusSnapshot(FetcherQueueMgr queueMgr, BixoFlowProcess process, int activeThreads, int maxThreads, int maxQueues, FetcherStatusSnapshot previous, long now) {
+        _time = now;
+        _activeThreads = activeThreads;
+        _maxThreads = maxThreads;
+
+        _urlsFetching = process.getCounter(FetchCounters.URLS_FETCHING);
+        _urlsRemaining = process.getCounter(FetchCounters.URLS_REMAINING);
+        _domainsRemaining = process.getCounter(FetchCounters.DOMAINS_REMAINING);
+        _bytesInMemory = queueMgr.getBytesInMemory();
+        _maxBytesInMemory = queueMgr.getMaxBytesInMemory();
+
+        _urlsFetched = process.getCounter(FetchCounters.URLS_FETCHED);
+        _urlsFailed = process.getCounter(FetchCounters.URLS_FAILED);
+        _bytesFetched = process.getCounter(FetchCounters.FETCHED_BYTES);
+
+        if ((previous != null) && (_time > previous._time)) {
+            double deltaSeconds = (_time - previous._time) / 1000.0;
+            long deltaFetched = _urlsFetched - previous._urlsFetched;
+            long deltaFailed = _urlsFailed - previous._urlsFailed;
+
+            _urlsPerSecond = (deltaFetched + deltaFailed) / deltaSeconds;
+            _bytesPerSecond = (_bytesFetched - previous._bytesFetched) / deltaSeconds;
+            _errorRate = (deltaFetched + deltaFailed) == 0 ? 0.0 : (double)deltaFailed / (deltaFetched + deltaFailed);
+        }
+
+        _pendingQueues = new ArrayList<QueueStatus>();
+        _numPendingQueues = queueMgr.getPendingQueueStatus(_pendingQueues, maxQueues, _time);
+        _activeFetchLists = queueMgr.getActiveFetchListStatus(_time);
+    }
+
+    public long getTime() {
+        return _time;
+    }
+
+    public int getActiveThreads() {
+        return _activeThreads;
+    }
+
+    public int getMaxThreads() {
+        return _maxThreads;
+    }
+
+    public double getUrlsPerSecond() {
+        return _urlsPerSecond;
+    }
+
+    public double getErrorRate() {
+        return _errorRate;
+    }
+
+    public int getNumPendingQueues() {
+        return _numPendingQueues;
+    }
+
+    public List<QueueStatus> getPendingQueues() {
+        return _pendingQueues;
+    }
+
+    public List<FetchListStatus> getActiveFetchLists() {
+        return _activeFetchLists;
+    }
+
+    public String toJson() {
+        StringBuilder json = new StringBuilder();
+        json.append('{');
+        appendField(json, "time", _time).append(',');
+
+        json.append("\"threads\":{");
+        appendField(json, "active", _activeThreads).append(',');
+        appendField(json, "max", _maxThreads).append(',');
+        appendField(json, "utilization", _maxThreads == 0 ? 0.0 : (double)_activeThreads / _maxThreads);
+        json.append("},");
+
+        json.append("\"urls\":{");
+        appendField(json, "fetching", _urlsFetching).append(',');
+        appendField(json, "remaining", _urlsRemaining).append(',');
+        appendField(json, "fetched", _urlsFetched).append(',');
+        appendField(json, "failed", _urlsFailed);
+        json.append("},");
+
+        json.append("\"throughput\":{");
+        appendField(json, "urlsPerSecond", _urlsPerSecond).append(',');
+        appendField(json, "bytesPerSecond", _bytesPerSecond).append(',');
+        appendField(json, "errorRate", _errorRate);
+        json.append("},");
+
+        json.append("\"memory\":{");
+        appendField(json, "bytes", _bytesInMemory).append(',');
+        appendField(json, "maxBytes", _maxBytesInMemory);
+        json.append("},");
+
+        appendField(json, "domainsRemaining", _domainsRemaining).append(',');
+        appendField(json, "pendingQueueCount", _numPendingQueues).append(',');
+
+        json.append("\"pendingQueues\":[");
+        for (int i = 0; i < _pendingQueues.size(); i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+
+            _pendingQueues.get(i).toJson(json);
+        }
+        json.append("],");
+
+        json.append("\"activeFetchLists\":[");
+        for (int i = 0; i < _activeFetchLists.size(); i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+
+            _activeFetchLists.get(i).toJson(json);
+        }
+        json.append("]");
+
+        json.append('}');
+        return json.toString();
+    }
+
+    private static StringBuilder appendField(StringBuilder json, String name, long value) {
+        return appendName(json, name).append(value);
+    }
+
+    private static StringBuilder appendField(StringBuilder json, String name, double value) {
+        appendName(json, name);
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            return json.append("null");
+        } else {
+            return json.append(value);
+        }
+    }
+
+    private static StringBuilder appendField(StringBuilder json, String name, String value) {
+        appendName(json, name);
+        if (value == null) {
+            return json.append("null");
+        }
+
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    json.append("\\\"");
+                    break;
+                case '\\':
+                    json.append("\\\\");
+                    break;
+                case '\n':
+                    json.append("\\n");
+                    break;
+                case '\r':
+                    json.append("\\r");
+                    break;
+                case '\t':
+                    json.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        json.append(String.format("\\u%04x", (int)c));
+                    } else {
+                        json.append(c);
+                    }
+            }
+        }
+
+        return json.append('"');
+    }
+
+    private static StringBuilder appendName(StringBuilder json, String name) {
+        return json.append('"').append(name).append("\":");
+    }
+}
@@ -0,0 +1,77 @@
+package bixo.fetcher.http;
+
+/**
+ * Time spent in each phase of the current fetch, for the calling thread.
+ *
+ * The fetcher (and the socket factories and host name resolver it uses) add
+ * to these as the request is processed, and FetcherRunnable reads them when
+ * the fetch is done. Phases that didn't happen (e.g. DNS and connect when a
+ * pooled connection was re-used) are set to NOT_TIMED.
+ *
+ */
+public class FetchTimings {
+
+    public enum Phase {
+        DNS,            // Resolving the host name
+        CONNECT,        // Opening a TCP connection (http)
+        TLS_CONNECT,    // Opening a TCP connection and doing the TLS handshake (https)
+        FIRST_BYTE,     // Waiting for the response headers, once we have a connection
+        TRANSFER,       // Reading the response body
+        TOTAL           // Everything, as seen by the caller
+    }
+
+    public static final long NOT_TIMED = -1;
+
+    private static final ThreadLocal<FetchTimings> CURRENT = new ThreadLocal<FetchTimings>() {
+        @Override
+        protected FetchTimings initialValue() {
+            return new FetchTimings();
+        }
+    };
+
+    private long[] _times;
+
+    private FetchTimings() {
+        _times = new long[Phase.values().length];
+        reset();
+    }
+
+    /**
+     * Return the timings for the fetch being done by the calling thread.
+     *
+     * @return timings
+     */
+    public static FetchTimings getCurrent() {
+        return CURRENT.get();
+    }
+
+    public void reset() {
+        for (int i = 0; i < _times.length; i++) {
+            _times[i] = NOT_TIMED;
+        }
+    }
+
+    /**
+     * Add time to <phase>. We accumulate since redirects can mean more than
+     * one DNS lookup, connection, etc. for a single fetch.
+     *
+     * @param phase - phase of the fetch
+     * @param millis - time in milliseconds
+     */
+    public void add(Phase phase, long millis) {
+        int index = phase.ordinal();
+        _times[index] = Math.max(0, _times[index]) + Math.max(0, millis);
+    }
+
+    public void set(Phase phase, long millis) {
+        _times[phase.ordinal()] = Math.max(0, millis);
+    }
+
+    /**
+     * @param phase - phase of the fetch
+     * @return time in milliseconds, or NOT_TIMED if the phase didn't happen.
+     */
+    public long get(Phase phase) {
+        return _times[phase.ordinal()];
+    }
+}
@@ -42,6 +42,8 @@ public interface IHttpHeaders {
 
     public final static String CONTENT_TYPE = "Content-Type";
 
+    public final static String TRANSFER_ENCODING = "Transfer-Encoding";
+
     public final static String LAST_MODIFIED = "Last-Modified";
 
     public final static String LOCATION = "Location";
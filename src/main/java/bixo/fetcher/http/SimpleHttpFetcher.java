@@ -26,10 +26,13 @@ import java.io.ByteArrayOutputStream;
 import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.InetAddress;
 import java.net.MalformedURLException;
+import java.net.Socket;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.net.UnknownHostException;
 import java.security.NoSuchAlgorithmException;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -61,12 +64,15 @@ import org.apache.http.client.params.ClientParamBean;
 import org.apache.http.client.params.CookiePolicy;
 import org.apache.http.client.params.HttpClientParams;
 import org.apache.http.client.protocol.ClientContext;
+import org.apache.http.conn.ConnectTimeoutException;
 import org.apache.http.conn.ConnectionPoolTimeoutException;
 import org.apache.http.conn.params.ConnManagerParams;
 import org.apache.http.conn.params.ConnPerRouteBean;
+import org.apache.http.conn.scheme.HostNameResolver;
 import org.apache.http.conn.scheme.PlainSocketFactory;
 import org.apache.http.conn.scheme.Scheme;
 import org.apache.http.conn.scheme.SchemeRegistry;
+import org.apache.http.conn.scheme.SocketFactory;
 import org.apache.http.conn.ssl.SSLSocketFactory;
 import org.apache.http.cookie.params.CookieSpecParamBean;
 import org.apache.http.impl.client.BasicCookieStore;
@@ -94,6 +100,7 @@ import bixo.exceptions.BaseFetchException;
 import bixo.exceptions.HttpFetchException;
 import bixo.exceptions.IOFetchException;
 import bixo.exceptions.UrlFetchException;
+import bixo.fetcher.http.FetchTimings.Phase;
 import bixo.utils.HttpUtils;
 
 @SuppressWarnings("serial")
@@ -176,6 +183,62 @@ public class SimpleHttpFetcher implements IHttpFetcher {
         }
     }
     
+    /**
+     * Resolve host names, recording how long it takes in the current FetchTimings.
+     */
+    private static class TimingHostNameResolver implements HostNameResolver {
+
+        @Override
+        public InetAddress resolve(String hostname) throws IOException {
+            long startTime = System.currentTimeMillis();
+            try {
+                return InetAddress.getByName(hostname);
+            } finally {
+                FetchTimings.getCurrent().add(Phase.DNS, System.currentTimeMillis() - startTime);
+            }
+        }
+    }
+    
+    /**
+     * Wrap a SocketFactory, recording how long it takes to connect (excluding any
+     * DNS time recorded while connecting) in the current FetchTimings.
+     */
+    private static class TimingSocketFactory implements SocketFactory {
+        private SocketFactory _factory;
+        private Phase _phase;
+        
+        public TimingSocketFactory(SocketFactory factory, Phase phase) {
+            _factory = factory;
+            _phase = phase;
+        }
+        
+        @Override
+        public Socket createSocket() throws IOException {
+            return _factory.createSocket();
+        }
+
+        @Override
+        public Socket connectSocket(Socket sock, String host, int port, InetAddress localAddress, int localPort, HttpParams params)
+                        throws IOException, UnknownHostException, ConnectTimeoutException {
+            FetchTimings timings = FetchTimings.getCurrent();
+            long dnsTime = Math.max(0, timings.get(Phase.DNS));
+            long startTime = System.currentTimeMillis();
+            
+            try {
+                return _factory.connectSocket(sock, host, port, localAddress, localPort, params);
+            } finally {
+                long connectTime = System.currentTimeMillis() - startTime;
+                dnsTime = Math.max(0, timings.get(Phase.DNS)) - dnsTime;
+                timings.add(_phase, connectTime - dnsTime);
+            }
+        }
+
+        @Override
+        public boolean isSecure(Socket sock) throws IllegalArgumentException {
+            return _factory.isSecure(sock);
+        }
+    }
+    
     /**
      * Handler to record last permanent redirect (if any) in context.
      *
@@ -338,6 +401,8 @@ public class SimpleHttpFetcher implements IHttpFetcher {
         int numRedirects = 0;
         boolean needAbort = true;
         String contentType = "";
+        FetchTimings timings = FetchTimings.getCurrent();
+        timings.reset();
         
         try {
             getter = new HttpGet(new URI(url));
@@ -350,6 +415,11 @@ public class SimpleHttpFetcher implements IHttpFetcher {
 
             readStartTime = System.currentTimeMillis();
             response = _httpClient.execute(getter, localContext);
+            
+            // Time spent waiting for the response, once we had a connection.
+            long connectTime = Math.max(0, timings.get(Phase.DNS)) + Math.max(0, timings.get(Phase.CONNECT))
+                            + Math.max(0, timings.get(Phase.TLS_CONNECT));
+            timings.add(Phase.FIRST_BYTE, System.currentTimeMillis() - readStartTime - connectTime);
 
             Header[] headers = response.getAllHeaders();
             for (Header header : headers) {
@@ -459,6 +529,7 @@ public class SimpleHttpFetcher implements IHttpFetcher {
 
         if (entity != null) {
             InputStream in = null;
+            long transferStartTime = System.currentTimeMillis();
 
             try {
                 in = entity.getContent();
@@ -499,6 +570,7 @@ public class SimpleHttpFetcher implements IHttpFetcher {
             } finally {
                 safeAbort(needAbort, getter);
                 safeClose(in);
+                timings.add(Phase.TRANSFER, System.currentTimeMillis() - transferStartTime);
             }
         }
 
@@ -569,7 +641,11 @@ public class SimpleHttpFetcher implements IHttpFetcher {
 
             // Create and initialize scheme registry
             SchemeRegistry schemeRegistry = new SchemeRegistry();
-            schemeRegistry.register(new Scheme("http", PlainSocketFactory.getSocketFactory(), 80));
+            
+            // Wrap the socket factories so that we can report DNS and connect times. For https
+            // the DNS time is included in the connect time, as SSLSocketFactory resolves the host.
+            SocketFactory plainFactory = new PlainSocketFactory(new TimingHostNameResolver());
+            schemeRegistry.register(new Scheme("http", new TimingSocketFactory(plainFactory, Phase.CONNECT), 80));
             SSLSocketFactory sf = null;
 
             for (String contextName : SSL_CONTEXT_NAMES) {
@@ -587,7 +663,7 @@ public class SimpleHttpFetcher implements IHttpFetcher {
             
             if (sf != null) {
                 sf.setHostnameVerifier(SSLSocketFactory.BROWSER_COMPATIBLE_HOSTNAME_VERIFIER);
-                schemeRegistry.register(new Scheme("https", sf, 443));
+                schemeRegistry.register(new Scheme("https", new TimingSocketFactory(sf, Phase.TLS_CONNECT), 443));
             } else {
                 LOGGER.warn("No valid SSLContext found for https");
             }
@@ -0,0 +1,6 @@
+package bixo.hadoop;
+
+public enum DedupCounters {
+    DOCUMENTS_UNIQUE,       // Parsed documents that aren't a near-duplicate of another document
+    DOCUMENTS_DUPLICATE,    // Parsed documents removed as near-duplicates
+}
@@ -22,6 +22,13 @@ public enum FetchCounters {
     URLS_FAILED,
     
     FETCHED_BYTES,          // Total bytes of fetched content.
-    FETCHED_TIME            // Total time in milliseconds spent fetching
+    FETCHED_TIME,           // Total time in milliseconds spent fetching
+    
+    // Breakdown of fetch time (in milliseconds) by phase
+    DNS_TIME,
+    CONNECT_TIME,           // http connections
+    TLS_CONNECT_TIME,       // https connections, including the TLS handshake
+    FIRST_BYTE_TIME,        // Waiting for the response headers
+    TRANSFER_TIME           // Reading the response body
 
 }
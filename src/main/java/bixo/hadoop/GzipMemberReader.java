@@ -0,0 +1,245 @@
+package bixo.hadoop;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import org.apache.hadoop.fs.FSDataInputStream;
+
+/**
+ * Reads individual members of a multi-member gzip file (such as a .warc.gz
+ * file, where each record is a separate member), keeping track of exactly
+ * where each member ends in the compressed data.
+ *
+ * This lets a reader start in the middle of a file, find the first member
+ * that starts after that point, and read members until it reaches the end of
+ * its range. That's something GZIPInputStream can't do, since it reads ahead
+ * and doesn't say where a member ends.
+ *
+ */
+public class GzipMemberReader {
+    private static final int GZIP_MAGIC_1 = 0x1f;
+    private static final int GZIP_MAGIC_2 = 0x8b;
+    private static final int DEFLATE_METHOD = 8;
+
+    private static final int FHCRC = 2;
+    private static final int FEXTRA = 4;
+    private static final int FNAME = 8;
+    private static final int FCOMMENT = 16;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private FSDataInputStream _in;
+    private Inflater _inflater;
+    private CRC32 _crc;
+    private byte[] _inflated;
+
+    private byte[] _buffer;
+    private long _bufferStart;
+    private int _bufferPos;
+    private int _bufferLen;
+
+    public GzipMemberReader(FSDataInputStream in) {
+        _in = in;
+        _inflater = new Inflater(true);
+        _crc = new CRC32();
+        _inflated = new byte[BUFFER_SIZE];
+        _buffer = new byte[BUFFER_SIZE];
+    }
+
+    /**
+     * @return position just past the member that was last read
+     */
+    public long getPos() {
+        return _bufferStart + _bufferPos;
+    }
+
+    private void fill(long pos) throws IOException {
+        _in.seek(pos);
+        _bufferStart = pos;
+        _bufferPos = 0;
+        _bufferLen = Math.max(0, _in.read(_buffer, 0, _buffer.length));
+    }
+
+    private boolean atEof() throws IOException {
+        if (_bufferPos < _bufferLen) {
+            return false;
+        }
+
+        fill(getPos());
+        return _bufferLen == 0;
+    }
+
+    private int readByte() throws IOException {
+        if (atEof()) {
+            throw new EOFException("Unexpected end of gzip data");
+        }
+
+        return _buffer[_bufferPos++] & 0xff;
+    }
+
+    private int readShort() throws IOException {
+        return readByte() | (readByte() << 8);
+    }
+
+    private long readInt() throws IOException {
+        return (readShort() & 0xffffL) | ((long)readShort() << 16);
+    }
+
+    /**
+     * Decompress the gzip member that starts at <pos>.
+     *
+     * @param pos - position of the member in the file
+     * @return decompressed data, or null if we're at the end of the file
+     * @throws IOException if there isn't a valid gzip member at <pos>
+     */
+    public byte[] readMember(long pos) throws IOException {
+        if ((pos < _bufferStart) || (pos > _bufferStart + _bufferLen)) {
+            fill(pos);
+        } else {
+            _bufferPos = (int)(pos - _bufferStart);
+        }
+
+        if (atEof()) {
+            return null;
+        }
+
+        if ((readByte() != GZIP_MAGIC_1) || (readByte() != GZIP_MAGIC_2) || (readByte() != DEFLATE_METHOD)) {
+            throw new IOException("Not a gzip member at position " + pos);
+        }
+
+        int flags = readByte();
+
+        // Skip mtime, extra flags and OS.
+        for (int i = 0; i < 6; i++) {
+            readByte();
+        }
+
+        if ((flags & FEXTRA) != 0) {
+            int extraLen = readShort();
+            for (int i = 0; i < extraLen; i++) {
+                readByte();
+            }
+        }
+
+        if ((flags & FNAME) != 0) {
+            while (readByte() != 0) {
+            }
+        }
+
+        if ((flags & FCOMMENT) != 0) {
+            while (readByte() != 0) {
+            }
+        }
+
+        if ((flags & FHCRC) != 0) {
+            readShort();
+        }
+
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        _inflater.reset();
+        _crc.reset();
+
+        try {
+            while (!_inflater.finished()) {
+                if (_inflater.needsInput()) {
+                    if (atEof()) {
+                        throw new EOFException("Unexpected end of gzip data");
+                    }
+
+                    _inflater.setInput(_buffer, _bufferPos, _bufferLen - _bufferPos);
+                    _bufferPos = _bufferLen;
+                }
+
+                int len = _inflater.inflate(_inflated, 0, _inflated.length);
+                if ((len == 0) && _inflater.needsDictionary()) {
+                    throw new IOException("Invalid gzip data at position " + pos);
+                }
+
+                _crc.update(_inflated, 0, len);
+                result.write(_inflated, 0, len);
+            }
+        } catch (DataFormatException e) {
+            IOException ioe = new IOException("Invalid gzip data at position " + pos);
+            ioe.initCause(e);
+            throw ioe;
+        }
+
+        // Back up to the end of the compressed data, which is where the trailer starts.
+        _bufferPos -= _inflater.getRemaining();
+
+        if ((readInt() != _crc.getValue()) || (readInt() != (result.size() & 0xffffffffL))) {
+            throw new IOException("Bad gzip trailer for member at position " + pos);
+        }
+
+        return result.toByteArray();
+    }
+
+    /**
+     * Find the first gzip member that starts at or after <start> and before
+     * <end>, and whose data begins with <prefix>. Requiring a prefix (and
+     * successful decompression) avoids being fooled by compressed data that
+     * happens to look like a gzip header.
+     *
+     * @return position of the member, or -1 if there isn't one
+     */
+    public long findMember(long start, long end, byte[] prefix) throws IOException {
+        long pos = start;
+        while (pos < end) {
+            // Only read from the file when <pos> isn't in the buffer. Most candidates
+            // fail in the first few bytes, so we usually keep scanning the same buffer.
+            if ((pos < _bufferStart) || (pos >= _bufferStart + _bufferLen)) {
+                fill(pos);
+                if (_bufferLen == 0) {
+                    return -1;
+                }
+            }
+
+            int i = (int)(pos - _bufferStart);
+            while ((i < _bufferLen) && (_bufferStart + i < end) && ((_buffer[i] & 0xff) != GZIP_MAGIC_1)) {
+                i++;
+            }
+
+            long candidatePos = _bufferStart + i;
+            if ((i == _bufferLen) || (candidatePos >= end)) {
+                pos = candidatePos;
+                continue;
+            }
+
+            if (isMember(candidatePos, prefix)) {
+                return candidatePos;
+            }
+
+            pos = candidatePos + 1;
+        }
+
+        return -1;
+    }
+
+    private boolean isMember(long pos, byte[] prefix) {
+        try {
+            byte[] data = readMember(pos);
+            if ((data == null) || (data.length < prefix.length)) {
+                return false;
+            }
+
+            for (int i = 0; i < prefix.length; i++) {
+                if (data[i] != prefix[i]) {
+                    return false;
+                }
+            }
+
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    public void close() throws IOException {
+        _inflater.end();
+        _in.close();
+    }
+}
@@ -4,4 +4,5 @@ public enum ImportCounters {
     URLS_FILTERED,      // URLs removed due to max URL constraint
     URLS_REJECTED,      // URLS rejected because they were invalid
     URLS_ACCEPTED,      // URLs accepted
+    URLS_KNOWN,         // URLs removed because they're already in the URL DB
 }
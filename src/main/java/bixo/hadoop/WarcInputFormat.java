@@ -0,0 +1,368 @@
+package bixo.hadoop;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TimeZone;
+
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.BytesWritable;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.mapred.FileInputFormat;
+import org.apache.hadoop.mapred.FileSplit;
+import org.apache.hadoop.mapred.InputSplit;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.RecordReader;
+import org.apache.hadoop.mapred.Reporter;
+import org.apache.log4j.Logger;
+
+import bixo.datum.BaseDatum;
+import bixo.datum.FetchedDatum;
+import bixo.datum.HttpHeaders;
+import bixo.fetcher.http.IHttpHeaders;
+import cascading.tuple.Tuple;
+
+/**
+ * Reads WARC files, returning a FetchedDatum tuple for each successful
+ * (2xx) HTTP response record. All other records are skipped.
+ *
+ * Compressed (.gz) files, where every record is a separate gzip member, are
+ * split on file system block boundaries. Each split reads the records whose
+ * gzip member starts within the split. Uncompressed files aren't split.
+ *
+ */
+public class WarcInputFormat extends FileInputFormat<LongWritable, Tuple> {
+    private static final Logger LOGGER = Logger.getLogger(WarcInputFormat.class);
+
+    private static final String COMPRESSED_EXTENSION = ".gz";
+
+    private static final byte[] WARC_PREFIX = { 'W', 'A', 'R', 'C', '/' };
+
+    private static final String WARC_TYPE_HEADER = "warc-type";
+    private static final String WARC_TARGET_URI_HEADER = "warc-target-uri";
+    private static final String WARC_DATE_HEADER = "warc-date";
+    private static final String CONTENT_LENGTH_HEADER = "content-length";
+    private static final String CONTENT_TYPE_HEADER = "content-type";
+
+    private static final String RESPONSE_TYPE = "response";
+    private static final String HTTP_RESPONSE_CONTENT_TYPE = "application/http";
+
+    /**
+     * The parts of a WARC record that we need.
+     */
+    protected static class WarcRecord {
+        private Map<String, String> _headers;
+        private byte[] _block;
+
+        public WarcRecord(Map<String, String> headers, byte[] block) {
+            _headers = headers;
+            _block = block;
+        }
+
+        public String getHeader(String name) {
+            return _headers.get(name.toLowerCase());
+        }
+
+        public byte[] getBlock() {
+            return _block;
+        }
+    }
+
+    protected static class WarcRecordReader implements RecordReader<LongWritable, Tuple> {
+        private long _start;
+        private long _end;
+        private long _pos;
+
+        // Set for compressed files. A member usually holds one record, but could hold
+        // several (or the whole file, if it was gzipped in one go).
+        private GzipMemberReader _memberReader;
+        private InputStream _memberIn;
+        private long _memberPos;
+
+        // Set for uncompressed files.
+        private FSDataInputStream _fileIn;
+        private InputStream _in;
+
+        public WarcRecordReader(JobConf conf, FileSplit split) throws IOException {
+            Path file = split.getPath();
+            FileSystem fs = file.getFileSystem(conf);
+            FSDataInputStream fileIn = fs.open(file);
+
+            _start = split.getStart();
+            _end = split.getStart() + split.getLength();
+
+            if (isCompressed(file)) {
+                _memberReader = new GzipMemberReader(fileIn);
+
+                // Skip to the first record that starts in our split. Any partial record before
+                // it was read by the previous split.
+                _pos = (_start == 0) ? 0 : _memberReader.findMember(_start, _end, WARC_PREFIX);
+                if (_pos == -1) {
+                    _pos = _end;
+                }
+            } else {
+                _fileIn = fileIn;
+                _in = new BufferedInputStream(fileIn);
+                _pos = 0;
+            }
+        }
+
+        @Override
+        public boolean next(LongWritable key, Tuple value) throws IOException {
+            while (true) {
+                WarcRecord record;
+                long recordPos = _pos;
+
+                if (_memberReader != null) {
+                    if (_memberIn == null) {
+                        if (_pos >= _end) {
+                            return false;
+                        }
+
+                        byte[] data = _memberReader.readMember(_pos);
+                        if (data == null) {
+                            return false;
+                        }
+
+                        _memberIn = new ByteArrayInputStream(data);
+                        _memberPos = _pos;
+                        _pos = _memberReader.getPos();
+                    }
+
+                    // Records in a member are keyed by the member's position.
+                    recordPos = _memberPos;
+                    record = readRecord(_memberIn);
+                    if (record == null) {
+                        _memberIn = null;
+                        continue;
+                    }
+                } else {
+                    record = readRecord(_in);
+                    if (record == null) {
+                        return false;
+                    }
+
+                    // This is where the buffered stream has read up to, so it's only an
+                    // approximate position for uncompressed files.
+                    _pos = _fileIn.getPos();
+                }
+
+                Tuple result = makeTuple(record);
+                if (result != null) {
+                    key.set(recordPos);
+                    value.clear();
+                    value.addAll(result);
+                    return true;
+                }
+            }
+        }
+
+        @Override
+        public LongWritable createKey() {
+            return new LongWritable();
+        }
+
+        @Override
+        public Tuple createValue() {
+            return new Tuple();
+        }
+
+        @Override
+        public long getPos() throws IOException {
+            return _pos;
+        }
+
+        @Override
+        public float getProgress() throws IOException {
+            if (_end == _start) {
+                return 0.0f;
+            } else {
+                return Math.min(1.0f, (_pos - _start) / (float)(_end - _start));
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (_memberReader != null) {
+                _memberReader.close();
+            } else {
+                _in.close();
+            }
+        }
+    }
+
+    private static boolean isCompressed(Path file) {
+        return file.getName().endsWith(COMPRESSED_EXTENSION);
+    }
+
+    @Override
+    protected boolean isSplitable(FileSystem fs, Path file) {
+        return isCompressed(file);
+    }
+
+    @Override
+    public RecordReader<LongWritable, Tuple> getRecordReader(InputSplit split, JobConf conf, Reporter reporter) throws IOException {
+        reporter.setStatus(split.toString());
+        return new WarcRecordReader(conf, (FileSplit)split);
+    }
+
+    /**
+     * Read the next WARC record from <in>.
+     *
+     * @return the record, or null if we're at the end of the input
+     * @throws IOException
+     */
+    protected static WarcRecord readRecord(InputStream in) throws IOException {
+        // Skip any blank lines left over from the end of the previous record.
+        String line = readLine(in);
+        while ((line != null) && (line.length() == 0)) {
+            line = readLine(in);
+        }
+
+        if (line == null) {
+            return null;
+        } else if (!line.startsWith("WARC/")) {
+            throw new IOException("Invalid WARC record version line: " + line);
+        }
+
+        Map<String, String> headers = new HashMap<String, String>();
+        line = readLine(in);
+        while ((line != null) && (line.length() > 0)) {
+            int colon = line.indexOf(':');
+            if (colon > 0) {
+                headers.put(line.substring(0, colon).trim().toLowerCase(), line.substring(colon + 1).trim());
+            }
+
+            line = readLine(in);
+        }
+
+        String contentLength = headers.get(CONTENT_LENGTH_HEADER);
+        if (contentLength == null) {
+            throw new IOException("WARC record is missing the Content-Length header");
+        }
+
+        byte[] block = new byte[Integer.parseInt(contentLength)];
+        int offset = 0;
+        while (offset < block.length) {
+            int len = in.read(block, offset, block.length - offset);
+            if (len == -1) {
+                throw new EOFException("Unexpected end of WARC record");
+            }
+
+            offset += len;
+        }
+
+        return new WarcRecord(headers, block);
+    }
+
+    /**
+     * Read a line terminated by LF (with an optional CR before it).
+     *
+     * @return the line, without the terminator, or null if we're at the end of the input
+     */
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder result = new StringBuilder();
+        int c = in.read();
+        if (c == -1) {
+            return null;
+        }
+
+        while ((c != -1) && (c != '\n')) {
+            result.append((char)c);
+            c = in.read();
+        }
+
+        int len = result.length();
+        if ((len > 0) && (result.charAt(len - 1) == '\r')) {
+            result.setLength(len - 1);
+        }
+
+        return result.toString();
+    }
+
+    /**
+     * Convert a WARC response record into a FetchedDatum tuple.
+     *
+     * @return the tuple, or null if this isn't a successful HTTP response
+     * @throws IOException
+     */
+    protected static Tuple makeTuple(WarcRecord record) throws IOException {
+        String contentType = record.getHeader(CONTENT_TYPE_HEADER);
+        if (!RESPONSE_TYPE.equals(record.getHeader(WARC_TYPE_HEADER)) || (contentType == null)
+                        || !contentType.startsWith(HTTP_RESPONSE_CONTENT_TYPE)) {
+            return null;
+        }
+
+        byte[] block = record.getBlock();
+        int headerEnd = findHeaderEnd(block);
+        if (headerEnd == -1) {
+            LOGGER.warn("No end of HTTP headers in response record for " + record.getHeader(WARC_TARGET_URI_HEADER));
+            return null;
+        }
+
+        String[] lines = new String(block, 0, headerEnd, "ISO-8859-1").split("\r?\n");
+        String[] statusLine = lines[0].split(" ");
+        if ((statusLine.length < 2) || !statusLine[1].startsWith("2")) {
+            return null;
+        }
+
+        HttpHeaders headers = new HttpHeaders();
+        for (int i = 1; i < lines.length; i++) {
+            int colon = lines[i].indexOf(':');
+            if (colon > 0) {
+                headers.add(lines[i].substring(0, colon).trim(), lines[i].substring(colon + 1).trim());
+            }
+        }
+
+        BytesWritable content = new BytesWritable();
+        content.set(block, headerEnd, block.length - headerEnd);
+
+        String url = record.getHeader(WARC_TARGET_URI_HEADER);
+        String httpContentType = headers.getFirst(IHttpHeaders.CONTENT_TYPE);
+        FetchedDatum datum = new FetchedDatum(url, url, parseDate(record.getHeader(WARC_DATE_HEADER)), headers, content,
+                        httpContentType == null ? "" : httpContentType, 0, BaseDatum.EMPTY_METADATA_MAP);
+        return datum.toTuple();
+    }
+
+    /**
+     * @return offset of the first content byte (after the blank line), or -1 if not found
+     */
+    private static int findHeaderEnd(byte[] block) {
+        for (int i = 0; i < block.length - 1; i++) {
+            if (block[i] == '\n') {
+                if (block[i + 1] == '\n') {
+                    return i + 2;
+                } else if ((block[i + 1] == '\r') && (i + 2 < block.length) && (block[i + 2] == '\n')) {
+                    return i + 3;
+                }
+            }
+        }
+
+        return -1;
+    }
+
+    private static long parseDate(String date) {
+        if (date == null) {
+            return 0;
+        }
+
+        // WARC dates are W3C-ISO8601, but older Heritrix versions used 14 digit dates.
+        SimpleDateFormat format = new SimpleDateFormat(date.length() == 14 ? "yyyyMMddHHmmss" : "yyyy-MM-dd'T'HH:mm:ss'Z'");
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+
+        try {
+            return format.parse(date).getTime();
+        } catch (ParseException e) {
+            LOGGER.warn("Invalid WARC date: " + date);
+            return 0;
+        }
+    }
+}
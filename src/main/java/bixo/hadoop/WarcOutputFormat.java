@@ -1,46 +1,144 @@
 package bixo.hadoop;
 
 import java.io.ByteArrayInputStream;
-import java.io.DataOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URI;
+import java.net.URL;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.hadoop.fs.FSDataOutputStream;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
-import org.apache.hadoop.io.compress.CompressionCodec;
-import org.apache.hadoop.io.compress.GzipCodec;
+import org.apache.hadoop.io.BytesWritable;
 import org.apache.hadoop.mapred.FileOutputFormat;
 import org.apache.hadoop.mapred.JobConf;
 import org.apache.hadoop.mapred.RecordWriter;
 import org.apache.hadoop.mapred.Reporter;
 import org.apache.hadoop.util.Progressable;
-import org.apache.hadoop.util.ReflectionUtils;
+import org.apache.log4j.Logger;
+import org.archive.io.warc.WARCConstants;
 import org.archive.io.warc.WARCWriter;
 import org.archive.util.ArchiveUtils;
+import org.archive.util.anvl.ANVLRecord;
 
 import bixo.datum.FetchedDatum;
 import bixo.datum.HttpHeaders;
+import bixo.fetcher.http.IHttpHeaders;
 import cascading.tuple.Fields;
 import cascading.tuple.Tuple;
 import cascading.util.Util;
 
+/**
+ * Writes FetchedDatum tuples as WARC response records, optionally with a
+ * request record and a metadata record for each response.
+ *
+ * If output compression is enabled, each record is written as a separate
+ * gzip member (the normal .warc.gz format), so the files can be split on
+ * record boundaries. Output files are rolled over once they reach the max
+ * file size, and are named <task name>-00000.warc[.gz], -00001, etc.
+ *
+ * The saved HTTP headers are written in front of the content, except that
+ * Transfer-Encoding is dropped (the content was already de-chunked) and
+ * Content-Length is set to the length of the content we actually have.
+ * Responses that were cut off at the max content size get a
+ * "WARC-Truncated: length" header.
+ *
+ */
 public class WarcOutputFormat extends FileOutputFormat<Tuple, Tuple> {
+    private static final Logger LOGGER = Logger.getLogger(WarcOutputFormat.class);
+
     public static final String WARC_METADATA_FIELDS_KEY = "WarcOutputFormat-metadata-fields-key";
-    
+    public static final String WARC_MAX_FILE_SIZE_KEY = "WarcOutputFormat-max-file-size-key";
+    public static final String WARC_REQUEST_RECORDS_KEY = "WarcOutputFormat-request-records-key";
+    public static final String WARC_METADATA_RECORDS_KEY = "WarcOutputFormat-metadata-records-key";
+    public static final String WARC_MAX_CONTENT_SIZE_KEY = "WarcOutputFormat-max-content-size-key";
+
+    // Same as the Heritrix default.
+    public static final long DEFAULT_MAX_FILE_SIZE = 1000L * 1000L * 1000L;
+
+    // By default we don't know the fetcher's max content size, so we can only tell that
+    // content was truncated when the response had a Content-Length header.
+    public static final int NO_MAX_CONTENT_SIZE = 0;
+
+    public static final String WARC_EXTENSION = ".warc";
+    public static final String COMPRESSED_WARC_EXTENSION = ".warc.gz";
+
     protected static class WarcRecordWriter implements RecordWriter<Tuple, Tuple> {
 
         private static final String WARC_RESPONSE_CONTENT_TYPE = "application/http; msgtype=response";
-        
-        private Fields _metadataFields;
+        private static final String WARC_REQUEST_CONTENT_TYPE = "application/http; msgtype=request";
+        private static final String WARC_METADATA_CONTENT_TYPE = "application/warc-fields";
+
+        // We only get FetchedDatums for successful fetches, and the status line isn't saved.
+        private static final String RESPONSE_STATUS_LINE = "HTTP/1.1 200 OK";
+        private static final String CRLF = "\r\n";
+
+        private static final String WARC_TRUNCATED_HEADER = "WARC-Truncated";
+        private static final String TRUNCATED_LENGTH_VALUE = "length";
+
+        private static final int BASE_URL_POS = FetchedDatum.FIELDS.getPos(FetchedDatum.BASE_URL_FIELD);
+        private static final int FETCHED_URL_POS = FetchedDatum.FIELDS.getPos(FetchedDatum.FETCHED_URL_FIELD);
+        private static final int FETCH_TIME_POS = FetchedDatum.FIELDS.getPos(FetchedDatum.FETCH_TIME_FIELD);
+        private static final int CONTENT_POS = FetchedDatum.FIELDS.getPos(FetchedDatum.CONTENT_FIELD);
+        private static final int RESPONSE_RATE_POS = FetchedDatum.FIELDS.getPos(FetchedDatum.RESPONSE_RATE_FIELD);
+        private static final int NUM_REDIRECTS_POS = FetchedDatum.FIELDS.getPos(FetchedDatum.NUM_REDIRECTS_FIELD);
+        private static final int HTTP_HEADERS_POS = FetchedDatum.FIELDS.getPos(FetchedDatum.HTTP_HEADERS_FIELD);
+
+        private FileSystem _fs;
+        private Path _dir;
+        private String _name;
+        private Progressable _progress;
+
+        private String[] _metadataFieldNames;
+        private boolean _compress;
+        private long _maxFileSize;
+        private boolean _writeRequests;
+        private boolean _writeMetadata;
+        private int _maxContentSize;
+
+        private AtomicInteger _serialNo;
+        private FSDataOutputStream _fileOut;
         private WARCWriter _warcWriter;
-        
-        public WarcRecordWriter(DataOutputStream out, Fields metadataFields) throws IOException {
-            _metadataFields = metadataFields;
-            
-            _warcWriter = new WARCWriter(new AtomicInteger(), out, null, false,
-                            ArchiveUtils.get14DigitDate(), new ArrayList<String>());
+
+        public WarcRecordWriter(JobConf conf, FileSystem fs, Path dir, String name, Progressable progress) throws IOException {
+            _fs = fs;
+            _dir = dir;
+            _name = name;
+            _progress = progress;
+
+            // Metadata values come after the FetchedDatum fields, sorted by name.
+            String metadataFields = conf.get(WARC_METADATA_FIELDS_KEY);
+            Fields fields = metadataFields == null ? new Fields() : (Fields)Util.deserializeBase64(metadataFields);
+            _metadataFieldNames = new String[fields.size()];
+            for (int i = 0; i < fields.size(); i++) {
+                _metadataFieldNames[i] = fields.get(i).toString();
+            }
+            Arrays.sort(_metadataFieldNames);
+
+            _compress = getCompressOutput(conf);
+            _maxFileSize = getMaxFileSize(conf);
+            _writeRequests = getWriteRequestRecords(conf);
+            _writeMetadata = getWriteMetadataRecords(conf);
+            _maxContentSize = getMaxContentSize(conf);
+
+            _serialNo = new AtomicInteger();
+            openFile();
+        }
+
+        private void openFile() throws IOException {
+            String extension = _compress ? COMPRESSED_WARC_EXTENSION : WARC_EXTENSION;
+            Path file = new Path(_dir, String.format("%s-%05d%s", _name, _serialNo.get(), extension));
+            LOGGER.info("Writing WARC records to " + file);
+
+            _fileOut = _fs.create(file, _progress);
+
+            // The WARCWriter handles compression, by writing each record as a separate gzip member.
+            _warcWriter = new WARCWriter(_serialNo, _fileOut, null, _compress, ArchiveUtils.get14DigitDate(), new ArrayList<String>());
         }
 
         @Override
@@ -50,43 +148,202 @@ public class WarcOutputFormat extends FileOutputFormat<Tuple, Tuple> {
 
         @Override
         public void write(Tuple key, Tuple value) throws IOException {
-            // We ignore the key. The <value> must be for a FetchedDatum.
-            FetchedDatum datum = new FetchedDatum(value, _metadataFields);
-            
-            // Now we need to write out a new response record.
-            byte[] headerBytes = headersAsBytes(datum.getHeaders());
-            byte[] contentBytes = datum.getContentBytes();
-            int totalLength = headerBytes.length + 1 + contentBytes.length;
-            
-            // TODO KKr - create input stream that combines the header & content bytes (plus LF in middle)
-            _warcWriter.writeResponseRecord(datum.getFetchedUrl(), ArchiveUtils.get14DigitDate(datum.getFetchTime()), WARC_RESPONSE_CONTENT_TYPE, 
-                            WARCWriter.getRecordID(), null, new ByteArrayInputStream(datum.getContentBytes()), totalLength);
+            // Roll over to a new file once we've hit the max size. We do this before writing,
+            // versus after, so we never wind up with an empty file.
+            if (_fileOut.getPos() >= _maxFileSize) {
+                _warcWriter.close();
+                _serialNo.incrementAndGet();
+                openFile();
+            }
+
+            // We ignore the key. The <value> must be for a FetchedDatum, and we get the fields
+            // we need directly from the tuple.
+            String url = value.getString(FETCHED_URL_POS);
+            String date = ArchiveUtils.get14DigitDate(value.getLong(FETCH_TIME_POS));
+            BytesWritable content = (BytesWritable)value.get(CONTENT_POS);
+            HttpHeaders headers = new HttpHeaders(value.getString(HTTP_HEADERS_POS));
+            int contentLength = getContentLength(content);
+
+            // Stream the header block followed by the content, without copying the content.
+            byte[] headerBytes = headersAsBytes(headers, contentLength);
+            long totalLength = headerBytes.length + contentLength;
+            InputStream response = new SequenceInputStream(new ByteArrayInputStream(headerBytes),
+                            new ByteArrayInputStream(getContentBytes(content), 0, contentLength));
+
+            ANVLRecord namedFields = null;
+            if (isTruncated(headers, contentLength)) {
+                namedFields = new ANVLRecord(1);
+                namedFields.addLabelValue(WARC_TRUNCATED_HEADER, TRUNCATED_LENGTH_VALUE);
+            }
+
+            URI responseId = WARCWriter.getRecordID();
+            _warcWriter.writeResponseRecord(url, date, WARC_RESPONSE_CONTENT_TYPE, responseId, namedFields, response, totalLength);
+
+            if (_writeRequests) {
+                byte[] requestBytes = requestAsBytes(url);
+                _warcWriter.writeRequestRecord(url, date, WARC_REQUEST_CONTENT_TYPE, WARCWriter.getRecordID(),
+                                makeConcurrentTo(responseId), new ByteArrayInputStream(requestBytes), requestBytes.length);
+            }
+
+            if (_writeMetadata) {
+                byte[] metadataBytes = metadataAsBytes(value);
+                _warcWriter.writeMetadataRecord(url, date, WARC_METADATA_CONTENT_TYPE, WARCWriter.getRecordID(),
+                                makeConcurrentTo(responseId), new ByteArrayInputStream(metadataBytes), metadataBytes.length);
+            }
+        }
+
+        @SuppressWarnings("deprecation")
+        private static byte[] getContentBytes(BytesWritable content) {
+            return content.get();
+        }
+
+        @SuppressWarnings("deprecation")
+        private static int getContentLength(BytesWritable content) {
+            return content.getSize();
+        }
+
+        private static ANVLRecord makeConcurrentTo(URI recordId) {
+            ANVLRecord result = new ANVLRecord(1);
+            result.addLabelValue(WARCConstants.HEADER_KEY_CONCURRENT_TO, "<" + recordId.toString() + ">");
+            return result;
+        }
+
+        /**
+         * The fetcher has already removed any chunked transfer encoding, and might have
+         * truncated the content, so we drop the Transfer-Encoding header and replace the
+         * Content-Length header with the length of the content we're writing. The content
+         * itself isn't decoded by the fetcher, so the Content-Encoding header is still valid.
+         */
+        private static byte[] headersAsBytes(HttpHeaders headers, int contentLength) throws UnsupportedEncodingException {
+            StringBuilder result = new StringBuilder(RESPONSE_STATUS_LINE);
+            result.append(CRLF);
+            for (String name : headers.getNames()) {
+                if (name.equalsIgnoreCase(IHttpHeaders.TRANSFER_ENCODING) || name.equalsIgnoreCase(IHttpHeaders.CONTENT_LENGTH)) {
+                    continue;
+                }
+
+                for (String value : headers.getAll(name)) {
+                    result.append(name);
+                    result.append(": ");
+                    result.append(value);
+                    result.append(CRLF);
+                }
+            }
+
+            result.append(IHttpHeaders.CONTENT_LENGTH);
+            result.append(": ");
+            result.append(contentLength);
+            result.append(CRLF);
+
+            result.append(CRLF);
+            return result.toString().getBytes("ISO-8859-1");
+        }
+
+        /**
+         * Content was truncated if we have less than the response's Content-Length. If there
+         * wasn't a (valid) Content-Length, we assume it was truncated if it's as long as the
+         * max content size.
+         */
+        private boolean isTruncated(HttpHeaders headers, int contentLength) {
+            String contentLengthStr = headers.getFirst(IHttpHeaders.CONTENT_LENGTH);
+            if (contentLengthStr != null) {
+                try {
+                    return Long.parseLong(contentLengthStr.trim()) > contentLength;
+                } catch (NumberFormatException e) {
+                    // Ignore invalid content length values.
+                }
+            }
+
+            return (_maxContentSize != NO_MAX_CONTENT_SIZE) && (contentLength >= _maxContentSize);
+        }
+
+        /**
+         * We don't keep the actual request, so this is just the request line
+         * and host header needed to identify what was requested.
+         */
+        private static byte[] requestAsBytes(String url) throws IOException {
+            URL requestUrl = new URL(url);
+            String path = requestUrl.getFile();
+            if (path.length() == 0) {
+                path = "/";
+            }
+
+            StringBuilder result = new StringBuilder("GET ");
+            result.append(path);
+            result.append(" HTTP/1.1");
+            result.append(CRLF);
+            result.append("Host: ");
+            result.append(requestUrl.getAuthority());
+            result.append(CRLF);
+            result.append(CRLF);
+            return result.toString().getBytes("ISO-8859-1");
+        }
+
+        private byte[] metadataAsBytes(Tuple value) throws UnsupportedEncodingException {
+            StringBuilder result = new StringBuilder();
+            appendField(result, "baseUrl", value.getString(BASE_URL_POS));
+            appendField(result, "numRedirects", String.valueOf(value.get(NUM_REDIRECTS_POS)));
+            appendField(result, "responseRate", String.valueOf(value.get(RESPONSE_RATE_POS)));
+
+            int offset = FetchedDatum.FIELDS.size();
+            for (int i = 0; i < _metadataFieldNames.length; i++) {
+                Object fieldValue = value.get(offset + i);
+                appendField(result, _metadataFieldNames[i], fieldValue == null ? "" : fieldValue.toString());
+            }
+
+            return result.toString().getBytes("UTF-8");
         }
-        
-        private static byte[] headersAsBytes(HttpHeaders headers) {
-            // TODO KKr - return headers as a byte array.
-            return new byte[0];
+
+        private static void appendField(StringBuilder result, String name, String value) {
+            result.append(name);
+            result.append(": ");
+            // Values can't span lines.
+            result.append(value.replace('\r', ' ').replace('\n', ' '));
+            result.append(CRLF);
         }
     }
 
+    public static void setMaxFileSize(JobConf conf, long maxFileSize) {
+        conf.setLong(WARC_MAX_FILE_SIZE_KEY, maxFileSize);
+    }
+
+    public static long getMaxFileSize(JobConf conf) {
+        return conf.getLong(WARC_MAX_FILE_SIZE_KEY, DEFAULT_MAX_FILE_SIZE);
+    }
+
+    /**
+     * Set the max content size used by the fetcher, so that we can detect truncated
+     * content for responses without a Content-Length header.
+     */
+    public static void setMaxContentSize(JobConf conf, int maxContentSize) {
+        conf.setInt(WARC_MAX_CONTENT_SIZE_KEY, maxContentSize);
+    }
+
+    public static int getMaxContentSize(JobConf conf) {
+        return conf.getInt(WARC_MAX_CONTENT_SIZE_KEY, NO_MAX_CONTENT_SIZE);
+    }
+
+    public static void setWriteRequestRecords(JobConf conf, boolean writeRequests) {
+        conf.setBoolean(WARC_REQUEST_RECORDS_KEY, writeRequests);
+    }
+
+    public static boolean getWriteRequestRecords(JobConf conf) {
+        return conf.getBoolean(WARC_REQUEST_RECORDS_KEY, false);
+    }
+
+    public static void setWriteMetadataRecords(JobConf conf, boolean writeMetadata) {
+        conf.setBoolean(WARC_METADATA_RECORDS_KEY, writeMetadata);
+    }
+
+    public static boolean getWriteMetadataRecords(JobConf conf) {
+        return conf.getBoolean(WARC_METADATA_RECORDS_KEY, false);
+    }
+
     @Override
     public RecordWriter<Tuple, Tuple> getRecordWriter(FileSystem ignored, JobConf conf, String name, Progressable progress) throws IOException {
-        Fields metadataFields = (Fields)Util.deserializeBase64(conf.get(WARC_METADATA_FIELDS_KEY));
-        
-        boolean isCompressed = getCompressOutput(conf);
-        if (!isCompressed) {
-            Path file = FileOutputFormat.getTaskOutputPath(conf, name);
-            FileSystem fs = file.getFileSystem(conf);
-            FSDataOutputStream fileOut = fs.create(file, progress);
-            return new WarcRecordWriter(fileOut, metadataFields);
-        } else {
-            Class<? extends CompressionCodec> codecClass = getOutputCompressorClass(conf, GzipCodec.class);
-            CompressionCodec codec = (CompressionCodec)ReflectionUtils.newInstance(codecClass, conf);
-            // build the filename including the extension
-            Path file = FileOutputFormat.getTaskOutputPath(conf, name + codec.getDefaultExtension());
-            FileSystem fs = file.getFileSystem(conf);
-            FSDataOutputStream fileOut = fs.create(file, progress);
-            return new WarcRecordWriter(new DataOutputStream(codec.createOutputStream(fileOut)), metadataFields);
-        }
+        // We only use the task output path to find the directory, since we may write more than one file.
+        Path file = FileOutputFormat.getTaskOutputPath(conf, name);
+        FileSystem fs = file.getFileSystem(conf);
+        return new WarcRecordWriter(conf, fs, file.getParent(), name, progress);
     }
 }
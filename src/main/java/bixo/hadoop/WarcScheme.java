@@ -0,0 +1,160 @@
+package bixo.hadoop;
+
+import java.io.IOException;
+
+import org.apache.hadoop.mapred.FileOutputFormat;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.OutputCollector;
+import org.apache.log4j.Logger;
+
+import bixo.datum.BaseDatum;
+import bixo.datum.FetchedDatum;
+import cascading.scheme.Scheme;
+import cascading.tap.Tap;
+import cascading.tuple.Fields;
+import cascading.tuple.Tuple;
+import cascading.tuple.TupleEntry;
+import cascading.tuple.Tuples;
+import cascading.util.Util;
+
+/**
+ * Scheme for writing FetchedDatum tuples (e.g. the FetchPipe content output)
+ * as WARC files, using WarcOutputFormat, and for reading them back in using
+ * WarcInputFormat.
+ *
+ * When used as a source, tuples only have the FetchedDatum fields, since
+ * meta-data isn't restored from metadata records.
+ *
+ */
+@SuppressWarnings("serial")
+public class WarcScheme extends Scheme {
+    private static final Logger LOGGER = Logger.getLogger(WarcScheme.class);
+
+    private Fields _metaDataFields;
+    private boolean _compress = true;
+    private long _maxFileSize = WarcOutputFormat.DEFAULT_MAX_FILE_SIZE;
+    private int _maxContentSize = WarcOutputFormat.NO_MAX_CONTENT_SIZE;
+    private boolean _writeRequests = false;
+    private boolean _writeMetadata = false;
+
+    public WarcScheme() {
+        this(BaseDatum.EMPTY_METADATA_FIELDS);
+    }
+
+    /**
+     * @param metaDataFields - FetchedDatum meta-data fields, which are written to metadata records
+     */
+    public WarcScheme(Fields metaDataFields) {
+        _metaDataFields = metaDataFields;
+        setSourceFields(FetchedDatum.FIELDS);
+        setSinkFields(FetchedDatum.FIELDS.append(sortFields(metaDataFields)));
+    }
+
+    // Meta-data values always come after the standard fields, sorted by name.
+    private static Fields sortFields(Fields fields) {
+        String[] names = new String[fields.size()];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = fields.get(i).toString();
+        }
+
+        return BaseDatum.makeMetaDataFields(names);
+    }
+
+    /**
+     * Set whether each record is written as a separate gzip member (the default).
+     */
+    public void setCompress(boolean compress) {
+        _compress = compress;
+    }
+
+    public boolean isCompress() {
+        return _compress;
+    }
+
+    /**
+     * Set the size at which we start writing to a new WARC file.
+     */
+    public void setMaxFileSize(long maxFileSize) {
+        if (maxFileSize <= 0) {
+            throw new IllegalArgumentException("Max file size must be positive");
+        }
+
+        _maxFileSize = maxFileSize;
+    }
+
+    public long getMaxFileSize() {
+        return _maxFileSize;
+    }
+
+    /**
+     * Set the fetcher's max content size, so that responses without a Content-Length
+     * header that were cut off at that size are marked as truncated.
+     */
+    public void setMaxContentSize(int maxContentSize) {
+        if (maxContentSize <= 0) {
+            throw new IllegalArgumentException("Max content size must be positive");
+        }
+
+        _maxContentSize = maxContentSize;
+    }
+
+    public int getMaxContentSize() {
+        return _maxContentSize;
+    }
+
+    /**
+     * Set whether to write a request record for each response.
+     */
+    public void setWriteRequests(boolean writeRequests) {
+        _writeRequests = writeRequests;
+    }
+
+    public boolean isWriteRequests() {
+        return _writeRequests;
+    }
+
+    /**
+     * Set whether to write a metadata record for each response, with
+     * the FetchedDatum fields and meta-data that aren't in the response.
+     */
+    public void setWriteMetadata(boolean writeMetadata) {
+        _writeMetadata = writeMetadata;
+    }
+
+    public boolean isWriteMetadata() {
+        return _writeMetadata;
+    }
+
+    @Override
+    public void sinkInit(Tap tap, JobConf conf) throws IOException {
+        conf.setOutputKeyClass(Tuple.class);
+        conf.setOutputValueClass(Tuple.class);
+        conf.setOutputFormat(WarcOutputFormat.class);
+        conf.set(WarcOutputFormat.WARC_METADATA_FIELDS_KEY, Util.serializeBase64(_metaDataFields));
+        FileOutputFormat.setCompressOutput(conf, _compress);
+        WarcOutputFormat.setMaxFileSize(conf, _maxFileSize);
+        WarcOutputFormat.setMaxContentSize(conf, _maxContentSize);
+        WarcOutputFormat.setWriteRequestRecords(conf, _writeRequests);
+        WarcOutputFormat.setWriteMetadataRecords(conf, _writeMetadata);
+
+        LOGGER.info("Initializing WARC tap (compressed: " + _compress + ", max file size: " + _maxFileSize + ")");
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public void sink(TupleEntry tupleEntry, OutputCollector outputCollector) throws IOException {
+        Tuple result = tupleEntry.selectTuple(getSinkFields());
+        outputCollector.collect(Tuples.NULL, result);
+    }
+
+    @Override
+    public void sourceInit(Tap tap, JobConf conf) throws IOException {
+        conf.setInputFormat(WarcInputFormat.class);
+    }
+
+    @Override
+    public Tuple source(Object key, Object value) {
+        // The record reader reuses the value, so we need a copy.
+        return new Tuple((Tuple)value);
+    }
+}
@@ -0,0 +1,77 @@
+package bixo.indexing;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.Field.Index;
+import org.apache.lucene.document.Field.Store;
+
+import cascading.tuple.Fields;
+import cascading.tuple.Tuple;
+
+/**
+ * Converts tuples from the IndexScheme sink into Lucene documents. If the
+ * scheme has a boost field, it's the last value in the tuple.
+ *
+ * Each thread gets its own Document and Fields, which are reused for every
+ * call from that thread. So the returned document is only valid until the
+ * next call to makeDocument() from the same thread, which is fine for
+ * IndexWriter.addDocument().
+ *
+ */
+public class DocumentBuilder {
+    private Fields _sinkFields;
+    private Store[] _store;
+    private Index[] _index;
+    private boolean _hasBoost;
+
+    private ThreadLocal<Document> _document = new ThreadLocal<Document>() {
+        @Override
+        protected Document initialValue() {
+            Document result = new Document();
+            for (int i = 0; i < getNumIndexedFields(); i++) {
+                result.add(new Field((String)_sinkFields.get(i), "", _store[i], _index[i]));
+            }
+
+            return result;
+        }
+    };
+
+    public DocumentBuilder(Fields sinkFields, Store[] store, Index[] index, boolean hasBoost) {
+        _sinkFields = sinkFields;
+        _store = store;
+        _index = index;
+        _hasBoost = hasBoost;
+    }
+
+    private int getNumIndexedFields() {
+        return _hasBoost ? _sinkFields.size() - 1 : _sinkFields.size();
+    }
+
+    @SuppressWarnings("unchecked")
+    public Document makeDocument(Tuple value) {
+        Document doc = _document.get();
+        int size = getNumIndexedFields();
+
+        // Fields are in the same order as the sink fields, so we can get them by position.
+        for (int i = 0; i < size; i++) {
+            Comparable comparable = value.get(i);
+            Field field = (Field)doc.getFields().get(i);
+
+            // Lucene 2.4 doesn't have numeric fields, so everything is indexed as a string. Tuple
+            // values are usually strings already, in which case we don't need a copy.
+            if (comparable instanceof String) {
+                field.setValue((String)comparable);
+            } else {
+                field.setValue(comparable.toString());
+            }
+        }
+
+        // We append the boost field at the end, so it's always the last value in the tuple.
+        if (_hasBoost) {
+            float boost = value.getFloat(size);
+            doc.setBoost(boost);
+        }
+
+        return doc;
+    }
+}
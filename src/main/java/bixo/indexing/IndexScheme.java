@@ -16,8 +16,6 @@ import org.apache.hadoop.util.Progressable;
 import org.apache.hadoop.util.ReflectionUtils;
 import org.apache.log4j.Logger;
 import org.apache.lucene.analysis.Analyzer;
-import org.apache.lucene.document.Document;
-import org.apache.lucene.document.Field;
 import org.apache.lucene.document.Field.Index;
 import org.apache.lucene.document.Field.Store;
 import org.apache.lucene.index.IndexWriter;
@@ -42,6 +40,9 @@ public class IndexScheme extends Scheme {
     private static final String HAS_BOOST_KEY = "bixo.indexer.hasBoost";
     private static final String INDEX_SETTINGS_KEY = "bixo.indexer.indexSettings";
     private static final String STORE_SETTINGS_KEY = "bixo.indexer.storeSettings";
+    private static final String NUM_WRITERS_KEY = "bixo.indexer.numWriters";
+    private static final String OPTIMIZE_KEY = "bixo.indexer.optimize";
+    private static final String MAX_DOCS_PER_PART_KEY = "bixo.indexer.maxDocsPerPart";
     
     public static final String BOOST_FIELD = BaseDatum.fieldName(IndexScheme.class, "boost");
     public static final Fields BOOST_FIELDS = new Fields(BOOST_FIELD);
@@ -51,6 +52,9 @@ public class IndexScheme extends Scheme {
     private Store[] _storeSettings;
     private Index[] _indexSettings;
     private boolean _hasBoost;
+    private int _numWriters = 1;
+    private boolean _optimize = true;
+    private int _maxDocsPerPart = 0;
     
     /**
      * Class to provide access to protected getTaskOutputPath on 0.18.3
@@ -97,6 +101,60 @@ public class IndexScheme extends Scheme {
         _hasBoost = hasBoost;
     }
 
+    /**
+     * Set the number of IndexWriters used by each task. If more than one, each
+     * writer runs in its own thread and builds its own index, and these are
+     * merged when the task's output is closed.
+     * 
+     * @param numWriters - number of writers per task (default is 1)
+     */
+    public void setNumWriters(int numWriters) {
+        if (numWriters < 1) {
+            throw new IllegalArgumentException("Number of writers must be at least one");
+        }
+        
+        _numWriters = numWriters;
+    }
+    
+    public int getNumWriters() {
+        return _numWriters;
+    }
+    
+    /**
+     * Set whether the index is optimized down to a single segment before it's
+     * copied to the output path. Skipping this makes the task finish sooner,
+     * at the cost of a somewhat slower index.
+     * 
+     * @param optimize - true to optimize (the default)
+     */
+    public void setOptimize(boolean optimize) {
+        _optimize = optimize;
+    }
+    
+    public boolean isOptimize() {
+        return _optimize;
+    }
+
+    /**
+     * Build each task's index as a series of parts, with up to <maxDocsPerPart>
+     * documents each, and copy completed parts to the output path while the
+     * next part is being built. The task output is then a directory of
+     * indexes (see StreamingIndexWriter), versus a single index.
+     * 
+     * @param maxDocsPerPart - documents per part, or 0 to build a single index (the default)
+     */
+    public void setMaxDocsPerPart(int maxDocsPerPart) {
+        if (maxDocsPerPart < 0) {
+            throw new IllegalArgumentException("Max documents per part can't be negative");
+        }
+        
+        _maxDocsPerPart = maxDocsPerPart;
+    }
+    
+    public int getMaxDocsPerPart() {
+        return _maxDocsPerPart;
+    }
+
     @Override
     public void sinkInit(Tap tap, JobConf conf) throws IOException {
         conf.setOutputKeyClass(Tuple.class);
@@ -108,6 +166,9 @@ public class IndexScheme extends Scheme {
         conf.setInt(MAX_FIELD_LENGTH_KEY, _maxFieldLength);
         conf.set(INDEX_SETTINGS_KEY, Util.serializeBase64(_indexSettings));
         conf.set(STORE_SETTINGS_KEY, Util.serializeBase64(_storeSettings));
+        conf.setInt(NUM_WRITERS_KEY, _numWriters);
+        conf.setBoolean(OPTIMIZE_KEY, _optimize);
+        conf.setInt(MAX_DOCS_PER_PART_KEY, _maxDocsPerPart);
         
         LOGGER.info("Initializing Lucene index tap");
         Fields fields = getSinkFields();
@@ -150,10 +211,35 @@ public class IndexScheme extends Scheme {
             int maxFieldLength = conf.getInt(MAX_FIELD_LENGTH_KEY, MaxFieldLength.UNLIMITED.getLimit());
             final Fields sinkFields = (Fields)Util.deserializeBase64(conf.get(SINK_FIELDS_KEY));
             final boolean hasBoost = conf.getBoolean(HAS_BOOST_KEY, false);
+            final int numWriters = conf.getInt(NUM_WRITERS_KEY, 1);
+            final boolean optimize = conf.getBoolean(OPTIMIZE_KEY, true);
+            final int maxDocsPerPart = conf.getInt(MAX_DOCS_PER_PART_KEY, 0);
+            final DocumentBuilder builder = new DocumentBuilder(sinkFields, store, index, hasBoost);
             
             String tmpFolder = System.getProperty("java.io.tmpdir");
             final File localIndexFolder = new File(tmpFolder, UUID.randomUUID().toString());
-            final IndexWriter indexWriter = new IndexWriter(localIndexFolder, analyzer, new MaxFieldLength(maxFieldLength));
+            
+            // If we're streaming parts to the output path, everything is handled by the
+            // streaming writer. Otherwise with one writer we index in the reducer thread,
+            // or documents are handed off to writer threads.
+            final IndexWriter indexWriter;
+            final ParallelIndexWriter parallelWriter;
+            final StreamingIndexWriter streamingWriter;
+            if (maxDocsPerPart > 0) {
+                Path dist = MyFileOutputFormat.getTaskOutputPath(conf, name);
+                indexWriter = null;
+                parallelWriter = null;
+                streamingWriter = new StreamingIndexWriter(localIndexFolder, dist.getFileSystem(conf), dist, maxDocsPerPart, numWriters, analyzer,
+                                maxFieldLength, builder, optimize);
+            } else if (numWriters == 1) {
+                indexWriter = new IndexWriter(localIndexFolder, analyzer, new MaxFieldLength(maxFieldLength));
+                parallelWriter = null;
+                streamingWriter = null;
+            } else {
+                indexWriter = null;
+                parallelWriter = new ParallelIndexWriter(localIndexFolder, numWriters, analyzer, maxFieldLength, builder);
+                streamingWriter = null;
+            }
 
             return new RecordWriter<Tuple, Tuple>() {
 
@@ -173,44 +259,53 @@ public class IndexScheme extends Scheme {
                             }
                         }
                     };
+                    reporterThread.setDaemon(true);
                     reporterThread.start();
                     
-                    LOGGER.info("Optimizing index for " + name);
-                    indexWriter.optimize();
-                    indexWriter.close();
-                    // now we copy the local folder to the remote one and delete
-                    // the older
-                    Path dist = MyFileOutputFormat.getTaskOutputPath(conf, name);
-                    FileSystem dstFS = dist.getFileSystem(conf);
-                    LOGGER.info("Copying index from local to " + dist);
-                    dstFS.copyFromLocalFile(true, new Path(localIndexFolder.getAbsolutePath()), dist);
-                    // we are done and stop the reporter
-                    reporterThread.interrupt();
+                    try {
+                        if (streamingWriter != null) {
+                            // Parts were copied to the output path as they were completed.
+                            streamingWriter.close();
+                        } else {
+                            if (parallelWriter != null) {
+                                parallelWriter.close(optimize);
+                            } else {
+                                if (optimize) {
+                                    LOGGER.info("Optimizing index for " + name);
+                                    indexWriter.optimize();
+                                }
+
+                                indexWriter.close();
+                            }
+
+                            // now we copy the local folder to the remote one and delete
+                            // the older
+                            Path dist = MyFileOutputFormat.getTaskOutputPath(conf, name);
+                            FileSystem dstFS = dist.getFileSystem(conf);
+                            LOGGER.info("Copying index from local to " + dist);
+                            dstFS.copyFromLocalFile(true, new Path(localIndexFolder.getAbsolutePath()), dist);
+                        }
+                    } finally {
+                        // we are done (or failed) and stop the reporter, so it doesn't keep the task alive
+                        reporterThread.interrupt();
+                        try {
+                            reporterThread.join();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
                 }
 
-                @SuppressWarnings("unchecked")
                 @Override
                 public void write(Tuple key, Tuple value) throws IOException {
-                    Document doc = new Document();
-                    
-                    int size = sinkFields.size();
-                    if (hasBoost) {
-                        size -= 1;
+                    if (streamingWriter != null) {
+                        streamingWriter.add(value);
+                    } else if (parallelWriter != null) {
+                        // Cascading can reuse the tuple, and we're indexing it in another thread.
+                        parallelWriter.add(new Tuple(value));
+                    } else {
+                        indexWriter.addDocument(builder.makeDocument(value));
                     }
-                    
-                    for (int i = 0; i < size; i++) {
-                        String name = (String) sinkFields.get(i);
-                        Comparable comparable = value.get(i);
-                        doc.add(new Field(name, "" + comparable.toString(), store[i], index[i]));
-                    }
-                    
-                    // We append the boost field at the end, so it's always the last value in the tuple.
-                    if (hasBoost) {
-                        float boost = value.getFloat(size);
-                        doc.setBoost(boost);
-                    }
-                    
-                    indexWriter.addDocument(doc);
                 }
 
             };
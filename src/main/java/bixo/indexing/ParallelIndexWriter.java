@@ -0,0 +1,220 @@
+package bixo.indexing;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.log4j.Logger;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriter.MaxFieldLength;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+
+import cascading.tuple.Tuple;
+
+/**
+ * Builds a Lucene index using several IndexWriters, each running in its own
+ * thread and writing to its own directory. Tuples are handed off to the
+ * writer threads via a bounded queue, so the caller blocks if the writers
+ * fall behind.
+ *
+ * When the writer is closed, the per-thread indexes are added to the final
+ * index without optimizing, so segments are merged by the index's (log size)
+ * merge policy. Optionally the final index can then be optimized down to a
+ * single segment.
+ *
+ */
+public class ParallelIndexWriter {
+    private static final Logger LOGGER = Logger.getLogger(ParallelIndexWriter.class);
+
+    // Number of tuples we'll queue up for each writer thread.
+    public static final int QUEUE_SIZE_PER_WRITER = 100;
+
+    // How long to wait when the queue is full before checking for a writer failure.
+    private static final long OFFER_TIMEOUT = 1000;
+
+    // Marker to tell a writer thread that there's no more input.
+    private static final Tuple END_OF_INPUT = new Tuple();
+
+    private class WriterThread extends Thread {
+        private File _segmentDir;
+
+        public WriterThread(int index) {
+            super("Index writer " + index);
+            setDaemon(true);
+
+            _segmentDir = new File(_indexDir.getParentFile(), _indexDir.getName() + "-part-" + index);
+        }
+
+        public File getSegmentDir() {
+            return _segmentDir;
+        }
+
+        @Override
+        public void run() {
+            try {
+                IndexWriter writer = new IndexWriter(_segmentDir, _analyzer, new MaxFieldLength(_maxFieldLength));
+
+                try {
+                    while (true) {
+                        Tuple tuple = _queue.take();
+                        if (tuple == END_OF_INPUT) {
+                            break;
+                        }
+
+                        writer.addDocument(_builder.makeDocument(tuple));
+                    }
+                } finally {
+                    writer.close();
+                }
+            } catch (Throwable t) {
+                LOGGER.error("Exception while building index in " + _segmentDir, t);
+                setFailure(t);
+            }
+        }
+    }
+
+    private File _indexDir;
+    private Analyzer _analyzer;
+    private int _maxFieldLength;
+    private DocumentBuilder _builder;
+
+    private BlockingQueue<Tuple> _queue;
+    private WriterThread[] _writers;
+    private volatile Throwable _failure;
+
+    /**
+     * Create a writer, and start the writer threads.
+     *
+     * @param indexDir - directory for the final index. Per-thread indexes are created in sibling directories.
+     * @param numWriters - number of writer threads (and per-thread indexes)
+     * @param analyzer - analyzer used by all writers
+     * @param maxFieldLength - max number of terms to index per field
+     * @param builder - converts tuples to documents, called from all writer threads
+     */
+    public ParallelIndexWriter(File indexDir, int numWriters, Analyzer analyzer, int maxFieldLength, DocumentBuilder builder) {
+        if (numWriters < 1) {
+            throw new IllegalArgumentException("Number of writers must be at least one");
+        }
+
+        _indexDir = indexDir;
+        _analyzer = analyzer;
+        _maxFieldLength = maxFieldLength;
+        _builder = builder;
+
+        _queue = new ArrayBlockingQueue<Tuple>(numWriters * QUEUE_SIZE_PER_WRITER);
+        _writers = new WriterThread[numWriters];
+        for (int i = 0; i < numWriters; i++) {
+            _writers[i] = new WriterThread(i);
+            _writers[i].start();
+        }
+    }
+
+    private synchronized void setFailure(Throwable t) {
+        if (_failure == null) {
+            _failure = t;
+        }
+    }
+
+    private void checkFailure() throws IOException {
+        if (_failure != null) {
+            IOException e = new IOException("Index writer thread failed: " + _failure.getMessage());
+            e.initCause(_failure);
+            throw e;
+        }
+    }
+
+    /**
+     * Queue up the tuple for indexing. The tuple shouldn't be modified after
+     * this call, since it will be used by a writer thread.
+     *
+     * @param tuple - sink tuple to convert to a document and index
+     * @throws IOException if a writer thread has failed
+     */
+    public void add(Tuple tuple) throws IOException {
+        try {
+            while (!_queue.offer(tuple, OFFER_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                checkFailure();
+            }
+        } catch (InterruptedException e) {
+            throw new IOException("Interrupted while queuing document for indexing");
+        }
+
+        checkFailure();
+    }
+
+    /**
+     * Wait for all queued tuples to be indexed, then merge the per-thread
+     * indexes into the final index. The per-thread indexes are always
+     * deleted, even if a writer thread failed.
+     *
+     * @param optimize - true to optimize the final index down to a single segment
+     * @throws IOException if a writer thread failed, or the merge failed
+     */
+    public void close(boolean optimize) throws IOException {
+        try {
+            queueEndOfInput();
+
+            for (WriterThread writer : _writers) {
+                writer.join();
+            }
+        } catch (InterruptedException e) {
+            throw new IOException("Interrupted while waiting for index writers to finish");
+        }
+
+        Directory[] segmentDirs = new Directory[_writers.length];
+
+        try {
+            checkFailure();
+
+            for (int i = 0; i < _writers.length; i++) {
+                segmentDirs[i] = FSDirectory.getDirectory(_writers[i].getSegmentDir());
+            }
+
+            LOGGER.info("Merging " + segmentDirs.length + " indexes into " + _indexDir);
+            IndexWriter indexWriter = new IndexWriter(FSDirectory.getDirectory(_indexDir), _analyzer, true, new MaxFieldLength(_maxFieldLength));
+            indexWriter.addIndexesNoOptimize(segmentDirs);
+
+            if (optimize) {
+                LOGGER.info("Optimizing index in " + _indexDir);
+                indexWriter.optimize();
+            }
+
+            indexWriter.close();
+        } finally {
+            for (int i = 0; i < _writers.length; i++) {
+                if (segmentDirs[i] != null) {
+                    segmentDirs[i].close();
+                }
+
+                FileUtils.deleteDirectory(_writers[i].getSegmentDir());
+            }
+        }
+    }
+
+    /**
+     * Queue up one END_OF_INPUT marker per writer thread. If a writer thread has
+     * failed then the queue might never drain, so we drop the queued tuples (we're
+     * going to fail anyway), which makes room for the markers that the surviving
+     * writer threads need to see before they'll exit.
+     */
+    private void queueEndOfInput() throws InterruptedException {
+        boolean cleared = false;
+        int numQueued = 0;
+        while (numQueued < _writers.length) {
+            if (!cleared && (_failure != null)) {
+                _queue.clear();
+                cleared = true;
+                numQueued = 0;
+            }
+
+            if (_queue.offer(END_OF_INPUT, OFFER_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                numQueued += 1;
+            }
+        }
+    }
+}
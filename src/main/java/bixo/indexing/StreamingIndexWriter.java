@@ -0,0 +1,194 @@
+package bixo.indexing;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.log4j.Logger;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriter.MaxFieldLength;
+
+import cascading.tuple.Tuple;
+
+/**
+ * Builds a series of Lucene indexes (parts), each with up to a maximum
+ * number of documents. When a part is complete it's copied to the output
+ * directory in a background thread, while the next part is being built.
+ *
+ * At most one part is being uploaded at any time, so local disk only needs
+ * to hold about two parts, and when the writer is closed only the last part
+ * still has to be copied.
+ *
+ * The output directory winds up containing index-00000, index-00001, etc,
+ * each of which is a complete index.
+ *
+ */
+public class StreamingIndexWriter {
+    private static final Logger LOGGER = Logger.getLogger(StreamingIndexWriter.class);
+
+    private File _localDir;
+    private FileSystem _destFS;
+    private Path _destDir;
+    private int _maxDocsPerPart;
+    private int _numWriters;
+    private Analyzer _analyzer;
+    private int _maxFieldLength;
+    private DocumentBuilder _builder;
+    private boolean _optimize;
+
+    private ExecutorService _uploader;
+    private Future<?> _pendingUpload;
+
+    private int _partNum;
+    private File _partDir;
+    private int _docsInPart;
+    private IndexWriter _indexWriter;
+    private ParallelIndexWriter _parallelWriter;
+
+    /**
+     * @param localDir - local directory where parts are built
+     * @param destFS - file system for the output directory
+     * @param destDir - output directory for the parts
+     * @param maxDocsPerPart - number of documents in each part
+     * @param numWriters - number of writer threads used to build each part
+     * @param analyzer - analyzer for all writers
+     * @param maxFieldLength - max number of terms to index per field
+     * @param builder - converts tuples to documents
+     * @param optimize - true to optimize each part before it's copied
+     * @throws IOException
+     */
+    public StreamingIndexWriter(File localDir, FileSystem destFS, Path destDir, int maxDocsPerPart, int numWriters, Analyzer analyzer,
+                    int maxFieldLength, DocumentBuilder builder, boolean optimize) throws IOException {
+        if (maxDocsPerPart < 1) {
+            throw new IllegalArgumentException("Max documents per part must be at least one");
+        }
+
+        _localDir = localDir;
+        _destFS = destFS;
+        _destDir = destDir;
+        _maxDocsPerPart = maxDocsPerPart;
+        _numWriters = numWriters;
+        _analyzer = analyzer;
+        _maxFieldLength = maxFieldLength;
+        _builder = builder;
+        _optimize = optimize;
+
+        _uploader = Executors.newSingleThreadExecutor();
+        _partNum = 0;
+        startPart();
+    }
+
+    public static String getPartName(int partNum) {
+        return String.format("index-%05d", partNum);
+    }
+
+    private void startPart() throws IOException {
+        _partDir = new File(_localDir, getPartName(_partNum));
+        _docsInPart = 0;
+
+        if (_numWriters == 1) {
+            _indexWriter = new IndexWriter(_partDir, _analyzer, new MaxFieldLength(_maxFieldLength));
+        } else {
+            _parallelWriter = new ParallelIndexWriter(_partDir, _numWriters, _analyzer, _maxFieldLength, _builder);
+        }
+    }
+
+    private void finishPart() throws IOException {
+        if (_parallelWriter != null) {
+            _parallelWriter.close(_optimize);
+            _parallelWriter = null;
+        } else {
+            if (_optimize) {
+                _indexWriter.optimize();
+            }
+
+            _indexWriter.close();
+            _indexWriter = null;
+        }
+
+        // Wait for the previous part to finish uploading, so we don't use up local disk space
+        // faster than we can copy it.
+        waitForUpload();
+
+        final File partDir = _partDir;
+        final Path destPath = new Path(_destDir, partDir.getName());
+        final int numDocs = _docsInPart;
+        _pendingUpload = _uploader.submit(new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    LOGGER.info("Copying index part with " + numDocs + " documents to " + destPath);
+                    _destFS.copyFromLocalFile(true, new Path(partDir.getAbsolutePath()), destPath);
+                } catch (IOException e) {
+                    throw new RuntimeException("Can't copy index part to " + destPath, e);
+                }
+            }
+        });
+
+        _partNum += 1;
+    }
+
+    private void waitForUpload() throws IOException {
+        if (_pendingUpload == null) {
+            return;
+        }
+
+        try {
+            _pendingUpload.get();
+            _pendingUpload = null;
+        } catch (InterruptedException e) {
+            throw new IOException("Interrupted while waiting for index part to be copied");
+        } catch (ExecutionException e) {
+            IOException ioe = new IOException("Exception copying index part: " + e.getCause().getMessage());
+            ioe.initCause(e.getCause());
+            throw ioe;
+        }
+    }
+
+    public void add(Tuple tuple) throws IOException {
+        if (_parallelWriter != null) {
+            // Cascading can reuse the tuple, and we're indexing it in another thread.
+            _parallelWriter.add(new Tuple(tuple));
+        } else {
+            _indexWriter.addDocument(_builder.makeDocument(tuple));
+        }
+
+        _docsInPart += 1;
+        if (_docsInPart >= _maxDocsPerPart) {
+            finishPart();
+            startPart();
+        }
+    }
+
+    /**
+     * Finish the current part, and wait for all parts to be copied.
+     *
+     * @throws IOException
+     */
+    public void close() throws IOException {
+        try {
+            // We always want at least one (possibly empty) index in the output, but we
+            // don't need an empty part after a full one.
+            if ((_docsInPart > 0) || (_partNum == 0)) {
+                finishPart();
+            } else if (_parallelWriter != null) {
+                _parallelWriter.close(false);
+            } else {
+                _indexWriter.close();
+            }
+
+            waitForUpload();
+        } finally {
+            _uploader.shutdownNow();
+            FileUtils.deleteDirectory(_localDir);
+        }
+    }
+}
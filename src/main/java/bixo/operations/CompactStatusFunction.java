@@ -0,0 +1,30 @@
+package bixo.operations;
+
+import bixo.cascading.NullContext;
+import bixo.datum.StatusDatum;
+import cascading.flow.FlowProcess;
+import cascading.operation.BaseOperation;
+import cascading.operation.Function;
+import cascading.operation.FunctionCall;
+import cascading.tuple.Fields;
+
+/**
+ * Convert StatusDatum tuples into the compact form used for status reporting.
+ */
+@SuppressWarnings("serial")
+public class CompactStatusFunction extends BaseOperation<NullContext> implements Function<NullContext> {
+
+    private Fields _metaDataFields;
+
+    public CompactStatusFunction(Fields metaDataFields) {
+        super(StatusDatum.COMPACT_FIELDS.append(metaDataFields));
+
+        _metaDataFields = metaDataFields;
+    }
+
+    @Override
+    public void operate(FlowProcess process, FunctionCall<NullContext> funcCall) {
+        StatusDatum datum = new StatusDatum(funcCall.getArguments(), _metaDataFields);
+        funcCall.getOutputCollector().add(datum.toCompactTuple());
+    }
+}
@@ -1,20 +1,32 @@
 package bixo.operations;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.util.Iterator;
 
+import org.apache.commons.io.FileUtils;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapred.JobConf;
 import org.apache.log4j.Logger;
 
 import bixo.cascading.BixoFlowProcess;
 import bixo.cascading.LoggingFlowReporter;
+import bixo.cascading.QueuedTupleEntryCollector;
 import bixo.config.FetcherPolicy;
 import bixo.config.QueuePolicy;
 import bixo.datum.BaseDatum;
 import bixo.datum.FetchedDatum;
 import bixo.datum.ScoredUrlDatum;
 import bixo.datum.UrlStatus;
+import bixo.fetcher.FetchTimingStats;
 import bixo.fetcher.FetcherManager;
 import bixo.fetcher.FetcherQueue;
 import bixo.fetcher.FetcherQueueMgr;
+import bixo.fetcher.FetcherStatusServer;
 import bixo.fetcher.http.IHttpFetcher;
 import bixo.hadoop.FetchCounters;
 import bixo.utils.GroupingKey;
@@ -34,16 +46,33 @@ public class FetcherBuffer extends BaseOperation implements cascading.operation.
 
     private static final Fields FETCH_RESULT_FIELD = new Fields(BaseDatum.fieldName(FetcherBuffer.class, "fetch-exception"));
 
-    // Time to sleep while offering URLs to the queue manager.
-    private static final long OFFER_QUEUE_DELAY = 10;
+    // Max time to wait for capacity while offering URLs to the queue manager,
+    // before we call keepAlive() and try again.
+    private static final long OFFER_QUEUE_TIMEOUT = 1000;
+    
+    // Max time to wait for the fetcher manager to shut down its thread pool, which
+    // can take up to twice its command timeout if there's a hard shutdown.
+    private static final long FETCHER_THREAD_JOIN_TIMEOUT = 5 * 60 * 1000L;
+    
+    // If set, each task writes a summary of fetch phase timings to this directory.
+    public static final String TIMING_DIR_PROPERTY = "bixo.fetcher.timing.dir";
+    
+    // If set, each task serves JSON status on this port (or the next free one), on localhost only.
+    public static final String STATUS_PORT_PROPERTY = "bixo.fetcher.status.port";
+    
+    // If set, each task writes the port its status server wound up on to a file in this
+    // local directory, named status-port-<task id>.txt
+    public static final String STATUS_PORT_DIR_PROPERTY = "bixo.fetcher.status.port.dir";
     
     private FetcherManager _fetcherMgr;
+    private FetcherStatusServer _statusServer;
     private FetcherQueueMgr _queueMgr;
     private Thread _fetcherThread;
     private BixoFlowProcess _flowProcess;
     private IHttpFetcher _fetcher;
     private FetcherPolicy _fetcherPolicy;
     private QueuePolicy _queuePolicy;
+    private QueuedTupleEntryCollector _collector;
     
     private final Fields _metaDataFields;
 
@@ -83,6 +112,8 @@ public class FetcherBuffer extends BaseOperation implements cascading.operation.
         _fetcherThread = new Thread(_fetcherMgr);
         _fetcherThread.setName("Fetcher manager");
         _fetcherThread.start();
+        
+        startStatusServer(flowProcess);
     }
 
     @Override
@@ -91,6 +122,8 @@ public class FetcherBuffer extends BaseOperation implements cascading.operation.
         TupleEntry group = buffCall.getGroup();
 
         try {
+            TupleEntryCollector collector = getCollector(buffCall.getOutputCollector());
+            
             // <key> is the output of the IGroupingKeyGenerator used. This should
             // be either one of the special values (for URLs that shouldn't be fetched),
             // as defined via static values in GroupingKey, or it will be
@@ -98,11 +131,10 @@ public class FetcherBuffer extends BaseOperation implements cascading.operation.
             String key = group.getString(0);
 
             if (GroupingKey.isSpecialKey(key)) {
-                emptyBuffer(key, values, buffCall.getOutputCollector());
+                emptyBuffer(key, values, collector);
             } else {
                 String domain = GroupingKey.getDomainFromKey(key);
                 long crawlDelay = GroupingKey.getCrawlDelayFromKey(key);
-                TupleEntryCollector collector = buffCall.getOutputCollector();
                 FetcherQueue queue = _queueMgr.createQueue(domain, collector, crawlDelay);
 
                 int numUrlsQueued = 0;
@@ -121,14 +153,11 @@ public class FetcherBuffer extends BaseOperation implements cascading.operation.
                 // representative host name from the first item's URL.
                 String host = queue.getHost();
 
-                // We're going to spin here until the queue manager decides that we
-                // have available space for this next queue.
-                // TODO KKr - have timeout here based on target fetch duration. Or we might
-                // want to have the offer() method do this automatically for us, hmm but then
-                // we'd need it to call process.keepAlive().
-                while (!_queueMgr.offer(queue)) {
+                // We're going to wait here until the queue manager decides that we
+                // have available space (queues and bytes) for this next queue.
+                // TODO KKr - have timeout here based on target fetch duration.
+                while (!_queueMgr.offer(queue, OFFER_QUEUE_TIMEOUT)) {
                     process.keepAlive();
-                    Thread.sleep(OFFER_QUEUE_DELAY);
                 }
 
                 _flowProcess.increment(FetchCounters.URLS_QUEUED, numUrlsQueued);
@@ -158,7 +187,7 @@ public class FetcherBuffer extends BaseOperation implements cascading.operation.
                 Thread.sleep(1000L);
                 
                 long endTime = _fetcherPolicy.getCrawlEndTime();
-                if (!skippedAll && (endTime != FetcherPolicy.NO_CRAWL_END_TIME) && (System.currentTimeMillis() >= endTime)) {
+                if (!skippedAll && (endTime != FetcherPolicy.NO_CRAWL_END_TIME) && (_fetcherPolicy.getClock().currentTimeMillis() >= endTime)) {
                     _queueMgr.skipAll(UrlStatus.SKIPPED_TIME_LIMIT);
                     skippedAll = true;
                 }
@@ -174,20 +203,133 @@ public class FetcherBuffer extends BaseOperation implements cascading.operation.
             // have a run
             // method that spawns a thread and immediately returns.
             _fetcherThread.interrupt();
+            
+            // Fetch threads can still be adding output until the fetcher manager has
+            // terminated its thread pool, and then exited.
+            long joinEndTime = System.currentTimeMillis() + FETCHER_THREAD_JOIN_TIMEOUT;
+            while (_fetcherThread.isAlive() && (System.currentTimeMillis() < joinEndTime)) {
+                process.keepAlive();
+                _fetcherThread.join(1000L);
+            }
+            
+            if (_fetcherThread.isAlive()) {
+                LOGGER.warn("Fetcher manager thread still running, output from active fetches might be lost");
+            }
+
+            // Make sure everything that the fetch threads output has been written.
+            if (_collector != null) {
+                _collector.finish();
+            }
 
             // TODO KKr - shut down FetcherManager, so that it can do...
             // httpclient.getConnectionManager().shutdown();
-
-            // Write out counter info we've collected, in case we're running in
-            // local mode.
-            _flowProcess.dumpCounters();
         } catch (InterruptedException e) {
             LOGGER.error("Interruption while waiting for fetcher manager to finish");
         } catch (Throwable t) {
             // If we run into a serious error, just log it and return, so that we
             // don't lose the entire fetch result.
             LOGGER.error("Error during cleanup of FetcherBuffer", t);
+        } finally {
+            // Write out counter info we've collected, in case we're running in
+            // local mode. We do this even if cleanup failed, since that's when
+            // the counters are most useful.
+            try {
+                _flowProcess.dumpCounters();
+                writeTimingStats(process, _fetcherMgr.getTimingStats());
+            } catch (Throwable t) {
+                LOGGER.error("Error writing counters during cleanup of FetcherBuffer", t);
+            }
+
+            if (_statusServer != null) {
+                _statusServer.stop();
+                _statusServer = null;
+            }
+        }
+    }
+
+    private void startStatusServer(FlowProcess process) {
+        Object statusPort = process.getProperty(STATUS_PORT_PROPERTY);
+        if (statusPort == null) {
+            return;
+        }
+        
+        // Status is just for diagnostics, so don't fail the task if we can't serve it.
+        try {
+            _statusServer = new FetcherStatusServer(_fetcherMgr);
+            _statusServer.start(Integer.parseInt(statusPort.toString()));
+        } catch (Exception e) {
+            LOGGER.warn("Unable to start fetcher status server", e);
+            _statusServer = null;
+            return;
         }
+        
+        // We might not be on the requested port, so let whoever wants the status find us.
+        Object statusPortDir = process.getProperty(STATUS_PORT_DIR_PROPERTY);
+        if (statusPortDir != null) {
+            File portFile = new File(statusPortDir.toString(), "status-port-" + getTaskId(process) + ".txt");
+            try {
+                FileUtils.writeStringToFile(portFile, Integer.toString(_statusServer.getPort()), "UTF-8");
+            } catch (IOException e) {
+                LOGGER.warn("Unable to write fetcher status port to " + portFile, e);
+            }
+        }
+    }
+    
+    private static JobConf getJobConf(FlowProcess process) {
+        if (process instanceof HadoopFlowProcess) {
+            return ((HadoopFlowProcess)process).getJobConf();
+        } else {
+            return new JobConf();
+        }
+    }
+    
+    private static String getTaskId(FlowProcess process) {
+        return getJobConf(process).get("mapred.task.id", "local");
+    }
+    
+    private void writeTimingStats(FlowProcess process, FetchTimingStats stats) {
+        StringWriter summary = new StringWriter();
+        
+        try {
+            stats.write(summary);
+            LOGGER.info("Fetch timings:\n" + summary);
+            
+            Object timingDir = process.getProperty(TIMING_DIR_PROPERTY);
+            if (timingDir == null) {
+                return;
+            }
+
+            JobConf conf = getJobConf(process);
+            Path timingPath = new Path(timingDir.toString(), "fetch-timings-" + getTaskId(process) + ".txt");
+            FileSystem fs = timingPath.getFileSystem(conf);
+            Writer out = new OutputStreamWriter(fs.create(timingPath, true), "UTF-8");
+            
+            try {
+                out.write(summary.toString());
+            } finally {
+                out.close();
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Unable to write fetch timings", e);
+        }
+    }
+    
+    /**
+     * All output goes through one collector that hands tuples off to a writer
+     * thread, so fetch threads don't block each other while writing. Cascading
+     * re-uses the same output collector for every call to operate().
+     * 
+     * @param outputCollector - collector from Cascading
+     * @return collector to use for output
+     */
+    private TupleEntryCollector getCollector(TupleEntryCollector outputCollector) {
+        if (_collector == null) {
+            _collector = new QueuedTupleEntryCollector(outputCollector);
+        } else if (_collector.getCollector() != outputCollector) {
+            throw new IllegalStateException("Output collector changed between calls to operate()");
+        }
+        
+        return _collector;
     }
 
     private Tuple makeFetchedTuple(ScoredUrlDatum scoredUrl, UrlStatus status) {
@@ -8,6 +8,7 @@ import org.apache.log4j.Logger;
 import bixo.cascading.BixoFlowProcess;
 import bixo.cascading.LoggingFlowReporter;
 import bixo.cascading.NullContext;
+import bixo.cascading.QueuedTupleEntryCollector;
 import bixo.config.FetcherPolicy;
 import bixo.config.UserAgent;
 import bixo.datum.GroupedUrlDatum;
@@ -26,6 +27,7 @@ import cascading.operation.Buffer;
 import cascading.operation.BufferCall;
 import cascading.tuple.Fields;
 import cascading.tuple.TupleEntry;
+import cascading.tuple.TupleEntryCollector;
 
 /**
  * Filter out URLs by either domain (not popular enough) or if they're blocked by robots.txt
@@ -66,6 +68,7 @@ public class FilterAndScoreByUrlAndRobots extends BaseOperation<NullContext> imp
 	
     private transient ThreadedExecutor _executor;
     private transient BixoFlowProcess _flowProcess;
+    private transient QueuedTupleEntryCollector _collector;
 
     public FilterAndScoreByUrlAndRobots(UserAgent userAgent, int maxThreads, ScoreGenerator scorer, Fields metadataFields) {
         // We're going to output a ScoredUrlDatum (what FetcherBuffer expects).
@@ -117,6 +120,11 @@ public class FilterAndScoreByUrlAndRobots extends BaseOperation<NullContext> imp
         try {
             if (!_executor.terminate()) {
                 LOGGER.warn("Had to do a hard shutdown of robots fetching");
+                
+                // terminate() waits for interrupted threads, but one could be stuck in I/O.
+                if (!_executor.isTerminated()) {
+                    LOGGER.warn("Robots threads still running, their output might be lost");
+                }
             }
         } catch (InterruptedException e) {
             // FUTURE What's the right thing to do here? E.g. do I need to worry about
@@ -124,6 +132,15 @@ public class FilterAndScoreByUrlAndRobots extends BaseOperation<NullContext> imp
             LOGGER.warn("Interrupted while waiting for termination");
         }
         
+        try {
+            // Make sure everything that the robots threads output has been written.
+            if (_collector != null) {
+                _collector.finish();
+            }
+        } catch (InterruptedException e) {
+            LOGGER.warn("Interrupted while waiting for output to be written");
+        }
+        
         _flowProcess.dumpCounters();
     };
     
@@ -138,8 +155,16 @@ public class FilterAndScoreByUrlAndRobots extends BaseOperation<NullContext> imp
             urls.add(new GroupedUrlDatum(values.next().getTuple(), _metadataFields));
         }
         
+        // Output from all of the robots threads is handed off to a single writer thread.
+        TupleEntryCollector collector = bufferCall.getOutputCollector();
+        if (_collector == null) {
+            _collector = new QueuedTupleEntryCollector(collector);
+        } else if (_collector.getCollector() != collector) {
+            throw new IllegalStateException("Output collector changed between calls to operate()");
+        }
+        
         try {
-            Runnable doRobots = new ProcessRobotsTask(protocolAndDomain, _scorer, urls, _fetcher, bufferCall.getOutputCollector(), _flowProcess);
+            Runnable doRobots = new ProcessRobotsTask(protocolAndDomain, _scorer, urls, _fetcher, _collector, _flowProcess);
             _executor.execute(doRobots);
             _flowProcess.increment(FetchCounters.DOMAINS_QUEUED, 1);
             _flowProcess.increment(FetchCounters.DOMAINS_REMAINING, 1);
@@ -147,7 +172,7 @@ public class FilterAndScoreByUrlAndRobots extends BaseOperation<NullContext> imp
             // should never happen.
             LOGGER.error("Robots handling pool rejected our request for " + protocolAndDomain);
             _flowProcess.increment(FetchCounters.DOMAINS_REJECTED, 1);
-            ProcessRobotsTask.emptyQueue(urls, GroupingKey.DEFERRED_GROUPING_KEY, bufferCall.getOutputCollector());
+            ProcessRobotsTask.emptyQueue(urls, GroupingKey.DEFERRED_GROUPING_KEY, _collector);
         }
 	}
 
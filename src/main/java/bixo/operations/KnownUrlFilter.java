@@ -0,0 +1,102 @@
+package bixo.operations;
+
+import java.io.IOException;
+
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.log4j.Logger;
+
+import bixo.cascading.NullContext;
+import bixo.datum.UrlDatum;
+import bixo.hadoop.ImportCounters;
+import bixo.utils.ScalableBloomFilter;
+import cascading.flow.FlowProcess;
+import cascading.flow.hadoop.HadoopFlowProcess;
+import cascading.operation.BaseOperation;
+import cascading.operation.Filter;
+import cascading.operation.FilterCall;
+import cascading.operation.OperationCall;
+import cascading.tuple.Fields;
+
+/**
+ * Remove URLs that are (probably) already in the URL DB, using a Bloom filter
+ * that was built from the DB before the flow started. URLs have to be
+ * normalized the same way as the URLs used to build the filter.
+ *
+ * A false positive means we drop a URL that we don't know about, which is
+ * why the filter's error rate should be kept low.
+ */
+@SuppressWarnings("serial")
+public class KnownUrlFilter extends BaseOperation<NullContext> implements Filter<NullContext> {
+    private static final Logger LOGGER = Logger.getLogger(KnownUrlFilter.class);
+
+    private String _filterPath;
+
+    private transient ScalableBloomFilter _knownUrls;
+    private int _numKnown;
+    private int _numNew;
+
+    /**
+     * @param filterPath path to a serialized ScalableBloomFilter of known URLs
+     */
+    public KnownUrlFilter(String filterPath) {
+        _filterPath = filterPath;
+    }
+
+    @Override
+    public void prepare(FlowProcess process, OperationCall<NullContext> opCall) {
+        LOGGER.info("Starting filtering of known URLs");
+
+        JobConf conf;
+        if (process instanceof HadoopFlowProcess) {
+            conf = ((HadoopFlowProcess)process).getJobConf();
+        } else {
+            conf = new JobConf();
+        }
+
+        try {
+            _knownUrls = loadFilter(new Path(_filterPath), conf);
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to load known URLs filter from " + _filterPath, e);
+        }
+
+        LOGGER.info(String.format("Loaded filter with %d known URLs", _knownUrls.getNumEntries()));
+        _numKnown = 0;
+        _numNew = 0;
+    }
+
+    @Override
+    public boolean isRemove(FlowProcess process, FilterCall<NullContext> filterCall) {
+        String url = filterCall.getArguments().getString(UrlDatum.URL_FIELD);
+        if (_knownUrls.mightContain(url)) {
+            process.increment(ImportCounters.URLS_KNOWN, 1);
+            _numKnown += 1;
+            return true;
+        } else {
+            _numNew += 1;
+            return false;
+        }
+    }
+
+    @Override
+    public void cleanup(FlowProcess process, OperationCall<NullContext> opCall) {
+        LOGGER.info("Ending filtering of known URLs");
+        LOGGER.info(String.format("Removed %d known URLs, kept %d new URLs", _numKnown, _numNew));
+        _knownUrls = null;
+    }
+
+    public static ScalableBloomFilter loadFilter(Path filterPath, JobConf conf) throws IOException {
+        FileSystem fs = filterPath.getFileSystem(conf);
+        FSDataInputStream in = fs.open(filterPath);
+
+        try {
+            ScalableBloomFilter result = new ScalableBloomFilter();
+            result.readFields(in);
+            return result;
+        } finally {
+            in.close();
+        }
+    }
+}
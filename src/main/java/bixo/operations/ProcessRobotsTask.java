@@ -10,6 +10,7 @@ import java.util.regex.Pattern;
 import org.apache.log4j.Logger;
 
 import bixo.cascading.BixoFlowProcess;
+import bixo.cascading.QueuedTupleEntryCollector;
 import bixo.datum.GroupedUrlDatum;
 import bixo.datum.ScoredUrlDatum;
 import bixo.datum.UrlStatus;
@@ -90,9 +91,7 @@ public class ProcessRobotsTask implements Runnable {
         GroupedUrlDatum datum;
         while ((datum = urls.poll()) != null) {
             ScoredUrlDatum scoreUrl = new ScoredUrlDatum(datum.getUrl(), 0, 0, UrlStatus.UNFETCHED, groupingKey, 1.0, datum.getMetaDataMap());
-            synchronized (collector) {
-                collector.add(scoreUrl.toTuple());
-            }
+            QueuedTupleEntryCollector.safeAdd(collector, scoreUrl.toTuple());
         }
     }
 
@@ -139,10 +138,7 @@ public class ProcessRobotsTask implements Runnable {
                 while ((datum = _urls.poll()) != null) {
                     double score = _scorer.generateScore(domain, pld, datum.getUrl());
                     ScoredUrlDatum scoreUrl = new ScoredUrlDatum(datum.getUrl(), 0, 0, UrlStatus.UNFETCHED, key, score, datum.getMetaDataMap());
-                    synchronized (_collector) {
-                        // collectors aren't thread safe
-                        _collector.add(scoreUrl.toTuple());
-                    }
+                    QueuedTupleEntryCollector.safeAdd(_collector, scoreUrl.toTuple());
                 }
             }
         } catch (UnknownHostException e) {
@@ -0,0 +1,112 @@
+package bixo.parser;
+
+import java.io.IOException;
+import java.io.Writer;
+
+import org.apache.tika.language.LanguageIdentifier;
+import org.apache.tika.language.LanguageProfile;
+import org.apache.tika.language.ProfilingWriter;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Replacement for Tika's ProfilingHandler that only profiles the first
+ * <maxChars> characters of text, and stops even earlier once the language
+ * guess is good enough.
+ *
+ * We only use LanguageIdentifier's public API, so "good enough" means that
+ * two checks in a row were reasonably certain of the same language.
+ *
+ * Building the n-gram profile over the full text of a big page is a large
+ * part of the parse cost, and a few KB of text is almost always enough.
+ */
+class SampledProfilingHandler extends DefaultHandler {
+
+    // How often (in characters) we check whether we already have a good enough guess.
+    private static final int CHECK_INTERVAL = 2 * 1024;
+
+    private final int _maxChars;
+
+    private final LanguageProfile _profile = new LanguageProfile();
+    private final Writer _profiler = new ProfilingWriter(_profile);
+
+    private int _numChars = 0;
+    private int _nextCheck = CHECK_INTERVAL;
+    private String _lastCertainLanguage = null;
+    private String _certainLanguage = null;
+
+    public SampledProfilingHandler(int maxChars) {
+        _maxChars = maxChars;
+    }
+
+    /**
+     * @return true if we've stopped profiling, either because we hit the
+     * sample size limit or because we already have a certain result.
+     */
+    public boolean isDone() {
+        return (_certainLanguage != null) || (_numChars >= _maxChars);
+    }
+
+    public int getNumChars() {
+        return _numChars;
+    }
+
+    /**
+     * Return the best guess for the language of the text seen so far.
+     *
+     * @return language, or empty string if no language could be reliably detected
+     */
+    public String getLanguage() {
+        if (_certainLanguage != null) {
+            return _certainLanguage;
+        } else if (_numChars == 0) {
+            return "";
+        }
+
+        LanguageIdentifier identifier = new LanguageIdentifier(_profile);
+        if (identifier.isReasonablyCertain()) {
+            return identifier.getLanguage();
+        } else {
+            return "";
+        }
+    }
+
+    @Override
+    public void characters(char[] ch, int start, int length) throws SAXException {
+        profile(ch, start, length);
+    }
+
+    @Override
+    public void ignorableWhitespace(char[] ch, int start, int length) throws SAXException {
+        profile(ch, start, length);
+    }
+
+    private void profile(char[] ch, int start, int length) throws SAXException {
+        if (isDone()) {
+            return;
+        }
+
+        int numToProfile = Math.min(length, _maxChars - _numChars);
+
+        try {
+            _profiler.write(ch, start, numToProfile);
+        } catch (IOException e) {
+            throw new SAXException("Error profiling text", e);
+        }
+
+        _numChars += numToProfile;
+
+        if ((_numChars >= _nextCheck) && (_numChars < _maxChars)) {
+            _nextCheck = _numChars + CHECK_INTERVAL;
+
+            LanguageIdentifier identifier = new LanguageIdentifier(_profile);
+            if (!identifier.isReasonablyCertain()) {
+                _lastCertainLanguage = null;
+            } else if (identifier.getLanguage().equals(_lastCertainLanguage)) {
+                _certainLanguage = _lastCertainLanguage;
+            } else {
+                _lastCertainLanguage = identifier.getLanguage();
+            }
+        }
+    }
+}
@@ -12,11 +12,11 @@ import org.apache.log4j.Logger;
 import org.apache.tika.metadata.Metadata;
 import org.apache.tika.parser.AutoDetectParser;
 
+import bixo.config.ParserPolicy;
 import bixo.datum.FetchedDatum;
 import bixo.datum.ParsedDatum;
 import bixo.fetcher.http.IHttpHeaders;
 import bixo.utils.CharsetUtils;
-import bixo.utils.HttpUtils;
 import bixo.utils.IoUtils;
 
 @SuppressWarnings("serial")
@@ -26,8 +26,17 @@ public class SimpleParser implements IParser {
     // We'll give Tika 20 seconds to parse the document before timing out.
     private static final long MAX_PARSE_DURATION = 20;
     
+    private ParserPolicy _policy;
     private transient AutoDetectParser _parser;
     
+    public SimpleParser() {
+        this(new ParserPolicy());
+    }
+    
+    public SimpleParser(ParserPolicy policy) {
+        _policy = policy;
+    }
+    
     private synchronized void init() {
         if (_parser == null) {
             _parser = new AutoDetectParser();
@@ -56,7 +65,7 @@ public class SimpleParser implements IParser {
         	URL baseUrl = getContentLocation(fetchedDatum);
         	metadata.add(Metadata.CONTENT_LOCATION, baseUrl.toExternalForm());
 
-            Callable<ParsedDatum> c = new TikaCallable(_parser, is, metadata);
+            Callable<ParsedDatum> c = new TikaCallable(_parser, is, metadata, _policy);
             FutureTask<ParsedDatum> task = new FutureTask<ParsedDatum>(c);
             Thread t = new Thread(task);
             t.start();
@@ -93,9 +102,9 @@ public class SimpleParser implements IParser {
      * @return charset in response headers, or null
      */
     private String getCharset(FetchedDatum datum) {
-        String result = CharsetUtils.clean(datum.getHeaders().getFirst(IHttpHeaders.CONTENT_ENCODING));
+        String result = CharsetUtils.cachedClean(datum.getHeaders().getFirst(IHttpHeaders.CONTENT_ENCODING));
         if (result == null) {
-            result = CharsetUtils.clean(HttpUtils.getCharsetFromContentType(datum.getContentType()));
+            result = CharsetUtils.cachedCleanFromContentType(datum.getContentType());
         }
         
         return result;
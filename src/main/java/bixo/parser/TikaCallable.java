@@ -13,18 +13,17 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import org.apache.log4j.Logger;
-import org.apache.tika.language.LanguageIdentifier;
-import org.apache.tika.language.ProfilingHandler;
 import org.apache.tika.metadata.Metadata;
 import org.apache.tika.parser.ParseContext;
 import org.apache.tika.parser.Parser;
 import org.apache.tika.sax.TeeContentHandler;
 import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
 import org.xml.sax.SAXException;
 import org.xml.sax.helpers.DefaultHandler;
 
+import bixo.config.ParserPolicy;
 import bixo.datum.BaseDatum;
-import bixo.datum.Outlink;
 import bixo.datum.ParsedDatum;
 
 class TikaCallable implements Callable<ParsedDatum> {
@@ -36,7 +35,8 @@ class TikaCallable implements Callable<ParsedDatum> {
 
     private static class LinkBodyHandler extends DefaultHandler {
         private StringBuilder _content = new StringBuilder();
-        private List<Outlink> _outlinks = new ArrayList<Outlink>();
+        private List<String> _outlinkUrls = new ArrayList<String>();
+        private List<String> _outlinkAnchors = new ArrayList<String>();
         private boolean _inHead = false;
         private boolean _inBody = false;
         private boolean _inAnchor = false;
@@ -49,8 +49,12 @@ class TikaCallable implements Callable<ParsedDatum> {
             return _content.toString();
         }
         
-        public Outlink[] getLinks() {
-            return _outlinks.toArray(new Outlink[_outlinks.size()]);
+        public String[] getLinkUrls() {
+            return _outlinkUrls.toArray(new String[_outlinkUrls.size()]);
+        }
+        
+        public String[] getLinkAnchors() {
+            return _outlinkAnchors.toArray(new String[_outlinkAnchors.size()]);
         }
         
         @Override
@@ -88,7 +92,8 @@ class TikaCallable implements Callable<ParsedDatum> {
             } else if (_inBody && localName.equalsIgnoreCase("body")) {
                 _inBody = false;
             } else if (_inAnchor && localName.equalsIgnoreCase("a")) {
-                _outlinks.add(new Outlink(_curUrl, _curAnchor.toString()));
+                _outlinkUrls.add(_curUrl);
+                _outlinkAnchors.add(_curAnchor.toString());
                 _inAnchor = false;
             }
         }
@@ -113,26 +118,38 @@ class TikaCallable implements Callable<ParsedDatum> {
     private Parser _parser;
     private InputStream _input;
     private Metadata _metadata;
+    private ParserPolicy _policy;
     
     public TikaCallable(Parser parser, InputStream input, Metadata metadata) {
+        this(parser, input, metadata, new ParserPolicy());
+    }
+    
+    public TikaCallable(Parser parser, InputStream input, Metadata metadata, ParserPolicy policy) {
         _parser = parser;
         _input = input;
         _metadata = metadata;
+        _policy = policy;
     }
     
     @Override
     public ParsedDatum call() throws Exception {
         try {
             LinkBodyHandler handler = new LinkBodyHandler();
-            ProfilingHandler profilingHandler = new ProfilingHandler();  
-            TeeContentHandler teeContentHandler = new TeeContentHandler(handler, profilingHandler);
+            SampledProfilingHandler profilingHandler = null;
+            ContentHandler contentHandler = handler;
+            
+            // If the HTTP response already told us the language, we can skip profiling.
+            if ((_policy.getMaxLanguageSample() > 0) && (getFirstLanguage(_metadata.get(Metadata.CONTENT_LANGUAGE)) == null)) {
+                profilingHandler = new SampledProfilingHandler(_policy.getMaxLanguageSample());
+                contentHandler = new TeeContentHandler(handler, profilingHandler);
+            }
 
-            _parser.parse(_input, teeContentHandler, _metadata, new ParseContext());
+            _parser.parse(_input, contentHandler, _metadata, new ParseContext());
             
             String lang = detectLanguage(_metadata, profilingHandler);
             return new ParsedDatum(_metadata.get(Metadata.RESOURCE_NAME_KEY), handler.getContent(), lang,
                             _metadata.get(Metadata.TITLE),
-                            handler.getLinks(), makeMap(_metadata), BaseDatum.EMPTY_METADATA_MAP);
+                            handler.getLinkUrls(), handler.getLinkAnchors(), makeMap(_metadata), BaseDatum.EMPTY_METADATA_MAP);
         } catch (Exception e) {
             // Generic exception that's OK to re-throw
             throw e;
@@ -146,13 +163,13 @@ class TikaCallable implements Callable<ParsedDatum> {
     
     /**
      * See if a language was set by the parser, from meta tags.
-     * As a last resort falls back to the result from the ProfilingHandler.
+     * As a last resort falls back to the result from the SampledProfilingHandler.
      *  
      * @param metadata
-     * @param profilingHandler
+     * @param profilingHandler handler that profiled the text, or null if profiling was skipped
      * @return The first language found (two char lang code) or empty string if no language was detected.
      */
-    private static String detectLanguage(Metadata metadata, ProfilingHandler profilingHandler) {
+    private static String detectLanguage(Metadata metadata, SampledProfilingHandler profilingHandler) {
         String result = null;
         
         String dubCoreLang = metadata.get(Metadata.LANGUAGE);
@@ -166,17 +183,13 @@ class TikaCallable implements Callable<ParsedDatum> {
         
         result = getFirstLanguage(result);
         
-        if (result == null) {
-            // Language is still unspecified, so use ProfileHandler's result
-            LanguageIdentifier langIdentifier = profilingHandler.getLanguage();
-            // FUTURE KKr - provide config for specifying required certainty level.
-            if (langIdentifier.isReasonablyCertain()) {
-                result = langIdentifier.getLanguage();
-                LOGGER.trace("Using language specified by profiling handler: " + result);
-            } else {
-                result = "";
-            }
-
+        if ((result == null) && (profilingHandler != null)) {
+            // Language is still unspecified, so use the profiling handler's result. This
+            // will be the empty string if the guess wasn't certain enough.
+            result = profilingHandler.getLanguage();
+            LOGGER.trace("Using language specified by profiling handler: " + result);
+        } else if (result == null) {
+            result = "";
         }
         
         return result;
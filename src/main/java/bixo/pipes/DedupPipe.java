@@ -0,0 +1,282 @@
+package bixo.pipes;
+
+import java.security.InvalidParameterException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.log4j.Logger;
+
+import bixo.cascading.NullContext;
+import bixo.cascading.NullSinkTap;
+import bixo.datum.BaseDatum;
+import bixo.datum.ParsedDatum;
+import bixo.datum.StatusDatum;
+import bixo.datum.UrlStatus;
+import bixo.hadoop.DedupCounters;
+import bixo.utils.SimHash;
+import cascading.flow.FlowProcess;
+import cascading.operation.BaseOperation;
+import cascading.operation.Buffer;
+import cascading.operation.BufferCall;
+import cascading.operation.Function;
+import cascading.operation.FunctionCall;
+import cascading.operation.aggregator.Count;
+import cascading.pipe.CoGroup;
+import cascading.pipe.Each;
+import cascading.pipe.Every;
+import cascading.pipe.GroupBy;
+import cascading.pipe.Pipe;
+import cascading.pipe.SubAssembly;
+import cascading.pipe.cogroup.LeftJoin;
+import cascading.tap.Tap;
+import cascading.tuple.Fields;
+import cascading.tuple.Tuple;
+import cascading.tuple.TupleEntry;
+
+/**
+ * Removes near-duplicate pages (session id variants, print views, mirrors)
+ * from the output of the ParsePipe, so that they don't get indexed and their
+ * outlinks don't get crawled again.
+ *
+ * A simhash is calculated from the parsed text of each page, and pages are
+ * grouped by each band of their simhash. A page is a duplicate if there's a
+ * page with a lower URL whose simhash is within <maxDistance> bits. Since
+ * maxDistance is less than the number of bands, two such pages always share
+ * at least one band, so we find them without comparing every pair of pages.
+ * Pages without any parsed text are never treated as duplicates.
+ *
+ */
+@SuppressWarnings("serial")
+public class DedupPipe extends SubAssembly {
+    private static final Logger LOGGER = Logger.getLogger(DedupPipe.class);
+
+    // Pipe that outputs ParsedDatum tuples, for pages that aren't duplicates.
+    public static final String UNIQUE_PIPE_NAME = "DedupPipe-unique";
+
+    // Pipe that outputs StatusDatum tuples, for pages that are duplicates.
+    public static final String STATUS_PIPE_NAME = "DedupPipe-status";
+
+    public static final int DEFAULT_MAX_DISTANCE = 3;
+
+    // Max number of different simhashes we compare against in one band group. Past
+    // that, only identical simhashes are detected, so that a band value shared by a
+    // huge number of pages doesn't turn into an n^2 comparison.
+    private static final int MAX_GROUP_HASHES = 1000;
+
+    private static final String BAND_KEY_FIELD = BaseDatum.fieldName(DedupPipe.class, "bandKey");
+    private static final String SIMHASH_FIELD = BaseDatum.fieldName(DedupPipe.class, "simHash");
+    private static final String BAND_URL_FIELD = BaseDatum.fieldName(DedupPipe.class, "bandUrl");
+    private static final String DUPLICATE_URL_FIELD = BaseDatum.fieldName(DedupPipe.class, "duplicateUrl");
+
+    private static final Fields BAND_FIELDS = new Fields(BAND_KEY_FIELD, BAND_URL_FIELD, SIMHASH_FIELD);
+
+    @SuppressWarnings("unchecked")
+    private static class MakeBandsFunction extends BaseOperation<NullContext> implements Function<NullContext> {
+
+        // Output one tuple per simhash band for each page with parsed text.
+        public MakeBandsFunction() {
+            super(BAND_FIELDS);
+        }
+
+        @Override
+        public void operate(FlowProcess process, FunctionCall<NullContext> funcCall) {
+            TupleEntry entry = funcCall.getArguments();
+            String url = entry.getString(ParsedDatum.URL_FIELD);
+            String parsedText = entry.getString(ParsedDatum.PARSED_TEXT_FIELD);
+
+            long simHash = (parsedText == null) ? 0 : SimHash.getSimHash(parsedText);
+            if (simHash == 0) {
+                return;
+            }
+
+            for (int band = 0; band < SimHash.NUM_BANDS; band++) {
+                funcCall.getOutputCollector().add(new Tuple(SimHash.getBandKey(simHash, band), url, simHash));
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static class FindDuplicatesBuffer extends BaseOperation<NullContext> implements Buffer<NullContext> {
+        private int _maxDistance;
+
+        // Output the URL of every page in the group (sorted by URL) that's a
+        // near-duplicate of an earlier page.
+        public FindDuplicatesBuffer(int maxDistance) {
+            super(new Fields(DUPLICATE_URL_FIELD));
+
+            _maxDistance = maxDistance;
+        }
+
+        @Override
+        public void operate(FlowProcess process, BufferCall<NullContext> bufferCall) {
+            Set<Long> seenHashes = new HashSet<Long>();
+            long[] groupHashes = new long[MAX_GROUP_HASHES];
+            int numGroupHashes = 0;
+            boolean groupFull = false;
+            String lastUrl = null;
+
+            Iterator<TupleEntry> iter = bufferCall.getArgumentsIterator();
+            while (iter.hasNext()) {
+                TupleEntry entry = iter.next();
+                String url = entry.getString(BAND_URL_FIELD);
+                long simHash = entry.getLong(SIMHASH_FIELD);
+
+                // The same URL could have been parsed twice, but it's not a duplicate of itself.
+                if (url.equals(lastUrl)) {
+                    continue;
+                }
+
+                lastUrl = url;
+
+                boolean isDuplicate = seenHashes.contains(simHash);
+                for (int i = 0; !isDuplicate && (i < numGroupHashes); i++) {
+                    isDuplicate = SimHash.getDistance(simHash, groupHashes[i]) <= _maxDistance;
+                }
+
+                if (isDuplicate) {
+                    bufferCall.getOutputCollector().add(new Tuple(url));
+                }
+
+                if (seenHashes.add(simHash)) {
+                    if (numGroupHashes < groupHashes.length) {
+                        groupHashes[numGroupHashes++] = simHash;
+                    } else if (!groupFull) {
+                        LOGGER.warn("Too many different simhashes for band key " + entry.getLong(BAND_KEY_FIELD) + ", only checking for identical hashes");
+                        groupFull = true;
+                    }
+                }
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static class FilterDuplicatesFunction extends BaseOperation<NullContext> implements Function<NullContext> {
+        private int _fieldPos;
+        private int[] _fieldsToCopy;
+
+        // Only output ParsedDatum tuples for pages that aren't duplicates.
+        public FilterDuplicatesFunction(Fields resultFields) {
+            super(resultFields.size() + 1, resultFields);
+
+            // Location of the duplicate URL field added by the join, which is null if
+            // the page isn't a duplicate.
+            _fieldPos = resultFields.size();
+
+            _fieldsToCopy = new int[resultFields.size()];
+            for (int i = 0; i < _fieldsToCopy.length; i++) {
+                _fieldsToCopy[i] = i;
+            }
+        }
+
+        @Override
+        public void operate(FlowProcess process, FunctionCall<NullContext> funcCall) {
+            Tuple t = funcCall.getArguments().getTuple();
+            if (t.get(_fieldPos) == null) {
+                process.increment(DedupCounters.DOCUMENTS_UNIQUE, 1);
+                funcCall.getOutputCollector().add(t.get(_fieldsToCopy));
+            } else {
+                process.increment(DedupCounters.DOCUMENTS_DUPLICATE, 1);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static class MakeStatusFunction extends BaseOperation<NullContext> implements Function<NullContext> {
+        private int _fieldPos;
+        private Fields _metaDataFields;
+
+        // Output a DUPLICATE StatusDatum for pages that are duplicates.
+        public MakeStatusFunction(Fields metaDataFields) {
+            super(StatusDatum.FIELDS.append(metaDataFields));
+
+            _fieldPos = ParsedDatum.FIELDS.size() + metaDataFields.size();
+            _metaDataFields = metaDataFields;
+        }
+
+        @Override
+        public void operate(FlowProcess process, FunctionCall<NullContext> funcCall) {
+            Tuple t = funcCall.getArguments().getTuple();
+            if (t.get(_fieldPos) != null) {
+                ParsedDatum datum = new ParsedDatum(t, _metaDataFields);
+                StatusDatum status = new StatusDatum(datum.getUrl(), UrlStatus.DUPLICATE, datum.getMetaDataMap());
+                funcCall.getOutputCollector().add(status.toTuple());
+            }
+        }
+    }
+
+    public DedupPipe(Pipe parsedProvider) {
+        this(parsedProvider, new Fields());
+    }
+
+    public DedupPipe(Pipe parsedProvider, Fields metaDataFields) {
+        this(parsedProvider, metaDataFields, DEFAULT_MAX_DISTANCE);
+    }
+
+    /**
+     * @param parsedProvider Source for parsed pages - must output ParsedDatum tuples
+     * @param metaDataFields ParsedDatum meta-data fields
+     * @param maxDistance Max number of different simhash bits for a page to be a duplicate
+     */
+    public DedupPipe(Pipe parsedProvider, Fields metaDataFields, int maxDistance) {
+        if ((maxDistance < 0) || (maxDistance >= SimHash.NUM_BANDS)) {
+            throw new IllegalArgumentException("Max distance must be between 0 and " + (SimHash.NUM_BANDS - 1));
+        }
+
+        Pipe parsed = new Pipe("dedup_pipe", parsedProvider);
+
+        // Find the URLs of all duplicate pages. A page can be found as a duplicate
+        // in more than one band, so we only keep one copy of each URL.
+        Pipe duplicates = new Each(parsed, new MakeBandsFunction(), Fields.RESULTS);
+        duplicates = new GroupBy(duplicates, new Fields(BAND_KEY_FIELD), new Fields(BAND_URL_FIELD));
+        duplicates = new Every(duplicates, new FindDuplicatesBuffer(maxDistance), Fields.RESULTS);
+        duplicates = new GroupBy(duplicates, new Fields(DUPLICATE_URL_FIELD));
+        duplicates = new Every(duplicates, new Count(), new Fields(DUPLICATE_URL_FIELD));
+
+        Pipe joined = new CoGroup(parsed, new Fields(ParsedDatum.URL_FIELD), duplicates, new Fields(DUPLICATE_URL_FIELD), new LeftJoin());
+
+        Fields parsedFields = ParsedDatum.FIELDS.append(metaDataFields);
+        Pipe unique = new Pipe(UNIQUE_PIPE_NAME, new Each(joined, new FilterDuplicatesFunction(parsedFields)));
+        Pipe status = new Pipe(STATUS_PIPE_NAME, new Each(joined, new MakeStatusFunction(metaDataFields)));
+
+        setTails(unique, status);
+    }
+
+    public Pipe getUniqueTailPipe() {
+        return getTailPipe(UNIQUE_PIPE_NAME);
+    }
+
+    public Pipe getStatusTailPipe() {
+        return getTailPipe(STATUS_PIPE_NAME);
+    }
+
+    private Pipe getTailPipe(String pipeName) {
+        String[] pipeNames = getTailNames();
+        for (int i = 0; i < pipeNames.length; i++) {
+            if (pipeName.equals(pipeNames[i])) {
+                return getTails()[i];
+            }
+        }
+
+        throw new InvalidParameterException("Invalid pipe name: " + pipeName);
+    }
+
+    public static Map<String, Tap> makeSinkMap(Tap statusSink, Tap uniqueSink) {
+        HashMap<String, Tap> result = new HashMap<String, Tap>(2);
+
+        if (statusSink == null) {
+            statusSink = new NullSinkTap(StatusDatum.FIELDS);
+        }
+
+        if (uniqueSink == null) {
+            uniqueSink = new NullSinkTap(ParsedDatum.FIELDS);
+        }
+
+        result.put(STATUS_PIPE_NAME, statusSink);
+        result.put(UNIQUE_PIPE_NAME, uniqueSink);
+
+        return result;
+    }
+}
@@ -47,6 +47,7 @@ public class SimpleCrawlTool {
         public FetcherPolicy makeNewPolicy(long crawlDelay) {
             MyFetchPolicy result = new MyFetchPolicy();
             result.setCrawlDelay(crawlDelay);
+            result.setClock(getClock());
             return result;
         }
         
@@ -54,7 +55,7 @@ public class SimpleCrawlTool {
         public FetchRequest getFetchRequest(int maxUrls) {
             FetchRequest result = super.getFetchRequest(maxUrls);
             int numUrls = Math.min(50, result.getNumUrls());
-            long nextTime = System.currentTimeMillis() + (numUrls * _crawlDelay);
+            long nextTime = getClock().currentTimeMillis() + (numUrls * _crawlDelay);
             return new FetchRequest(numUrls, nextTime);
         }
     }
@@ -219,6 +220,8 @@ public class SimpleCrawlTool {
 
                 SiteCrawler crawler = new SiteCrawler(inputPath, curLoopDir, userAgent,
                                 defaultPolicy, options.getMaxThreads(), urlFilter);
+                crawler.setFilterKnownUrls(options.isFilterKnownUrls());
+                crawler.setDedupContent(options.isDedupContent());
                 crawler.crawl(options.isDebugLogging());
 
                 // Input for the next round is our current output
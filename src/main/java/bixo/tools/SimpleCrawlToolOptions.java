@@ -19,6 +19,8 @@ public class SimpleCrawlToolOptions {
     private int _crawlDuration = NO_CRAWL_DURATION;
     private int _maxThreads = DEFAULT_MAX_THREADS;
     private int _numLoops = DEFAULT_NUM_LOOPS;
+    private boolean _filterKnownUrls = false;
+    private boolean _dedupContent = false;
 
     
     @Option(name = "-domain", usage = "domain to crawl (e.g. cnn.com)", required = true)
@@ -61,6 +63,16 @@ public class SimpleCrawlToolOptions {
         _crawlDuration = crawlDuration;
     }
 
+    @Option(name = "-filterknown", usage = "use a Bloom filter to drop known outlinks before merging", required = false)
+    public void setFilterKnownUrls(boolean filterKnownUrls) {
+        _filterKnownUrls = filterKnownUrls;
+    }
+
+    @Option(name = "-dedup", usage = "don't follow outlinks from near-duplicate pages", required = false)
+    public void setDedupContent(boolean dedupContent) {
+        _dedupContent = dedupContent;
+    }
+
     public String getOutputDir() {
         return _outputDir;
     }
@@ -85,6 +97,14 @@ public class SimpleCrawlToolOptions {
         return _crawlDuration;
     }
 
+    public boolean isFilterKnownUrls() {
+        return _filterKnownUrls;
+    }
+
+    public boolean isDedupContent() {
+        return _dedupContent;
+    }
+
     public boolean isDebugLogging() {
         return _debugLogging;
     }
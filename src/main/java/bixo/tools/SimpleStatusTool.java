@@ -8,11 +8,12 @@ import org.apache.log4j.Logger;
 import org.kohsuke.args4j.CmdLineException;
 import org.kohsuke.args4j.CmdLineParser;
 
+import bixo.datum.StatusDatum;
 import bixo.datum.UrlDatum;
 import bixo.datum.UrlStatus;
+import bixo.tools.sitecrawler.MetaData;
 import bixo.utils.FsUtils;
 import cascading.scheme.SequenceFile;
-import cascading.scheme.TextLine;
 import cascading.tap.Hfs;
 import cascading.tap.Tap;
 import cascading.tuple.Fields;
@@ -53,6 +54,14 @@ public class SimpleStatusTool {
         	// Skip Hadoop/Cascading DEBUG messages.
         	Logger.getRootLogger().setLevel(Level.INFO);
         	
+        	if (options.isMapReduce()) {
+        	    // Per-status, per-domain and per-loop counts for all loops, in one job.
+        	    LOGGER.info("Running status report job for " + crawlDirName);
+        	    for (String line : StatusReportJob.run(conf, crawlDirPath)) {
+        	        LOGGER.info(line);
+        	    }
+        	}
+        	
         	int prevLoop = -1;
         	Path curDirPath = null;
         	while ((curDirPath = FsUtils.findNextLoopDir(fs, crawlDirPath, prevLoop)) != null) {
@@ -70,33 +79,31 @@ public class SimpleStatusTool {
         		prevLoop = curLoop;
         		
         		// Process the content, status and urls in curPath
-                Tap statusTap = new Hfs(new TextLine(), curDirName + "/status");
-                
-                TupleEntryIterator iter = statusTap.openForRead(conf);
-                
-                UrlStatus[] statusValues = UrlStatus.values();
-                int[] statusCounts = new int[statusValues.length];
+                TupleEntryIterator iter;
                 int totalEntries = 0;
-                while (iter.hasNext()) {
-                    TupleEntry entry = iter.next();
-                    totalEntries += 1;
-
-                    // http://www.mcafee.com/apps/campaigns/survey.asp?mktg=vRn1KQ2oV7cJXdVj0Xudyks4CQ%3d%3d	SKIPPED_BY_SCORE	null	null	1255201363035
-                    // <url>  <status>  <headers>  <exception>  <time>
-                    String statusLine = entry.getString("line");
-                    String[] pieces = statusLine.split("\t");
-                    UrlStatus status = UrlStatus.valueOf(pieces[1]);
-                    statusCounts[status.ordinal()] += 1;
-                }
-                
                 
-                for (int i = 0; i < statusCounts.length; i++) {
-                	if (statusCounts[i] != 0) {
-                		LOGGER.info(String.format("Status %s: %d", statusValues[i].toString(), statusCounts[i]));
-                	}
+                if (!options.isMapReduce()) {
+                    Tap statusTap = new Hfs(new SequenceFile(StatusDatum.COMPACT_FIELDS.append(MetaData.FIELDS)), curDirName + "/status");
+                    iter = statusTap.openForRead(conf);
+
+                    UrlStatus[] statusValues = UrlStatus.values();
+                    int[] statusCounts = new int[statusValues.length];
+                    while (iter.hasNext()) {
+                        TupleEntry entry = iter.next();
+                        totalEntries += 1;
+
+                        UrlStatus status = StatusDatum.getStatusFromCompactTuple(entry.getTuple());
+                        statusCounts[status.ordinal()] += 1;
+                    }
+
+                    for (int i = 0; i < statusCounts.length; i++) {
+                        if (statusCounts[i] != 0) {
+                            LOGGER.info(String.format("Status %s: %d", statusValues[i].toString(), statusCounts[i]));
+                        }
+                    }
+                    LOGGER.info("Total status: " + totalEntries);
+                    LOGGER.info("");
                 }
-                LOGGER.info("Total status: " + totalEntries);
-                LOGGER.info("");
                 
                 Fields metaDataFields = new Fields();
                 Tap urlTap = new Hfs(new SequenceFile(UrlDatum.FIELDS), curDirName + "/urls");
@@ -8,6 +8,7 @@ public class SimpleStatusToolOptions {
     private boolean _debugLogging = false;
 
     private String _crawlDir;
+    private boolean _mapReduce = false;
     
     @Option(name = "-d", usage = "debug logging", required = false)
     public void setDebugLogging(boolean debugLogging) {
@@ -19,10 +20,19 @@ public class SimpleStatusToolOptions {
     	_crawlDir = crawlDir;
     }
 
+    @Option(name = "-mapreduce", usage = "calculate status counts (by status, domain and loop) with a MapReduce job", required = false)
+    public void setMapReduce(boolean mapReduce) {
+        _mapReduce = mapReduce;
+    }
+
     public String getCrawlDir() {
         return _crawlDir;
     }
 
+    public boolean isMapReduce() {
+        return _mapReduce;
+    }
+
     public boolean isDebugLogging() {
         return _debugLogging;
     }
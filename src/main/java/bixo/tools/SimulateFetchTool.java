@@ -0,0 +1,85 @@
+package bixo.tools;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+import org.kohsuke.args4j.CmdLineException;
+import org.kohsuke.args4j.CmdLineParser;
+
+import bixo.config.FetcherPolicy;
+import bixo.config.QueuePolicy;
+import bixo.fetcher.FetchScheduleSimulator;
+import bixo.fetcher.FetchScheduleSimulator.Result;
+import bixo.fetcher.FetchScheduleSimulator.SimulatedDomain;
+import bixo.utils.SimulatedClock;
+
+/**
+ * Replay a fetch through the real queueing and scheduling code, using a
+ * simulated clock, and print the projected completion curve and skip counts.
+ *
+ */
+public class SimulateFetchTool {
+    private static final long MILLISECONDS_PER_MINUTE = 60 * 1000L;
+
+    private static void printUsageAndExit(CmdLineParser parser) {
+        parser.printUsage(System.err);
+        System.exit(-1);
+    }
+
+    public static void main(String[] args) {
+        SimulateFetchToolOptions options = new SimulateFetchToolOptions();
+        CmdLineParser parser = new CmdLineParser(options);
+
+        try {
+            parser.parseArgument(args);
+        } catch (CmdLineException e) {
+            System.err.println(e.getMessage());
+            printUsageAndExit(parser);
+        }
+
+        try {
+            // Every queue gets logged by the FetcherQueueMgr, which would swamp the report.
+            Logger.getLogger("bixo").setLevel(Level.WARN);
+
+            Random rand = new Random(options.getSeed());
+            List<SimulatedDomain> domains;
+            if (options.getUrlsFile() != null) {
+                BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(options.getUrlsFile()), "UTF-8"));
+                try {
+                    domains = FetchScheduleSimulator.makeDomains(reader, options.getResponseTime(), options.getResponseTimeSigma(), rand);
+                } finally {
+                    reader.close();
+                }
+            } else {
+                domains = FetchScheduleSimulator.makeZipfDomains(options.getNumDomains(), options.getNumUrls(), options.getZipfExponent(),
+                                options.getResponseTime(), options.getResponseTimeSigma(), rand);
+            }
+
+            SimulatedClock clock = new SimulatedClock(System.currentTimeMillis());
+            FetcherPolicy fetcherPolicy = new FetcherPolicy();
+            fetcherPolicy.setCrawlDelay(options.getCrawlDelay());
+            if (options.getCrawlDuration() > 0) {
+                fetcherPolicy.setCrawlEndTime(clock.currentTimeMillis() + (options.getCrawlDuration() * MILLISECONDS_PER_MINUTE));
+            }
+
+            QueuePolicy queuePolicy = new QueuePolicy(options.getMaxUrlsInMemory(), fetcherPolicy);
+            FetchScheduleSimulator simulator = new FetchScheduleSimulator(clock, fetcherPolicy, queuePolicy, options.getMaxThreads(), options.getSeed());
+            Result result = simulator.run(domains);
+
+            Writer out = new OutputStreamWriter(System.out, "UTF-8");
+            out.write(String.format("Simulated %d domains with %s\n", domains.size(), options));
+            result.write(out, options.getReportInterval() * MILLISECONDS_PER_MINUTE);
+        } catch (Throwable t) {
+            System.err.println("Exception running simulation: " + t.getMessage());
+            t.printStackTrace(System.err);
+            System.exit(-1);
+        }
+    }
+}
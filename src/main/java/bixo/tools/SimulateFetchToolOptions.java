@@ -0,0 +1,135 @@
+package bixo.tools;
+
+import org.apache.commons.lang.builder.ReflectionToStringBuilder;
+import org.apache.commons.lang.builder.ToStringStyle;
+import org.kohsuke.args4j.Option;
+
+import bixo.fetcher.FetcherQueueMgr;
+
+public class SimulateFetchToolOptions {
+    private String _urlsFile = null;
+    private int _numDomains = 10000;
+    private int _numUrls = 1000000;
+    private double _zipfExponent = 1.0;
+    private int _crawlDuration = 6 * 60;
+    private long _crawlDelay = 30 * 1000L;
+    private int _maxThreads = 200;
+    private int _maxUrlsInMemory = FetcherQueueMgr.DEFAULT_MAX_URLS_IN_MEMORY;
+    private long _responseTime = 500;
+    private double _responseTimeSigma = 1.0;
+    private int _reportInterval = 15;
+    private long _seed = 1L;
+
+    @Option(name = "-urls", usage = "text file of URLs (one per line, best first) to use instead of generated domains", required = false)
+    public void setUrlsFile(String urlsFile) {
+        _urlsFile = urlsFile;
+    }
+
+    @Option(name = "-numdomains", usage = "number of generated domains", required = false)
+    public void setNumDomains(int numDomains) {
+        _numDomains = numDomains;
+    }
+
+    @Option(name = "-numurls", usage = "total number of generated URLs", required = false)
+    public void setNumUrls(int numUrls) {
+        _numUrls = numUrls;
+    }
+
+    @Option(name = "-zipf", usage = "Zipf exponent for the number of URLs per generated domain", required = false)
+    public void setZipfExponent(double zipfExponent) {
+        _zipfExponent = zipfExponent;
+    }
+
+    @Option(name = "-duration", usage = "target crawl duration in minutes, or 0 for no limit", required = false)
+    public void setCrawlDuration(int crawlDuration) {
+        _crawlDuration = crawlDuration;
+    }
+
+    @Option(name = "-crawldelay", usage = "default crawl delay in milliseconds", required = false)
+    public void setCrawlDelay(long crawlDelay) {
+        _crawlDelay = crawlDelay;
+    }
+
+    @Option(name = "-maxthreads", usage = "number of simulated fetcher threads", required = false)
+    public void setMaxThreads(int maxThreads) {
+        _maxThreads = maxThreads;
+    }
+
+    @Option(name = "-maxurls", usage = "max URLs in memory for the queue policy", required = false)
+    public void setMaxUrlsInMemory(int maxUrlsInMemory) {
+        _maxUrlsInMemory = maxUrlsInMemory;
+    }
+
+    @Option(name = "-responsetime", usage = "median response time in milliseconds", required = false)
+    public void setResponseTime(long responseTime) {
+        _responseTime = responseTime;
+    }
+
+    @Option(name = "-responsesigma", usage = "spread of domain response times (log-normal sigma)", required = false)
+    public void setResponseTimeSigma(double responseTimeSigma) {
+        _responseTimeSigma = responseTimeSigma;
+    }
+
+    @Option(name = "-interval", usage = "minutes between rows of the completion curve", required = false)
+    public void setReportInterval(int reportInterval) {
+        _reportInterval = reportInterval;
+    }
+
+    @Option(name = "-seed", usage = "seed for generated domains and response times", required = false)
+    public void setSeed(long seed) {
+        _seed = seed;
+    }
+
+    public String getUrlsFile() {
+        return _urlsFile;
+    }
+
+    public int getNumDomains() {
+        return _numDomains;
+    }
+
+    public int getNumUrls() {
+        return _numUrls;
+    }
+
+    public double getZipfExponent() {
+        return _zipfExponent;
+    }
+
+    public int getCrawlDuration() {
+        return _crawlDuration;
+    }
+
+    public long getCrawlDelay() {
+        return _crawlDelay;
+    }
+
+    public int getMaxThreads() {
+        return _maxThreads;
+    }
+
+    public int getMaxUrlsInMemory() {
+        return _maxUrlsInMemory;
+    }
+
+    public long getResponseTime() {
+        return _responseTime;
+    }
+
+    public double getResponseTimeSigma() {
+        return _responseTimeSigma;
+    }
+
+    public int getReportInterval() {
+        return _reportInterval;
+    }
+
+    public long getSeed() {
+        return _seed;
+    }
+
+    @Override
+    public String toString() {
+        return ReflectionToStringBuilder.toString(this, ToStringStyle.MULTI_LINE_STYLE);
+    }
+}
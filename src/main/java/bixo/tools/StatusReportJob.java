@@ -0,0 +1,164 @@
+package bixo.tools;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.security.InvalidParameterException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapred.FileInputFormat;
+import org.apache.hadoop.mapred.FileOutputFormat;
+import org.apache.hadoop.mapred.JobClient;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.MapReduceBase;
+import org.apache.hadoop.mapred.Mapper;
+import org.apache.hadoop.mapred.OutputCollector;
+import org.apache.hadoop.mapred.Reporter;
+import org.apache.hadoop.mapred.SequenceFileInputFormat;
+import org.apache.hadoop.mapred.TextOutputFormat;
+import org.apache.hadoop.mapred.lib.LongSumReducer;
+
+import bixo.datum.UrlStatus;
+import bixo.utils.DomainNames;
+import bixo.utils.FsUtils;
+import cascading.tuple.Tuple;
+
+/**
+ * MapReduce job that counts compact status entries (as written by SiteCrawler)
+ * by status, by domain + status, and by loop + status, across every loop in a
+ * crawl dir. Counts are summed by a combiner, so only the distinct keys get
+ * shuffled.
+ * 
+ * Output lines look like:
+ * 
+ * status   FETCHED     1234
+ * domain   cnn.com     FETCHED     100
+ * loop     3           FETCHED     400
+ */
+public class StatusReportJob {
+
+    public static final String STATUS_PREFIX = "status";
+    public static final String DOMAIN_PREFIX = "domain";
+    public static final String LOOP_PREFIX = "loop";
+
+    private static final String CASCADING_SERIALIZATION = "cascading.tuple.hadoop.TupleSerialization";
+
+    public static class StatusMapper extends MapReduceBase implements Mapper<Object, Tuple, Text, LongWritable> {
+        private static final LongWritable ONE = new LongWritable(1);
+        private static final UrlStatus[] STATUS_VALUES = UrlStatus.values();
+
+        private Text _key = new Text();
+        private String _loopKey;
+
+        @Override
+        public void configure(JobConf conf) {
+            // Input files are <crawl dir>/<loop dir>/status/part-xxxxx
+            String inputFile = conf.get("map.input.file");
+            _loopKey = null;
+
+            if (inputFile != null) {
+                try {
+                    int loop = FsUtils.extractLoopNumber(new Path(inputFile).getParent().getParent());
+                    _loopKey = LOOP_PREFIX + "\t" + loop + "\t";
+                } catch (InvalidParameterException e) {
+                    // No per-loop counts.
+                }
+            }
+        }
+
+        @Override
+        public void map(Object key, Tuple value, OutputCollector<Text, LongWritable> output, Reporter reporter) throws IOException {
+            String statusName = STATUS_VALUES[value.getInteger(1)].name();
+            String url = value.getString(0);
+
+            _key.set(STATUS_PREFIX + "\t" + statusName);
+            output.collect(_key, ONE);
+
+            String hostname = DomainNames.safeGetHost(url);
+            _key.set(DOMAIN_PREFIX + "\t" + DomainNames.getPLD(hostname) + "\t" + statusName);
+            output.collect(_key, ONE);
+
+            if (_loopKey != null) {
+                _key.set(_loopKey + statusName);
+                output.collect(_key, ONE);
+            }
+        }
+    }
+
+    /**
+     * Run the job over the status dirs of every loop in <crawlDir>, and return
+     * the aggregated lines.
+     */
+    public static List<String> run(JobConf baseConf, Path crawlDir) throws IOException {
+        FileSystem fs = crawlDir.getFileSystem(baseConf);
+        List<Path> statusDirs = new ArrayList<Path>();
+        int prevLoop = -1;
+        Path loopDir;
+        while ((loopDir = FsUtils.findNextLoopDir(fs, crawlDir, prevLoop)) != null) {
+            prevLoop = FsUtils.extractLoopNumber(loopDir);
+            Path statusDir = new Path(loopDir, "status");
+            if (fs.exists(statusDir)) {
+                statusDirs.add(statusDir);
+            }
+        }
+
+        Path outputDir = new Path(crawlDir, "status-report");
+        fs.delete(outputDir, true);
+
+        List<String> result = new ArrayList<String>();
+        if (statusDirs.isEmpty()) {
+            return result;
+        }
+
+        JobConf conf = new JobConf(baseConf, StatusReportJob.class);
+        conf.setJobName("status-report");
+
+        // SiteCrawler writes the status with Cascading's SequenceFile scheme, so we need
+        // Cascading's tuple serialization to read it.
+        String serializations = conf.get("io.serializations", "org.apache.hadoop.io.serializer.WritableSerialization");
+        if (!serializations.contains(CASCADING_SERIALIZATION)) {
+            conf.set("io.serializations", serializations + "," + CASCADING_SERIALIZATION);
+        }
+
+        conf.setInputFormat(SequenceFileInputFormat.class);
+        FileInputFormat.setInputPaths(conf, statusDirs.toArray(new Path[statusDirs.size()]));
+
+        conf.setMapperClass(StatusMapper.class);
+        conf.setCombinerClass(LongSumReducer.class);
+        conf.setReducerClass(LongSumReducer.class);
+        conf.setNumReduceTasks(1);
+
+        conf.setOutputKeyClass(Text.class);
+        conf.setOutputValueClass(LongWritable.class);
+        conf.setOutputFormat(TextOutputFormat.class);
+        FileOutputFormat.setOutputPath(conf, outputDir);
+
+        JobClient.runJob(conf);
+
+        for (FileStatus status : fs.listStatus(outputDir)) {
+            if (!status.getPath().getName().startsWith("part-")) {
+                continue;
+            }
+
+            BufferedReader reader = new BufferedReader(new InputStreamReader(fs.open(status.getPath()), "UTF-8"));
+
+            try {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    result.add(line);
+                }
+            } finally {
+                reader.close();
+            }
+        }
+
+        fs.delete(outputDir, true);
+        return result;
+    }
+}
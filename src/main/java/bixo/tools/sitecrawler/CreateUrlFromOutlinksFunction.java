@@ -5,7 +5,6 @@ import java.util.Map;
 import org.apache.log4j.Logger;
 
 import bixo.cascading.NullContext;
-import bixo.datum.Outlink;
 import bixo.datum.ParsedDatum;
 import bixo.datum.UrlDatum;
 import bixo.datum.UrlStatus;
@@ -38,7 +37,7 @@ public class CreateUrlFromOutlinksFunction extends BaseOperation<NullContext> im
     @Override
     public void operate(FlowProcess process, FunctionCall<NullContext> funcCall) {
     	ParsedDatum datum = new ParsedDatum(funcCall.getArguments().getTuple(), MetaData.FIELDS);
-    	Outlink outlinks[] = datum.getOutLinks();
+    	String outlinkUrls[] = datum.getOutlinkUrls();
     	
     	// Bump the crawl depth metadata value
     	Map<String, Comparable> metaData = datum.getMetaDataMap();
@@ -47,8 +46,7 @@ public class CreateUrlFromOutlinksFunction extends BaseOperation<NullContext> im
     	
         TupleEntryCollector collector = funcCall.getOutputCollector();
 
-    	for (Outlink outlink : outlinks) {
-    	    String url = outlink.getToUrl();
+    	for (String url : outlinkUrls) {
     	    url = url.replaceAll("[\n\r]", "");
     	    
             UrlDatum urlDatum = new UrlDatum(url, 0, System.currentTimeMillis(), UrlStatus.UNFETCHED, metaData);
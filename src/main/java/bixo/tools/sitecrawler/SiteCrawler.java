@@ -1,8 +1,12 @@
 package bixo.tools.sitecrawler;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
+import org.apache.hadoop.fs.FSDataOutputStream;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.mapred.JobConf;
@@ -22,13 +26,17 @@ import bixo.fetcher.http.SimpleHttpFetcher;
 import bixo.fetcher.util.IScoreGenerator;
 import bixo.fetcher.util.SimpleGroupingKeyGenerator;
 import bixo.hadoop.HadoopUtils;
+import bixo.operations.CompactStatusFunction;
+import bixo.operations.KnownUrlFilter;
 import bixo.operations.NormalizeUrlFunction;
 import bixo.operations.UrlFilter;
 import bixo.parser.SimpleParser;
+import bixo.pipes.DedupPipe;
 import bixo.pipes.FetchPipe;
 import bixo.pipes.ParsePipe;
 import bixo.urldb.IUrlFilter;
 import bixo.urldb.SimpleUrlNormalizer;
+import bixo.utils.ScalableBloomFilter;
 import cascading.flow.Flow;
 import cascading.flow.FlowConnector;
 import cascading.flow.FlowProcess;
@@ -42,15 +50,20 @@ import cascading.pipe.Every;
 import cascading.pipe.GroupBy;
 import cascading.pipe.Pipe;
 import cascading.scheme.SequenceFile;
-import cascading.scheme.TextLine;
 import cascading.tap.Hfs;
 import cascading.tap.Tap;
 import cascading.tuple.Fields;
+import cascading.tuple.TupleEntryIterator;
 
 public class SiteCrawler {
 	private static final Logger LOGGER = Logger.getLogger(SiteCrawler.class);
 	private static final int CRAWL_STACKSIZE_KB = 128;
 	
+	// Name of the temp file (in the output dir) with the Bloom filter of known URLs.
+	private static final String KNOWN_URLS_FILENAME = "known-urls.bloom";
+	
+	public static final double DEFAULT_KNOWN_URLS_ERROR_RATE = 0.001;
+	
     @SuppressWarnings("serial")
 	private static class SkipFetchedScoreGenerator implements IScoreGenerator {
 
@@ -125,6 +138,9 @@ public class SiteCrawler {
 	private FetcherPolicy _fetcherPolicy;
 	private int _maxThreads;
 	private IUrlFilter _urlFilter;
+	private boolean _filterKnownUrls = false;
+	private double _knownUrlsErrorRate = DEFAULT_KNOWN_URLS_ERROR_RATE;
+	private boolean _dedupContent = false;
 	
 	public SiteCrawler(Path inputDir, Path outputDir, UserAgent userAgent, FetcherPolicy fetcherPolicy, int maxThreads, IUrlFilter urlFilter) {
 		_inputDir = inputDir;
@@ -135,6 +151,45 @@ public class SiteCrawler {
 		_urlFilter = urlFilter;
 	}
 	
+	/**
+	 * Drop outlinks that are already in the URL DB before they get merged with
+	 * the DB, using a Bloom filter built from the DB at the start of the crawl.
+	 * This cuts down on the amount of data being shuffled for mature crawls, but
+	 * a small fraction (the filter's error rate) of new URLs will get dropped.
+	 * 
+	 * @param filterKnownUrls
+	 */
+	public void setFilterKnownUrls(boolean filterKnownUrls) {
+	    _filterKnownUrls = filterKnownUrls;
+	}
+	
+	public boolean isFilterKnownUrls() {
+	    return _filterKnownUrls;
+	}
+	
+	public void setKnownUrlsErrorRate(double knownUrlsErrorRate) {
+	    _knownUrlsErrorRate = knownUrlsErrorRate;
+	}
+	
+	public double getKnownUrlsErrorRate() {
+	    return _knownUrlsErrorRate;
+	}
+	
+	/**
+	 * Drop parsed pages that are near-duplicates of other pages fetched in the same
+	 * loop, so their outlinks don't get added to the URL DB. The status of each
+	 * duplicate is written to the /duplicates sub-dir.
+	 * 
+	 * @param dedupContent
+	 */
+	public void setDedupContent(boolean dedupContent) {
+	    _dedupContent = dedupContent;
+	}
+	
+	public boolean isDedupContent() {
+	    return _dedupContent;
+	}
+	
 	public void crawl(Boolean debug) throws Throwable {
 		JobConf conf = HadoopUtils.getDefaultJobConf(CRAWL_STACKSIZE_KB);
 		FileSystem fs = _outputDir.getFileSystem(conf);
@@ -151,10 +206,16 @@ public class SiteCrawler {
         Tap inputSource = new Hfs(new SequenceFile(UrlDatum.FIELDS.append(MetaData.FIELDS)), urlPath.toString());
         Pipe importPipe = new Each("url importer", new Identity());
 
+        Path knownUrlsPath = new Path(_outputDir, KNOWN_URLS_FILENAME);
+        
 		try {
 			String curCrawlDirName = _outputDir.toUri().toString();
+			
+			if (_filterKnownUrls) {
+			    writeKnownUrlsFilter(inputSource, fs, knownUrlsPath, conf);
+			}
 
-			Tap statusSink = new Hfs(new TextLine(StatusDatum.FIELDS.size()), curCrawlDirName + "/status");
+			Tap statusSink = new Hfs(new SequenceFile(StatusDatum.COMPACT_FIELDS.append(MetaData.FIELDS)), curCrawlDirName + "/status");
             Tap contentSink = new Hfs(new SequenceFile(FetchedDatum.FIELDS.append(MetaData.FIELDS)), curCrawlDirName + "/content");
             Tap parseSink = new Hfs(new SequenceFile(ParsedDatum.FIELDS.append(MetaData.FIELDS)), curCrawlDirName + "/parse");
 			Tap urlSink = new Hfs(new SequenceFile(UrlDatum.FIELDS.append(MetaData.FIELDS)), curCrawlDirName + "/urls");
@@ -167,12 +228,34 @@ public class SiteCrawler {
 
 			// Take content and split it into content output plus parse to extract URLs.
 			ParsePipe parsePipe = new ParsePipe(fetchPipe.getContentTailPipe(), new SimpleParser(), MetaData.FIELDS);
-			Pipe urlFromOutlinksPipe = new Pipe("url from outlinks", parsePipe.getTailPipe());
+			Pipe parsedPipe = parsePipe.getTailPipe();
+			String parsedPipeName = ParsePipe.PARSE_PIPE_NAME;
+			
+			// Optionally remove near-duplicate pages, and only extract outlinks from the rest.
+			Pipe duplicatesPipe = null;
+			if (_dedupContent) {
+			    DedupPipe dedupPipe = new DedupPipe(parsedPipe, MetaData.FIELDS);
+			    parsedPipe = dedupPipe.getUniqueTailPipe();
+			    parsedPipeName = DedupPipe.UNIQUE_PIPE_NAME;
+			    
+			    duplicatesPipe = new Pipe("compact duplicates", dedupPipe.getStatusTailPipe());
+			    duplicatesPipe = new Each(duplicatesPipe, new CompactStatusFunction(MetaData.FIELDS));
+			}
+			
+			Pipe urlFromOutlinksPipe = new Pipe("url from outlinks", parsedPipe);
 			urlFromOutlinksPipe = new Each(urlFromOutlinksPipe, new CreateUrlFromOutlinksFunction());
 			urlFromOutlinksPipe = new Each(urlFromOutlinksPipe, new UrlFilter(_urlFilter, MetaData.FIELDS));
 			urlFromOutlinksPipe = new Each(urlFromOutlinksPipe, new NormalizeUrlFunction(new SimpleUrlNormalizer(), MetaData.FIELDS));
 			
-			// Take status and split it into status output plus updated UrlDatum's in the /urls sub-dir.
+			// Outlinks have to be normalized before we can check them against the known URLs.
+			if (_filterKnownUrls) {
+			    urlFromOutlinksPipe = new Each(urlFromOutlinksPipe, new KnownUrlFilter(knownUrlsPath.toString()));
+			}
+			
+			// Take status and split it into (compact) status output plus updated UrlDatum's in the /urls sub-dir.
+			Pipe statusPipe = new Pipe("compact status", fetchPipe.getStatusTailPipe());
+			statusPipe = new Each(statusPipe, new CompactStatusFunction(MetaData.FIELDS));
+			
 			Pipe urlFromFetchPipe = new Pipe("url from fetch", fetchPipe.getStatusTailPipe());
 			urlFromFetchPipe = new Each(urlFromFetchPipe, new CreateUrlFromStatusFunction());
 
@@ -184,20 +267,60 @@ public class SiteCrawler {
 			// Create the output map that connects each tail pipe to the appropriate sink.
 			Map<String, Tap> sinkMap = new HashMap<String, Tap>();
 			sinkMap.put(FetchPipe.CONTENT_PIPE_NAME, contentSink);
-			sinkMap.put(ParsePipe.PARSE_PIPE_NAME, parseSink);
-			sinkMap.put(FetchPipe.STATUS_PIPE_NAME, statusSink);
+			sinkMap.put(parsedPipeName, parseSink);
+			sinkMap.put(statusPipe.getName(), statusSink);
 			sinkMap.put(urlPipe.getName(), urlSink);
 
+			List<Pipe> tailPipes = new ArrayList<Pipe>();
+			tailPipes.add(fetchPipe.getContentTailPipe());
+			tailPipes.add(statusPipe);
+			tailPipes.add(urlPipe);
+			
+			if (duplicatesPipe != null) {
+			    Tap duplicatesSink = new Hfs(new SequenceFile(StatusDatum.COMPACT_FIELDS.append(MetaData.FIELDS)), curCrawlDirName + "/duplicates");
+			    sinkMap.put(duplicatesPipe.getName(), duplicatesSink);
+			    tailPipes.add(duplicatesPipe);
+			}
+			
 			// Finally we can run it.
 			FlowConnector flowConnector = new FlowConnector(HadoopUtils.getDefaultProperties(SiteCrawler.class, debug, conf));
-			Flow flow = flowConnector.connect(inputSource, sinkMap, fetchPipe, urlPipe);
+			Flow flow = flowConnector.connect(inputSource, sinkMap, tailPipes.toArray(new Pipe[tailPipes.size()]));
 			flow.complete();
 			
 			// flow.writeDOT("build/valid-flow.dot");
+			
+			if (_filterKnownUrls) {
+			    HadoopUtils.safeRemove(fs, knownUrlsPath);
+			}
 		} catch (Throwable t) {
 			HadoopUtils.safeRemove(fs, _outputDir);
 			throw t;
 		}
 	}
 	
+	private void writeKnownUrlsFilter(Tap urlSource, FileSystem fs, Path filterPath, JobConf conf) throws IOException {
+	    LOGGER.info("Building Bloom filter of known URLs");
+	    
+	    ScalableBloomFilter knownUrls = new ScalableBloomFilter(_knownUrlsErrorRate);
+	    TupleEntryIterator iter = urlSource.openForRead(conf);
+	    
+	    try {
+	        while (iter.hasNext()) {
+	            knownUrls.add(iter.next().getString(UrlDatum.URL_FIELD));
+	        }
+	    } finally {
+	        iter.close();
+	    }
+	    
+	    FSDataOutputStream out = fs.create(filterPath, true);
+	    
+	    try {
+	        knownUrls.write(out);
+	    } finally {
+	        out.close();
+	    }
+	    
+	    LOGGER.info(String.format("Wrote filter with %d known URLs (%d bits) to %s", knownUrls.getNumEntries(), knownUrls.getNumBits(), filterPath));
+	}
+	
 }
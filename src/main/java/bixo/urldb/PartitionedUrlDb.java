@@ -0,0 +1,392 @@
+package bixo.urldb;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapred.FileInputFormat;
+import org.apache.hadoop.mapred.JobClient;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.MapReduceBase;
+import org.apache.hadoop.mapred.Mapper;
+import org.apache.hadoop.mapred.OutputCollector;
+import org.apache.hadoop.mapred.Reporter;
+import org.apache.hadoop.mapred.lib.NLineInputFormat;
+import org.apache.hadoop.mapred.lib.NullOutputFormat;
+import org.apache.log4j.Logger;
+
+import bixo.cascading.NullContext;
+import bixo.datum.UrlDatum;
+import bixo.hadoop.HadoopConfigured;
+import bixo.operations.LastUpdated;
+import bixo.operations.TextUrlParser;
+import bixo.utils.TimeStampUtils;
+import cascading.flow.Flow;
+import cascading.flow.FlowConnector;
+import cascading.flow.FlowProcess;
+import cascading.operation.BaseOperation;
+import cascading.operation.Function;
+import cascading.operation.FunctionCall;
+import cascading.operation.Identity;
+import cascading.pipe.Each;
+import cascading.pipe.Every;
+import cascading.pipe.GroupBy;
+import cascading.pipe.Pipe;
+import cascading.scheme.SequenceFile;
+import cascading.scheme.TextLine;
+import cascading.tap.GlobHfs;
+import cascading.tap.Hfs;
+import cascading.tap.Tap;
+import cascading.tap.TemplateTap;
+import cascading.tuple.Fields;
+import cascading.tuple.Tuple;
+import cascading.tuple.TupleEntryCollector;
+import cascading.tuple.TupleEntryIterator;
+
+/**
+ * URL db that's split into a fixed number of partitions by URL hash, where
+ * each partition is sorted by URL. New URLs are grouped into a delta with the
+ * same layout, and then each partition that has new URLs is merged with its
+ * delta by a map-only job (one map per partition). So the cost of an import
+ * depends on the size of the delta and the partitions it touches, versus a
+ * GroupBy of the entire db.
+ *
+ * The db directory contains partition-00000...partition-NNNNN sub-dirs, plus
+ * a _partitions file with the number of partitions. Missing partition dirs
+ * are empty partitions.
+ */
+public class PartitionedUrlDb extends HadoopConfigured {
+    private static final Logger LOGGER = Logger.getLogger(PartitionedUrlDb.class);
+
+    public static final String URL_DB_NAME = "partitioned_url_db";
+    public static final int DEFAULT_NUM_PARTITIONS = 32;
+
+    private static final String PARTITIONS_FILENAME = "_partitions";
+    private static final String PARTITION_DIR_PREFIX = "partition-";
+    private static final String PARTITION_DIR_TEMPLATE = PARTITION_DIR_PREFIX + "%05d";
+
+    private static final String PARTITION_FIELD = "urldb-partition";
+
+    private static final String OLD_DB_PATH_KEY = "bixo.urldb.old-db-path";
+    private static final String DELTA_PATH_KEY = "bixo.urldb.delta-path";
+    private static final String MERGED_PATH_KEY = "bixo.urldb.merged-path";
+
+    @SuppressWarnings("serial")
+    private static class AssignPartitionFunction extends BaseOperation<NullContext> implements Function<NullContext> {
+        private int _numPartitions;
+
+        public AssignPartitionFunction(int numPartitions) {
+            super(new Fields(PARTITION_FIELD));
+
+            _numPartitions = numPartitions;
+        }
+
+        @Override
+        public void operate(FlowProcess process, FunctionCall<NullContext> funcCall) {
+            String url = funcCall.getArguments().getString(UrlDatum.URL_FIELD);
+            funcCall.getOutputCollector().add(new Tuple(getPartition(url, _numPartitions)));
+        }
+    }
+
+    /**
+     * Map task that merges one partition of the old db with the same
+     * partition of the delta. Each input line is a partition number.
+     */
+    public static class MergePartitionMapper extends MapReduceBase implements Mapper<LongWritable, Text, NullWritable, NullWritable> {
+        private JobConf _conf;
+        private Path _oldDbPath;
+        private Path _deltaPath;
+        private Path _mergedPath;
+
+        @Override
+        public void configure(JobConf conf) {
+            _conf = conf;
+            _oldDbPath = new Path(conf.get(OLD_DB_PATH_KEY));
+            _deltaPath = new Path(conf.get(DELTA_PATH_KEY));
+            _mergedPath = new Path(conf.get(MERGED_PATH_KEY));
+        }
+
+        @Override
+        public void map(LongWritable key, Text value, OutputCollector<NullWritable, NullWritable> output, Reporter reporter) throws IOException {
+            String partitionDirName = makePartitionDirName(Integer.parseInt(value.toString().trim()));
+            FileSystem fs = _oldDbPath.getFileSystem(_conf);
+
+            // Old partition first, so it wins ties.
+            List<TupleEntryIterator> sources = new ArrayList<TupleEntryIterator>();
+            openPartFiles(fs, new Path(_oldDbPath, partitionDirName), sources);
+            openPartFiles(fs, new Path(_deltaPath, partitionDirName), sources);
+
+            // Use a fresh conf for the output, so the tap doesn't think it's the task's output.
+            Hfs sink = new Hfs(new SequenceFile(UrlDatum.FIELDS), new Path(_mergedPath, partitionDirName).toString(), true);
+            TupleEntryCollector collector = sink.openForWrite(new JobConf(MergePartitionMapper.class));
+
+            SortedUrlMerger merger = new SortedUrlMerger();
+
+            try {
+                merger.merge(sources, collector, reporter);
+            } finally {
+                collector.close();
+
+                for (TupleEntryIterator iter : sources) {
+                    iter.close();
+                }
+            }
+
+            LOGGER.info(String.format("Merged %d URLs (%d duplicates) from %d files into %s", merger.getNumMerged(),
+                            merger.getNumDuplicates(), sources.size(), partitionDirName));
+            if (merger.getNumOutOfOrder() > 0) {
+                LOGGER.warn(String.format("Found %d URLs out of order in %s", merger.getNumOutOfOrder(), partitionDirName));
+            }
+        }
+
+        private void openPartFiles(FileSystem fs, Path partitionDir, List<TupleEntryIterator> sources) throws IOException {
+            if (!fs.exists(partitionDir)) {
+                return;
+            }
+
+            // Each part file is sorted, but not the directory as a whole.
+            for (FileStatus status : fs.listStatus(partitionDir)) {
+                String name = status.getPath().getName();
+                if (status.isDir() || name.startsWith("_") || name.startsWith(".")) {
+                    continue;
+                }
+
+                Hfs source = new Hfs(new SequenceFile(UrlDatum.FIELDS), status.getPath().toString());
+                sources.add(source.openForRead(_conf));
+            }
+        }
+    }
+
+    private int _numPartitions;
+
+    public PartitionedUrlDb() {
+        this(DEFAULT_NUM_PARTITIONS);
+    }
+
+    /**
+     * @param numPartitions number of partitions to use if we have to create the db
+     */
+    public PartitionedUrlDb(int numPartitions) {
+        super();
+
+        if (numPartitions <= 0) {
+            throw new IllegalArgumentException("numPartitions must be > 0: " + numPartitions);
+        }
+
+        _numPartitions = numPartitions;
+    }
+
+    public static int getPartition(String url, int numPartitions) {
+        return (url.hashCode() & Integer.MAX_VALUE) % numPartitions;
+    }
+
+    /**
+     * Return a tap that reads every partition of the db in <workingFolder>.
+     */
+    public static Tap makeDbTap(String workingFolder) {
+        return new GlobHfs(new SequenceFile(UrlDatum.FIELDS), workingFolder + "/" + URL_DB_NAME + "/" + PARTITION_DIR_PREFIX + "*");
+    }
+
+    /**
+     * Import the URLs in the text file at <inputPath>, merging them with any
+     * db that already exists in <workingFolder>.
+     */
+    public void importUrls(String inputPath, String workingFolder) throws IOException {
+        FileSystem fs = getFileSystem(workingFolder);
+        if (!fs.exists(new Path(inputPath))) {
+            throw new IOException("data file not found");
+        }
+
+        Path currentDb = new Path(workingFolder, URL_DB_NAME);
+        int numPartitions = fs.exists(currentDb) ? readNumPartitions(fs, currentDb) : _numPartitions;
+
+        Pipe assembly = new Pipe("url-import");
+        assembly = new Each(assembly, new Fields("line"), new TextUrlParser(new SimpleUrlFilter()));
+        importDelta(new Hfs(new TextLine(new Fields("line")), inputPath), assembly, fs, currentDb, workingFolder, numPartitions);
+    }
+
+    private void importDelta(Tap source, Pipe assembly, FileSystem fs, Path currentDb, String workingFolder, int numPartitions) throws IOException {
+        String timestamp = TimeStampUtils.nowWithUnderLine();
+        Path deltaDb = new Path(workingFolder, URL_DB_NAME + "-delta-" + timestamp);
+        Path mergedDb = new Path(workingFolder, URL_DB_NAME + "-merged-" + timestamp);
+        Path oldDb = new Path(workingFolder, URL_DB_NAME + "-old-" + timestamp);
+
+        // Only set once every merged partition has been swapped in, since until then
+        // the merged db is the only copy of the new data.
+        boolean swapped = false;
+
+        try {
+            // Only the delta gets shuffled. Each partition of the delta winds up
+            // with one sorted file per reducer, which is what the merge wants.
+            assembly = new Each(assembly, new Fields(UrlDatum.URL_FIELD), new AssignPartitionFunction(numPartitions), Fields.ALL);
+            assembly = new GroupBy(assembly, new Fields(UrlDatum.URL_FIELD));
+            assembly = new Every(assembly, new LastUpdated(UrlDatum.FIELDS.append(new Fields(PARTITION_FIELD))), Fields.RESULTS);
+
+            // The path template uses the first value, so the partition has to come first.
+            assembly = new Each(assembly, new Fields(PARTITION_FIELD).append(UrlDatum.FIELDS), new Identity());
+
+            Hfs deltaParent = new Hfs(new SequenceFile(UrlDatum.FIELDS), deltaDb.toUri().toASCIIString(), true);
+            Tap deltaSink = new TemplateTap(deltaParent, PARTITION_DIR_TEMPLATE);
+
+            FlowConnector flowConnector = new FlowConnector();
+            Flow flow = flowConnector.connect(assembly.getName(), source, deltaSink, assembly);
+            flow.complete();
+
+            if (!fs.exists(currentDb)) {
+                if (!fs.rename(deltaDb, currentDb)) {
+                    throw new IOException("Can't rename " + deltaDb + " to " + currentDb);
+                }
+
+                writeNumPartitions(fs, currentDb, numPartitions);
+                swapped = true;
+                return;
+            }
+
+            List<Integer> partitions = getPartitions(fs, deltaDb);
+            if (partitions.isEmpty()) {
+                LOGGER.info("No URLs to merge into " + currentDb);
+                swapped = true;
+                return;
+            }
+
+            runMergeJob(fs, currentDb, deltaDb, mergedDb, partitions);
+
+            // Swap in the merged partitions. Untouched partitions stay as-is.
+            for (int partition : partitions) {
+                swapPartition(fs, currentDb, mergedDb, oldDb, makePartitionDirName(partition));
+            }
+
+            swapped = true;
+        } finally {
+            fs.delete(deltaDb, true);
+
+            if (swapped) {
+                fs.delete(mergedDb, true);
+                fs.delete(oldDb, true);
+            } else {
+                if (fs.exists(mergedDb)) {
+                    LOGGER.warn("Leaving merged partitions that weren't swapped in at " + mergedDb);
+                }
+
+                if (fs.exists(oldDb)) {
+                    LOGGER.warn("Leaving old partitions that couldn't be restored at " + oldDb);
+                }
+            }
+        }
+    }
+
+    /**
+     * Replace one partition of <currentDb> with the merged version from <mergedDb>.
+     * The old partition is moved to <oldDb> first, and only deleted once the merged
+     * partition is in place. Hadoop reports a failed rename by returning false, so
+     * every rename has to be checked.
+     * 
+     * @throws IOException if the swap fails, in which case the old partition is left in place
+     */
+    private static void swapPartition(FileSystem fs, Path currentDb, Path mergedDb, Path oldDb, String partitionDirName) throws IOException {
+        Path curPartition = new Path(currentDb, partitionDirName);
+        Path mergedPartition = new Path(mergedDb, partitionDirName);
+        Path oldPartition = new Path(oldDb, partitionDirName);
+
+        // Missing partition dirs are empty partitions, so there might be nothing to move aside.
+        boolean hasOldPartition = fs.exists(curPartition);
+        if (hasOldPartition) {
+            if (!fs.mkdirs(oldDb) || !fs.rename(curPartition, oldPartition)) {
+                throw new IOException("Can't move " + curPartition + " to " + oldPartition);
+            }
+        }
+
+        if (!fs.rename(mergedPartition, curPartition)) {
+            if (hasOldPartition && !fs.rename(oldPartition, curPartition)) {
+                throw new IOException("Can't swap in " + mergedPartition + ", and can't restore old partition from " + oldPartition);
+            }
+
+            throw new IOException("Can't rename " + mergedPartition + " to " + curPartition);
+        }
+
+        if (hasOldPartition) {
+            fs.delete(oldPartition, true);
+        }
+    }
+
+    private void runMergeJob(FileSystem fs, Path currentDb, Path deltaDb, Path mergedDb, List<Integer> partitions) throws IOException {
+        Path partitionList = new Path(mergedDb, "_partition-list");
+        FSDataOutputStream out = fs.create(partitionList, true);
+
+        try {
+            for (int partition : partitions) {
+                out.writeBytes(partition + "\n");
+            }
+        } finally {
+            out.close();
+        }
+
+        JobConf conf = new JobConf(getConf(), PartitionedUrlDb.class);
+        conf.setJobName("url-db-merge");
+        conf.set(OLD_DB_PATH_KEY, currentDb.toString());
+        conf.set(DELTA_PATH_KEY, deltaDb.toString());
+        conf.set(MERGED_PATH_KEY, mergedDb.toString());
+
+        // One map task per partition, and no shuffle.
+        conf.setInputFormat(NLineInputFormat.class);
+        conf.setInt("mapred.line.input.format.linespermap", 1);
+        FileInputFormat.setInputPaths(conf, partitionList);
+        conf.setMapperClass(MergePartitionMapper.class);
+        conf.setNumReduceTasks(0);
+        conf.setOutputFormat(NullOutputFormat.class);
+        conf.setOutputKeyClass(NullWritable.class);
+        conf.setOutputValueClass(NullWritable.class);
+        conf.setMapSpeculativeExecution(false);
+
+        LOGGER.info(String.format("Merging %d partitions into %s", partitions.size(), currentDb));
+        JobClient.runJob(conf);
+    }
+
+    private static List<Integer> getPartitions(FileSystem fs, Path db) throws IOException {
+        List<Integer> result = new ArrayList<Integer>();
+        if (!fs.exists(db)) {
+            return result;
+        }
+
+        for (FileStatus status : fs.listStatus(db)) {
+            String name = status.getPath().getName();
+            if (status.isDir() && name.startsWith(PARTITION_DIR_PREFIX)) {
+                result.add(Integer.parseInt(name.substring(PARTITION_DIR_PREFIX.length())));
+            }
+        }
+
+        return result;
+    }
+
+    private static String makePartitionDirName(int partition) {
+        return String.format(PARTITION_DIR_TEMPLATE, partition);
+    }
+
+    private static int readNumPartitions(FileSystem fs, Path db) throws IOException {
+        FSDataInputStream in = fs.open(new Path(db, PARTITIONS_FILENAME));
+
+        try {
+            return in.readInt();
+        } finally {
+            in.close();
+        }
+    }
+
+    private static void writeNumPartitions(FileSystem fs, Path db, int numPartitions) throws IOException {
+        FSDataOutputStream out = fs.create(new Path(db, PARTITIONS_FILENAME), true);
+
+        try {
+            out.writeInt(numPartitions);
+        } finally {
+            out.close();
+        }
+    }
+}
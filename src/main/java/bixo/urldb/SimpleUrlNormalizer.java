@@ -3,7 +3,6 @@ package bixo.urldb;
 import java.io.UnsupportedEncodingException;
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.net.URLDecoder;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -22,11 +21,11 @@ public class SimpleUrlNormalizer implements IUrlNormalizer {
     // we only are really worried about normalizing http(s) URLs
     // Not really sure about ':' and '?' being reserved in queries, but that's what StumbleUpon thinks, and that's
     // who we need to support, so...
-    private static final String RESERVED_QUERY_CHARS = "%&;=:?#";
+    private static final boolean[] RESERVED_QUERY_CHARS = makeCharTable("%&;=:?#");
 
-    private static final String RESERVED_PATH_CHARS = "%/?#";
+    private static final boolean[] RESERVED_PATH_CHARS = makeCharTable("%/?#");
     
-    private static final String HEX_CODES = "0123456789abcdefABCDEF";
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
     
     // Match "/xx/../" in the url, where xx consists of chars, different then "/"
     // (slash) and needs to have at least one char different from "."
@@ -49,33 +48,69 @@ public class SimpleUrlNormalizer implements IUrlNormalizer {
     	_treatRefAsQuery = treatRefAsQuery;
     }
     
-    private String encodeCodePoint(int codepoint) {
-        try {
-            int[] codepoints = { codepoint };
-            byte[] bytes = new String(codepoints, 0, 1).getBytes("UTF-8");
-            
-            StringBuilder result = new StringBuilder();
-            for (byte value : bytes) {
-                result.append(String.format("%%%02x", value));
-            }
-            
-            return result.toString();
-        } catch (UnsupportedEncodingException e) {
-            throw new RuntimeException("Unexpected exception during URL encoding", e);
+    private static boolean[] makeCharTable(String chars) {
+        boolean[] result = new boolean[128];
+        for (int i = 0; i < chars.length(); i++) {
+            result[chars.charAt(i)] = true;
         }
-
+        
+        return result;
     }
     
-    private String encodeUrlComponent(String component, String reservedChars) {
-        StringBuilder result = new StringBuilder();
-        for (int i = 0; i < component.length(); ) {
+    private static void appendEncodedByte(StringBuilder result, int value) {
+        result.append('%');
+        result.append(HEX_DIGITS[(value >> 4) & 0x0F]);
+        result.append(HEX_DIGITS[value & 0x0F]);
+    }
+    
+    // Append the %xx encoding of the UTF-8 bytes for <codepoint>. Unpaired surrogates
+    // get encoded as '?', which is what String.getBytes("UTF-8") does.
+    private static void appendEncodedCodePoint(StringBuilder result, int codepoint) {
+        if (codepoint < 0x0080) {
+            appendEncodedByte(result, codepoint);
+        } else if (codepoint < 0x0800) {
+            appendEncodedByte(result, 0xC0 | (codepoint >> 6));
+            appendEncodedByte(result, 0x80 | (codepoint & 0x3F));
+        } else if ((codepoint >= Character.MIN_SURROGATE) && (codepoint <= Character.MAX_SURROGATE)) {
+            appendEncodedByte(result, '?');
+        } else if (codepoint < 0x10000) {
+            appendEncodedByte(result, 0xE0 | (codepoint >> 12));
+            appendEncodedByte(result, 0x80 | ((codepoint >> 6) & 0x3F));
+            appendEncodedByte(result, 0x80 | (codepoint & 0x3F));
+        } else {
+            appendEncodedByte(result, 0xF0 | (codepoint >> 18));
+            appendEncodedByte(result, 0x80 | ((codepoint >> 12) & 0x3F));
+            appendEncodedByte(result, 0x80 | ((codepoint >> 6) & 0x3F));
+            appendEncodedByte(result, 0x80 | (codepoint & 0x3F));
+        }
+    }
+    
+    private static boolean needsEncoding(char c, boolean[] reservedChars) {
+        return (c <= 0x0020) || (c >= 0x007F) || reservedChars[c];
+    }
+    
+    private String encodeUrlComponent(String component, boolean[] reservedChars) {
+        // Most components don't need any encoding, so avoid building a new string for them.
+        int length = component.length();
+        int firstToEncode = 0;
+        while ((firstToEncode < length) && !needsEncoding(component.charAt(firstToEncode), reservedChars)) {
+            firstToEncode += 1;
+        }
+        
+        if (firstToEncode == length) {
+            return component;
+        }
+        
+        StringBuilder result = new StringBuilder(length + 16);
+        result.append(component, 0, firstToEncode);
+        for (int i = firstToEncode; i < length; ) {
             int codePoint = component.codePointAt(i);
             if (codePoint == 0x0020) {
                 result.append('+');
             } else if (codePoint >= 0x007F) {
-                result.append(encodeCodePoint(codePoint));
-            } else if ((codePoint < 0x0020) || (reservedChars.indexOf((char)codePoint) != -1)) {
-                result.append(String.format("%%%02x", codePoint));
+                appendEncodedCodePoint(result, codePoint);
+            } else if ((codePoint < 0x0020) || reservedChars[codePoint]) {
+                appendEncodedByte(result, codePoint);
             } else {
                 result.append((char)codePoint);
             }
@@ -86,34 +121,83 @@ public class SimpleUrlNormalizer implements IUrlNormalizer {
         return result.toString();
     }
     
+    private static int hexValue(char c) {
+        if ((c >= '0') && (c <= '9')) {
+            return c - '0';
+        } else if ((c >= 'a') && (c <= 'f')) {
+            return 10 + (c - 'a');
+        } else if ((c >= 'A') && (c <= 'F')) {
+            return 10 + (c - 'A');
+        } else {
+            return -1;
+        }
+    }
+    
     public String decodeUrl(String url) {
         // FUTURE - handle unsupported %uHHHH sequences for Unicode code points.
         // FUTURE - detect & handle incorrectly encoded URLs
         
-        // First, try to catch unescaped '%' characters.
-        int offset = 0;
-        while ((offset = url.indexOf('%', offset)) != -1) {
-            offset += 1;
-            boolean needsEscaping = false;
-            if (offset > (url.length() - 2)) {
-                needsEscaping = true;
-            } else if ((HEX_CODES.indexOf(url.charAt(offset)) == -1) || (HEX_CODES.indexOf(url.charAt(offset + 1)) == -1)) {
-                needsEscaping = true;
-            }
-            
-            if (needsEscaping) {
-                url = url.substring(0, offset) + "25" + url.substring(offset);
-                offset += 1;
-            }
+        // This is equivalent to escaping any '%' that isn't followed by two hex digits,
+        // and then calling URLDecoder.decode(url, "UTF-8"), but done in a single pass.
+        if ((url.indexOf('%') == -1) && (url.indexOf('+') == -1)) {
+            return url;
         }
         
-        try {
-            return URLDecoder.decode(url, "UTF-8");
-        } catch (UnsupportedEncodingException e) {
-            throw new RuntimeException("Unexpected exception during URL decoding", e);
+        int length = url.length();
+        StringBuilder result = new StringBuilder(length);
+        byte[] bytes = null;
+        
+        int i = 0;
+        while (i < length) {
+            char c = url.charAt(i);
+            if (c == '+') {
+                result.append(' ');
+                i += 1;
+            } else if (c == '%') {
+                if (bytes == null) {
+                    bytes = new byte[length - i];
+                }
+                
+                // Collect the run of consecutive encoded bytes, since a multi-byte
+                // UTF-8 sequence has to be decoded as a unit. An unescaped '%' is
+                // treated as an encoded '%'.
+                int numBytes = 0;
+                while ((i < length) && (url.charAt(i) == '%')) {
+                    int hi = (i + 2 < length) ? hexValue(url.charAt(i + 1)) : -1;
+                    int lo = (hi != -1) ? hexValue(url.charAt(i + 2)) : -1;
+                    if (lo == -1) {
+                        bytes[numBytes++] = (byte)'%';
+                        i += 1;
+                    } else {
+                        bytes[numBytes++] = (byte)((hi << 4) + lo);
+                        i += 3;
+                    }
+                }
+                
+                try {
+                    result.append(new String(bytes, 0, numBytes, "UTF-8"));
+                } catch (UnsupportedEncodingException e) {
+                    throw new RuntimeException("Unexpected exception during URL decoding", e);
+                }
+            } else {
+                result.append(c);
+                i += 1;
+            }
         }
+        
+        return result.toString();
     }
 
+    private static boolean containsIgnoreCase(String str, String target) {
+        int maxOffset = str.length() - target.length();
+        for (int i = 0; i <= maxOffset; i++) {
+            if (str.regionMatches(true, i, target, 0, target.length())) {
+                return true;
+            }
+        }
+        
+        return false;
+    }
     
     public String normalizeHostname(String hostname) {
         String result = hostname.toLowerCase();
@@ -157,27 +241,38 @@ public class SimpleUrlNormalizer implements IUrlNormalizer {
     // Now we get to re-encode the path and query portions of the URL, but we have
     // to split up the path as otherwise '/' => %2F.
     public String normalizePath(String path) {
-        // First, handle relative paths
-        Matcher matcher = RELATIVE_PATH_PATTERN.matcher(path);
-        while (matcher.find()) {
-            path = path.substring(0, matcher.start()) + "/" + path.substring(matcher.end());
-            matcher = RELATIVE_PATH_PATTERN.matcher(path);
+        // First, handle relative paths. Both alternatives in the pattern need a "/../",
+        // so we can skip the regex for the (very common) case of no such sequence.
+        if (path.indexOf("/../") != -1) {
+            Matcher matcher = RELATIVE_PATH_PATTERN.matcher(path);
+            while (matcher.find()) {
+                path = path.substring(0, matcher.start()) + "/" + path.substring(matcher.end());
+                matcher = RELATIVE_PATH_PATTERN.matcher(path);
+            }
         }
         
         // Next, get rid of any default page.
-        matcher = DEFAULT_PAGE_PATTERN.matcher(path);
-        if (matcher.find()) {
-            path = path.substring(0, matcher.start()) + "/" + matcher.group(3) + path.substring(matcher.end());
+        if (containsIgnoreCase(path, "/index.") || containsIgnoreCase(path, "/default.")) {
+            Matcher matcher = DEFAULT_PAGE_PATTERN.matcher(path);
+            if (matcher.find()) {
+                path = path.substring(0, matcher.start()) + "/" + matcher.group(3) + path.substring(matcher.end());
+            }
         }
         
-        String[] pathParts = path.split("/");
-        
-        StringBuilder newPath = new StringBuilder();
-        for (String pathPart : pathParts) {
-            if (pathPart.length() > 0) {
+        StringBuilder newPath = new StringBuilder(path.length() + 16);
+        int partStart = 0;
+        while (partStart < path.length()) {
+            int partEnd = path.indexOf('/', partStart);
+            if (partEnd == -1) {
+                partEnd = path.length();
+            }
+            
+            if (partEnd > partStart) {
                 newPath.append('/');
-                newPath.append(encodeUrlComponent(decodeUrl(pathPart), RESERVED_PATH_CHARS));
+                newPath.append(encodeUrlComponent(decodeUrl(path.substring(partStart, partEnd)), RESERVED_PATH_CHARS));
             }
+            
+            partStart = partEnd + 1;
         }
         
         if (newPath.length() == 0) {
@@ -200,9 +295,17 @@ public class SimpleUrlNormalizer implements IUrlNormalizer {
             return "";
         }
 
-        StringBuilder newQuery = new StringBuilder();
-        String[] queryParts = query.split("&");
-        for (String queryPart : queryParts) {
+        StringBuilder newQuery = new StringBuilder(query.length() + 16);
+        int partStart = 0;
+        while (partStart < query.length()) {
+            int partEnd = query.indexOf('&', partStart);
+            if (partEnd == -1) {
+                partEnd = query.length();
+            }
+            
+            String queryPart = query.substring(partStart, partEnd);
+            partStart = partEnd + 1;
+            
             if (queryPart.length() == 0) {
                 // Strip out empty query parts, e.g. q=1&&z=2
                 continue;
@@ -212,7 +315,7 @@ public class SimpleUrlNormalizer implements IUrlNormalizer {
             if (keyValues.length == 1) {
                 newQuery.append(encodeUrlComponent(decodeUrl(keyValues[0]), RESERVED_QUERY_CHARS));
                 if (queryPart.endsWith("=")) {
-                    newQuery.append("=");
+                    newQuery.append('=');
                 }
             } else {
                 for (String kvPart : keyValues) {
@@ -245,16 +348,23 @@ public class SimpleUrlNormalizer implements IUrlNormalizer {
         
         // Danger, hack! Some sites have session ids that look like http://domain.com/page.html;jsessionid=xxx,
         // or even http://domain.com/page.html;jsessionid=xxx&q=z. So we always want to try to get rid of
-        // session ids first, before doing any other processing.
-        Matcher matcher = SESSION_ID_PATTERN.matcher(result);
-        if (matcher.find()) {
-            result = result.substring(0, matcher.start()) + matcher.group(4) + result.substring(matcher.end());
+        // session ids first, before doing any other processing. All of the session id names
+        // we remove end with "id=", so only run the regex if we see that.
+        if (containsIgnoreCase(result, "id=")) {
+            Matcher matcher = SESSION_ID_PATTERN.matcher(result);
+            if (matcher.find()) {
+                result = result.substring(0, matcher.start()) + matcher.group(4) + result.substring(matcher.end());
+            }
         }
         
         URL testUrl;
         
         try {
-            String decodedUrl = result.replace("+", "%20");
+            String decodedUrl = result;
+            if (decodedUrl.indexOf('+') != -1) {
+                decodedUrl = decodedUrl.replace("+", "%20");
+            }
+
             testUrl = new URL(decodedUrl);
             url = testUrl.toExternalForm();
         } catch (MalformedURLException e) {
@@ -290,8 +400,12 @@ public class SimpleUrlNormalizer implements IUrlNormalizer {
         String query = testUrl.getQuery();
         String anchor = testUrl.getRef();
         
-        int pos = url.indexOf("#" + anchor);
-        if (_treatRefAsQuery && (anchor != null) && (query == null) && (pos != -1) && (url.charAt(pos - 1) == '/')) {
+        int pos = -1;
+        if (_treatRefAsQuery && (anchor != null) && (query == null)) {
+            pos = url.indexOf("#" + anchor);
+        }
+        
+        if ((pos != -1) && (url.charAt(pos - 1) == '/')) {
             anchor = "#" + normalizeQuery(anchor);
             query = "";
         } else {
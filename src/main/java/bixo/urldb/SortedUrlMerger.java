@@ -0,0 +1,137 @@
+package bixo.urldb;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import org.apache.hadoop.util.Progressable;
+
+import bixo.datum.UrlDatum;
+import cascading.tuple.Tuple;
+import cascading.tuple.TupleEntry;
+import cascading.tuple.TupleEntryCollector;
+
+/**
+ * Merge of N sources of UrlDatum tuples, where each source is sorted by URL.
+ * The output is sorted by URL, with one entry per URL. If the same URL is in
+ * more than one source, we keep the entry with the latest update time (same
+ * as LastUpdated), and on a tie the one from the earliest source.
+ *
+ */
+public class SortedUrlMerger {
+
+    private static final int PROGRESS_INTERVAL = 10000;
+
+    private static class SourceHead implements Comparable<SourceHead> {
+        private Iterator<TupleEntry> _iter;
+        private int _sourceIndex;
+
+        private String _url;
+        private long _lastUpdated;
+        private Tuple _tuple;
+
+        public SourceHead(Iterator<TupleEntry> iter, int sourceIndex) {
+            _iter = iter;
+            _sourceIndex = sourceIndex;
+        }
+
+        public boolean advance() {
+            if (!_iter.hasNext()) {
+                return false;
+            }
+
+            // Iterators are free to reuse the entry, so we need our own copy.
+            TupleEntry entry = _iter.next();
+            _url = entry.getString(UrlDatum.URL_FIELD);
+            _lastUpdated = entry.getLong(UrlDatum.LAST_UPDATED_FIELD);
+            _tuple = new Tuple(entry.getTuple());
+            return true;
+        }
+
+        @Override
+        public int compareTo(SourceHead o) {
+            int result = _url.compareTo(o._url);
+            if (result == 0) {
+                result = _sourceIndex - o._sourceIndex;
+            }
+
+            return result;
+        }
+    }
+
+    private long _numMerged;
+    private long _numDuplicates;
+    private long _numOutOfOrder;
+
+    /**
+     * Merge all of the sources, writing the results to <collector>.
+     * 
+     * @param sources iterators over UrlDatum entries, each sorted by URL
+     * @param collector output of merged entries
+     * @param progress progress callback, or null
+     */
+    public void merge(List<? extends Iterator<TupleEntry>> sources, TupleEntryCollector collector, Progressable progress) {
+        _numMerged = 0;
+        _numDuplicates = 0;
+        _numOutOfOrder = 0;
+
+        PriorityQueue<SourceHead> heads = new PriorityQueue<SourceHead>(Math.max(1, sources.size()));
+        for (int i = 0; i < sources.size(); i++) {
+            SourceHead head = new SourceHead(sources.get(i), i);
+            if (head.advance()) {
+                heads.add(head);
+            }
+        }
+
+        while (!heads.isEmpty()) {
+            SourceHead head = heads.poll();
+            String url = head._url;
+            long lastUpdated = head._lastUpdated;
+            Tuple bestTuple = head._tuple;
+            requeue(heads, head, url);
+
+            // Pull every other entry with the same URL.
+            while (!heads.isEmpty() && heads.peek()._url.equals(url)) {
+                SourceHead dup = heads.poll();
+                if (dup._lastUpdated > lastUpdated) {
+                    lastUpdated = dup._lastUpdated;
+                    bestTuple = dup._tuple;
+                }
+
+                _numDuplicates += 1;
+                requeue(heads, dup, url);
+            }
+
+            collector.add(bestTuple);
+            _numMerged += 1;
+
+            if ((progress != null) && ((_numMerged % PROGRESS_INTERVAL) == 0)) {
+                progress.progress();
+            }
+        }
+    }
+
+    private void requeue(PriorityQueue<SourceHead> heads, SourceHead head, String url) {
+        if (head.advance()) {
+            if (head._url.compareTo(url) < 0) {
+                // Source isn't sorted. We'll still emit every URL, but the
+                // output won't be sorted (or fully de-duplicated).
+                _numOutOfOrder += 1;
+            }
+
+            heads.add(head);
+        }
+    }
+
+    public long getNumMerged() {
+        return _numMerged;
+    }
+
+    public long getNumDuplicates() {
+        return _numDuplicates;
+    }
+
+    public long getNumOutOfOrder() {
+        return _numOutOfOrder;
+    }
+}
@@ -52,7 +52,45 @@ import cascading.tuple.Tuple;
 public class UrlImporter extends HadoopConfigured {
     public static final String URL_DB_NAME = "url_db";
     
+    private int _numPartitions = 0;
+    
+    /**
+     * Use a PartitionedUrlDb with <numPartitions> partitions (in the
+     * PartitionedUrlDb.URL_DB_NAME sub-dir), so that imports into an existing
+     * db only merge the partitions with new URLs, versus a GroupBy of the
+     * entire db. If 0 (the default), a single unpartitioned db is used.
+     * 
+     * @param numPartitions
+     */
+    public void setNumPartitions(int numPartitions) {
+        if (numPartitions < 0) {
+            throw new IllegalArgumentException("numPartitions must be >= 0: " + numPartitions);
+        }
+        
+        _numPartitions = numPartitions;
+    }
+    
+    public int getNumPartitions() {
+        return _numPartitions;
+    }
+    
+    /**
+     * Return a tap that reads all of the URLs in the db in <workingFolder>.
+     */
+    public Tap makeDbTap(String workingFolder) {
+        if (_numPartitions > 0) {
+            return PartitionedUrlDb.makeDbTap(workingFolder);
+        } else {
+            return new Hfs(new SequenceFile(UrlDatum.FIELDS), workingFolder + "/" + URL_DB_NAME);
+        }
+    }
+    
     public void importUrls(String inputPath, String workingFolder) throws IOException {
+        if (_numPartitions > 0) {
+            new PartitionedUrlDb(_numPartitions).importUrls(inputPath, workingFolder);
+            return;
+        }
+        
 
         FileSystem fs = getFileSystem(workingFolder);
         Path currentDb = new Path(workingFolder, URL_DB_NAME);
@@ -0,0 +1,144 @@
+package bixo.utils;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.security.InvalidParameterException;
+
+import org.apache.hadoop.io.Writable;
+
+/**
+ * Fixed-size Bloom filter for strings. The number of bits and hash functions
+ * are picked from the expected number of entries and the target false
+ * positive rate. Adding more than the expected number of entries still works,
+ * but the false positive rate goes up - see ScalableBloomFilter.
+ *
+ */
+public class BloomFilter implements Writable {
+
+    private int _expectedEntries;
+    private int _numHashes;
+    private long _numBits;
+    private long[] _bits;
+    private int _numEntries;
+
+    /**
+     * No-arg constructor for use by readFields().
+     */
+    public BloomFilter() {
+    }
+
+    public BloomFilter(int expectedEntries, double falsePositiveRate) {
+        if (expectedEntries <= 0) {
+            throw new InvalidParameterException("expectedEntries must be > 0: " + expectedEntries);
+        }
+
+        if ((falsePositiveRate <= 0.0) || (falsePositiveRate >= 1.0)) {
+            throw new InvalidParameterException("falsePositiveRate must be between 0 and 1: " + falsePositiveRate);
+        }
+
+        double ln2 = Math.log(2.0);
+        long numBits = (long)Math.ceil(-expectedEntries * Math.log(falsePositiveRate) / (ln2 * ln2));
+
+        _expectedEntries = expectedEntries;
+        _numBits = Math.max(64, ((numBits + 63) / 64) * 64);
+        _numHashes = Math.max(1, (int)Math.round(ln2 * _numBits / expectedEntries));
+        _bits = new long[(int)(_numBits / 64)];
+        _numEntries = 0;
+    }
+
+    public void add(String value) {
+        long hash = hash(value);
+        int h1 = (int)hash;
+        int h2 = (int)(hash >>> 32);
+
+        for (int i = 0; i < _numHashes; i++) {
+            long bit = getBitIndex(h1, h2, i);
+            _bits[(int)(bit >>> 6)] |= (1L << (bit & 0x3F));
+        }
+
+        _numEntries += 1;
+    }
+
+    public boolean mightContain(String value) {
+        long hash = hash(value);
+        int h1 = (int)hash;
+        int h2 = (int)(hash >>> 32);
+
+        for (int i = 0; i < _numHashes; i++) {
+            long bit = getBitIndex(h1, h2, i);
+            if ((_bits[(int)(bit >>> 6)] & (1L << (bit & 0x3F))) == 0) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * @return true if we've added at least as many entries as the filter was sized for.
+     */
+    public boolean isFull() {
+        return _numEntries >= _expectedEntries;
+    }
+
+    public int getNumEntries() {
+        return _numEntries;
+    }
+
+    public long getNumBits() {
+        return _numBits;
+    }
+
+    public int getNumHashes() {
+        return _numHashes;
+    }
+
+    // Kirsch & Mitzenmacher double hashing - two hash values are enough to simulate k.
+    private long getBitIndex(int h1, int h2, int i) {
+        long combined = (h1 + ((long)i * h2)) & Long.MAX_VALUE;
+        return combined % _numBits;
+    }
+
+    // 64-bit FNV-1a over the chars, with a final avalanche step so that both
+    // halves are usable as independent hash values.
+    private static long hash(String value) {
+        long result = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            result ^= value.charAt(i);
+            result *= 0x100000001b3L;
+        }
+
+        result ^= (result >>> 33);
+        result *= 0xff51afd7ed558ccdL;
+        result ^= (result >>> 33);
+        result *= 0xc4ceb9fe1a85ec53L;
+        result ^= (result >>> 33);
+        return result;
+    }
+
+    @Override
+    public void readFields(DataInput in) throws IOException {
+        _expectedEntries = in.readInt();
+        _numHashes = in.readInt();
+        _numBits = in.readLong();
+        _numEntries = in.readInt();
+
+        _bits = new long[(int)(_numBits / 64)];
+        for (int i = 0; i < _bits.length; i++) {
+            _bits[i] = in.readLong();
+        }
+    }
+
+    @Override
+    public void write(DataOutput out) throws IOException {
+        out.writeInt(_expectedEntries);
+        out.writeInt(_numHashes);
+        out.writeLong(_numBits);
+        out.writeInt(_numEntries);
+
+        for (long bits : _bits) {
+            out.writeLong(bits);
+        }
+    }
+}
@@ -4,6 +4,7 @@ import java.nio.charset.Charset;
 import java.nio.charset.IllegalCharsetNameException;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -18,6 +19,17 @@ public class CharsetUtils {
     private static final Pattern CP_NAME_PATTERN = Pattern.compile("(?i)cp-([\\d]+)");
     private static final Pattern WIN_NAME_PATTERN = Pattern.compile("(?i)win(|-)([\\d]+)");
     
+    // Max number of distinct raw names we remember. Header values repeat heavily
+    // across a crawl, so this only needs to hold the ones we commonly see.
+    private static final int MAX_CACHED_NAMES = 1000;
+    
+    // ConcurrentHashMap can't hold null values, so we use this for names that
+    // don't map to a supported charset.
+    private static final String INVALID_NAME = "";
+    
+    private static final Map<String, String> CLEAN_CACHE = new ConcurrentHashMap<String, String>();
+    private static final Map<String, String> CONTENT_TYPE_CACHE = new ConcurrentHashMap<String, String>();
+    
     private static final Map<String, String> CHARSET_ALIASES = new HashMap<String, String>() {{
         put("none", null);
         put("no", null);
@@ -76,4 +88,78 @@ public class CharsetUtils {
             return null;
         }
     }
+    
+    /**
+     * Same as clean(), but results are memoized in a bounded map that is shared
+     * by all threads, and the most common names skip the regex work entirely.
+     * 
+     * @param charsetName raw charset name, e.g. from an HTTP header
+     * @return valid/normalized charset name, or null
+     */
+    public static String cachedClean(String charsetName) {
+        if (charsetName == null) {
+            return null;
+        }
+        
+        String result = getCommonCharset(charsetName);
+        if (result != null) {
+            return result;
+        }
+        
+        result = CLEAN_CACHE.get(charsetName);
+        if (result == null) {
+            result = clean(charsetName);
+            cache(CLEAN_CACHE, charsetName, result);
+            return result;
+        } else if (result.equals(INVALID_NAME)) {
+            return null;
+        } else {
+            return result;
+        }
+    }
+    
+    /**
+     * Extract and clean the charset from a Content-Type header value, using
+     * the same shared bounded cache approach as cachedClean().
+     * 
+     * @param contentType raw Content-Type header value
+     * @return valid/normalized charset name, or null
+     */
+    public static String cachedCleanFromContentType(String contentType) {
+        if (contentType == null) {
+            return null;
+        }
+        
+        String result = CONTENT_TYPE_CACHE.get(contentType);
+        if (result == null) {
+            result = cachedClean(HttpUtils.getCharsetFromContentType(contentType));
+            cache(CONTENT_TYPE_CACHE, contentType, result);
+            return result;
+        } else if (result.equals(INVALID_NAME)) {
+            return null;
+        } else {
+            return result;
+        }
+    }
+    
+    private static String getCommonCharset(String charsetName) {
+        if (charsetName.equalsIgnoreCase("utf-8") || charsetName.equalsIgnoreCase("utf8")) {
+            return "UTF-8";
+        } else if (charsetName.equalsIgnoreCase("iso-8859-1")) {
+            return "ISO-8859-1";
+        } else if (charsetName.equalsIgnoreCase("us-ascii")) {
+            return "US-ASCII";
+        } else {
+            return null;
+        }
+    }
+    
+    private static void cache(Map<String, String> cache, String key, String value) {
+        // We don't bother with LRU - if we see that many distinct values, just start over.
+        if (cache.size() >= MAX_CACHED_NAMES) {
+            cache.clear();
+        }
+        
+        cache.put(key, value == null ? INVALID_NAME : value);
+    }
 }
@@ -22,20 +22,24 @@
  */
 package bixo.utils;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.util.Arrays;
-import java.util.HashSet;
-import java.util.Set;
-import java.util.regex.Pattern;
 
 /**
  * Extract the PLD (paid-level domain, as per the IRLbot paper) from a hostname. This is
  * used to group URLs when IP-based grouping isn't used.
+ * 
+ * Public suffixes come from the ICANN section of the publicsuffix.org list, plus the
+ * rules we used before that list was bundled (e.g. xxx.com.it, xxx.de.com), so that
+ * the PLD for a hostname is never shorter than it used to be.
  *
  */
 
 public class DomainNames {
+    private static final String PUBLIC_SUFFIX_LIST = "/public_suffix_list.dat";
+    
     private static final String CC_TLDS =
         "ac ad ae af ag ai al am an ao aq ar as at au aw ax az ba bb bd be bf bg bh bi " +
         "bj bl bm bn bo br bs bt bv bw by bz ca cc cd cf cg ch ci ck cl cm cn co cr cu " +
@@ -52,11 +56,48 @@ public class DomainNames {
         "aero arpa asia biz cat com coop edu gov info int jobs mil mobi museum name net " +
         "org pro tel";
 
-    private static final Set<String> ccTLDs = new HashSet<String>(Arrays.asList(CC_TLDS.split(" ")));
-    private static final Set<String> gTLDs = new HashSet<String>(Arrays.asList(G_TLDS.split(" ")));
-
-    private static final Pattern IPV4_ADDRESS_PATTERN = Pattern.compile("(?:\\d{1,3}\\.){3}\\d{1,3}");
+    private static final PublicSuffixTrie PUBLIC_SUFFIXES = loadPublicSuffixes();
 
+    private static PublicSuffixTrie loadPublicSuffixes() {
+        InputStream is = DomainNames.class.getResourceAsStream(PUBLIC_SUFFIX_LIST);
+        if (is == null) {
+            throw new RuntimeException("Missing resource: " + PUBLIC_SUFFIX_LIST);
+        }
+        
+        try {
+            PublicSuffixTrie result = PublicSuffixTrie.load(is);
+            
+            String[] ccTLDs = CC_TLDS.split(" ");
+            String[] gTLDs = G_TLDS.split(" ");
+            
+            for (String ccTLD : ccTLDs) {
+                // xxx.co.jp format
+                result.addShortLabelRule(ccTLD);
+                
+                // xxx.com.mx format
+                for (String gTLD : gTLDs) {
+                    result.addRule(gTLD + "." + ccTLD);
+                }
+            }
+            
+            for (String gTLD : gTLDs) {
+                result.addRule(gTLD);
+                
+                // xxx.de.com format
+                for (String ccTLD : ccTLDs) {
+                    result.addRule(ccTLD + "." + gTLD);
+                }
+            }
+            
+            result.freeze();
+            return result;
+        } catch (IOException e) {
+            throw new RuntimeException("Error loading public suffix list", e);
+        } finally {
+            IoUtils.safeClose(is);
+        }
+    }
+    
     /**
      * Extract the PLD (paid-level domain) from the hostname. If the format isn't recognized,
      * the original hostname is returned.
@@ -71,60 +112,58 @@ public class DomainNames {
             return hostname;
         }
 
-        String[] subNames = hostname.split("\\.");
-        int numPieces = subNames.length;
-        if (numPieces <= 2) {
-            return hostname;
-        }
-
         // Check for ddd.ddd.ddd.ddd IPv4 format
-        if ((numPieces == 4) && (IPV4_ADDRESS_PATTERN.matcher(hostname).matches())) {
+        if (isIPv4Address(hostname)) {
             return hostname;
         }
-
-        int firstHostPiece = 0;
-        if (ccTLDs.contains(subNames[numPieces - 1].toLowerCase())) {
-            // We have a country code at the end. See if the preceding piece is either
-            // a two-letter name (country code or funky short gTLD), or one of the
-            // "well-known" gTLDs.
-            if (subNames[numPieces - 2].length() <= 2) {
-                // Must be xxx.co.jp format
-                firstHostPiece = numPieces - 3;
-            } else if (gTLDs.contains(subNames[numPieces - 2].toLowerCase())) {
-                // Must be xxx.com.mx format
-                firstHostPiece = numPieces - 3;
-            } else {
-                // Must be xxx.it format
-                firstHostPiece = numPieces - 2;
-            }
-        } else if (gTLDs.contains(subNames[numPieces - 1].toLowerCase())) {
-            if (ccTLDs.contains(subNames[numPieces - 2].toLowerCase())) {
-                // Must be xxx.de.com format
-                firstHostPiece = numPieces - 3;
-            } else {
-                // Must be xxx.com format
-                firstHostPiece = numPieces - 2;
-            }
-        } else {
-            // Unknown format.
-            // TODO KKr - log this?
+        
+        int end = hostname.length();
+        if ((end > 0) && (hostname.charAt(end - 1) == '.')) {
+            end -= 1;
         }
-
-        if (firstHostPiece == 0) {
+        
+        int suffixStart = PUBLIC_SUFFIXES.getSuffixStart(hostname, end);
+        if (suffixStart <= 1) {
+            // Hostname is empty, or is itself a public suffix.
+            return hostname;
+        }
+        
+        // The PLD is the public suffix plus the label in front of it.
+        int pldStart = hostname.lastIndexOf('.', suffixStart - 2) + 1;
+        if ((pldStart == 0) && (end == hostname.length())) {
             return hostname;
         } else {
-            // Build the result from the firstHostPiece to numPices pieces.
-            StringBuilder result = new StringBuilder();
-            for (int i = firstHostPiece; i < numPieces; i++) {
-                result.append(subNames[i]);
-                result.append('.');
-            }
-
-            // Trim off final '.'
-            return result.deleteCharAt(result.length() - 1).toString();
+            return hostname.substring(pldStart, end);
         }
     } // getPLD
 
+    
+    private static boolean isIPv4Address(String hostname) {
+        int numPieces = 1;
+        int numDigits = 0;
+        
+        for (int i = 0; i < hostname.length(); i++) {
+            char c = hostname.charAt(i);
+            if (c == '.') {
+                if (numDigits == 0) {
+                    return false;
+                }
+                
+                numPieces += 1;
+                numDigits = 0;
+            } else if ((c >= '0') && (c <= '9')) {
+                numDigits += 1;
+                if (numDigits > 3) {
+                    return false;
+                }
+            } else {
+                return false;
+            }
+        }
+        
+        return (numPieces == 4) && (numDigits > 0);
+    }
+    
 
     /**
      * Extract the PLD (paid-level domain) from the URL.
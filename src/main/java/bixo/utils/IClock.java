@@ -0,0 +1,15 @@
+package bixo.utils;
+
+/**
+ * Source of the current time, so that code which schedules work (fetcher
+ * queues and policies) can be driven by a simulated clock.
+ *
+ */
+public interface IClock {
+
+    /**
+     * @return current time in milliseconds, in the same units and epoch as
+     *         System.currentTimeMillis()
+     */
+    public long currentTimeMillis();
+}
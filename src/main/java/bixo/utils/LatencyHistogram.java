@@ -0,0 +1,145 @@
+package bixo.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Thread-safe histogram of latency values (in milliseconds), with log-linear
+ * buckets in the style of HdrHistogram. Values below 16ms are exact, and above
+ * that each power of two is split into 16 linear sub-buckets, so percentiles
+ * are accurate to within about 6%.
+ *
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    // Values >= 2^31ms (about 25 days) all go into the last bucket.
+    private static final int MAX_EXPONENT = 30;
+    private static final int NUM_BUCKETS = SUB_BUCKETS + ((MAX_EXPONENT - SUB_BUCKET_BITS + 1) * SUB_BUCKETS);
+
+    private AtomicLongArray _counts;
+    private AtomicLong _totalCount;
+    private AtomicLong _totalValue;
+    private AtomicLong _maxValue;
+
+    public LatencyHistogram() {
+        _counts = new AtomicLongArray(NUM_BUCKETS);
+        _totalCount = new AtomicLong();
+        _totalValue = new AtomicLong();
+        _maxValue = new AtomicLong();
+    }
+
+    public void record(long value) {
+        value = Math.max(0, value);
+        _counts.incrementAndGet(getBucket(value));
+        _totalCount.incrementAndGet();
+        _totalValue.addAndGet(value);
+
+        long curMax;
+        while (value > (curMax = _maxValue.get())) {
+            if (_maxValue.compareAndSet(curMax, value)) {
+                break;
+            }
+        }
+    }
+
+    public long getCount() {
+        return _totalCount.get();
+    }
+
+    public long getTotal() {
+        return _totalValue.get();
+    }
+
+    public long getMax() {
+        return _maxValue.get();
+    }
+
+    public double getMean() {
+        long count = getCount();
+        return count == 0 ? 0.0 : (double)getTotal() / count;
+    }
+
+    /**
+     * Return the (approximate) value at <percentile>, which is the highest
+     * value that falls into the same bucket as the actual value.
+     *
+     * @param percentile - 0...100
+     * @return value in milliseconds, or 0 if the histogram is empty
+     */
+    public long getValueAtPercentile(double percentile) {
+        long count = getCount();
+        if (count == 0) {
+            return 0;
+        }
+
+        long target = Math.max(1, (long)Math.ceil((percentile / 100.0) * count));
+        long curCount = 0;
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            curCount += _counts.get(i);
+            if (curCount >= target) {
+                // The last bucket holds everything that's too big, so its max is meaningless.
+                return (i == NUM_BUCKETS - 1) ? getMax() : Math.min(getBucketMax(i), getMax());
+            }
+        }
+
+        return getMax();
+    }
+
+    /**
+     * Add all of the values from <other> to this histogram.
+     *
+     * @param other
+     */
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            long count = other._counts.get(i);
+            if (count != 0) {
+                _counts.addAndGet(i, count);
+            }
+        }
+
+        _totalCount.addAndGet(other.getCount());
+        _totalValue.addAndGet(other.getTotal());
+
+        long otherMax = other.getMax();
+        long curMax;
+        while (otherMax > (curMax = _maxValue.get())) {
+            if (_maxValue.compareAndSet(curMax, otherMax)) {
+                break;
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("count=%d, mean=%.1f, p50=%d, p90=%d, p99=%d, max=%d", getCount(), getMean(),
+                        getValueAtPercentile(50), getValueAtPercentile(90), getValueAtPercentile(99), getMax());
+    }
+
+    static int getBucket(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int)value;
+        }
+
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if (exponent > MAX_EXPONENT) {
+            return NUM_BUCKETS - 1;
+        }
+
+        int shift = exponent - SUB_BUCKET_BITS;
+        int subBucket = (int)(value >> shift) - SUB_BUCKETS;
+        return SUB_BUCKETS + (shift * SUB_BUCKETS) + subBucket;
+    }
+
+    static long getBucketMax(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+
+        int shift = (bucket - SUB_BUCKETS) / SUB_BUCKETS;
+        int subBucket = (bucket - SUB_BUCKETS) % SUB_BUCKETS;
+        return ((long)(SUB_BUCKETS + subBucket + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,279 @@
+package bixo.utils;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Trie of public suffix rules (as per http://publicsuffix.org), keyed by
+ * domain label in reverse order, so "co.uk" is stored as uk => co.
+ *
+ * Lookups walk the hostname from the end, one label at a time, without
+ * splitting it or creating any intermediate strings.
+ *
+ */
+public class PublicSuffixTrie {
+
+    private static class Node {
+        // Open-addressing hash table of child labels, and the matching nodes. We
+        // hash the label in place in the hostname, so lookups don't allocate.
+        private String[] _labels = new String[0];
+        private Node[] _children = new Node[0];
+        private int _mask = 0;
+
+        // Only used while building the trie.
+        private Map<String, Node> _builder = new HashMap<String, Node>();
+
+        private boolean _isRule = false;
+        private boolean _isException = false;
+        private boolean _hasWildcard = false;
+        private boolean _shortLabelIsSuffix = false;
+
+        public Node getOrAddChild(String label) {
+            Node result = _builder.get(label);
+            if (result == null) {
+                result = new Node();
+                _builder.put(label, result);
+            }
+
+            return result;
+        }
+
+        public void freeze() {
+            if (!_builder.isEmpty()) {
+                // Keep the table at most half full, so probe sequences stay short.
+                int tableSize = Integer.highestOneBit(_builder.size()) * 4;
+                _labels = new String[tableSize];
+                _children = new Node[tableSize];
+                _mask = tableSize - 1;
+
+                for (Map.Entry<String, Node> entry : _builder.entrySet()) {
+                    String label = entry.getKey();
+                    int slot = hash(label, 0, label.length()) & _mask;
+                    while (_labels[slot] != null) {
+                        slot = (slot + 1) & _mask;
+                    }
+
+                    _labels[slot] = label;
+                    _children[slot] = entry.getValue();
+                    entry.getValue().freeze();
+                }
+            }
+
+            _builder = null;
+        }
+
+        /**
+         * Find the child node for the label in <hostname> between <start>
+         * (inclusive) and <end> (exclusive), ignoring case.
+         */
+        public Node findChild(String hostname, int start, int end) {
+            if (_labels.length == 0) {
+                return null;
+            }
+
+            int slot = hash(hostname, start, end) & _mask;
+            String label;
+            while ((label = _labels[slot]) != null) {
+                if (matches(label, hostname, start, end)) {
+                    return _children[slot];
+                }
+
+                slot = (slot + 1) & _mask;
+            }
+
+            return null;
+        }
+
+        // Same as String.hashCode() for the lower-cased region.
+        private static int hash(String str, int start, int end) {
+            int result = 0;
+            for (int i = start; i < end; i++) {
+                result = (31 * result) + toLowerCase(str.charAt(i));
+            }
+
+            return result;
+        }
+
+        private static boolean matches(String label, String hostname, int start, int end) {
+            int len = label.length();
+            if (len != end - start) {
+                return false;
+            }
+
+            for (int i = 0; i < len; i++) {
+                if (label.charAt(i) != toLowerCase(hostname.charAt(start + i))) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+    }
+
+    private Node _root = new Node();
+    private boolean _frozen = false;
+
+    /**
+     * Load rules from a file in the publicsuffix.org format.
+     *
+     * @param is stream of UTF-8 text with one rule per line
+     * @return trie with all rules
+     * @throws IOException
+     */
+    public static PublicSuffixTrie load(InputStream is) throws IOException {
+        PublicSuffixTrie result = new PublicSuffixTrie();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(is, "UTF-8"));
+
+        String line;
+        while ((line = reader.readLine()) != null) {
+            line = line.trim();
+            if ((line.length() == 0) || line.startsWith("//")) {
+                continue;
+            }
+
+            // Rule is everything up to the first whitespace.
+            int endOfRule = 0;
+            while ((endOfRule < line.length()) && !Character.isWhitespace(line.charAt(endOfRule))) {
+                endOfRule += 1;
+            }
+
+            result.addRule(line.substring(0, endOfRule));
+        }
+
+        return result;
+    }
+
+    /**
+     * Add a rule, e.g. "co.uk", "*.ck" or "!www.ck"
+     *
+     * @param rule
+     */
+    public void addRule(String rule) {
+        if (_frozen) {
+            throw new IllegalStateException("Can't add rules after the trie has been frozen");
+        }
+
+        boolean isException = rule.startsWith("!");
+        if (isException) {
+            rule = rule.substring(1);
+        }
+
+        String[] labels = rule.toLowerCase(Locale.ENGLISH).split("\\.");
+        Node node = _root;
+        for (int i = labels.length - 1; i >= 0; i--) {
+            if (labels[i].equals("*") && (i == 0)) {
+                node._hasWildcard = true;
+                return;
+            }
+
+            node = node.getOrAddChild(labels[i]);
+        }
+
+        if (isException) {
+            node._isException = true;
+        } else {
+            node._isRule = true;
+        }
+    }
+
+    /**
+     * Treat any label of one or two characters in front of <suffix> as also
+     * being part of the public suffix, e.g. xxx.co.jp or xxx.ac.cn
+     *
+     * @param suffix
+     */
+    public void addShortLabelRule(String suffix) {
+        addRule(suffix);
+
+        String[] labels = suffix.toLowerCase(Locale.ENGLISH).split("\\.");
+        Node node = _root;
+        for (int i = labels.length - 1; i >= 0; i--) {
+            node = node.getOrAddChild(labels[i]);
+        }
+
+        node._shortLabelIsSuffix = true;
+    }
+
+    /**
+     * Return the offset in <hostname> where the public suffix begins, using
+     * the longest matching rule. If no rule matches, then the last label is
+     * the public suffix (the implicit "*" rule).
+     *
+     * @param hostname with no trailing '.'
+     * @param end offset (exclusive) of the end of the hostname
+     * @return offset of the first char of the public suffix, or -1 if the hostname is empty
+     */
+    public int getSuffixStart(String hostname, int end) {
+        if (!_frozen) {
+            throw new IllegalStateException("Trie must be frozen before it's used");
+        }
+
+        int suffixStart = -1;
+        Node node = _root;
+        int labelEnd = end;
+
+        while (labelEnd > 0) {
+            int labelStart = hostname.lastIndexOf('.', labelEnd - 1) + 1;
+            if (labelStart == labelEnd) {
+                // Empty label, e.g. "xxx..com"
+                break;
+            }
+
+            Node child = node.findChild(hostname, labelStart, labelEnd);
+            if ((child != null) && child._isException) {
+                // Exception rules mean that this label isn't part of the suffix, but
+                // everything after it is.
+                suffixStart = labelEnd + 1;
+                break;
+            }
+
+            if (((child != null) && child._isRule) || node._hasWildcard) {
+                suffixStart = labelStart;
+            } else if (node._shortLabelIsSuffix && (labelEnd - labelStart <= 2)) {
+                suffixStart = labelStart;
+            }
+
+            if (child == null) {
+                break;
+            }
+
+            node = child;
+            labelEnd = labelStart - 1;
+        }
+
+        if (suffixStart == -1) {
+            suffixStart = hostname.lastIndexOf('.', end - 1) + 1;
+            if (suffixStart == end) {
+                return -1;
+            }
+        }
+
+        return suffixStart;
+    }
+
+    /**
+     * Convert the trie into its compact, read-only form. This must be called
+     * after all rules have been added, and before any lookups.
+     */
+    public void freeze() {
+        if (!_frozen) {
+            _root.freeze();
+            _frozen = true;
+        }
+    }
+
+    private static char toLowerCase(char c) {
+        if ((c >= 'A') && (c <= 'Z')) {
+            return (char)(c + ('a' - 'A'));
+        } else if (c < 0x80) {
+            return c;
+        } else {
+            return Character.toLowerCase(c);
+        }
+    }
+}
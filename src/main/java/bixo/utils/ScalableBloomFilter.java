@@ -0,0 +1,116 @@
+package bixo.utils;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.hadoop.io.Writable;
+
+/**
+ * Bloom filter that grows as entries are added, for when we don't know the
+ * number of entries up front (as per Almeida et al, "Scalable Bloom Filters").
+ *
+ * Each time the current filter is full, we add a new one that's twice as big
+ * and has half the false positive rate, so the overall false positive rate
+ * stays below twice the initial rate.
+ *
+ */
+public class ScalableBloomFilter implements Writable {
+    public static final int DEFAULT_INITIAL_CAPACITY = 1024 * 1024;
+
+    private static final int GROWTH_FACTOR = 2;
+    private static final double TIGHTENING_RATIO = 0.5;
+
+    private int _initialCapacity;
+    private double _falsePositiveRate;
+    private List<BloomFilter> _filters;
+
+    /**
+     * No-arg constructor for use by readFields().
+     */
+    public ScalableBloomFilter() {
+        _filters = new ArrayList<BloomFilter>();
+    }
+
+    public ScalableBloomFilter(double falsePositiveRate) {
+        this(DEFAULT_INITIAL_CAPACITY, falsePositiveRate);
+    }
+
+    public ScalableBloomFilter(int initialCapacity, double falsePositiveRate) {
+        _initialCapacity = initialCapacity;
+        _falsePositiveRate = falsePositiveRate;
+        _filters = new ArrayList<BloomFilter>();
+
+        // The first filter gets half of the total error budget.
+        _filters.add(new BloomFilter(initialCapacity, falsePositiveRate * (1.0 - TIGHTENING_RATIO)));
+    }
+
+    public void add(String value) {
+        BloomFilter curFilter = _filters.get(_filters.size() - 1);
+        if (curFilter.isFull()) {
+            int numFilters = _filters.size();
+            int capacity = (int)Math.min(Integer.MAX_VALUE, _initialCapacity * Math.pow(GROWTH_FACTOR, numFilters));
+            double rate = _falsePositiveRate * (1.0 - TIGHTENING_RATIO) * Math.pow(TIGHTENING_RATIO, numFilters);
+            curFilter = new BloomFilter(capacity, rate);
+            _filters.add(curFilter);
+        }
+
+        curFilter.add(value);
+    }
+
+    public boolean mightContain(String value) {
+        // Check the biggest (most recent) filter first, since it has the most entries.
+        for (int i = _filters.size() - 1; i >= 0; i--) {
+            if (_filters.get(i).mightContain(value)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    public long getNumEntries() {
+        long result = 0;
+        for (BloomFilter filter : _filters) {
+            result += filter.getNumEntries();
+        }
+
+        return result;
+    }
+
+    public long getNumBits() {
+        long result = 0;
+        for (BloomFilter filter : _filters) {
+            result += filter.getNumBits();
+        }
+
+        return result;
+    }
+
+    @Override
+    public void readFields(DataInput in) throws IOException {
+        _initialCapacity = in.readInt();
+        _falsePositiveRate = in.readDouble();
+
+        int numFilters = in.readInt();
+        _filters = new ArrayList<BloomFilter>(numFilters);
+        for (int i = 0; i < numFilters; i++) {
+            BloomFilter filter = new BloomFilter();
+            filter.readFields(in);
+            _filters.add(filter);
+        }
+    }
+
+    @Override
+    public void write(DataOutput out) throws IOException {
+        out.writeInt(_initialCapacity);
+        out.writeDouble(_falsePositiveRate);
+
+        out.writeInt(_filters.size());
+        for (BloomFilter filter : _filters) {
+            filter.write(out);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package bixo.utils;
+
+/**
+ * 64-bit simhash (Charikar) over overlapping word shingles, for finding
+ * near-duplicate text. Pages that differ only by a few words (session ids,
+ * dates, "print this page" links) wind up with hashes that differ by only
+ * a few bits.
+ *
+ * The hash is split into NUM_BANDS bands of BAND_BITS bits. Two hashes that
+ * differ by fewer than NUM_BANDS bits must have at least one identical band,
+ * so grouping by band finds every such pair without comparing all pages.
+ *
+ */
+public class SimHash {
+    public static final int SHINGLE_SIZE = 3;
+
+    public static final int NUM_BANDS = 4;
+    public static final int BAND_BITS = 64 / NUM_BANDS;
+
+    private static final long BAND_MASK = (1L << BAND_BITS) - 1;
+
+    /**
+     * Calculate the simhash of <text>, using shingles of SHINGLE_SIZE
+     * lower-cased words. Text with fewer words than that is treated as a
+     * single shingle.
+     *
+     * @param text - text to hash
+     * @return simhash, or 0 if there are no words in the text
+     */
+    public static long getSimHash(String text) {
+        int[] counts = new int[64];
+        long[] window = new long[SHINGLE_SIZE];
+        int numWords = 0;
+
+        int len = text.length();
+        int i = 0;
+        while (i < len) {
+            while ((i < len) && !Character.isLetterOrDigit(text.charAt(i))) {
+                i++;
+            }
+
+            if (i == len) {
+                break;
+            }
+
+            long wordHash = 0xcbf29ce484222325L;
+            while ((i < len) && Character.isLetterOrDigit(text.charAt(i))) {
+                wordHash ^= Character.toLowerCase(text.charAt(i));
+                wordHash *= 0x100000001b3L;
+                i++;
+            }
+
+            window[numWords % SHINGLE_SIZE] = wordHash;
+            numWords += 1;
+
+            if (numWords >= SHINGLE_SIZE) {
+                addShingle(counts, window, numWords);
+            }
+        }
+
+        if (numWords == 0) {
+            return 0;
+        } else if (numWords < SHINGLE_SIZE) {
+            addShingle(counts, window, numWords);
+        }
+
+        long result = 0;
+        for (int bit = 0; bit < 64; bit++) {
+            if (counts[bit] > 0) {
+                result |= (1L << bit);
+            }
+        }
+
+        return result;
+    }
+
+    // Combine the word hashes in the window (oldest first) into a shingle hash,
+    // and add its bits to the counts.
+    private static void addShingle(int[] counts, long[] window, int numWords) {
+        int shingleLen = Math.min(numWords, SHINGLE_SIZE);
+        long hash = 0;
+        for (int j = 0; j < shingleLen; j++) {
+            hash = (hash * 0x100000001b3L) ^ window[(numWords - shingleLen + j) % SHINGLE_SIZE];
+        }
+
+        hash = mix(hash);
+        for (int bit = 0; bit < 64; bit++) {
+            if ((hash & (1L << bit)) != 0) {
+                counts[bit] += 1;
+            } else {
+                counts[bit] -= 1;
+            }
+        }
+    }
+
+    // Final avalanche step from MurmurHash3, so every input bit affects every output bit.
+    private static long mix(long hash) {
+        hash ^= (hash >>> 33);
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= (hash >>> 33);
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= (hash >>> 33);
+        return hash;
+    }
+
+    /**
+     * @return number of bits that are different between the two hashes
+     */
+    public static int getDistance(long hash1, long hash2) {
+        return Long.bitCount(hash1 ^ hash2);
+    }
+
+    /**
+     * Return a key for band <band> of <simHash>. Keys for different bands
+     * never collide, so they can all be grouped together.
+     *
+     * @param simHash - hash returned by getSimHash()
+     * @param band - band number, from 0 to NUM_BANDS - 1
+     * @return key for the band
+     */
+    public static long getBandKey(long simHash, int band) {
+        if ((band < 0) || (band >= NUM_BANDS)) {
+            throw new IllegalArgumentException("Invalid band: " + band);
+        }
+
+        long bandValue = (simHash >>> (band * BAND_BITS)) & BAND_MASK;
+        return ((long)band << BAND_BITS) | bandValue;
+    }
+}
@@ -0,0 +1,38 @@
+package bixo.utils;
+
+import java.security.InvalidParameterException;
+
+/**
+ * Clock whose time only changes when it's explicitly advanced, for running
+ * discrete-event simulations (and tests) without sleeping.
+ *
+ */
+public class SimulatedClock implements IClock {
+    private volatile long _time;
+
+    public SimulatedClock(long startTime) {
+        _time = startTime;
+    }
+
+    @Override
+    public long currentTimeMillis() {
+        return _time;
+    }
+
+    /**
+     * Move the clock forward to <time>. Time never goes backwards.
+     * 
+     * @param time - new time in milliseconds
+     */
+    public synchronized void setTime(long time) {
+        if (time < _time) {
+            throw new InvalidParameterException(String.format("Time can't go backwards, from %d to %d", _time, time));
+        }
+        
+        _time = time;
+    }
+
+    public synchronized void advance(long milliseconds) {
+        setTime(_time + milliseconds);
+    }
+}
@@ -0,0 +1,17 @@
+package bixo.utils;
+
+/**
+ * Clock that returns the actual system time.
+ *
+ */
+public class SystemClock implements IClock {
+    public static final SystemClock INSTANCE = new SystemClock();
+
+    private SystemClock() {
+    }
+
+    @Override
+    public long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+}
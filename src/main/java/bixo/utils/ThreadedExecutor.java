@@ -99,6 +99,16 @@ public class ThreadedExecutor {
             throw new RuntimeException("There should never be any tasks in the queue");
         }
         
+        // Give the interrupted threads a chance to exit, so that callers can safely
+        // clean up anything they use (e.g. an output collector).
+        _pool.awaitTermination(_timeout, TimeUnit.MILLISECONDS);
         return false;
     }
+    
+    /**
+     * @return true if terminate() was called, and all threads have exited
+     */
+    public boolean isTerminated() {
+        return _pool.isTerminated();
+    }
 }
@@ -1,9 +1,18 @@
 package bixo.cascading;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.junit.Assert;
 import org.junit.Test;
 
 import bixo.hadoop.FetchCounters;
+import cascading.flow.FlowProcess;
+import cascading.tap.Tap;
+import cascading.tuple.TupleEntryCollector;
+import cascading.tuple.TupleEntryIterator;
 
 public class BixoFlowProcessTest {
     
@@ -12,6 +21,41 @@ public class BixoFlowProcessTest {
         COUNTER_B
     }
     
+    @SuppressWarnings("unchecked")
+    private static class CountingFlowProcess extends FlowProcess {
+        private AtomicInteger _numCalls = new AtomicInteger();
+        private AtomicInteger _total = new AtomicInteger();
+        
+        @Override
+        public Object getProperty(String key) {
+            return null;
+        }
+
+        @Override
+        public void increment(Enum counter, int amount) {
+            _numCalls.incrementAndGet();
+            _total.addAndGet(amount);
+        }
+
+        @Override
+        public void keepAlive() {
+        }
+
+        @Override
+        public TupleEntryIterator openTapForRead(Tap tap) throws IOException {
+            return null;
+        }
+
+        @Override
+        public TupleEntryCollector openTapForWrite(Tap tap) throws IOException {
+            return null;
+        }
+
+        @Override
+        public void setStatus(String status) {
+        }
+    }
+    
     @Test
     public void testLocalCounter() {
         BixoFlowProcess process = new BixoFlowProcess();        
@@ -34,4 +78,42 @@ public class BixoFlowProcessTest {
         // TODO KKr - how to test "real" Hadoop counters? Need to be running in non-local
         // mode, with a real Cascading flow.
     }
+    
+    @Test
+    public void testFlushToBaseProcess() throws Exception {
+        final int numThreads = 10;
+        final int incrementsPerThread = 10000;
+        
+        CountingFlowProcess baseProcess = new CountingFlowProcess();
+        final BixoFlowProcess process = new BixoFlowProcess(baseProcess, new LoggingFlowReporter());
+        
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < numThreads; i++) {
+            Thread t = new Thread() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < incrementsPerThread; j++) {
+                        process.increment(FetchCounters.URLS_FETCHED, 1);
+                        process.increment(TestCounter.COUNTER_A, 1);
+                    }
+                }
+            };
+            
+            threads.add(t);
+            t.start();
+        }
+        
+        for (Thread t : threads) {
+            t.join();
+        }
+        
+        Assert.assertEquals(numThreads * incrementsPerThread, process.getCounter(FetchCounters.URLS_FETCHED));
+        Assert.assertEquals(numThreads * incrementsPerThread, process.getCounter(TestCounter.COUNTER_A));
+        
+        // Changes are pushed to the base process in bulk, not on every increment.
+        Assert.assertTrue(baseProcess._numCalls.get() < numThreads * incrementsPerThread);
+        
+        process.flushCounters();
+        Assert.assertEquals(2 * numThreads * incrementsPerThread, baseProcess._total.get());
+    }
 }
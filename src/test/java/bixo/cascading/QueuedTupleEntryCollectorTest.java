@@ -0,0 +1,171 @@
+package bixo.cascading;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import cascading.tuple.Tuple;
+import cascading.tuple.TupleEntryCollector;
+
+public class QueuedTupleEntryCollectorTest {
+
+    private static class ListCollector extends TupleEntryCollector {
+        private List<Tuple> _tuples = new ArrayList<Tuple>();
+        private Thread _writerThread = null;
+
+        @Override
+        protected void collect(Tuple tuple) {
+            // Make sure only one thread is ever writing to us.
+            if (_writerThread == null) {
+                _writerThread = Thread.currentThread();
+            } else {
+                Assert.assertEquals(_writerThread, Thread.currentThread());
+            }
+
+            _tuples.add(tuple);
+        }
+
+        public List<Tuple> getTuples() {
+            return _tuples;
+        }
+    }
+
+    private static class FailingCollector extends TupleEntryCollector {
+        @Override
+        protected void collect(Tuple tuple) {
+            throw new RuntimeException("Write failed");
+        }
+    }
+
+    @Test
+    public void testMultipleThreads() throws Exception {
+        final int numThreads = 10;
+        final int tuplesPerThread = 1000;
+
+        ListCollector target = new ListCollector();
+        final QueuedTupleEntryCollector collector = new QueuedTupleEntryCollector(target, 10);
+
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < numThreads; i++) {
+            final int threadIndex = i;
+            Thread t = new Thread() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < tuplesPerThread; j++) {
+                        collector.add(new Tuple(threadIndex, j));
+                    }
+                }
+            };
+
+            threads.add(t);
+            t.start();
+        }
+
+        for (Thread t : threads) {
+            t.join();
+        }
+
+        collector.finish();
+        Assert.assertEquals(numThreads * tuplesPerThread, target.getTuples().size());
+        Assert.assertEquals(numThreads * tuplesPerThread, collector.getNumWritten());
+
+        // Tuples from any one thread are written in order.
+        int[] nextValue = new int[numThreads];
+        for (Tuple tuple : target.getTuples()) {
+            int threadIndex = tuple.getInteger(0);
+            Assert.assertEquals(nextValue[threadIndex], tuple.getInteger(1));
+            nextValue[threadIndex] += 1;
+        }
+    }
+
+    @Test
+    public void testSafeAddDoesntLockQueuedCollector() throws Exception {
+        ListCollector target = new ListCollector();
+        final QueuedTupleEntryCollector collector = new QueuedTupleEntryCollector(target);
+
+        Thread t = new Thread() {
+            @Override
+            public void run() {
+                QueuedTupleEntryCollector.safeAdd(collector, new Tuple("a"));
+            }
+        };
+
+        // If safeAdd locked the collector, the thread would be stuck until we exit this block.
+        synchronized (collector) {
+            t.start();
+            t.join(5000);
+            Assert.assertFalse(t.isAlive());
+        }
+
+        collector.finish();
+        Assert.assertEquals(1, target.getTuples().size());
+    }
+
+    @Test
+    public void testWrittenCallback() throws Exception {
+        final ListCollector target = new ListCollector();
+        QueuedTupleEntryCollector collector = new QueuedTupleEntryCollector(target);
+        final List<Integer> numWrittenAtCallback = new ArrayList<Integer>();
+
+        for (int i = 0; i < 10; i++) {
+            collector.add(new Tuple(i), new Runnable() {
+
+                @Override
+                public void run() {
+                    numWrittenAtCallback.add(target.getTuples().size());
+                }
+            });
+        }
+
+        collector.finish();
+
+        // Each callback runs only after its tuple has been written.
+        Assert.assertEquals(10, numWrittenAtCallback.size());
+        for (int i = 0; i < 10; i++) {
+            Assert.assertEquals(i + 1, (int)numWrittenAtCallback.get(i));
+        }
+
+        // With a regular collector, the callback runs right away.
+        final ListCollector plainTarget = new ListCollector();
+        final boolean[] called = { false };
+        QueuedTupleEntryCollector.safeAdd(plainTarget, new Tuple("a"), new Runnable() {
+
+            @Override
+            public void run() {
+                called[0] = plainTarget.getTuples().size() == 1;
+            }
+        });
+
+        Assert.assertTrue(called[0]);
+    }
+
+    @Test
+    public void testAddAfterFinish() throws Exception {
+        QueuedTupleEntryCollector collector = new QueuedTupleEntryCollector(new ListCollector());
+        collector.add(new Tuple("a"));
+        collector.finish();
+
+        try {
+            collector.add(new Tuple("b"));
+            Assert.fail("Should have thrown exception");
+        } catch (IllegalStateException e) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void testWriterException() throws Exception {
+        QueuedTupleEntryCollector collector = new QueuedTupleEntryCollector(new FailingCollector());
+        collector.add(new Tuple("a"));
+
+        try {
+            collector.finish();
+            Assert.fail("Should have thrown exception");
+        } catch (RuntimeException e) {
+            // Expected
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package bixo.config;
+
+import java.security.InvalidParameterException;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+public class AdaptiveDelayPolicyTest {
+
+    @Test
+    public void testFastHostGetsShorterDelay() {
+        AdaptiveDelayPolicy policy = new AdaptiveDelayPolicy(1000L, 1000L);
+
+        // Half the target response time, no errors, so half the delay.
+        Assert.assertEquals(15000L, policy.adjustInterval(30000L, 1, 500.0, 0.0, 0));
+
+        // Never less than the min crawl delay per URL...
+        Assert.assertEquals(2000L, policy.adjustInterval(4000L, 2, 10.0, 0.0, 0));
+
+        // ...or the host's own crawl delay.
+        Assert.assertEquals(10000L, policy.adjustInterval(30000L, 1, 10.0, 0.0, 10000L));
+
+        // But we don't increase an interval that's already below the floor.
+        Assert.assertEquals(0L, policy.adjustInterval(0L, 1, 10.0, 0.0, 0));
+    }
+
+    @Test
+    public void testSlowOrErroringHostGetsBackedOff() {
+        AdaptiveDelayPolicy policy = new AdaptiveDelayPolicy(1000L, 1000L);
+
+        Assert.assertEquals(60000L, policy.adjustInterval(30000L, 1, 2000.0, 0.0, 0));
+
+        // Fast responses, but lots of errors.
+        Assert.assertTrue(policy.adjustInterval(30000L, 1, 1000.0, 0.5, 0) > 30000L);
+
+        // Capped at the max backoff.
+        Assert.assertEquals((long)(30000L * AdaptiveDelayPolicy.DEFAULT_MAX_BACKOFF_FACTOR),
+                        policy.adjustInterval(30000L, 1, 100000.0, 1.0, 0));
+    }
+
+    @Test
+    public void testUpdateAverage() {
+        AdaptiveDelayPolicy policy = new AdaptiveDelayPolicy(1000L, 1000L, 0.25, 4.0, 0.5);
+
+        Assert.assertEquals(100.0, policy.updateAverage(-1.0, 100.0, 1));
+        Assert.assertEquals(150.0, policy.updateAverage(100.0, 200.0, 1));
+        Assert.assertEquals(175.0, policy.updateAverage(100.0, 200.0, 2));
+        Assert.assertEquals(100.0, policy.updateAverage(100.0, 200.0, 0));
+    }
+
+    @Test
+    public void testInvalidParameters() {
+        try {
+            new AdaptiveDelayPolicy(1000L, 0L);
+            Assert.fail("Should have thrown exception with target response time of 0");
+        } catch (InvalidParameterException e) {
+            // Expected
+        }
+
+        try {
+            new AdaptiveDelayPolicy(1000L, 1000L, 0.25, 0.5, 0.3);
+            Assert.fail("Should have thrown exception with max backoff < 1");
+        } catch (InvalidParameterException e) {
+            // Expected
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package bixo.datum;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import cascading.tuple.Fields;
+import cascading.tuple.Tuple;
+
+
+public class ParsedDatumTest {
+
+    @Test
+    public void testOutlinksRoundTrip() {
+        Map<String, String> parsedMeta = new HashMap<String, String>();
+        parsedMeta.put("Content-Type", "text/html");
+
+        String[] urls = new String[] { "http://domain.com/page1", "http://domain.com/page2" };
+        String[] anchors = new String[] { "page one", null };
+        ParsedDatum datum = new ParsedDatum("http://domain.com", "text", "en", "title", urls, anchors, parsedMeta, BaseDatum.EMPTY_METADATA_MAP);
+        Assert.assertEquals(2, datum.getNumOutlinks());
+        Assert.assertEquals("", datum.getOutlinkAnchors()[1]);
+
+        // The caller's array shouldn't be modified.
+        Assert.assertNull(anchors[1]);
+
+        Tuple tuple = datum.toTuple();
+        ParsedDatum result = new ParsedDatum(tuple, new Fields());
+        Assert.assertArrayEquals(urls, result.getOutlinkUrls());
+        Assert.assertArrayEquals(new String[] { "page one", "" }, result.getOutlinkAnchors());
+        Assert.assertEquals("text/html", result.getParsedMeta().get("Content-Type"));
+
+        Outlink[] outlinks = result.getOutLinks();
+        Assert.assertEquals(2, outlinks.length);
+        Assert.assertEquals(new Outlink("http://domain.com/page1", "page one"), outlinks[0]);
+        Assert.assertEquals(new Outlink("http://domain.com/page2", ""), outlinks[1]);
+    }
+
+    @Test
+    public void testOutlinkObjects() {
+        Outlink[] outlinks = new Outlink[] { new Outlink("http://domain.com/page1", "page one") };
+        ParsedDatum datum = new ParsedDatum("http://domain.com", "text", "en", "title", outlinks, null, BaseDatum.EMPTY_METADATA_MAP);
+        Assert.assertArrayEquals(new String[] { "http://domain.com/page1" }, datum.getOutlinkUrls());
+        Assert.assertArrayEquals(new String[] { "page one" }, datum.getOutlinkAnchors());
+
+        ParsedDatum result = new ParsedDatum(datum.toTuple(), new Fields());
+        Assert.assertArrayEquals(outlinks, result.getOutLinks());
+        Assert.assertEquals(0, result.getParsedMeta().size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMismatchedOutlinks() {
+        new ParsedDatum("http://domain.com", "text", "en", "title", new String[] { "http://domain.com/page1" },
+                        new String[0], null, BaseDatum.EMPTY_METADATA_MAP);
+    }
+}
@@ -0,0 +1,30 @@
+package bixo.datum;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import cascading.tuple.Tuple;
+import cascading.tuple.TupleEntry;
+
+public class StatusDatumTest {
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testCompactTuple() {
+        Map<String, Comparable> metaData = new HashMap<String, Comparable>();
+        metaData.put("crawl-depth", "2");
+        StatusDatum datum = new StatusDatum("http://domain.com", UrlStatus.HTTP_NOT_FOUND, null, null, 1000L, metaData);
+
+        Tuple tuple = datum.toCompactTuple();
+        Assert.assertEquals(StatusDatum.COMPACT_FIELDS.size() + 1, tuple.size());
+        Assert.assertEquals(UrlStatus.HTTP_NOT_FOUND, StatusDatum.getStatusFromCompactTuple(tuple));
+
+        TupleEntry entry = new TupleEntry(StatusDatum.COMPACT_FIELDS, new Tuple(tuple.get(0), tuple.get(1), tuple.get(2)));
+        Assert.assertEquals("http://domain.com", entry.getString(StatusDatum.URL_FIELD));
+        Assert.assertEquals(1000L, entry.getLong(StatusDatum.STATUS_TIME_FIELD));
+        Assert.assertEquals("2", tuple.getString(3));
+    }
+}
@@ -0,0 +1,97 @@
+package bixo.fetcher;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import bixo.config.FetcherPolicy;
+import bixo.config.QueuePolicy;
+import bixo.datum.UrlStatus;
+import bixo.fetcher.FetchScheduleSimulator.Result;
+import bixo.fetcher.FetchScheduleSimulator.SimulatedDomain;
+import bixo.fetcher.http.IRobotRules;
+import bixo.utils.SimulatedClock;
+
+public class FetchScheduleSimulatorTest {
+    private static final long START_TIME = 1000000L;
+
+    private static List<SimulatedDomain> makeDomains(int numDomains, int urlsPerDomain, long responseTime) {
+        List<SimulatedDomain> result = new ArrayList<SimulatedDomain>();
+        for (int i = 0; i < numDomains; i++) {
+            String domain = "domain-" + i + ".com";
+            List<String> urls = new ArrayList<String>();
+            for (int j = 0; j < urlsPerDomain; j++) {
+                urls.add("http://" + domain + "/page-" + j + ".html");
+            }
+
+            result.add(new SimulatedDomain(domain, urls, IRobotRules.UNSET_CRAWL_DELAY, responseTime));
+        }
+
+        return result;
+    }
+
+    @Test
+    public void testEverythingFetched() {
+        SimulatedClock clock = new SimulatedClock(START_TIME);
+        FetcherPolicy policy = new FetcherPolicy();
+        policy.setCrawlDelay(10 * 1000L);
+        FetchScheduleSimulator simulator = new FetchScheduleSimulator(clock, policy, new QueuePolicy(1000, 10), 4, 1L);
+        simulator.setResponseTimeSigma(0.0);
+
+        Result result = simulator.run(makeDomains(10, 50, 100));
+        assertEquals(500, result.getNumUrls());
+        assertEquals(500, result.getNumFetched());
+        assertTrue(result.getSkipped().isEmpty());
+
+        // Each domain gets fetched 30 URLs at a time (a five minute fetch interval
+        // with a ten second crawl delay), and then has to wait five minutes.
+        assertEquals(0, result.getNumFetched(0));
+        assertTrue(result.getDuration() >= 5 * 60 * 1000L);
+        assertTrue(result.getRunTime() < result.getDuration());
+        assertEquals(clock.currentTimeMillis(), START_TIME + result.getDuration());
+    }
+
+    @Test
+    public void testTimeLimit() {
+        SimulatedClock clock = new SimulatedClock(START_TIME);
+        FetcherPolicy policy = new FetcherPolicy();
+        policy.setCrawlEndTime(START_TIME + 5000L);
+        FetchScheduleSimulator simulator = new FetchScheduleSimulator(clock, policy, new QueuePolicy(1000, 10), 1, 1L);
+        simulator.setResponseTimeSigma(0.0);
+
+        // With one thread and one second per URL, we can only start five fetches before
+        // the crawl ends, and everything else is skipped.
+        Result result = simulator.run(makeDomains(20, 1, 1000));
+        assertEquals(20, result.getNumUrls());
+        assertEquals(5, result.getNumFetched());
+        assertEquals(15, result.getNumSkipped(UrlStatus.SKIPPED_TIME_LIMIT));
+        assertEquals(2, result.getNumFetched(2000));
+        assertEquals(5000, result.getDuration());
+    }
+
+    @Test
+    public void testRepeatable() {
+        long[][] fetchTimes = new long[2][];
+        for (int i = 0; i < fetchTimes.length; i++) {
+            Random rand = new Random(1L);
+            List<SimulatedDomain> domains = FetchScheduleSimulator.makeZipfDomains(100, 2000, 1.0, 500, 1.0, rand);
+
+            SimulatedClock clock = new SimulatedClock(START_TIME);
+            FetcherPolicy policy = new FetcherPolicy();
+            policy.setCrawlEndTime(START_TIME + (30 * 60 * 1000L));
+            FetchScheduleSimulator simulator = new FetchScheduleSimulator(clock, policy, new QueuePolicy(1000, 10), 10, 1L);
+            Result result = simulator.run(domains);
+            assertEquals(result.getNumUrls(), result.getNumFetched() + result.getNumSkipped(UrlStatus.SKIPPED_TIME_LIMIT)
+                            + result.getNumSkipped(UrlStatus.SKIPPED_BY_SCORE));
+            fetchTimes[i] = result.getFetchTimes();
+        }
+
+        assertArrayEquals(fetchTimes[0], fetchTimes[1]);
+    }
+}
@@ -91,6 +91,40 @@ public class FetcherQueueMgrTest {
         Assert.assertEquals(30, urls.size());
     }
     
+    @Test
+    public void testMaxBytesInMemory() throws Exception {
+        FetcherPolicy fetcherPolicy = new TestFetcherPolicy(0, 10);
+        BixoFlowProcess process = new BixoFlowProcess();
+        QueuePolicy queuePolicy = new QueuePolicy(FetcherQueueMgr.DEFAULT_MAX_URLS_IN_MEMORY, 10);
+        queuePolicy.setMaxBytesInMemory(1000);
+        FetcherQueueMgr queueMgr = new FetcherQueueMgr(process, fetcherPolicy, queuePolicy);
+        
+        TupleEntryCollector collector = Mockito.mock(TupleEntryCollector.class);
+        FetcherQueue queue1 = queueMgr.createQueue("domain1.com", collector, 0);
+        FetcherQueue queue2 = queueMgr.createQueue("domain2.com", collector, 0);
+        for (int i = 0; i < 3; i++) {
+            Assert.assertTrue(queue1.offer(new ScoredUrlDatum("http://domain1.com/page" + i, 0, 0, UrlStatus.UNFETCHED, "domain1.com-0", 1.0, null)));
+            Assert.assertTrue(queue2.offer(new ScoredUrlDatum("http://domain2.com/page" + i, 0, 0, UrlStatus.UNFETCHED, "domain2.com-0", 1.0, null)));
+        }
+        
+        Assert.assertTrue(queue1.getBytesInMemory() > 500);
+        
+        // The first queue always gets in, but then we're over our byte limit.
+        Assert.assertTrue(queueMgr.offer(queue1));
+        Assert.assertEquals(queue1.getBytesInMemory(), queueMgr.getBytesInMemory());
+        Assert.assertFalse(queueMgr.offer(queue2, 10));
+        
+        FetchList fetchList = queueMgr.poll();
+        Assert.assertNotNull(fetchList);
+        Assert.assertEquals(3, fetchList.size());
+        fetchList.finished();
+        Assert.assertEquals(0, queueMgr.getBytesInMemory());
+        
+        // Once the queue manager needs more domains, there's room for the second queue.
+        Assert.assertNull(queueMgr.poll());
+        Assert.assertTrue(queueMgr.offer(queue2, 10));
+    }
+    
     @Test
     public void testPollWhenCrawlIsDone() {
         FetcherPolicy fetcherPolicy = new FetcherPolicy();
@@ -0,0 +1,151 @@
+package bixo.fetcher;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import bixo.config.FetcherPolicy;
+import bixo.datum.ScoredUrlDatum;
+import bixo.datum.UrlStatus;
+import bixo.utils.DomainNames;
+import bixo.utils.SimulatedClock;
+import cascading.tuple.TupleEntryCollector;
+
+public class FetcherQueueSchedulerTest {
+
+    private static ScoredUrlDatum makeSUD(String url, double score) {
+        return new ScoredUrlDatum(url, 0, 0, UrlStatus.UNFETCHED, DomainNames.getPLD(url) + "-30000", score, null);
+    }
+
+    private static FetcherQueue makeQueue(String domain, FetcherPolicy policy, double... scores) {
+        FetcherQueue result = new FetcherQueue(domain, policy, Mockito.mock(TupleEntryCollector.class));
+        for (int i = 0; i < scores.length; i++) {
+            assertTrue(result.offer(makeSUD("http://" + domain + "/page" + i, scores[i])));
+        }
+
+        return result;
+    }
+
+    @Test
+    public void testHighScoreQueueFirst() {
+        FetcherPolicy policy = new FetcherPolicy();
+        policy.setCrawlDelay(1000L);
+        policy.setCrawlEndTime(System.currentTimeMillis() + 100000L);
+
+        FetcherQueue lowQueue = makeQueue("low.com", policy, 0.1, 0.1);
+        FetcherQueue highQueue = makeQueue("high.com", policy, 1.0, 0.5);
+        assertEquals(1.5, highQueue.getTotalScore(), 0.0001);
+
+        FetcherQueueScheduler scheduler = new FetcherQueueScheduler();
+        scheduler.add(lowQueue);
+        scheduler.add(highQueue);
+        assertEquals(2, scheduler.size());
+
+        long now = System.currentTimeMillis();
+        assertTrue(highQueue.getPriority(now) > lowQueue.getPriority(now));
+        assertEquals(highQueue, scheduler.poll(now));
+        assertEquals(lowQueue, scheduler.poll(now));
+        assertNull(scheduler.poll(now));
+        assertEquals(0, scheduler.size());
+    }
+
+    @Test
+    public void testQueuesReadyAtDifferentTimes() {
+        long startTime = 1000000L;
+        SimulatedClock clock = new SimulatedClock(startTime);
+        FetcherPolicy policy = new FetcherPolicy();
+        policy.setClock(clock);
+        policy.setCrawlDelay(1000L);
+        policy.setCrawlEndTime(startTime + 100000L);
+
+        FetcherQueue bestQueue = makeQueue("best.com", policy, 5.0);
+        FetcherQueue earlyQueue = makeQueue("early.com", policy, 1.0);
+        FetcherQueue lateQueue = makeQueue("late.com", policy, 0.8);
+
+        // The early queue becomes ready now, but we fetch from the best queue.
+        FetcherQueueScheduler scheduler = new FetcherQueueScheduler();
+        scheduler.add(bestQueue);
+        scheduler.add(earlyQueue);
+        assertEquals(bestQueue, scheduler.poll(clock.currentTimeMillis()));
+        double earlyPriority = earlyQueue.getPriority(clock.currentTimeMillis());
+
+        // Half-way through the crawl, the late queue becomes ready. Its priority is
+        // higher than what the early queue had, only because there's less time left.
+        clock.advance(50000L);
+        scheduler.add(lateQueue);
+        assertTrue(lateQueue.getPriority(clock.currentTimeMillis()) > earlyPriority);
+
+        // But the early queue has more to fetch, so it should still come first.
+        assertEquals(earlyQueue, scheduler.poll(clock.currentTimeMillis()));
+        assertEquals(lateQueue, scheduler.poll(clock.currentTimeMillis()));
+        assertNull(scheduler.poll(clock.currentTimeMillis()));
+    }
+
+    @Test
+    public void testSnapshot() {
+        FetcherPolicy policy = new FetcherPolicy();
+        policy.setCrawlDelay(1000L);
+        policy.setCrawlEndTime(System.currentTimeMillis() + 100000L);
+
+        FetcherQueue lowQueue = makeQueue("low.com", policy, 0.1);
+        FetcherQueue midQueue = makeQueue("mid.com", policy, 0.5);
+        FetcherQueue highQueue = makeQueue("high.com", policy, 1.0);
+
+        FetcherQueueScheduler scheduler = new FetcherQueueScheduler();
+        scheduler.add(lowQueue);
+        scheduler.add(highQueue);
+        scheduler.add(midQueue);
+
+        // Polling promotes all of the queues to ready, and returns the best one.
+        assertEquals(highQueue, scheduler.poll(System.currentTimeMillis()));
+        FetcherQueueScheduler.Snapshot snapshot = scheduler.snapshot();
+
+        // Changing the scheduler doesn't change the snapshot.
+        scheduler.add(highQueue);
+        assertEquals(2, snapshot.size());
+
+        List<FetcherQueue> queues = snapshot.getQueues(1);
+        assertEquals(1, queues.size());
+        assertEquals(midQueue, queues.get(0));
+
+        queues = snapshot.getQueues(Integer.MAX_VALUE);
+        assertEquals(2, queues.size());
+        assertEquals(midQueue, queues.get(0));
+        assertEquals(lowQueue, queues.get(1));
+    }
+
+    @Test
+    public void testNoCrawlEndTime() {
+        FetcherPolicy policy = new FetcherPolicy();
+        FetcherQueue queue = makeQueue("domain.com", policy, 1.0);
+        assertEquals(0.0, queue.getPriority(System.currentTimeMillis()), 0.0);
+    }
+
+    @Test
+    public void testQueueNotReady() {
+        FetcherPolicy policy = new FetcherPolicy();
+        policy.setCrawlDelay(10 * 1000L);
+
+        // Fetch from the queue, so the next fetch time is in the future.
+        FetcherQueue queue = makeQueue("domain.com", policy, 1.0, 1.0, 1.0);
+        List<ScoredUrlDatum> urls = queue.poll();
+        assertNotNull(urls);
+        queue.release(urls);
+
+        FetcherQueueScheduler scheduler = new FetcherQueueScheduler();
+        scheduler.add(queue);
+
+        long now = System.currentTimeMillis();
+        assertNull(scheduler.poll(now));
+        assertEquals(queue, scheduler.peek());
+        assertEquals(1, scheduler.getQueues().size());
+
+        assertEquals(queue, scheduler.poll(queue.getNextFetchTime()));
+    }
+}
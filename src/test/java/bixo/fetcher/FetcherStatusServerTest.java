@@ -0,0 +1,91 @@
+package bixo.fetcher;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.net.URL;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import bixo.cascading.BixoFlowProcess;
+import bixo.datum.ScoredUrlDatum;
+import bixo.datum.UrlStatus;
+import bixo.fetcher.http.IHttpFetcher;
+import bixo.fetcher.simulation.FakeHttpFetcher;
+import bixo.hadoop.FetchCounters;
+import cascading.tuple.Tuple;
+import cascading.tuple.TupleEntryCollector;
+
+public class FetcherStatusServerTest {
+
+    private static class FakeCollector extends TupleEntryCollector {
+
+        @Override
+        protected void collect(Tuple tuple) {
+        }
+    }
+
+    @Test
+    public void testNoSnapshot() {
+        BixoFlowProcess process = new BixoFlowProcess();
+        FetcherQueueMgr queueMgr = new FetcherQueueMgr(process);
+        FetcherManager fetcherMgr = new FetcherManager(queueMgr, new FakeHttpFetcher(false, 1), process);
+
+        FetcherStatusServer server = new FetcherStatusServer(fetcherMgr);
+        Assert.assertEquals("{\"snapshotAge\":null,\"fetcher\":null}", server.getStatusJson());
+    }
+
+    @Test
+    public void testStatus() throws Exception {
+        BixoFlowProcess process = new BixoFlowProcess();
+        FetcherQueueMgr queueMgr = new FetcherQueueMgr(process);
+        IHttpFetcher fetcher = new FakeHttpFetcher(false, 5);
+        FetcherManager fetcherMgr = new FetcherManager(queueMgr, fetcher, process);
+
+        FetcherStatusServer server = new FetcherStatusServer(fetcherMgr);
+        server.start(0);
+
+        Thread fetcherThread = new Thread(fetcherMgr);
+        fetcherThread.setName("Fetcher manager");
+
+        try {
+            FetcherQueue queue = queueMgr.createQueue("domain.com", new FakeCollector(), 0);
+            for (int i = 0; i < 10; i++) {
+                ScoredUrlDatum urlScore = new ScoredUrlDatum("http://domain.com/page-" + i + ".html", 0, 0,
+                                UrlStatus.UNFETCHED, null, 1.0f, null);
+                Assert.assertTrue(queue.offer(urlScore));
+                process.increment(FetchCounters.URLS_REMAINING, 1);
+            }
+
+            Assert.assertTrue(queueMgr.offer(queue));
+            fetcherThread.start();
+            Thread.sleep(1500L);
+
+            String json = readUrl(new URL("http://127.0.0.1:" + server.getPort() + FetcherStatusServer.STATUS_PATH));
+            Assert.assertTrue(json, json.startsWith("{\"snapshotAge\":"));
+            Assert.assertTrue(json, json.contains("\"threads\":{\"active\":"));
+            Assert.assertTrue(json, json.contains("\"max\":5,"));
+            Assert.assertTrue(json, json.contains("\"pendingQueues\":["));
+            Assert.assertTrue(json, json.contains("\"activeFetchLists\":["));
+        } finally {
+            fetcherThread.interrupt();
+            server.stop();
+        }
+    }
+
+    private static String readUrl(URL url) throws Exception {
+        InputStream in = url.openStream();
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int len;
+            while ((len = in.read(buffer)) != -1) {
+                out.write(buffer, 0, len);
+            }
+
+            return new String(out.toByteArray(), "UTF-8");
+        } finally {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package bixo.hadoop;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.Assert;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.FileUtil;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.BytesWritable;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.mapred.FileOutputFormat;
+import org.apache.hadoop.mapred.FileSplit;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.Reporter;
+import org.junit.Test;
+
+import bixo.datum.BaseDatum;
+import bixo.datum.FetchedDatum;
+import bixo.datum.HttpHeaders;
+import bixo.hadoop.WarcInputFormat.WarcRecordReader;
+import bixo.hadoop.WarcOutputFormat.WarcRecordWriter;
+import cascading.tuple.Fields;
+import cascading.tuple.Tuple;
+
+public class WarcInputFormatTest {
+    private static final int NUM_RECORDS = 50;
+    private static final long FETCH_TIME = 1263600000000L;
+
+    private static File writeWarc(String testName, boolean compress) throws Exception {
+        File dir = new File("build/test/WarcInputFormatTest/" + testName);
+        FileUtil.fullyDelete(dir);
+
+        JobConf conf = new JobConf();
+        FileOutputFormat.setCompressOutput(conf, compress);
+
+        // Request records should be skipped when reading.
+        WarcOutputFormat.setWriteRequestRecords(conf, true);
+
+        WarcRecordWriter writer = new WarcRecordWriter(conf, FileSystem.getLocal(conf), new Path(dir.getAbsolutePath()), "part-00000", Reporter.NULL);
+        for (int i = 0; i < NUM_RECORDS; i++) {
+            String url = "http://domain.com/page-" + i + ".html";
+            HttpHeaders headers = new HttpHeaders();
+            headers.add("Content-Type", "text/html");
+            BytesWritable content = new BytesWritable(("<html>page " + i + "</html>").getBytes("UTF-8"));
+            FetchedDatum datum = new FetchedDatum(url, url, FETCH_TIME, headers, content, "text/html", 0, BaseDatum.EMPTY_METADATA_MAP);
+            writer.write(null, datum.toTuple());
+        }
+
+        writer.close(Reporter.NULL);
+
+        String extension = compress ? WarcOutputFormat.COMPRESSED_WARC_EXTENSION : WarcOutputFormat.WARC_EXTENSION;
+        return new File(dir, "part-00000-00000" + extension);
+    }
+
+    private static List<FetchedDatum> readSplit(File file, long start, long length) throws Exception {
+        List<FetchedDatum> result = new ArrayList<FetchedDatum>();
+
+        FileSplit split = new FileSplit(new Path(file.getAbsolutePath()), start, length, new String[0]);
+        WarcRecordReader reader = new WarcRecordReader(new JobConf(), split);
+        LongWritable key = reader.createKey();
+        Tuple value = reader.createValue();
+        while (reader.next(key, value)) {
+            result.add(new FetchedDatum(new Tuple(value), new Fields()));
+        }
+
+        reader.close();
+        return result;
+    }
+
+    @SuppressWarnings("deprecation")
+    private static void checkDatum(FetchedDatum datum, int index) throws Exception {
+        Assert.assertEquals("http://domain.com/page-" + index + ".html", datum.getFetchedUrl());
+        Assert.assertEquals(FETCH_TIME, datum.getFetchTime());
+        Assert.assertEquals("text/html", datum.getContentType());
+        Assert.assertEquals("text/html", datum.getHeaders().getFirst("Content-Type"));
+        Assert.assertEquals("<html>page " + index + "</html>", new String(datum.getContentBytes(), 0, datum.getContentLength(), "UTF-8"));
+    }
+
+    @Test
+    public void testUncompressed() throws Exception {
+        File file = writeWarc("testUncompressed", false);
+        List<FetchedDatum> datums = readSplit(file, 0, file.length());
+
+        Assert.assertEquals(NUM_RECORDS, datums.size());
+        for (int i = 0; i < NUM_RECORDS; i++) {
+            checkDatum(datums.get(i), i);
+        }
+    }
+
+    @Test
+    public void testCompressedSplits() throws Exception {
+        File file = writeWarc("testCompressedSplits", true);
+
+        // Every record should be read exactly once, no matter where the splits are.
+        long[] splitSizes = { file.length(), file.length() / 2, 1000, 333, 100 };
+        for (long splitSize : splitSizes) {
+            List<FetchedDatum> datums = new ArrayList<FetchedDatum>();
+            for (long start = 0; start < file.length(); start += splitSize) {
+                datums.addAll(readSplit(file, start, Math.min(splitSize, file.length() - start)));
+            }
+
+            Assert.assertEquals("Split size " + splitSize, NUM_RECORDS, datums.size());
+            for (int i = 0; i < NUM_RECORDS; i++) {
+                checkDatum(datums.get(i), i);
+            }
+        }
+    }
+
+    @Test
+    public void testMultiRecordMember() throws Exception {
+        File file = writeWarc("testMultiRecordMember", false);
+
+        // Gzip the whole file in one go, so a single member holds every record.
+        File gzFile = new File(file.getParentFile(), "whole.warc.gz");
+        GZIPOutputStream out = new GZIPOutputStream(new FileOutputStream(gzFile));
+        try {
+            out.write(FileUtils.readFileToByteArray(file));
+        } finally {
+            out.close();
+        }
+
+        List<FetchedDatum> datums = readSplit(gzFile, 0, gzFile.length());
+        Assert.assertEquals(NUM_RECORDS, datums.size());
+        for (int i = 0; i < NUM_RECORDS; i++) {
+            checkDatum(datums.get(i), i);
+        }
+
+        // A later split doesn't contain the start of the member, so gets nothing.
+        Assert.assertEquals(0, readSplit(gzFile, 1, gzFile.length() - 1).size());
+    }
+}
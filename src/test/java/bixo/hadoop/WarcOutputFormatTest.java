@@ -0,0 +1,170 @@
+package bixo.hadoop;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import junit.framework.Assert;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.FileUtil;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.BytesWritable;
+import org.apache.hadoop.mapred.FileOutputFormat;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.hadoop.mapred.Reporter;
+import org.junit.Test;
+
+import bixo.datum.FetchedDatum;
+import bixo.datum.HttpHeaders;
+import bixo.hadoop.WarcOutputFormat.WarcRecordWriter;
+import cascading.tuple.Fields;
+import cascading.tuple.Tuple;
+import cascading.util.Util;
+
+public class WarcOutputFormatTest {
+
+    private static Tuple makeTuple(int index) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.add("Content-Type", "text/html");
+        return makeTuple(index, headers);
+    }
+
+    @SuppressWarnings({ "unchecked", "deprecation" })
+    private static Tuple makeTuple(int index, HttpHeaders headers) {
+        String url = "http://domain.com/page-" + index + ".html";
+
+        // Give the content some extra capacity, which shouldn't be written out.
+        BytesWritable content = new BytesWritable(("<html>page " + index + "</html>").getBytes());
+        content.setCapacity(content.getSize() + 100);
+
+        Map<String, Comparable> metaData = new HashMap<String, Comparable>();
+        metaData.put("depth", "" + index);
+        return new FetchedDatum(url, url, System.currentTimeMillis(), headers, content, "text/html", 0, metaData).toTuple();
+    }
+
+    private static File writeRecords(String testName, JobConf conf, int numRecords) throws Exception {
+        Tuple[] tuples = new Tuple[numRecords];
+        for (int i = 0; i < numRecords; i++) {
+            tuples[i] = makeTuple(i);
+        }
+
+        return writeRecords(testName, conf, tuples);
+    }
+
+    private static File writeRecords(String testName, JobConf conf, Tuple... tuples) throws Exception {
+        File dir = new File("build/test/WarcOutputFormatTest/" + testName);
+        FileUtil.fullyDelete(dir);
+
+        conf.set(WarcOutputFormat.WARC_METADATA_FIELDS_KEY, Util.serializeBase64(new Fields("depth")));
+        WarcRecordWriter writer = new WarcRecordWriter(conf, FileSystem.getLocal(conf), new Path(dir.getAbsolutePath()), "part-00000", Reporter.NULL);
+        for (Tuple tuple : tuples) {
+            writer.write(null, tuple);
+        }
+
+        writer.close(Reporter.NULL);
+        return dir;
+    }
+
+    @Test
+    public void testResponseRecords() throws Exception {
+        JobConf conf = new JobConf();
+        FileOutputFormat.setCompressOutput(conf, false);
+        WarcOutputFormat.setWriteRequestRecords(conf, true);
+        WarcOutputFormat.setWriteMetadataRecords(conf, true);
+        File dir = writeRecords("testResponseRecords", conf, 2);
+
+        File warcFile = new File(dir, "part-00000-00000" + WarcOutputFormat.WARC_EXTENSION);
+        String warc = FileUtils.readFileToString(warcFile, "ISO-8859-1");
+
+        Assert.assertEquals(2, warc.split("WARC-Type: response").length - 1);
+        Assert.assertEquals(2, warc.split("WARC-Type: request").length - 1);
+        Assert.assertEquals(2, warc.split("WARC-Type: metadata").length - 1);
+        Assert.assertEquals(4, warc.split("WARC-Concurrent-To").length - 1);
+
+        Assert.assertTrue(warc.contains("HTTP/1.1 200 OK\r\ncontent-type: text/html\r\nContent-Length: 19\r\n\r\n<html>page 0</html>"));
+        Assert.assertTrue(warc.contains("GET /page-1.html HTTP/1.1\r\nHost: domain.com\r\n\r\n"));
+        Assert.assertTrue(warc.contains("depth: 1\r\n"));
+
+        // Response record length is the header block plus the content.
+        String headerBlock = "HTTP/1.1 200 OK\r\ncontent-type: text/html\r\nContent-Length: 19\r\n\r\n";
+        int length = headerBlock.length() + "<html>page 0</html>".length();
+        Assert.assertTrue(warc.contains("Content-Length: " + length + "\r\n"));
+        Assert.assertFalse(warc.contains("WARC-Truncated"));
+    }
+
+    @Test
+    public void testFramingHeaders() throws Exception {
+        // Chunked response, which the fetcher has already de-chunked.
+        HttpHeaders chunkedHeaders = new HttpHeaders();
+        chunkedHeaders.add("Content-Type", "text/html");
+        chunkedHeaders.add("Transfer-Encoding", "chunked");
+
+        // Response that was truncated, since we have less content than the Content-Length.
+        HttpHeaders truncatedHeaders = new HttpHeaders();
+        truncatedHeaders.add("Content-Type", "text/html");
+        truncatedHeaders.add("Content-Length", "100000");
+
+        JobConf conf = new JobConf();
+        FileOutputFormat.setCompressOutput(conf, false);
+        File dir = writeRecords("testFramingHeaders", conf, makeTuple(0, chunkedHeaders), makeTuple(1, truncatedHeaders));
+
+        File warcFile = new File(dir, "part-00000-00000" + WarcOutputFormat.WARC_EXTENSION);
+        String warc = FileUtils.readFileToString(warcFile, "ISO-8859-1");
+
+        Assert.assertFalse(warc.contains("transfer-encoding"));
+        Assert.assertFalse(warc.contains("100000"));
+        Assert.assertTrue(warc.contains("HTTP/1.1 200 OK\r\ncontent-type: text/html\r\nContent-Length: 19\r\n\r\n<html>page 0</html>"));
+        Assert.assertTrue(warc.contains("HTTP/1.1 200 OK\r\ncontent-type: text/html\r\nContent-Length: 19\r\n\r\n<html>page 1</html>"));
+
+        // Only the second response was truncated.
+        Assert.assertEquals(1, warc.split("WARC-Truncated: length").length - 1);
+        int truncatedPos = warc.indexOf("WARC-Truncated: length");
+        Assert.assertTrue(truncatedPos > warc.indexOf("<html>page 0</html>"));
+        Assert.assertTrue(truncatedPos < warc.indexOf("<html>page 1</html>"));
+    }
+
+    @Test
+    public void testTruncatedAtMaxContentSize() throws Exception {
+        // No Content-Length, so we can only tell from the content size.
+        HttpHeaders headers = new HttpHeaders();
+        headers.add("Content-Type", "text/html");
+
+        JobConf conf = new JobConf();
+        FileOutputFormat.setCompressOutput(conf, false);
+        WarcOutputFormat.setMaxContentSize(conf, "<html>page 10</html>".length());
+        File dir = writeRecords("testTruncatedAtMaxContentSize", conf, makeTuple(0, headers), makeTuple(10, headers));
+
+        File warcFile = new File(dir, "part-00000-00000" + WarcOutputFormat.WARC_EXTENSION);
+        String warc = FileUtils.readFileToString(warcFile, "ISO-8859-1");
+
+        Assert.assertEquals(1, warc.split("WARC-Truncated: length").length - 1);
+        Assert.assertTrue(warc.indexOf("WARC-Truncated: length") > warc.indexOf("<html>page 0</html>"));
+    }
+
+    @Test
+    public void testCompressedRollover() throws Exception {
+        JobConf conf = new JobConf();
+        FileOutputFormat.setCompressOutput(conf, true);
+        WarcOutputFormat.setMaxFileSize(conf, 1);
+        File dir = writeRecords("testCompressedRollover", conf, 3);
+
+        for (int i = 0; i < 3; i++) {
+            File warcFile = new File(dir, String.format("part-00000-%05d", i) + WarcOutputFormat.COMPRESSED_WARC_EXTENSION);
+            GZIPInputStream in = new GZIPInputStream(new FileInputStream(warcFile));
+            try {
+                String warc = IOUtils.toString(in, "ISO-8859-1");
+                Assert.assertTrue(warc.startsWith("WARC/"));
+                Assert.assertTrue(warc.contains("<html>page " + i + "</html>"));
+            } finally {
+                in.close();
+            }
+        }
+
+        Assert.assertFalse(new File(dir, "part-00000-00003" + WarcOutputFormat.COMPRESSED_WARC_EXTENSION).exists());
+    }
+}
@@ -0,0 +1,54 @@
+package bixo.indexing;
+
+import junit.framework.Assert;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field.Index;
+import org.apache.lucene.document.Field.Store;
+import org.junit.Test;
+
+import cascading.tuple.Fields;
+import cascading.tuple.Tuple;
+
+public class DocumentBuilderTest {
+
+    @Test
+    public void testReusedDocument() throws Exception {
+        DocumentBuilder builder = new DocumentBuilder(new Fields("url", "count", "boost"), new Store[] { Store.YES, Store.YES },
+                        new Index[] { Index.NOT_ANALYZED, Index.NOT_ANALYZED }, true);
+
+        Document doc = builder.makeDocument(new Tuple("http://domain.com/page1", 10, 2.0f));
+        Assert.assertEquals(2, doc.getFields().size());
+        Assert.assertEquals("http://domain.com/page1", doc.get("url"));
+        Assert.assertEquals("10", doc.get("count"));
+        Assert.assertEquals(2.0f, doc.getBoost());
+
+        Document doc2 = builder.makeDocument(new Tuple("http://domain.com/page2", 20, 0.5f));
+        Assert.assertSame(doc, doc2);
+        Assert.assertEquals(2, doc2.getFields().size());
+        Assert.assertEquals("http://domain.com/page2", doc2.get("url"));
+        Assert.assertEquals("20", doc2.get("count"));
+        Assert.assertEquals(0.5f, doc2.getBoost());
+    }
+
+    @Test
+    public void testDocumentPerThread() throws Exception {
+        final DocumentBuilder builder = new DocumentBuilder(new Fields("text"), new Store[] { Store.YES },
+                        new Index[] { Index.ANALYZED }, false);
+
+        final Document[] otherDoc = new Document[1];
+        Thread t = new Thread() {
+            @Override
+            public void run() {
+                otherDoc[0] = builder.makeDocument(new Tuple("other thread"));
+            }
+        };
+        t.start();
+        t.join();
+
+        Document doc = builder.makeDocument(new Tuple("this thread"));
+        Assert.assertNotSame(doc, otherDoc[0]);
+        Assert.assertEquals("this thread", doc.get("text"));
+        Assert.assertEquals("other thread", otherDoc[0].get("text"));
+    }
+}
@@ -0,0 +1,130 @@
+package bixo.indexing;
+
+import java.io.File;
+import java.io.IOException;
+
+import junit.framework.Assert;
+
+import org.apache.hadoop.fs.FileUtil;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field.Index;
+import org.apache.lucene.document.Field.Store;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.IndexWriter.MaxFieldLength;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.TermQuery;
+import org.junit.Test;
+
+import cascading.tuple.Fields;
+import cascading.tuple.Tuple;
+
+public class ParallelIndexWriterTest {
+    private static final int NUM_DOCS = 1000;
+
+    private static class FailingDocumentBuilder extends DocumentBuilder {
+        private String _failingId;
+
+        public FailingDocumentBuilder(String failingId) {
+            super(new Fields("id", "text"), new Store[] { Store.YES, Store.NO }, new Index[] { Index.NOT_ANALYZED, Index.ANALYZED }, false);
+
+            _failingId = failingId;
+        }
+
+        @Override
+        public Document makeDocument(Tuple value) {
+            if (_failingId.equals(value.getString(0))) {
+                throw new RuntimeException("Failing on " + _failingId);
+            }
+
+            return super.makeDocument(value);
+        }
+    }
+
+    private static File makeDir(String testName) {
+        File dir = new File("build/test/ParallelIndexWriterTest/" + testName);
+        FileUtil.fullyDelete(dir);
+        dir.mkdirs();
+        return dir;
+    }
+
+    private static File makeIndex(String testName, int numWriters, boolean optimize) throws Exception {
+        File dir = makeDir(testName);
+        File indexDir = new File(dir, "index");
+
+        DocumentBuilder builder = new DocumentBuilder(new Fields("id", "text"), new Store[] { Store.YES, Store.NO },
+                        new Index[] { Index.NOT_ANALYZED, Index.ANALYZED }, false);
+        ParallelIndexWriter writer = new ParallelIndexWriter(indexDir, numWriters, new StandardAnalyzer(), MaxFieldLength.UNLIMITED.getLimit(), builder);
+        for (int i = 0; i < NUM_DOCS; i++) {
+            writer.add(new Tuple("doc-" + i, "some text " + (i % 10 == 0 ? "tenth" : "other")));
+        }
+
+        writer.close(optimize);
+
+        // Only the final index should be left.
+        Assert.assertEquals(1, dir.listFiles().length);
+        return indexDir;
+    }
+
+    @Test
+    public void testAllDocumentsIndexed() throws Exception {
+        File indexDir = makeIndex("testAllDocumentsIndexed", 4, false);
+
+        IndexReader reader = IndexReader.open(indexDir);
+        try {
+            Assert.assertEquals(NUM_DOCS, reader.numDocs());
+
+            IndexSearcher searcher = new IndexSearcher(reader);
+            Assert.assertEquals(NUM_DOCS / 10, searcher.search(new TermQuery(new Term("text", "tenth")), 1).totalHits);
+            Assert.assertEquals(1, searcher.search(new TermQuery(new Term("id", "doc-999")), 1).totalHits);
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void testOptimize() throws Exception {
+        File indexDir = makeIndex("testOptimize", 3, true);
+
+        IndexReader reader = IndexReader.open(indexDir);
+        try {
+            Assert.assertEquals(NUM_DOCS, reader.numDocs());
+            Assert.assertTrue(reader.isOptimized());
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void testWriterFailure() throws Exception {
+        File dir = makeDir("testWriterFailure");
+        File indexDir = new File(dir, "index");
+
+        ParallelIndexWriter writer = new ParallelIndexWriter(indexDir, 4, new StandardAnalyzer(), MaxFieldLength.UNLIMITED.getLimit(),
+                        new FailingDocumentBuilder("doc-10"));
+
+        // Once the writer thread has failed, adding more documents should fail.
+        try {
+            for (int i = 0; i < NUM_DOCS * 10; i++) {
+                writer.add(new Tuple("doc-" + i, "some text"));
+            }
+
+            Assert.fail("Should have failed to add documents");
+        } catch (IOException e) {
+            // Expected
+        }
+
+        // Closing shouldn't hang waiting for the surviving writer threads, and should
+        // report the failure.
+        try {
+            writer.close(false);
+            Assert.fail("Should have failed to close");
+        } catch (IOException e) {
+            // Expected
+        }
+
+        // The per-thread indexes should be gone, and there's no final index.
+        Assert.assertEquals(0, dir.listFiles().length);
+    }
+}
@@ -0,0 +1,75 @@
+package bixo.indexing;
+
+import java.io.File;
+
+import junit.framework.Assert;
+
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.FileUtil;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapred.JobConf;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Field.Index;
+import org.apache.lucene.document.Field.Store;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter.MaxFieldLength;
+import org.junit.Test;
+
+import cascading.tuple.Fields;
+import cascading.tuple.Tuple;
+
+public class StreamingIndexWriterTest {
+
+    private static File makeParts(String testName, int numDocs, int maxDocsPerPart, int numWriters) throws Exception {
+        File dir = new File("build/test/StreamingIndexWriterTest/" + testName);
+        FileUtil.fullyDelete(dir);
+        File localDir = new File(dir, "local");
+        File outDir = new File(dir, "out");
+
+        DocumentBuilder builder = new DocumentBuilder(new Fields("text"), new Store[] { Store.YES }, new Index[] { Index.ANALYZED }, false);
+        StreamingIndexWriter writer = new StreamingIndexWriter(localDir, FileSystem.getLocal(new JobConf()), new Path(outDir.getAbsolutePath()),
+                        maxDocsPerPart, numWriters, new StandardAnalyzer(), MaxFieldLength.UNLIMITED.getLimit(), builder, false);
+        for (int i = 0; i < numDocs; i++) {
+            writer.add(new Tuple("some text " + i));
+        }
+
+        writer.close();
+        Assert.assertFalse(localDir.exists());
+        return outDir;
+    }
+
+    private static int countDocs(File partDir) throws Exception {
+        IndexReader reader = IndexReader.open(partDir);
+        try {
+            return reader.numDocs();
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void testParts() throws Exception {
+        File outDir = makeParts("testParts", 250, 100, 1);
+
+        Assert.assertEquals(3, outDir.listFiles().length);
+        Assert.assertEquals(100, countDocs(new File(outDir, StreamingIndexWriter.getPartName(0))));
+        Assert.assertEquals(100, countDocs(new File(outDir, StreamingIndexWriter.getPartName(1))));
+        Assert.assertEquals(50, countDocs(new File(outDir, StreamingIndexWriter.getPartName(2))));
+    }
+
+    @Test
+    public void testNoEmptyLastPart() throws Exception {
+        File outDir = makeParts("testNoEmptyLastPart", 200, 100, 2);
+
+        Assert.assertEquals(2, outDir.listFiles().length);
+        Assert.assertEquals(100, countDocs(new File(outDir, StreamingIndexWriter.getPartName(1))));
+    }
+
+    @Test
+    public void testEmptyIndex() throws Exception {
+        File outDir = makeParts("testEmptyIndex", 0, 100, 1);
+
+        Assert.assertEquals(1, outDir.listFiles().length);
+        Assert.assertEquals(0, countDocs(new File(outDir, StreamingIndexWriter.getPartName(0))));
+    }
+}
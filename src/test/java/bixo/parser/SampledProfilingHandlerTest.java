@@ -0,0 +1,77 @@
+package bixo.parser;
+
+import java.util.Random;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+public class SampledProfilingHandlerTest {
+
+    private static final String ENGLISH_TEXT = "The quick brown fox jumped over the lazy dog, and then "
+                    + "it ran back into the forest where all of the other animals were waiting for it. ";
+
+    private static char[] makeText(int numChars) {
+        StringBuilder result = new StringBuilder();
+        while (result.length() < numChars) {
+            result.append(ENGLISH_TEXT);
+        }
+
+        return result.substring(0, numChars).toCharArray();
+    }
+
+    @Test
+    public void testSampleLimit() throws Exception {
+        SampledProfilingHandler handler = new SampledProfilingHandler(1000);
+        char[] text = makeText(5000);
+
+        handler.characters(text, 0, 800);
+        Assert.assertEquals(800, handler.getNumChars());
+        Assert.assertFalse(handler.isDone());
+
+        handler.characters(text, 800, 800);
+        Assert.assertEquals(1000, handler.getNumChars());
+        Assert.assertTrue(handler.isDone());
+
+        handler.characters(text, 1600, 3400);
+        Assert.assertEquals(1000, handler.getNumChars());
+    }
+
+    @Test
+    public void testEarlyTermination() throws Exception {
+        SampledProfilingHandler handler = new SampledProfilingHandler(100 * 1024);
+        char[] text = makeText(50 * 1024);
+
+        for (int offset = 0; offset < text.length; offset += 100) {
+            handler.characters(text, offset, 100);
+        }
+
+        Assert.assertTrue(handler.isDone());
+        Assert.assertTrue(handler.getNumChars() < text.length);
+        Assert.assertEquals("en", handler.getLanguage());
+    }
+
+    @Test
+    public void testUncertainLanguage() throws Exception {
+        // Random "words" don't look like any language, so we never trust the guess.
+        Random rand = new Random(1L);
+        char[] text = new char[10 * 1024];
+        for (int i = 0; i < text.length; i++) {
+            text[i] = (rand.nextInt(6) == 0) ? ' ' : (char)('a' + rand.nextInt(26));
+        }
+
+        SampledProfilingHandler handler = new SampledProfilingHandler(10 * 1024);
+        for (int offset = 0; offset < text.length; offset += 100) {
+            handler.characters(text, offset, Math.min(100, text.length - offset));
+        }
+
+        Assert.assertEquals(10 * 1024, handler.getNumChars());
+        Assert.assertEquals("", handler.getLanguage());
+    }
+
+    @Test
+    public void testNoText() throws Exception {
+        SampledProfilingHandler handler = new SampledProfilingHandler(1000);
+        Assert.assertEquals("", handler.getLanguage());
+    }
+}
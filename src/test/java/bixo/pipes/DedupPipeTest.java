@@ -0,0 +1,110 @@
+package bixo.pipes;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.apache.hadoop.mapred.JobConf;
+import org.junit.Test;
+
+import bixo.datum.BaseDatum;
+import bixo.datum.ParsedDatum;
+import bixo.datum.StatusDatum;
+import bixo.datum.UrlStatus;
+import cascading.CascadingTestCase;
+import cascading.flow.Flow;
+import cascading.flow.FlowConnector;
+import cascading.pipe.Pipe;
+import cascading.scheme.SequenceFile;
+import cascading.tap.Lfs;
+import cascading.tuple.Fields;
+import cascading.tuple.TupleEntryCollector;
+import cascading.tuple.TupleEntryIterator;
+
+public class DedupPipeTest extends CascadingTestCase {
+
+    private static String makeText(int seed) {
+        Random rand = new Random(seed);
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            result.append("word");
+            result.append(rand.nextInt(500));
+            result.append(' ');
+        }
+
+        return result.toString();
+    }
+
+    private static void addPage(TupleEntryCollector write, String url, String parsedText) {
+        ParsedDatum datum = new ParsedDatum(url, parsedText, "en", "", new String[0], new String[0],
+                        new HashMap<String, String>(), BaseDatum.EMPTY_METADATA_MAP);
+        write.add(datum.toTuple());
+    }
+
+    @Test
+    public void testDedupPipe() throws Exception {
+        Lfs in = new Lfs(new SequenceFile(ParsedDatum.FIELDS), "build/test/DedupPipeTest/in", true);
+        TupleEntryCollector write = in.openForWrite(new JobConf());
+
+        for (int i = 0; i < 10; i++) {
+            addPage(write, "http://domain.com/page-" + i + ".html", makeText(i));
+        }
+
+        // Mirror and print view copies of the first five pages, which sort after the originals.
+        for (int i = 0; i < 5; i++) {
+            addPage(write, "http://mirror.com/page-" + i + ".html", makeText(i));
+            addPage(write, "http://domain.com/page-" + i + ".html?view=print", "Print view " + makeText(i));
+        }
+
+        // Pages without text are never duplicates.
+        addPage(write, "http://domain.com/image-1.jpg", "");
+        addPage(write, "http://domain.com/image-2.jpg", "");
+        write.close();
+
+        Pipe pipe = new Pipe("dedup_source");
+        DedupPipe dedupPipe = new DedupPipe(pipe);
+
+        Lfs status = new Lfs(new SequenceFile(StatusDatum.FIELDS), "build/test/DedupPipeTest/status", true);
+        Lfs unique = new Lfs(new SequenceFile(ParsedDatum.FIELDS), "build/test/DedupPipeTest/unique", true);
+
+        FlowConnector flowConnector = new FlowConnector();
+        Flow flow = flowConnector.connect(in, DedupPipe.makeSinkMap(status, unique), dedupPipe);
+        flow.complete();
+
+        Set<String> uniqueUrls = new HashSet<String>();
+        TupleEntryIterator iter = unique.openForRead(new JobConf());
+        while (iter.hasNext()) {
+            uniqueUrls.add(new ParsedDatum(iter.next().getTuple(), new Fields()).getUrl());
+        }
+
+        assertEquals(12, uniqueUrls.size());
+        for (int i = 0; i < 10; i++) {
+            assertTrue(uniqueUrls.contains("http://domain.com/page-" + i + ".html"));
+        }
+
+        Set<String> duplicateUrls = new HashSet<String>();
+        iter = status.openForRead(new JobConf());
+        while (iter.hasNext()) {
+            StatusDatum datum = new StatusDatum(iter.next(), new Fields());
+            assertEquals(UrlStatus.DUPLICATE, datum.getStatus());
+            duplicateUrls.add(datum.getUrl());
+        }
+
+        assertEquals(10, duplicateUrls.size());
+        for (int i = 0; i < 5; i++) {
+            assertTrue(duplicateUrls.contains("http://mirror.com/page-" + i + ".html"));
+            assertTrue(duplicateUrls.contains("http://domain.com/page-" + i + ".html?view=print"));
+        }
+    }
+
+    @Test
+    public void testInvalidMaxDistance() {
+        try {
+            new DedupPipe(new Pipe("dedup_source"), new Fields(), 4);
+            fail("Should have thrown exception");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+}
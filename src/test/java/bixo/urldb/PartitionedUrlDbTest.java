@@ -0,0 +1,49 @@
+package bixo.urldb;
+
+import java.io.File;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.hadoop.fs.FileUtil;
+import org.apache.hadoop.mapred.JobConf;
+import org.junit.Test;
+
+import bixo.datum.UrlDatum;
+import cascading.CascadingTestCase;
+import cascading.tap.Tap;
+import cascading.tuple.TupleEntryIterator;
+
+public class PartitionedUrlDbTest extends CascadingTestCase {
+
+    @Test
+    public void testImportAndMerge() throws Exception {
+        PartitionedUrlDb urlDb = new PartitionedUrlDb(4);
+        String inputPath = "src/test/resources/urls.txt";
+        String workingFolder = "build/test/PartitionedUrlDbTest/working";
+        FileUtil.fullyDelete(new File(workingFolder));
+
+        urlDb.importUrls(inputPath, workingFolder);
+        Tap dbTap = PartitionedUrlDb.makeDbTap(workingFolder);
+        validateLength(dbTap.openForRead(new JobConf()), 10);
+
+        // Importing the same URLs again has to go through the merge, and
+        // should still leave us with 10 URLs.
+        urlDb.importUrls(inputPath, workingFolder);
+        TupleEntryIterator iter = dbTap.openForRead(new JobConf());
+        Set<String> urls = new HashSet<String>();
+        while (iter.hasNext()) {
+            String url = iter.next().getString(UrlDatum.URL_FIELD);
+            assertTrue("Duplicate URL: " + url, urls.add(url));
+        }
+
+        iter.close();
+        assertEquals(10, urls.size());
+    }
+
+    @Test
+    public void testPartitionIsStable() {
+        String url = "http://www.domain.com/page.html";
+        assertEquals(PartitionedUrlDb.getPartition(url, 32), PartitionedUrlDb.getPartition(new String(url), 32));
+        assertTrue(PartitionedUrlDb.getPartition(url, 32) < 32);
+    }
+}
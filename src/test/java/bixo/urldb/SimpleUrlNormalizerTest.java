@@ -1,5 +1,11 @@
 package bixo.urldb;
 
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.commons.io.FileUtils;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
@@ -331,4 +337,41 @@ public class SimpleUrlNormalizerTest {
         normalizeTest("http://www.domain.com", "http://www.domain.com/", "Add trailing slash");
         normalizeTest("www.pondliner.com", "http://www.pondliner.com/", "Add trailing slash even if no protocol");
     }
+    
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testMatchesReferenceNormalizer() throws Exception {
+        List<String> urls = FileUtils.readLines(new File("src/test/resources/sample-urls.txt"), "UTF-8");
+        
+        // Mutate the URLs with the kinds of things that trigger special-case processing.
+        final String[] inserts = {
+            "%", "%2", "%zz", "%41", "%C3%A9", "%C3", "%e2%82%ac", "+", " ", "\u00e9", "\u20ac",
+            "\ud83d\ude00", "\ud800", "\t", "\u007f", "/../", "/./", "/a/../", "//", "?", "&", "=",
+            "&&", "==", "#", "#/x=y", "/#a=b", ";jsessionid=ABC", "?PHPSESSID=1", "&sid=2", "Id=",
+            "/index.html", "/Default.ASPX", "/INDEX.php3?", "%2f", "%3F", ":", ".."
+        };
+        
+        Random rand = new Random(1L);
+        List<String> testUrls = new ArrayList<String>(urls);
+        for (int i = 0; i < 5; i++) {
+            for (String url : urls) {
+                StringBuilder mutated = new StringBuilder(url);
+                int numInserts = 1 + rand.nextInt(4);
+                for (int j = 0; j < numInserts; j++) {
+                    int pos = Math.min(mutated.length(), 7 + rand.nextInt(Math.max(1, mutated.length() - 6)));
+                    mutated.insert(pos, inserts[rand.nextInt(inserts.length)]);
+                }
+                
+                testUrls.add(mutated.toString());
+            }
+        }
+        
+        for (boolean treatRefAsQuery : new boolean[] { false, true }) {
+            IUrlNormalizer reference = new ReferenceUrlNormalizer(treatRefAsQuery);
+            IUrlNormalizer normalizer = new SimpleUrlNormalizer(treatRefAsQuery);
+            for (String url : testUrls) {
+                Assert.assertEquals(url, reference.normalize(url), normalizer.normalize(url));
+            }
+        }
+    }
 }
@@ -54,4 +54,21 @@ public class UrlImporterTest extends CascadingTestCase {
         tupleEntryIterator = hfs.openForRead(new JobConf());
         validateLength(tupleEntryIterator, 10);
     }
+
+    @Test
+    public void testPartitionedImport() throws Exception {
+        UrlImporter urlImporter = new UrlImporter();
+        urlImporter.setNumPartitions(4);
+        String inputPath = "src/test/resources/urls.txt";
+        String workingFolder = "build/test/UrlImporterTest/partitioned";
+        FileUtil.fullyDelete(new File(workingFolder));
+
+        urlImporter.importUrls(inputPath, workingFolder);
+        validateLength(urlImporter.makeDbTap(workingFolder).openForRead(new JobConf()), 10);
+
+        // Second import goes through the per-partition merge.
+        urlImporter.importUrls(inputPath, workingFolder);
+        validateLength(urlImporter.makeDbTap(workingFolder).openForRead(new JobConf()), 10);
+        assertFalse(new File(workingFolder, UrlImporter.URL_DB_NAME).exists());
+    }
 }
@@ -0,0 +1,81 @@
+package bixo.utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+public class BloomFilterTest {
+
+    @Test
+    public void testNoFalseNegatives() {
+        BloomFilter filter = new BloomFilter(10000, 0.01);
+        for (int i = 0; i < 10000; i++) {
+            filter.add("http://domain.com/page-" + i + ".html");
+        }
+
+        for (int i = 0; i < 10000; i++) {
+            Assert.assertTrue(filter.mightContain("http://domain.com/page-" + i + ".html"));
+        }
+
+        Assert.assertTrue(filter.isFull());
+    }
+
+    @Test
+    public void testFalsePositiveRate() {
+        BloomFilter filter = new BloomFilter(10000, 0.01);
+        for (int i = 0; i < 10000; i++) {
+            filter.add("http://domain.com/page-" + i + ".html");
+        }
+
+        int numFalsePositives = 0;
+        for (int i = 0; i < 100000; i++) {
+            if (filter.mightContain("http://other.com/page-" + i + ".html")) {
+                numFalsePositives += 1;
+            }
+        }
+
+        // Allow for some slop over the target rate of 1%
+        Assert.assertTrue("Too many false positives: " + numFalsePositives, numFalsePositives < 1500);
+    }
+
+    @Test
+    public void testScalableFilter() throws Exception {
+        ScalableBloomFilter filter = new ScalableBloomFilter(1000, 0.01);
+        for (int i = 0; i < 20000; i++) {
+            filter.add("http://domain.com/page-" + i + ".html");
+        }
+
+        Assert.assertEquals(20000, filter.getNumEntries());
+
+        int numFalsePositives = 0;
+        for (int i = 0; i < 100000; i++) {
+            if (filter.mightContain("http://other.com/page-" + i + ".html")) {
+                numFalsePositives += 1;
+            }
+        }
+
+        Assert.assertTrue("Too many false positives: " + numFalsePositives, numFalsePositives < 1500);
+
+        // Make sure we get the same results after a round trip.
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        filter.write(new DataOutputStream(bytes));
+
+        ScalableBloomFilter filter2 = new ScalableBloomFilter();
+        filter2.readFields(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        Assert.assertEquals(filter.getNumEntries(), filter2.getNumEntries());
+        for (int i = 0; i < 20000; i++) {
+            Assert.assertTrue(filter2.mightContain("http://domain.com/page-" + i + ".html"));
+        }
+
+        for (int i = 0; i < 1000; i++) {
+            String url = "http://other.com/page-" + i + ".html";
+            Assert.assertEquals(filter.mightContain(url), filter2.mightContain(url));
+        }
+    }
+}
@@ -48,4 +48,29 @@ public class CharsetUtilsTest {
         
         assertEquals("KOI8-R", CharsetUtils.clean("koi8r"));
     }
+    
+    @Test
+    public void testCachedCleaning() {
+        String[] names = {"utf-8", "UTF8", "iso-8859-1", "US-ASCII", " us-ascii  ", "\"utf-8\"",
+                        "ISO-8859-1, latin1", "none", "", "bogus", "cp-1251", "win1251", "koi8r"};
+        
+        // Run twice, so that the second pass hits the cache.
+        for (int i = 0; i < 2; i++) {
+            for (String name : names) {
+                assertEquals(CharsetUtils.clean(name), CharsetUtils.cachedClean(name));
+            }
+        }
+        
+        assertEquals(null, CharsetUtils.cachedClean(null));
+    }
+    
+    @Test
+    public void testCachedCleaningFromContentType() {
+        assertEquals("UTF-8", CharsetUtils.cachedCleanFromContentType("text/html; charset=utf-8"));
+        assertEquals("UTF-8", CharsetUtils.cachedCleanFromContentType("text/html; charset=utf-8"));
+        assertEquals("windows-1251", CharsetUtils.cachedCleanFromContentType("text/html; charset=win-1251"));
+        assertEquals(null, CharsetUtils.cachedCleanFromContentType("text/html"));
+        assertEquals(null, CharsetUtils.cachedCleanFromContentType("text/html"));
+        assertEquals(null, CharsetUtils.cachedCleanFromContentType(null));
+    }
 }
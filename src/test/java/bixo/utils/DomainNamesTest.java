@@ -22,10 +22,14 @@
  */
 package bixo.utils;
 
+import java.io.File;
 import java.net.InetAddress;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.UnknownHostException;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
 
 import org.junit.Test;
 
@@ -80,9 +84,63 @@ public class DomainNamesTest extends TestCase {
         assertEquals("xxx.com.it", DomainNames.getPLD("www.xxx.com.it"));
     }
     
+    // Suffixes that only come from the public suffix list
+    public final void testPublicSuffixDomains() {
+        assertEquals("xxx.app", DomainNames.getPLD("www.xxx.app"));
+        assertEquals("xxx.art.br", DomainNames.getPLD("www.xxx.art.br"));
+        assertEquals("xxx.k12.ma.us", DomainNames.getPLD("www.xxx.k12.ma.us"));
+        assertEquals("xxx.co.uk", DomainNames.getPLD("www.xxx.co.uk"));
+        assertEquals("Xxx.CO.UK", DomainNames.getPLD("WWW.Xxx.CO.UK"));
+        assertEquals("co.uk", DomainNames.getPLD("co.uk"));
+    }
+    
+    public final void testWildcardAndExceptionRules() {
+        // *.ck and !www.ck
+        assertEquals("xxx.yyy.ck", DomainNames.getPLD("www.xxx.yyy.ck"));
+        assertEquals("www.ck", DomainNames.getPLD("www.ck"));
+        
+        // *.kawasaki.jp and !city.kawasaki.jp
+        assertEquals("xxx.yyy.kawasaki.jp", DomainNames.getPLD("www.xxx.yyy.kawasaki.jp"));
+        assertEquals("city.kawasaki.jp", DomainNames.getPLD("www.city.kawasaki.jp"));
+    }
+    
+    public final void testPrivateDomainsIgnored() {
+        // We only use the ICANN section of the list, as all blogspot sites are hosted
+        // on the same servers, and have to be grouped together.
+        assertEquals("blogspot.com", DomainNames.getPLD("xxx.blogspot.com"));
+    }
+    
+    public final void testTrailingDot() {
+        assertEquals("xxx.com", DomainNames.getPLD("www.xxx.com."));
+    }
+    
     public final void testSafeGetHost() {
         assertEquals("domain.com", DomainNames.safeGetHost("http://domain.com"));
         assertTrue(!DomainNames.safeGetHost("mailto:ken@domain.com").equals("domain.com"));
     }
 
+    // The public suffix rules include the old ccTLD/gTLD heuristics, so a PLD should
+    // never be shorter than what the original implementation returned.
+    @SuppressWarnings("unchecked")
+    public final void testNeverShorterThanReference() throws Exception {
+        List<String> urls = FileUtils.readLines(new File("src/test/resources/sample-urls.txt"), "UTF-8");
+        for (String url : urls) {
+            String hostname;
+            try {
+                hostname = new URL(url).getHost();
+            } catch (MalformedURLException e) {
+                continue;
+            }
+
+            if (hostname.length() == 0) {
+                continue;
+            }
+
+            String pld = DomainNames.getPLD(hostname);
+            String referencePld = ReferenceDomainNames.getPLD(hostname);
+            assertTrue(hostname + ": " + pld + " vs. " + referencePld, pld.length() >= referencePld.length());
+            assertTrue(hostname + ": " + pld + " vs. " + referencePld, referencePld.endsWith(pld) || pld.endsWith(referencePld));
+        }
+    }
+
 }
@@ -0,0 +1,86 @@
+package bixo.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void testEmpty() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0.0, histogram.getMean(), 0.0);
+        assertEquals(0, histogram.getValueAtPercentile(50));
+    }
+
+    @Test
+    public void testSmallValuesAreExact() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 10; i++) {
+            histogram.record(i);
+        }
+
+        assertEquals(10, histogram.getCount());
+        assertEquals(55, histogram.getTotal());
+        assertEquals(5.5, histogram.getMean(), 0.001);
+        assertEquals(5, histogram.getValueAtPercentile(50));
+        assertEquals(9, histogram.getValueAtPercentile(90));
+        assertEquals(10, histogram.getValueAtPercentile(100));
+        assertEquals(10, histogram.getMax());
+    }
+
+    @Test
+    public void testPercentileAccuracy() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 100000; i++) {
+            histogram.record(i);
+        }
+
+        checkPercentile(histogram, 50, 50000);
+        checkPercentile(histogram, 90, 90000);
+        checkPercentile(histogram, 99, 99000);
+        assertEquals(100000, histogram.getValueAtPercentile(100));
+    }
+
+    @Test
+    public void testBuckets() {
+        int lastBucket = -1;
+        for (long value = 0; value < 100000; value++) {
+            int bucket = LatencyHistogram.getBucket(value);
+            assertTrue(bucket >= lastBucket);
+            assertTrue(value <= LatencyHistogram.getBucketMax(bucket));
+            if (bucket > 0) {
+                assertTrue(value > LatencyHistogram.getBucketMax(bucket - 1));
+            }
+
+            lastBucket = bucket;
+        }
+
+        // Huge values don't blow up.
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(Long.MAX_VALUE);
+        assertEquals(Long.MAX_VALUE, histogram.getValueAtPercentile(50));
+    }
+
+    @Test
+    public void testAdd() {
+        LatencyHistogram a = new LatencyHistogram();
+        LatencyHistogram b = new LatencyHistogram();
+        a.record(10);
+        b.record(1000);
+        b.record(20);
+
+        a.add(b);
+        assertEquals(3, a.getCount());
+        assertEquals(1030, a.getTotal());
+        assertEquals(1000, a.getMax());
+        assertEquals(20, a.getValueAtPercentile(50), 1);
+    }
+
+    private void checkPercentile(LatencyHistogram histogram, double percentile, long expected) {
+        long value = histogram.getValueAtPercentile(percentile);
+        assertTrue("p" + percentile + " = " + value, Math.abs(value - expected) <= expected / 16);
+    }
+}
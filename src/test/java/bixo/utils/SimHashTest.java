@@ -0,0 +1,83 @@
+package bixo.utils;
+
+import java.util.Random;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+public class SimHashTest {
+
+    private static String makeText(int seed, int numWords) {
+        Random rand = new Random(seed);
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < numWords; i++) {
+            result.append("word");
+            result.append(rand.nextInt(500));
+            result.append(' ');
+        }
+
+        return result.toString();
+    }
+
+    @Test
+    public void testCaseAndPunctuation() {
+        Assert.assertEquals(SimHash.getSimHash("Hello, world - this is a test."), SimHash.getSimHash("hello world this IS a test"));
+    }
+
+    @Test
+    public void testNoWords() {
+        Assert.assertEquals(0, SimHash.getSimHash(""));
+        Assert.assertEquals(0, SimHash.getSimHash(" .,;- "));
+        Assert.assertTrue(SimHash.getSimHash("two words") != 0);
+    }
+
+    @Test
+    public void testNearDuplicates() {
+        for (int i = 0; i < 10; i++) {
+            String text = makeText(i, 1000);
+            long hash = SimHash.getSimHash(text);
+
+            Assert.assertTrue(SimHash.getDistance(hash, SimHash.getSimHash(text + " sessionid 12345")) <= 3);
+            Assert.assertTrue(SimHash.getDistance(hash, SimHash.getSimHash("Print view " + text)) <= 3);
+        }
+    }
+
+    @Test
+    public void testDifferentText() {
+        for (int i = 0; i < 10; i++) {
+            long hash = SimHash.getSimHash(makeText(i, 1000));
+            for (int j = i + 1; j < 10; j++) {
+                Assert.assertTrue(SimHash.getDistance(hash, SimHash.getSimHash(makeText(j, 1000))) > 10);
+            }
+        }
+    }
+
+    @Test
+    public void testBandKeys() {
+        long hash = SimHash.getSimHash(makeText(0, 100));
+
+        // Flipping one bit in each of the first three bands leaves the last band unchanged.
+        long nearHash = hash ^ (1L << 1) ^ (1L << (SimHash.BAND_BITS + 1)) ^ (1L << (2 * SimHash.BAND_BITS + 1));
+        Assert.assertEquals(3, SimHash.getDistance(hash, nearHash));
+        for (int band = 0; band < SimHash.NUM_BANDS - 1; band++) {
+            Assert.assertTrue(SimHash.getBandKey(hash, band) != SimHash.getBandKey(nearHash, band));
+        }
+
+        int lastBand = SimHash.NUM_BANDS - 1;
+        Assert.assertEquals(SimHash.getBandKey(hash, lastBand), SimHash.getBandKey(nearHash, lastBand));
+
+        // The same band value in different bands gives different keys.
+        Assert.assertTrue(SimHash.getBandKey(0, 0) != SimHash.getBandKey(0, 1));
+    }
+
+    @Test
+    public void testInvalidBand() {
+        try {
+            SimHash.getBandKey(0, SimHash.NUM_BANDS);
+            Assert.fail("Should have thrown exception");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+}
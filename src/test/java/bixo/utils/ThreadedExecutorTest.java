@@ -144,6 +144,9 @@ public class ThreadedExecutorTest {
             executor.execute(cmd);
             
             Assert.assertFalse(executor.terminate());
+            
+            // The interrupted thread should have been given time to exit.
+            Assert.assertTrue(executor.isTerminated());
         } catch (RejectedExecutionException e) {
             Assert.fail("Execution was rejected");
         } catch (InterruptedException e) {